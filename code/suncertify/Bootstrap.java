@@ -15,6 +15,7 @@ import suncertify.db.*;
 import suncertify.client.ClientFrame;
 import suncertify.server.Server;
 import suncertify.server.ServerImpl;
+import suncertify.server.SocketServer;
 
 /**
  * This class contains the main method to load configuration parameters and 
@@ -111,6 +112,12 @@ public class Bootstrap {
                     + "\n\nCheck the server host and port number "
                     + "and that the server has been started.");
             System.exit(1);
+        } catch (java.net.ConnectException ex) {
+            Utils.errorBox(null, "Unable to connect to server."
+                    + "\n\nDetails:\n" + ex.getMessage()
+                    + "\n\nCheck the server host and port number "
+                    + "and that the server has been started.");
+            System.exit(1);
         } catch (IOException ex) {
             Utils.errorBox(null, "Unable to open database: "
                     + ex.getMessage());
@@ -120,6 +127,11 @@ public class Bootstrap {
             System.exit(1);
         }
         
+        /* Force and close a local data file when the application exits */
+        if (db instanceof Data) {
+            closeOnExit((Data) db);
+        }
+        
         /* Start the application */
         if (config.equals(Configuration.CLIENT)
                 || config.equals(Configuration.ALONE)) {            
@@ -135,6 +147,10 @@ public class Bootstrap {
                 Utils.errorBox(null, "Server already running on port "
                         + config.getPort());
                 System.exit(1);
+            } catch (IOException ex) {
+                Utils.errorBox(null, "Unable to start server. "
+                        + "\n\nDetails:\n" + ex.getMessage());
+                System.exit(1);
             } 
         }
         
@@ -190,18 +206,48 @@ public class Bootstrap {
      * @throws RemoteException if there is a network communication problem.
      * @throws AlreadyBoundException if an instance of the server is already
      *          bound in the namespace.
+     * @throws IOException if the socket server cannot listen on the port.
      *
      * @see suncertify.server.ServerImpl
+     * @see suncertify.server.SocketServer
      */    
     public static void startServer(Configuration config, BookingDB db)
-            throws RemoteException, AlreadyBoundException {
+            throws RemoteException, AlreadyBoundException, IOException {
         int port = config.getPort();
-        Registry registry = LocateRegistry.createRegistry(port);       
-        Server server = new ServerImpl(db);
-        registry.bind(Configuration.JNI_NAME, server);        
+        if (Configuration.TRANSPORT_SOCKET.equals(config.getTransport())) {
+            Thread server = new Thread(new SocketServer(db, port),
+                    "SocketServer");
+            server.start();
+        } else {
+            Registry registry = LocateRegistry.createRegistry(port);       
+            Server server = new ServerImpl(db);
+            registry.bind(Configuration.JNI_NAME, server);        
+        }
         JOptionPane.showMessageDialog(null, "Server started on port "
                 + config.getPort());
     }
+    
+    /**
+     * Arranges for a local data file to be closed when the application
+     * exits, however it exits, so that every write is forced to the storage
+     * device and any write-ahead log is emptied.
+     *
+     * @param data the data object to be closed.
+     *
+     * @see suncertify.db.Data#close
+     */
+    public static void closeOnExit(final Data data) {
+        Runtime.getRuntime().addShutdownHook(new Thread("CloseData") {
+            public void run() {
+                try {
+                    data.close();
+                } catch (IOException ex) {
+                    System.err.println("Unable to close data file: "
+                            + ex.getMessage());
+                }
+            }
+        });
+    }
         
     /**
      * Prints the usage information for command-line invocation.
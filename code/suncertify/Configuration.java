@@ -38,6 +38,52 @@ public class Configuration {
      * The properties key for the server port.
      */
     public static final String PORT_KEY = "port";
+    
+    /**
+     * The properties key for the database storage mode.
+     */
+    public static final String STORAGE_KEY = "storage";
+    
+    /**
+     * The properties key for the database record cache mode.
+     */
+    public static final String CACHE_KEY = "cache";
+    
+    /**
+     * The properties key for the number of records cached.
+     */
+    public static final String CACHE_SIZE_KEY = "cacheSize";
+    
+    /**
+     * The properties key for the network transport.
+     */
+    public static final String TRANSPORT_KEY = "transport";
+    
+    /**
+     * The properties key for the database write-ahead log mode.
+     */
+    public static final String LOG_KEY = "log";
+    
+    /**
+     * The properties key for the fields with prefix indexes.
+     */
+    public static final String INDEXES_KEY = "indexes";
+    
+    /**
+     * The properties key for the column snapshot mode.
+     */
+    public static final String SNAPSHOT_KEY = "snapshot";
+    
+    /**
+     * The properties key for the number of deleted slots at which the
+     * database file is compacted.
+     */
+    public static final String COMPACTION_KEY = "compaction";
+    
+    /**
+     * The properties key for the parallel search mode.
+     */
+    public static final String PARALLEL_KEY = "parallel";
         
     /**
      * The description text for the file field.
@@ -54,6 +100,133 @@ public class Configuration {
      */
     public static final String PORT_KEY_DESC = "Server Port";
     
+    /**
+     * The description text for the storage field.
+     */
+    public static final String STORAGE_KEY_DESC = "Storage Mode";
+    
+    /**
+     * The description text for the cache field.
+     */
+    public static final String CACHE_KEY_DESC = "Record Cache";
+    
+    /**
+     * The description text for the cache size field.
+     */
+    public static final String CACHE_SIZE_KEY_DESC = "Cache Size";
+    
+    /**
+     * The description text for the network transport field.
+     */
+    public static final String TRANSPORT_KEY_DESC = "Network Transport";
+    
+    /**
+     * The description text for the write-ahead log field.
+     */
+    public static final String LOG_KEY_DESC = "Write-Ahead Log";
+    
+    /**
+     * The description text for the prefix indexes field.
+     */
+    public static final String INDEXES_KEY_DESC = "Prefix Indexes";
+    
+    /**
+     * The description text for the column snapshot field.
+     */
+    public static final String SNAPSHOT_KEY_DESC = "Column Snapshot";
+    
+    /**
+     * The description text for the compaction threshold field.
+     */
+    public static final String COMPACTION_KEY_DESC = "Compaction Threshold";
+    
+    /**
+     * The description text for the parallel search field.
+     */
+    public static final String PARALLEL_KEY_DESC = "Parallel Search";
+    
+    /**
+     * The storage mode whereby the database file is read and written
+     * directly.
+     */
+    public static final String STORAGE_FILE = "file";
+    
+    /**
+     * The storage mode whereby the database file is memory-mapped.
+     */
+    public static final String STORAGE_MAPPED = "mapped";
+    
+    /**
+     * The cache mode whereby records are not cached.
+     */
+    public static final String CACHE_NONE = "none";
+    
+    /**
+     * The cache mode whereby the most recently used records are cached, up
+     * to the cache size.
+     */
+    public static final String CACHE_LRU = "lru";
+    
+    /**
+     * The cache mode whereby every record is cached.
+     */
+    public static final String CACHE_RESIDENT = "resident";
+    
+    /**
+     * The network transport whereby clients call the server using RMI.
+     */
+    public static final String TRANSPORT_RMI = "rmi";
+    
+    /**
+     * The network transport whereby clients call the server over a plain
+     * socket using a binary protocol.
+     */
+    public static final String TRANSPORT_SOCKET = "socket";
+    
+    /**
+     * The log mode whereby writes are committed to a write-ahead log before
+     * they are made to the database file.
+     */
+    public static final String LOG_ON = "on";
+    
+    /**
+     * The log mode whereby writes are made straight to the database file.
+     */
+    public static final String LOG_OFF = "off";
+    
+    /**
+     * The prefix indexes value whereby no field is indexed.
+     */
+    public static final String INDEXES_NONE = "none";
+    
+    /**
+     * The separator between the field names of the prefix indexes value.
+     */
+    public static final String INDEXES_SEPARATOR = ",";
+    
+    /**
+     * The snapshot mode whereby searches that are not answered by a prefix
+     * index are matched against a copy of the records held in memory by
+     * column.
+     */
+    public static final String SNAPSHOT_ON = "on";
+    
+    /**
+     * The snapshot mode whereby searches read the records.
+     */
+    public static final String SNAPSHOT_OFF = "off";
+    
+    /**
+     * The parallel search mode whereby searches that read every record of a
+     * large database file are divided between the processors.
+     */
+    public static final String PARALLEL_ON = "on";
+    
+    /**
+     * The parallel search mode whereby every search runs on a single thread.
+     */
+    public static final String PARALLEL_OFF = "off";
+    
     /**
      * The default database file name.
      */
@@ -64,6 +237,52 @@ public class Configuration {
      */
     public static final String DEFAULT_PORT = "1099";
     
+    /**
+     * The default storage mode.
+     */
+    public static final String DEFAULT_STORAGE = STORAGE_FILE;
+    
+    /**
+     * The default cache mode.
+     */
+    public static final String DEFAULT_CACHE = CACHE_LRU;
+    
+    /**
+     * The default number of records cached.
+     */
+    public static final String DEFAULT_CACHE_SIZE = "1000";
+    
+    /**
+     * The default network transport.
+     */
+    public static final String DEFAULT_TRANSPORT = TRANSPORT_RMI;
+    
+    /**
+     * The default write-ahead log mode.
+     */
+    public static final String DEFAULT_LOG = LOG_OFF;
+    
+    /**
+     * The default prefix indexes.
+     */
+    public static final String DEFAULT_INDEXES = INDEXES_NONE;
+    
+    /**
+     * The default column snapshot mode.
+     */
+    public static final String DEFAULT_SNAPSHOT = SNAPSHOT_OFF;
+    
+    /**
+     * The default compaction threshold, whereby the database file is never
+     * compacted automatically.
+     */
+    public static final String DEFAULT_COMPACTION = "0";
+    
+    /**
+     * The default parallel search mode.
+     */
+    public static final String DEFAULT_PARALLEL = PARALLEL_ON;
+    
     /**
      * The minimum port number.
      */
@@ -109,9 +328,13 @@ public class Configuration {
      * <code>Configuration</code> objects.
      */
     static {                
-        String[] serverKeys = { FILE_KEY, PORT_KEY };
-        String[] clientKeys = { HOST_KEY, PORT_KEY };
-        String[] aloneKeys = { FILE_KEY };
+        String[] serverKeys = { FILE_KEY, PORT_KEY, TRANSPORT_KEY,
+                STORAGE_KEY, LOG_KEY, CACHE_KEY, CACHE_SIZE_KEY,
+                INDEXES_KEY, SNAPSHOT_KEY, COMPACTION_KEY, PARALLEL_KEY };
+        String[] clientKeys = { HOST_KEY, PORT_KEY, TRANSPORT_KEY };
+        String[] aloneKeys = { FILE_KEY, STORAGE_KEY, LOG_KEY, CACHE_KEY,
+                CACHE_SIZE_KEY, INDEXES_KEY, SNAPSHOT_KEY,
+                COMPACTION_KEY, PARALLEL_KEY };
         
         SERVER = new Configuration("server", serverKeys, "Server");
         CLIENT = new Configuration("client", clientKeys, "Network Client");
@@ -162,6 +385,15 @@ public class Configuration {
         properties = new Properties();
         properties.put(prefix + "." + FILE_KEY, DEFAULT_FILE);
         properties.put(prefix + "." + PORT_KEY, DEFAULT_PORT);
+        properties.put(prefix + "." + STORAGE_KEY, DEFAULT_STORAGE);
+        properties.put(prefix + "." + CACHE_KEY, DEFAULT_CACHE);
+        properties.put(prefix + "." + CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE);
+        properties.put(prefix + "." + TRANSPORT_KEY, DEFAULT_TRANSPORT);
+        properties.put(prefix + "." + LOG_KEY, DEFAULT_LOG);
+        properties.put(prefix + "." + INDEXES_KEY, DEFAULT_INDEXES);
+        properties.put(prefix + "." + SNAPSHOT_KEY, DEFAULT_SNAPSHOT);
+        properties.put(prefix + "." + COMPACTION_KEY, DEFAULT_COMPACTION);
+        properties.put(prefix + "." + PARALLEL_KEY, DEFAULT_PARALLEL);
     }    
     
     /**
@@ -237,6 +469,131 @@ public class Configuration {
         return Integer.parseInt(value);
     }
     
+    /**
+     * Returns the database storage mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the storage mode, either {@link #STORAGE_FILE STORAGE_FILE} or
+     *       {@link #STORAGE_MAPPED STORAGE_MAPPED}.
+     */    
+    public String getStorage() {        
+        String key = prefix + "." + STORAGE_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
+    /**
+     * Returns the database write-ahead log mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the log mode, either {@link #LOG_ON LOG_ON} or
+     *       {@link #LOG_OFF LOG_OFF}.
+     */    
+    public String getLog() {        
+        String key = prefix + "." + LOG_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
+    /**
+     * Returns the database record cache mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the cache mode, either {@link #CACHE_NONE CACHE_NONE},
+     *       {@link #CACHE_LRU CACHE_LRU} or
+     *       {@link #CACHE_RESIDENT CACHE_RESIDENT}.
+     */    
+    public String getCache() {        
+        String key = prefix + "." + CACHE_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
+    /**
+     * Returns the maximum number of records cached in
+     *       {@link #CACHE_LRU CACHE_LRU} mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the cache size.
+     */    
+    public int getCacheSize() {        
+        String key = prefix + "." + CACHE_SIZE_KEY;
+        String value = (String) properties.get(key);        
+        return Integer.parseInt(value);
+    }
+    
+    /**
+     * Returns the network transport specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the transport, either {@link #TRANSPORT_RMI TRANSPORT_RMI} or
+     *       {@link #TRANSPORT_SOCKET TRANSPORT_SOCKET}.
+     */    
+    public String getTransport() {        
+        String key = prefix + "." + TRANSPORT_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
+    /**
+     * Returns the names of the fields to be given prefix indexes specified in
+     *       this <code>Configuration</code>.
+     *
+     * @return the field names, which is empty if the value is
+     *       {@link #INDEXES_NONE INDEXES_NONE}.
+     */    
+    public String[] getIndexes() {        
+        String key = prefix + "." + INDEXES_KEY;
+        String value = (String) properties.get(key);        
+        if (value.equals(INDEXES_NONE)) {
+            return new String[0];
+        }
+        String[] names = value.split(INDEXES_SEPARATOR);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+        }
+        return names;
+    }
+    
+    /**
+     * Returns the column snapshot mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the snapshot mode, either {@link #SNAPSHOT_ON SNAPSHOT_ON} or
+     *       {@link #SNAPSHOT_OFF SNAPSHOT_OFF}.
+     */    
+    public String getSnapshot() {        
+        String key = prefix + "." + SNAPSHOT_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
+    /**
+     * Returns the number of deleted slots at which the database file is
+     *       compacted specified in this <code>Configuration</code>.
+     *
+     * @return the compaction threshold, or 0 if the file is never compacted
+     *       automatically.
+     */    
+    public int getCompaction() {        
+        String key = prefix + "." + COMPACTION_KEY;
+        String value = (String) properties.get(key);        
+        return Integer.parseInt(value);
+    }
+    
+    /**
+     * Returns the parallel search mode specified in this
+     *       <code>Configuration</code>.
+     *
+     * @return the parallel search mode, either {@link #PARALLEL_ON
+     *       PARALLEL_ON} or {@link #PARALLEL_OFF PARALLEL_OFF}.
+     */    
+    public String getParallel() {        
+        String key = prefix + "." + PARALLEL_KEY;
+        String value = (String) properties.get(key);        
+        return value;        
+    }
+    
     /**
      * Sets the property value specified by the given key.
      *
@@ -260,6 +617,94 @@ public class Configuration {
             }
         }
         
+        /* If it is the storage mode that is being set, check it is known */
+        if (getKeyType(key).equals(STORAGE_KEY)
+                && !value.equals(STORAGE_FILE)
+                && !value.equals(STORAGE_MAPPED)) {
+            throw new IllegalArgumentException("Storage mode must be "
+                    + STORAGE_FILE + " or " + STORAGE_MAPPED);
+        }
+        
+        /* If it is the log mode that is being set, check it is known */
+        if (getKeyType(key).equals(LOG_KEY)
+                && !value.equals(LOG_ON)
+                && !value.equals(LOG_OFF)) {
+            throw new IllegalArgumentException("Write-ahead log must be "
+                    + LOG_ON + " or " + LOG_OFF);
+        }
+        
+        /* If it is the cache mode that is being set, check it is known */
+        if (getKeyType(key).equals(CACHE_KEY)
+                && !value.equals(CACHE_NONE)
+                && !value.equals(CACHE_LRU)
+                && !value.equals(CACHE_RESIDENT)) {
+            throw new IllegalArgumentException("Record cache must be "
+                    + CACHE_NONE + ", " + CACHE_LRU + " or " + CACHE_RESIDENT);
+        }
+        
+        /* If it is the cache size that is being set, check it is positive */
+        if (getKeyType(key).equals(CACHE_SIZE_KEY)) {
+            try {
+                if (Integer.parseInt(value) < 1) {
+                    throw new IllegalArgumentException(
+                            "Cache size must be at least 1");
+                }
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(
+                        "Cache size must be an integer");
+            }
+        }
+        
+        /* If it is the transport that is being set, check it is known */
+        if (getKeyType(key).equals(TRANSPORT_KEY)
+                && !value.equals(TRANSPORT_RMI)
+                && !value.equals(TRANSPORT_SOCKET)) {
+            throw new IllegalArgumentException("Network transport must be "
+                    + TRANSPORT_RMI + " or " + TRANSPORT_SOCKET);
+        }
+        
+        /* If it is the snapshot mode that is being set, check it is known */
+        if (getKeyType(key).equals(SNAPSHOT_KEY)
+                && !value.equals(SNAPSHOT_ON)
+                && !value.equals(SNAPSHOT_OFF)) {
+            throw new IllegalArgumentException("Column snapshot must be "
+                    + SNAPSHOT_ON + " or " + SNAPSHOT_OFF);
+        }
+        
+        /* If it is the parallel search mode being set, check it is known */
+        if (getKeyType(key).equals(PARALLEL_KEY)
+                && !value.equals(PARALLEL_ON)
+                && !value.equals(PARALLEL_OFF)) {
+            throw new IllegalArgumentException("Parallel search must be "
+                    + PARALLEL_ON + " or " + PARALLEL_OFF);
+        }
+        
+        /* If it is the compaction threshold being set, check it is valid */
+        if (getKeyType(key).equals(COMPACTION_KEY)) {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    throw new IllegalArgumentException(
+                            "Compaction threshold must not be negative");
+                }
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(
+                        "Compaction threshold must be an integer");
+            }
+        }
+        
+        /* If it is the prefix indexes being set, check the field names */
+        if (getKeyType(key).equals(INDEXES_KEY)
+                && !value.equals(INDEXES_NONE)) {
+            String[] names = value.split(INDEXES_SEPARATOR, -1);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].trim().length() == 0) {
+                    throw new IllegalArgumentException("Prefix indexes must "
+                            + "be " + INDEXES_NONE + " or a list of field "
+                            + "names separated by commas");
+                }
+            }
+        }
+        
         properties.put(key, value);
     }
     
@@ -300,8 +745,26 @@ public class Configuration {
             desc = FILE_KEY_DESC;
         } else if (key.endsWith(HOST_KEY)) {
             desc = HOST_KEY_DESC;
+        } else if (key.endsWith(TRANSPORT_KEY)) {
+            desc = TRANSPORT_KEY_DESC; //Tested first as it ends with "port"
         } else if (key.endsWith(PORT_KEY)) {
             desc = PORT_KEY_DESC;            
+        } else if (key.endsWith(STORAGE_KEY)) {
+            desc = STORAGE_KEY_DESC;
+        } else if (key.endsWith(LOG_KEY)) {
+            desc = LOG_KEY_DESC;
+        } else if (key.endsWith(CACHE_KEY)) {
+            desc = CACHE_KEY_DESC;
+        } else if (key.endsWith(CACHE_SIZE_KEY)) {
+            desc = CACHE_SIZE_KEY_DESC;
+        } else if (key.endsWith(INDEXES_KEY)) {
+            desc = INDEXES_KEY_DESC;
+        } else if (key.endsWith(SNAPSHOT_KEY)) {
+            desc = SNAPSHOT_KEY_DESC;
+        } else if (key.endsWith(COMPACTION_KEY)) {
+            desc = COMPACTION_KEY_DESC;
+        } else if (key.endsWith(PARALLEL_KEY)) {
+            desc = PARALLEL_KEY_DESC;
         }
         
         return desc;
@@ -314,7 +777,13 @@ public class Configuration {
      * @param key they key string that we want to determine the type of.
      *
      * @return the type of this key, built-in key types are {@link #FILE_KEY
-     * FILE_KEY}, {@link #HOST_KEY HOST_KEY} and {@link #PORT_KEY PORT_KEY}.
+     * FILE_KEY}, {@link #HOST_KEY HOST_KEY}, {@link #PORT_KEY PORT_KEY},
+     * {@link #STORAGE_KEY STORAGE_KEY}, {@link #CACHE_KEY CACHE_KEY},
+     * {@link #CACHE_SIZE_KEY CACHE_SIZE_KEY},
+     * {@link #TRANSPORT_KEY TRANSPORT_KEY}, {@link #LOG_KEY LOG_KEY},
+     * {@link #INDEXES_KEY INDEXES_KEY}, {@link #SNAPSHOT_KEY SNAPSHOT_KEY},
+     * {@link #COMPACTION_KEY COMPACTION_KEY} and
+     * {@link #PARALLEL_KEY PARALLEL_KEY}.
      */    
     public static String getKeyType(String key) {        
         String type = key.substring(key.indexOf('.') + 1);
@@ -86,4 +86,20 @@ public class Utils {
         Date newDate = calendar.getTime();
         return newDate;
     }
+    
+    /**
+     * Returns midnight local time on the date that is the given number of
+     * days after 1 January 1970.
+     *
+     * @param epochDay the number of days since 1 January 1970.
+     *
+     * @return the date.
+     */
+    public static Date toDate(long epochDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1970, Calendar.JANUARY, 1);
+        calendar.add(Calendar.DATE, (int) epochDay);
+        return calendar.getTime();
+    }
 }
@@ -14,6 +14,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import suncertify.db.BookingDB;
 import suncertify.db.RecordNotFoundException;
+import suncertify.db.VersionConflictException;
+import suncertify.db.VersionedRecord;
 import suncertify.Utils;
 
 /**
@@ -28,6 +30,12 @@ import suncertify.Utils;
  * to select a record to be booked. The instantiating object needs to supply
  * a {@link suncertify.db.BookingDB BookingDB} object and a record number in
  * order for this class to edit the relevant record in the database.
+ * <p>
+ * The record is not locked while the dialog is open. It is read together
+ * with its version and the booking is made with
+ * {@link suncertify.db.BookingDB#updateIfVersion updateIfVersion}, so if
+ * another user has changed the record in the meantime the booking fails and
+ * the dialog shows the record as it is now.
  *
  * @author Nick Shrine
  */
@@ -62,7 +70,7 @@ public class BookingDialog extends JDialog implements ActionListener {
      * The text for the waiting message.
      */
     protected static final String WAITING_MESSAGE =
-            "Waiting to obtain lock on record";                
+            "Reading record";                
     
     /**
      * {@link suncertify.db.BookingDB BookingDB} object used for data access.
@@ -80,9 +88,9 @@ public class BookingDialog extends JDialog implements ActionListener {
     protected String[] record;    
     
     /**
-     * The lock cookie of the record being booked.
+     * The version of the record being booked when it was read.
      */
-    protected long cookie;
+    protected long version;
     
     /**
      * The text field used to set the owner of the booking.
@@ -143,26 +151,32 @@ public class BookingDialog extends JDialog implements ActionListener {
                         message = "Booking cancelled";
                     }
                     record[6] = customerId; //data field 6 is the customer id.
-                    db.update(recNo, record, cookie);
+                    db.updateIfVersion(recNo, record, version);
                     JOptionPane.showMessageDialog(this, message, "Success",
                             JOptionPane.INFORMATION_MESSAGE);
                 }            
-                db.unlock(recNo, cookie);
                 dispose();
             } catch (NumberFormatException ex) {
                 Utils.errorBox(this, "Invalid Customer ID\n\n"
                         + "Must be an 8-digit number");
             } catch (RecordNotFoundException ex) {
                 Utils.errorBox(this, ex.getMessage());
-            } catch (suncertify.db.SecurityException ex) {
-                Utils.errorBox(this, ex.getMessage());
+            } catch (VersionConflictException ex) {
+                Utils.errorBox(this, "The record has been changed by another "
+                        + "user\n\nPlease check it and try again");
+                
+                /* Show the record as it is now */
+                setContentPane(getWaitingPanel());
+                pack();
+                Thread openRecord = new Thread(new OpenRecord());
+                openRecord.start();
             }            
         }
     }        
         
     /**
-     * Returns a panel indicating that the Dialog is waiting to obtain a lock
-     * on the requested record.
+     * Returns a panel indicating that the Dialog is waiting to read the
+     * requested record.
      *
      * @return a <code>JPanel</code> displaying a waiting message.
      */    
@@ -179,8 +193,8 @@ public class BookingDialog extends JDialog implements ActionListener {
     }
     
     /**
-     * Returns a panel for editing the booking once the lock on the record
-     * has been obtained.
+     * Returns a panel for editing the booking once the record has been
+     * read.
      *
      * @return a <code>JPanel</code> for editing the booking.
      */    
@@ -238,8 +252,7 @@ public class BookingDialog extends JDialog implements ActionListener {
     
     /**
      * An inner class that implements <code>Runnable</code> in order to 
-     * obtain the lock on the record to be opened in a seperate thread, 
-     * waiting if need be for the record to become available without locking
+     * read the record to be opened in a seperate thread without locking
      * up the GUI thread thereby allowing it to display a waiting message.
      */
     protected class OpenRecord implements Runnable {
@@ -252,18 +265,18 @@ public class BookingDialog extends JDialog implements ActionListener {
         }
         
         /**
-         * This method obtains the lock on the record required by the outer
-         * {@link BookingDialog BookingDialog} object and reads the data for
-         * the record. It may sleep while waiting for the lock on the record.
+         * This method reads the data and version of the record required by
+         * the outer {@link BookingDialog BookingDialog} object.
          * <p>
-         * After obtaining the lock and reading the data it changes the
+         * After reading the data it changes the
          * contents of the outer dialog object from the default waiting message
          * to a panel for editing the booking.
          */
         public void run() {            
             try {
-                cookie = db.lock(recNo); //May cause thread to sleep
-                record = db.read(recNo);
+                VersionedRecord current = db.readVersioned(recNo);
+                record = current.getFields();
+                version = current.getVersion();
                 setContentPane(getEditPanel()); //Change waiting panel to edit
                 pack();
                 setLocationRelativeTo(getParent());                
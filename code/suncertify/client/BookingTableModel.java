@@ -7,15 +7,24 @@
 package suncertify.client;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.Date;
+import java.util.*;
 import java.text.SimpleDateFormat;
-import java.text.ParseException;
+import suncertify.Utils;
 import suncertify.db.*;
+import suncertify.server.ChangeEvent;
+import suncertify.server.ChangeSet;
 
 /**
  * A <code>TableModel</code> implementation to model the data stored in a
  * database accessed with a {@link suncertify.db.BookingDB BookingDB}
  * implememtation making it available for display in a <code>JTable</code>.
+ * <p>
+ * The fields of the records displayed are kept in a row cache, filled with a
+ * single call to the database whenever the records displayed are set, so
+ * that painting or scrolling the table does not access the database. A
+ * record is only read again when it is known to have changed, through
+ * {@link #refreshRecords refreshRecords}, and changes reported by the server
+ * are applied to the rows directly by {@link #applyChanges applyChanges}.
  * 
  * @author Nick Shrine
  */
@@ -52,6 +61,17 @@ public class BookingTableModel extends AbstractTableModel {
      */
     protected int[] records;
     
+    /**
+     * The row cache, a map where the keys are <code>Integer</code> record
+     * numbers and the values are the trimmed fields of the record.
+     */
+    protected final Map rows;
+    
+    /**
+     * The view used to read the current date a record is available.
+     */
+    protected final RecordView view;
+    
     /**
      * Creates a new instance of the <code>TableModel</code> using the
      * supplied {@link suncertify.db.BookingDB} object for data access.
@@ -62,9 +82,13 @@ public class BookingTableModel extends AbstractTableModel {
         this.db = db;        
         fieldNames = ClientFrame.FIELDNAMES;
         numCols = fieldNames.length;
+        view = db.newRecordView();
+        rows = new HashMap();
         
-        /* Do a find that returns all records to initialise record numbers */
-        records = db.find(new String[numCols]);
+        /* Do a find that returns all records to initialise the rows */
+        String[] criteria = new String[numCols];
+        records = new int[0];
+        setRecords(db.findExactRecords(criteria, BookingDB.SEARCH_TYPE_AND));
     }
     
     /**
@@ -85,10 +109,73 @@ public class BookingTableModel extends AbstractTableModel {
      * be displayed in the rows of the table.
      */    
     public void setRecords(int[] records) {        
+        rows.clear();
+        cacheRows(records, db.readAll(records));
         this.records = records;
         fireTableDataChanged();
     }
     
+    /**
+     * Sets the records to be held in the rows of the table to the records
+     * found by a search, using the fields returned with the search results
+     * so that the database does not need to be read again.
+     *
+     * @param result the records found by a search.
+     */
+    public void setRecords(SearchResult result) {
+        rows.clear();
+        cacheRows(result.getRecNos(), result.getRecords());
+        records = result.getRecNos();
+        fireTableDataChanged();
+    }
+    
+    /**
+     * Reads the specified records from the database again, if they are
+     * displayed in the table, and updates the rows that display them. Used
+     * when the records are known to have changed, for example after they
+     * have been booked.
+     *
+     * @param recNos the record numbers of the records that have changed.
+     */
+    public void refreshRecords(int[] recNos) {
+        List displayed = new ArrayList();
+        for (int i = 0; i < recNos.length; i++) {
+            if (rows.containsKey(new Integer(recNos[i]))) {
+                displayed.add(new Integer(recNos[i]));
+            }
+        }
+        if (displayed.isEmpty()) {
+            return;
+        }
+        
+        int[] changed = Utils.toIntArray(displayed);
+        updateRows(changed, db.readAll(changed));
+    }
+    
+    /**
+     * Applies changes reported by the server to the rows that display the
+     * changed records, without reading the database. If some changes were
+     * lost every displayed record is read again. Must be called on the event
+     * dispatch thread.
+     *
+     * @param changes the changes reported by the server.
+     */
+    public void applyChanges(ChangeSet changes) {
+        if (!changes.isComplete()) {
+            refreshRecords(records);
+            return;
+        }
+        
+        ChangeEvent[] events = changes.getEvents();
+        int[] recNos = new int[events.length];
+        String[][] data = new String[events.length][];
+        for (int i = 0; i < events.length; i++) {
+            recNos[i] = events[i].getRecNo();
+            data[i] = events[i].getData();
+        }
+        updateRows(recNos, data);
+    }
+    
     /**
      * Returns the number of columns in the table.
      *
@@ -116,17 +203,20 @@ public class BookingTableModel extends AbstractTableModel {
      * @return the object at the specified row and column.
      */    
     public Object getValueAt(int row, int column) {
-        String[] rowData = null;
-        Object value = null;
+        String[] rowData = (String[]) rows.get(new Integer(records[row]));
         
-        try {
-            rowData = db.read(records[row]);
-            value = rowData[column].trim();
-        } catch (RecordNotFoundException ex) {            
-            throw new RuntimeException(ex); //Should never happen.
+        if (rowData == null) {
+            
+            /* Record was not in the database when the rows were filled */
+            try {
+                rowData = db.read(records[row]);
+            } catch (RecordNotFoundException ex) {            
+                throw new RuntimeException(ex); //Should never happen.
+            }
+            cacheRows(new int[] { records[row] }, new String[][] { rowData });
         }
         
-        return value;
+        return rowData[column];
     }
     
     /**
@@ -141,7 +231,8 @@ public class BookingTableModel extends AbstractTableModel {
     }
     
     /**
-     * Returns the date the booking at the specified row is available.
+     * Returns the date the booking at the specified row is available, read
+     * from the database rather than the row cache.
      * 
      * @param row the row number of the required booking.
      * 
@@ -151,14 +242,86 @@ public class BookingTableModel extends AbstractTableModel {
      *          is in the wrong format.
      */
     public Date getDateAvailable(int row) throws InvalidDataFileException {
-        String dateString = (String) getValueAt(row, DATE_COLUMN);
         Date date = null;
         try {
-            date = DATE_FORMAT.parse(dateString);
-        } catch (ParseException ex) {
+            db.read(records[row], view);
+            date = Utils.toDate(view.date());
+        } catch (RecordNotFoundException ex) {            
+            throw new RuntimeException(ex); //Should never happen.
+        } catch (NumberFormatException ex) {
             throw new InvalidDataFileException(
                     "Date entry for record is corrupt:\n" + ex.getMessage());
         }
         return date;
     }
+    
+    /**
+     * Replaces the cached fields of the displayed records among those given
+     * and updates the rows that display them. Records that are
+     * <code>null</code> have been deleted and are removed from the table.
+     *
+     * @param recNos the record numbers of the records.
+     * @param data the new fields of the records, where element n holds the
+     *      fields of record recNos[n].
+     */
+    protected void updateRows(int[] recNos, String[][] data) {
+        Set updated = new HashSet();
+        Set deleted = new HashSet();
+        
+        for (int i = 0; i < recNos.length; i++) {
+            Integer recNo = new Integer(recNos[i]);
+            if (!rows.containsKey(recNo)) {
+                continue; //Not displayed
+            }
+            cacheRows(new int[] { recNos[i] }, new String[][] { data[i] });
+            if (data[i] == null) {
+                updated.remove(recNo);
+                deleted.add(recNo);
+            } else {
+                updated.add(recNo);
+            }
+        }
+        
+        if (!deleted.isEmpty()) {
+            List remaining = new ArrayList();
+            for (int row = 0; row < records.length; row++) {
+                Integer recNo = new Integer(records[row]);
+                if (!deleted.contains(recNo)) {
+                    remaining.add(recNo);
+                }
+            }
+            records = Utils.toIntArray(remaining);
+            fireTableDataChanged();
+            return;
+        }
+        
+        for (int row = 0; row < records.length; row++) {
+            if (updated.contains(new Integer(records[row]))) {
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+    
+    /**
+     * Adds records to the row cache, replacing any cached fields for the
+     * records. Records that are <code>null</code> are removed from the cache.
+     *
+     * @param recNos the record numbers of the records.
+     * @param data the records, where element n holds the fields of record
+     *      recNos[n].
+     */
+    protected void cacheRows(int[] recNos, String[][] data) {
+        for (int i = 0; i < recNos.length; i++) {
+            Integer recNo = new Integer(recNos[i]);
+            if (data[i] == null) {
+                rows.remove(recNo);
+                continue;
+            }
+            String[] rowData = new String[data[i].length];
+            for (int j = 0; j < rowData.length; j++) {
+                rowData[j] = data[i][j].trim();
+            }
+            rows.put(recNo, rowData);
+        }
+    }
 }
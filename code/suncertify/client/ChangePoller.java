@@ -0,0 +1,84 @@
+/*
+ * ChangePoller.java
+ *
+ * Created on 17 October 2026, 06:41
+ */
+
+package suncertify.client;
+
+import javax.swing.SwingUtilities;
+import suncertify.db.ChangeSource;
+import suncertify.server.ChangeSet;
+
+/**
+ * Polls the network server for changes made to the database by other
+ * clients and applies them to a {@link BookingTableModel BookingTableModel},
+ * so that bookings made elsewhere appear without searching again.
+ * <p>
+ * Each poll waits on the server until there is a change or the timeout
+ * expires, so an idle client makes one call every {@link #POLL_TIMEOUT
+ * POLL_TIMEOUT} milliseconds. Polling stops if the server cannot be reached;
+ * the user is then told of the problem by the next search or booking.
+ */
+public class ChangePoller implements Runnable {
+    
+    /**
+     * The time in milliseconds the server waits for a change on each poll.
+     */
+    public static final long POLL_TIMEOUT = 30000;
+    
+    /**
+     * The data access object to poll.
+     */
+    protected final ChangeSource db;
+    
+    /**
+     * The table model to apply the changes to.
+     */
+    protected final BookingTableModel model;
+    
+    /**
+     * The cursor following the last change seen.
+     */
+    protected long cursor;
+    
+    /**
+     * Creates a poller that applies the changes following the given cursor
+     * to a table model.
+     *
+     * @param db the data access object to poll.
+     * @param model the table model to apply the changes to.
+     * @param cursor the cursor obtained before the table model read the
+     *      records it displays.
+     */
+    public ChangePoller(ChangeSource db, BookingTableModel model,
+            long cursor) {
+        this.db = db;
+        this.model = model;
+        this.cursor = cursor;
+    }
+    
+    /**
+     * Polls for changes until the server cannot be reached, applying them
+     * to the table model on the event dispatch thread.
+     */
+    public void run() {
+        while (true) {
+            final ChangeSet changes;
+            try {
+                changes = db.getChanges(cursor, POLL_TIMEOUT);
+            } catch (RuntimeException ex) {
+                return; //Lost connection to the server
+            }
+            
+            cursor = changes.getCursor();
+            if (!changes.isComplete() || (changes.getEvents().length > 0)) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        model.applyChanges(changes);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -17,7 +17,9 @@ import java.util.Date;
 import java.text.DateFormat;
 import suncertify.Utils;
 import suncertify.db.BookingDB;
+import suncertify.db.ChangeSource;
 import suncertify.db.InvalidDataFileException;
+import suncertify.db.SearchResult;
 
 /**
  * The Main frame of the URLyBird GUI Client that should be instantiated to
@@ -189,7 +191,22 @@ public class ClientFrame extends JFrame implements ActionListener,
     public ClientFrame(BookingDB db) {              
         super(TITLE);        
         this.db = db;        
-        tableModel = new BookingTableModel(db);                
+        
+        /*
+         * A network client follows the changes made by other clients,
+         * starting from before the table is first filled.
+         */
+        if (db instanceof ChangeSource) {
+            ChangeSource source = (ChangeSource) db;
+            long cursor = source.getChangeCursor();
+            tableModel = new BookingTableModel(db);
+            Thread poller = new Thread(new ChangePoller(source, tableModel,
+                    cursor));
+            poller.setDaemon(true);
+            poller.start();
+        } else {
+            tableModel = new BookingTableModel(db);
+        }
         initComponents();
     }
             
@@ -245,7 +262,7 @@ public class ClientFrame extends JFrame implements ActionListener,
      *      displayed in the table, either {@link #SEARCH SEARCH} or
      *      {@link #ALL SHOW ALL}.
      *
-     * @see suncertify.db.BookingDB#findExact
+     * @see suncertify.db.BookingDB#findExactRecords
      */    
     protected void search(String command) {
         
@@ -262,16 +279,18 @@ public class ClientFrame extends JFrame implements ActionListener,
             }
         }
         
-        int[] searchResult = null;
+        SearchResult searchResult = null;
         if (searchTypeCombo.getSelectedItem().equals(AND)
                 || command.equals(ALL)) {            
-            searchResult = db.findExact(criteria, BookingDB.SEARCH_TYPE_AND);
+            searchResult = db.findExactRecords(criteria,
+                    BookingDB.SEARCH_TYPE_AND);
         } else if (searchTypeCombo.getSelectedItem().equals(OR)) {
-            searchResult = db.findExact(criteria, BookingDB.SEARCH_TYPE_OR);
+            searchResult = db.findExactRecords(criteria,
+                    BookingDB.SEARCH_TYPE_OR);
         }
         tableModel.setRecords(searchResult);
         
-        if (searchResult.length == 0) {
+        if (searchResult.size() == 0) {
             JOptionPane.showMessageDialog(this, "No matches found",
                     "Search Result", JOptionPane.INFORMATION_MESSAGE);
         }
@@ -325,7 +344,9 @@ public class ClientFrame extends JFrame implements ActionListener,
             /* Booking is allowed so open booking dialog */
             JDialog bookingDialog = new BookingDialog(this, db, recNo);        
             bookingDialog.setVisible(true);
-            tableModel.fireTableDataChanged(); //Update table with new booking
+            
+            /* Update table with new booking */
+            tableModel.refreshRecords(new int[] { recNo });
         }
     }        
         
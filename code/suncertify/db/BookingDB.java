@@ -24,6 +24,41 @@ public interface BookingDB extends DB {
      */
     public static final int SEARCH_TYPE_OR = 1;    
     
+    /**
+     * The number of the hotel name field.
+     */
+    public static final int NAME_FIELD = 0;
+    
+    /**
+     * The number of the hotel location field.
+     */
+    public static final int LOCATION_FIELD = 1;
+    
+    /**
+     * The number of the room size field.
+     */
+    public static final int SIZE_FIELD = 2;
+    
+    /**
+     * The number of the smoking allowed field.
+     */
+    public static final int SMOKING_FIELD = 3;
+    
+    /**
+     * The number of the room rate field.
+     */
+    public static final int RATE_FIELD = 4;
+    
+    /**
+     * The number of the date available field.
+     */
+    public static final int DATE_FIELD = 5;
+    
+    /**
+     * The number of the customer ID field.
+     */
+    public static final int OWNER_FIELD = 6;
+    
     /**
      * Returns records that exactly match the specified criteria.
      * An operator type must be specified to determine the type of matching
@@ -37,4 +72,133 @@ public interface BookingDB extends DB {
      * @return an array of record numbers that match the specified criteria.
      */    
     public int[] findExact(String[] criteria, int operator);            
+    
+    /**
+     * Returns the records that exactly match the specified criteria together
+     * with their record numbers, as a single operation. The records matched
+     * are the same as for {@link #findExact findExact}.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return the matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator);
+    
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers, as a single operation.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @return the page of matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator,
+            int offset, int limit);
+    
+    /**
+     * Reads several records in a single call. Element n of the result holds
+     * the fields of record recNos[n] as returned by {@link DB#read DB.read},
+     * or <code>null</code> if that record does not exist or is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public String[][] readAll(int[] recNos);
+    
+    /**
+     * Reads a record together with its version, so that it can later be
+     * changed with {@link #updateIfVersion updateIfVersion} without holding
+     * the lock on the record in the meantime.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     *
+     * @return the record values and version.
+     */
+    public VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException;
+    
+    /**
+     * Modifies the fields of a record without locking it, provided that it
+     * has not been written since it was read at the given version by
+     * {@link #readVersioned readVersioned} and is not locked. The check and
+     * the change are made as a single operation.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     *
+     * @return the new version of the record.
+     */
+    public long updateIfVersion(int recNo, String[] data, long version)
+            throws RecordNotFoundException, VersionConflictException;
+    
+    /**
+     * Renews the lease on a locked record so that the lock is not released
+     * automatically for another lease time. The locks taken for network
+     * clients are leased, so that a client that dies cannot hold a record
+     * for long, and the client renews them while it holds them. A lock
+     * taken without a lease is unaffected.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws SecurityException if the record is locked with a cookie
+     *          other than cookie, or its lease has already expired.
+     */
+    public void renew(int recNo, long cookie)
+            throws RecordNotFoundException, SecurityException;
+    
+    /**
+     * Returns a new, empty {@link RecordView RecordView} that can be loaded
+     * with records by {@link #read(int, RecordView) read}. The view must
+     * not be shared between threads.
+     *
+     * @return a new record view.
+     */
+    public RecordView newRecordView();
+    
+    /**
+     * Loads the specified record into a view previously returned by
+     * {@link #newRecordView newRecordView}, replacing the record it held.
+     * Unlike {@link DB#read DB.read} no new objects need be created, so this
+     * is the cheaper way to look at many records in turn.
+     *
+     * @param recNo the record number of the record to load.
+     * @param view the view to load the record into.
+     *
+     * @throws RecordNotFoundException if the specified record does not exist
+     *          or is marked as deleted.
+     */
+    public void read(int recNo, RecordView view)
+            throws RecordNotFoundException;
+    
+    /**
+     * Returns the length in bytes of each field of a record as defined by
+     * the schema of the database.
+     *
+     * @return an array where each element is the length of a field.
+     */
+    public int[] getFieldLengths();
 }
@@ -8,6 +8,7 @@ package suncertify.db;
 
 import java.rmi.*;
 import java.io.IOException;
+import java.util.Iterator;
 import suncertify.Configuration;
 import suncertify.server.Server;
 import suncertify.server.RemoteBookingDB;
@@ -74,7 +75,38 @@ public class BookingDBFactory {
         if (config.equals(Configuration.SERVER)
                 || config.equals(Configuration.ALONE)) {
             String filename = config.getFile();
-            db = new BookingData(filename);
+            int storage = Data.STORAGE_FILE;
+            if (Configuration.STORAGE_MAPPED.equals(config.getStorage())) {
+                storage = Data.STORAGE_MAPPED;
+            }
+            if (Configuration.LOG_ON.equals(config.getLog())) {
+                storage |= Data.STORAGE_LOGGED;
+            }
+            int cacheSize = BookingData.CACHE_NONE;
+            if (Configuration.CACHE_LRU.equals(config.getCache())) {
+                cacheSize = config.getCacheSize();
+            } else if (Configuration.CACHE_RESIDENT.equals(
+                    config.getCache())) {
+                cacheSize = BookingData.CACHE_RESIDENT;
+            }
+            BookingData data = new BookingData(filename, storage, cacheSize);
+            String[] indexes = config.getIndexes();
+            for (int i = 0; i < indexes.length; i++) {
+                data.addPrefixIndex(getField(data, indexes[i]));
+            }
+            if (Configuration.SNAPSHOT_ON.equals(config.getSnapshot())) {
+                data.addColumnSnapshot();
+            }
+            if ((storage & Data.STORAGE_LOGGED) != 0) {
+                data.setCompactionThreshold(config.getCompaction());
+            }
+            data.setParallelSearch(Configuration.PARALLEL_ON.equals(
+                    config.getParallel()));
+            db = data;
+        } else if (config.equals(Configuration.CLIENT)
+                && Configuration.TRANSPORT_SOCKET.equals(
+                        config.getTransport())) {
+            db = new SocketBookingDB(config.getHost(), config.getPort());
         } else if (config.equals(Configuration.CLIENT)) {
             String host = config.getHost();
             int port = config.getPort();
@@ -87,4 +119,30 @@ public class BookingDBFactory {
         
         return db;
     }        
+    
+    /**
+     * Returns the number of the field with the given name in the schema of a
+     * data file.
+     *
+     * @param data the data object for the data file.
+     * @param name the name of the field.
+     *
+     * @throws InvalidDataFileException If the data file has no field with the
+     *      given name.
+     *
+     * @return the number of the field.
+     */
+    protected int getField(Data data, String name)
+            throws InvalidDataFileException {
+        int field = 0;
+        
+        for (Iterator i = data.schema.keySet().iterator(); i.hasNext(); ) {
+            if (i.next().equals(name)) {
+                return field;
+            }
+            field++;
+        }
+        
+        throw new InvalidDataFileException("No field named " + name);
+    }
 }
@@ -13,11 +13,49 @@ import suncertify.Utils;
 
 /**
  * Implementation of the BookingDB interface for the URLyBird Application.
+ * <p>
+ * The hotel name and location fields, which are the only fields the
+ * application searches, are indexed in memory by {@link FieldIndex
+ * FieldIndex} objects built when the data file is opened and kept up to date
+ * as records are written. Searches on these fields are answered from the
+ * indexes without reading the data file.
+ * <p>
+ * Records can also be kept in a {@link RecordCache RecordCache} so that
+ * reading a record that was read recently does not access the data file.
+ * The cache either holds a fixed number of the most recently used records or
+ * is resident, holding every record. A record is removed from the cache
+ * whenever it is written or deleted.
+ * <p>
+ * The record buffers used by this class are {@link BookingRecord
+ * BookingRecord} objects, so they can also be used as {@link RecordView
+ * RecordView}s.
  *
  * @author Nick Shrine
  */
 public class BookingData extends Data implements BookingDB {        
     
+    /**
+     * Cache size whereby records are not cached.
+     */
+    public static final int CACHE_NONE = 0;
+    
+    /**
+     * Cache size whereby every record is cached.
+     */
+    public static final int CACHE_RESIDENT = Integer.MAX_VALUE;
+    
+    /**
+     * The cache of records read, or <code>null</code> if records are not
+     * cached.
+     */
+    protected final RecordCache cache;
+    
+    /**
+     * The field indexes where element n is the index for field n, or
+     * <code>null</code> if field n is not indexed.
+     */
+    protected final FieldIndex[] indexes;
+    
     /**
      * Constructs a data object that controls access to the data file specified
      * by the filename parameter.
@@ -30,13 +68,77 @@ public class BookingData extends Data implements BookingDB {
      */    
     protected BookingData(String filename) throws FileNotFoundException,
             InvalidDataFileException, IOException {        
-        super(filename);
+        this(filename, STORAGE_FILE);
+    }
+    
+    /**
+     * Constructs a data object that controls access to the data file specified
+     * by the filename parameter using the specified type of storage access.
+     *
+     * @param filename the binary file containing the data.
+     * @param storage the type of storage access, either
+     *          {@link Data#STORAGE_FILE STORAGE_FILE} or
+     *          {@link Data#STORAGE_MAPPED STORAGE_MAPPED}, with
+     *          {@link Data#STORAGE_LOGGED STORAGE_LOGGED} added to log writes.
+     * @throws FileNotFoundException if the data cannot be read.
+     * @throws InvalidDataFileException if the data file is not a valid 
+     *          URLyBird data file.
+     * @throws IOException if there is an IO error opening the data file.
+     */    
+    protected BookingData(String filename, int storage)
+            throws FileNotFoundException, InvalidDataFileException,
+            IOException {        
+        this(filename, storage, CACHE_NONE);
+    }
+    
+    /**
+     * Constructs a data object that controls access to the data file specified
+     * by the filename parameter using the specified type of storage access
+     * and caching up to the specified number of records.
+     *
+     * @param filename the binary file containing the data.
+     * @param storage the type of storage access, either
+     *          {@link Data#STORAGE_FILE STORAGE_FILE} or
+     *          {@link Data#STORAGE_MAPPED STORAGE_MAPPED}, with
+     *          {@link Data#STORAGE_LOGGED STORAGE_LOGGED} added to log writes.
+     * @param cacheSize the maximum number of records to cache, which may be
+     *          {@link #CACHE_NONE CACHE_NONE} or
+     *          {@link #CACHE_RESIDENT CACHE_RESIDENT}.
+     * @throws FileNotFoundException if the data cannot be read.
+     * @throws InvalidDataFileException if the data file is not a valid 
+     *          URLyBird data file.
+     * @throws IOException if there is an IO error opening the data file.
+     */    
+    protected BookingData(String filename, int storage, int cacheSize)
+            throws FileNotFoundException, InvalidDataFileException,
+            IOException {        
+        super(filename, storage);
+        if (cacheSize < CACHE_NONE) {
+            store.close();
+            throw new IllegalArgumentException("Invalid cache size "
+                    + cacheSize);
+        }
+        cache = (cacheSize == CACHE_NONE ? null : new RecordCache(cacheSize));
+        
+        /* Building the indexes reads every record, filling the cache */
+        indexes = new FieldIndex[fieldCount];
+        indexes[NAME_FIELD] = new FieldIndex(NAME_FIELD);
+        indexes[LOCATION_FIELD] = new FieldIndex(LOCATION_FIELD);
+        addRecordListener(indexes[NAME_FIELD]);
+        addRecordListener(indexes[LOCATION_FIELD]);
     }
       
     /**
      * Returns records that exactly match the specified criteria.
      * An operator type must be specified to determine the type of matching
      * to be done.
+     * <p>
+     * Criteria for the hotel name and location alone are answered from the
+     * field indexes, which find the matching records with one lookup rather
+     * than by comparing the dictionary codes of every record in the column
+     * snapshot. Criteria that include any other field are passed to
+     * {@link #scanExact scanExact}, which compares the name and location by
+     * their codes when there is a snapshot.
      *
      * @param criteria the criteria to be matched.
      * @param operator the type of match to be performed, either 
@@ -45,51 +147,311 @@ public class BookingData extends Data implements BookingDB {
      *
      * @return an array of record numbers that match the specified criteria.
      */    
-    public synchronized int[] findExact(String[] criteria, int operator) {
-        String[] data = null;
-        List results = new ArrayList();
+    public int[] findExact(String[] criteria, int operator) {
+        SortedSet results = null;
         
-        recordloop: 
-            for (int recNo = 1; recNo <= numRecords; recNo++) {            
-                try {                                 
-                    data = read(recNo);                
-                } catch (RecordNotFoundException ex) {                
-                    continue;
-                }                 
-                for (int i = 0; i < data.length; i++) {
-                    switch (operator) {                        
-                    case SEARCH_TYPE_AND: 
-
-                        /* Detect a non-match: continue to next record */
-                        if ((criteria[i] != null)
-                                && !data[i].trim().equals(criteria[i])) {
-                            continue recordloop;
-                        }
-                        break;
+        for (int i = 0; i < criteria.length; i++) {
+            if (criteria[i] == null) {
+                continue;
+            } else if (indexes[i] == null) {
+                return scanExact(criteria, operator); //Field not indexed
+            }
+            
+            SortedSet matches = indexes[i].get(criteria[i]);
+            if (results == null) {
+                results = matches;
+            } else if (operator == SEARCH_TYPE_AND) {
+                results.retainAll(matches);
+            } else if (operator == SEARCH_TYPE_OR) {
+                results.addAll(matches);
+            }
+        }
+        
+        /*
+         * With no criteria every record matches an AND search and no record
+         * matches an OR search.
+         */
+        if (results == null) {
+            if (operator == SEARCH_TYPE_AND) {
+                results = indexes[NAME_FIELD].getAll();
+            } else {
+                results = new TreeSet();
+            }
+        }
+        
+        return (Utils.toIntArray(results)); 
+    }
+    
+    /**
+     * Returns the records that exactly match the specified criteria together
+     * with their record numbers, as a single operation. The records matched
+     * are the same as for {@link #findExact findExact}.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return the matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator) {
+        return findExactRecords(criteria, operator, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers, as a single operation.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @return the page of matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator,
+            int offset, int limit) {
+        if ((offset < 0) || (limit < 0)) {
+            throw new IllegalArgumentException("Invalid page offset "
+                    + offset + " or limit " + limit);
+        }
+        
+        int[] matches = findExact(criteria, operator);
+        int start = Math.min(offset, matches.length);
+        int end = (int) Math.min((long) start + limit, matches.length);
+        int[] page = new int[end - start];
+        System.arraycopy(matches, start, page, 0, page.length);
+        String[][] records = readAll(page);
+        
+        /* Leave out any records deleted since the search */
+        int found = 0;
+        for (int i = 0; i < page.length; i++) {
+            if (records[i] != null) {
+                page[found] = page[i];
+                records[found++] = records[i];
+            }
+        }
+        int[] recNos = new int[found];
+        String[][] data = new String[found][];
+        System.arraycopy(page, 0, recNos, 0, found);
+        System.arraycopy(records, 0, data, 0, found);
+        
+        return new SearchResult(recNos, data, matches.length);
+    }
+    
+    /**
+     * Reads several records in a single pass, holding the lock for each
+     * record only while it is read. Element n of the result holds the fields
+     * of record recNos[n] as returned by {@link Data#read Data.read}, or
+     * <code>null</code> if that record does not exist or is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public String[][] readAll(int[] recNos) {
+        String[][] records = new String[recNos.length][];
+        RecordBuffer buffer = getRecordBuffer();
+        
+        for (int i = 0; i < recNos.length; i++) {
+            try {
+                if (load(recNos[i], buffer)) {
+                    records[i] = buffer.getFields();
+                }
+            } catch (RecordNotFoundException ex) {
+                records[i] = null; //Record does not exist
+            }
+        }
+        
+        return records;
+    }
+    
+    /**
+     * Returns a new, empty {@link RecordView RecordView} that can be loaded
+     * with records by {@link #read(int, RecordView) read}. The view must
+     * not be shared between threads.
+     *
+     * @return a new record view.
+     */
+    public RecordView newRecordView() {
+        return (RecordView) newRecordBuffer();
+    }
+    
+    /**
+     * Loads the specified record into a view previously returned by
+     * {@link #newRecordView newRecordView}, replacing the record it held.
+     *
+     * @param recNo the record number of the record to load.
+     * @param view the view to load the record into.
+     *
+     * @throws RecordNotFoundException if the specified record does not exist
+     *          or is marked as deleted.
+     */
+    public void read(int recNo, RecordView view)
+            throws RecordNotFoundException {
+        if (!load(recNo, (RecordBuffer) view)) {
+            throw new RecordNotFoundException("Record " + recNo
+                    + " is deleted");
+        }
+    }
+    
+    /**
+     * Returns a new empty buffer for records of this data file, which is a
+     * {@link BookingRecord BookingRecord}.
+     *
+     * @return a new record buffer.
+     */
+    public RecordBuffer newRecordBuffer() {
+        return new BookingRecord(fieldOffsets, fieldLengths, recordLength);
+    }
+    
+    /**
+     * Returns a new empty column snapshot for records of this data file in
+     * which the hotel name and location columns, which repeat the same few
+     * values for every date a room is available, are dictionary encoded.
+     *
+     * @return a new column snapshot.
+     */
+    protected ColumnSnapshot newColumnSnapshot() {
+        int[] encoded = { NAME_FIELD, LOCATION_FIELD };
+        return new ColumnSnapshot(fieldLengths, encoded);
+    }
+    
+    /**
+     * Returns the cache of records read, from which the cache hit and miss
+     * counts can be obtained.
+     *
+     * @return the record cache, or <code>null</code> if records are not
+     *          cached.
+     */
+    public RecordCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Reads the raw bytes of a record into the given buffer from the cache,
+     * reading the data file and caching the record if it is not there.
+     * The caller must hold either the read or write lock for the record.
+     *
+     * @param recNo the record number of the record to be read.
+     * @param buffer the buffer to read the record into.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     */
+    protected void loadRecord(int recNo, RecordBuffer buffer)
+            throws RecordNotFoundException {
+        if (cache == null) {
+            super.loadRecord(recNo, buffer);
+        } else if (cache.get(recNo, buffer.bytes)) {
+            buffer.loaded(recNo);
+        } else {
+            super.loadRecord(recNo, buffer);
+            cache.put(recNo, buffer.bytes);
+        }
+    }
+    
+    /**
+     * Removes a record that has been written from the cache and notifies the
+     * registered listeners. The caller must hold the write lock for the
+     * record.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields.
+     */
+    protected void fireRecordWritten(int recNo, String[] data) {
+        if (cache != null) {
+            cache.remove(recNo);
+        }
+        super.fireRecordWritten(recNo, data);
+    }
+    
+    /**
+     * Removes a record that has been deleted from the cache and notifies the
+     * registered listeners. The caller must hold the write lock for the
+     * record.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    protected void fireRecordDeleted(int recNo) {
+        if (cache != null) {
+            cache.remove(recNo);
+        }
+        super.fireRecordDeleted(recNo);
+    }
+    
+    /**
+     * Returns records that exactly match the specified criteria by reading
+     * every record in the data file, or the column snapshot if there is one.
+     * Used when the criteria include a field that is not indexed. The
+     * snapshot matches a name or location criterion by finding its code in
+     * the column's dictionary once and then comparing the code of each
+     * record, instead of the bytes of the field.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return an array of record numbers that match the specified criteria.
+     */    
+    protected int[] scanExact(final String[] criteria, final int operator) {
+        ColumnSnapshot columns = snapshot;
+        if (columns != null) {
+            return columns.findExact(criteria, operator);
+        }
+        
+        return scanAll(new RecordFilter() {
+            public boolean accept(RecordBuffer record) {
+                return matchesExact(record, criteria, operator);
+            }
+        });
+    }
 
-                    case SEARCH_TYPE_OR: 
+    /**
+     * Returns <code>true</code> if the record in the given buffer exactly
+     * matches the specified criteria.
+     *
+     * @param data the buffer holding the record.
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return <code>true</code> if the record matches the criteria.
+     */
+    protected boolean matchesExact(RecordBuffer data, String[] criteria,
+            int operator) {
+        for (int i = 0; i < fieldCount; i++) {
+            switch (operator) {                        
+            case SEARCH_TYPE_AND: 
 
-                        /*
-                         * Detect a match: add the record to the results 
-                         * and continue to next record.
-                         */
-                        if (data[i].trim().equals(criteria[i])) {
-                            results.add(new Integer(recNo));                    
-                            continue recordloop;
-                        }
-                        break;
-                    }
+                /* Detect a non-match */
+                if ((criteria[i] != null)
+                        && !data.fieldEqualsTrimmed(i, criteria[i])) {
+                    return false;
                 }
-                
-                /*
-                 * If operator was AND then all criteria match so
-                 * add record to results.
-                 */
-                if (operator == SEARCH_TYPE_AND) { 
-                    results.add(new Integer(recNo));                    
+                break;
+
+            case SEARCH_TYPE_OR: 
+
+                /* Detect a match */
+                if ((criteria[i] != null)
+                        && data.fieldEqualsTrimmed(i, criteria[i])) {
+                    return true;
                 }
-        } //End recordloop                
+                break;
+            }
+        }
         
-        return (Utils.toIntArray(results)); 
+        /*
+         * If operator was AND then all criteria match, if it was OR then
+         * none did.
+         */
+        return (operator == SEARCH_TYPE_AND);
     }            
 }
@@ -7,6 +7,8 @@
 package suncertify.db;
 
 import java.rmi.RemoteException;
+import suncertify.server.ChangeSet;
+import suncertify.server.LockSession;
 import suncertify.server.RemoteBookingDB;
 
 /**
@@ -19,7 +21,7 @@ import suncertify.server.RemoteBookingDB;
  *
  * @author Nick Shrine
  */
-public class BookingDataProxy implements BookingDB {
+public class BookingDataProxy implements BookingDB, ChangeSource {
     
     /**
      * {@link suncertify.server.RemoteBookingDB RemoteBookingDB} object that
@@ -27,6 +29,17 @@ public class BookingDataProxy implements BookingDB {
      */
     protected final RemoteBookingDB db;
     
+    /**
+     * The length of each field, fetched from the server the first time it is
+     * needed.
+     */
+    protected int[] fieldLengths;
+    
+    /**
+     * Renews the leases on the locks held by this client.
+     */
+    protected final LeaseRenewer renewer;
+    
     /** 
      * Creates a new instance of BookingDataProxy using the supplied 
      * {@link suncertify.server.RemoteBookingDB RemoteBookingDB} object for
@@ -37,6 +50,7 @@ public class BookingDataProxy implements BookingDB {
      */
     BookingDataProxy(RemoteBookingDB db) {        
         this.db = db;
+        renewer = new LeaseRenewer(this, LockSession.RENEW_INTERVAL);
     }
     
     /**
@@ -101,6 +115,7 @@ public class BookingDataProxy implements BookingDB {
      */
     public void delete(int recNo, long lockCookie)
             throws RecordNotFoundException, suncertify.db.SecurityException {
+        renewer.stop(recNo, lockCookie);
         try {
             db.delete(recNo, lockCookie);
         } catch (RemoteException ex) {
@@ -161,6 +176,9 @@ public class BookingDataProxy implements BookingDB {
      * unlocked, updated, or deleted. If the specified record is already locked
      * by a different client, the current thread gives up the CPU and consumes
      * no CPU cycles until the record is unlocked.
+     * <p>
+     * The server leases the lock, and the lease is renewed in the background
+     * until the record is unlocked or deleted.
      *
      * @param recNo the record number of the record to be locked.
      *
@@ -178,6 +196,7 @@ public class BookingDataProxy implements BookingDB {
         } catch (RemoteException ex) {
             throw new RuntimeException(ex);
         }
+        renewer.start(recNo, result);
         
         return result;
     }
@@ -196,6 +215,7 @@ public class BookingDataProxy implements BookingDB {
      */
     public void unlock(int recNo, long cookie)
             throws RecordNotFoundException, suncertify.db.SecurityException {
+        renewer.stop(recNo, cookie);
         try {
             db.unlock(recNo, cookie);
         } catch (RemoteException ex) {
@@ -203,6 +223,28 @@ public class BookingDataProxy implements BookingDB {
         }
     }
     
+    /**
+     * Renews the lease on a locked record so that the lock is not released
+     * automatically for another lease time. This is done in the background
+     * for every lock taken with {@link #lock lock}.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie, or its lease has already expired.
+     */
+    public void renew(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        try {
+            db.renew(recNo, cookie);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
     /**
      * Returns records that exactly match the specified criteria.
      * An operator type must be specified to determine the type of matching
@@ -226,4 +268,213 @@ public class BookingDataProxy implements BookingDB {
         
         return result;
     }                    
+    
+    /**
+     * Returns the records that exactly match the specified criteria together
+     * with their record numbers, as a single operation. The records matched
+     * are the same as for {@link #findExact findExact}.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return the matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator) {
+        return findExactRecords(criteria, operator, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers with a single call to the
+     * server.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @return the page of matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator,
+            int offset, int limit) {
+        SearchResult result;
+        
+        try {
+            result = db.findExactRecords(criteria, operator, offset, limit);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads several records with a single call to the server. Element n of
+     * the result holds the fields of record recNos[n], or <code>null</code>
+     * if that record does not exist or is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public String[][] readAll(int[] recNos) {
+        String[][] result;
+        
+        try {
+            result = db.readAll(recNos);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads a record together with its version, so that it can later be
+     * changed with {@link #updateIfVersion updateIfVersion} without holding
+     * the lock on the record in the meantime.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     *
+     * @return the record values and version.
+     */
+    public VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException {
+        VersionedRecord result;
+        
+        try {
+            result = db.readVersioned(recNo);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Modifies the fields of a record without locking it, provided that it
+     * has not been written since it was read at the given version and is not
+     * locked.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     *
+     * @return the new version of the record.
+     */
+    public long updateIfVersion(int recNo, String[] data, long version)
+            throws RecordNotFoundException, VersionConflictException {
+        long result;
+        
+        try {
+            result = db.updateIfVersion(recNo, data, version);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the cursor following the most recent change to the database,
+     * from which to start asking for changes with {@link #getChanges
+     * getChanges}.
+     *
+     * @return the current change cursor.
+     */
+    public long getChangeCursor() {
+        long result;
+        
+        try {
+            result = db.getChangeCursor();
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the changes made to the database by any client since the given
+     * cursor, waiting up to the given time on the server for a change if
+     * there have been none.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public ChangeSet getChanges(long since, long timeout) {
+        ChangeSet result;
+        
+        try {
+            result = db.getChanges(since, timeout);
+        } catch (RemoteException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns a new, empty {@link RecordView RecordView} that can be loaded
+     * with records by {@link #read(int, RecordView) read}. The view must
+     * not be shared between threads.
+     *
+     * @return a new record view.
+     */
+    public RecordView newRecordView() {
+        return new BookingRecord(getFieldLengths());
+    }
+    
+    /**
+     * Loads the specified record into a view previously returned by
+     * {@link #newRecordView newRecordView}, replacing the record it held.
+     * The record is still transferred from the server as strings but is
+     * decoded by the view in the same way as a local record.
+     *
+     * @param recNo the record number of the record to load.
+     * @param view the view to load the record into.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     */
+    public void read(int recNo, RecordView view)
+            throws RecordNotFoundException {
+        ((RecordBuffer) view).set(recNo, read(recNo));
+    }
+    
+    /**
+     * Returns the length in bytes of each field of a record as defined by
+     * the schema of the database.
+     *
+     * @return an array where each element is the length of a field.
+     */
+    public synchronized int[] getFieldLengths() {
+        if (fieldLengths == null) {
+            try {
+                fieldLengths = db.getFieldLengths();
+            } catch (RemoteException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        
+        return fieldLengths.clone();
+    }
 }
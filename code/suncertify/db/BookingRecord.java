@@ -0,0 +1,223 @@
+/*
+ * BookingRecord.java
+ *
+ * Created on 17 October 2026, 06:31
+ */
+
+package suncertify.db;
+
+/**
+ * {@link RecordView RecordView} implementation over the raw bytes held in a
+ * {@link RecordBuffer RecordBuffer}.
+ * <p>
+ * The numeric fields are parsed directly from the bytes of the record without
+ * creating any <code>String</code>s.
+ */
+public class BookingRecord extends RecordBuffer implements RecordView {
+
+    /**
+     * Creates an empty view for records with the given layout.
+     *
+     * @param offsets the offset of each field from the start of the record.
+     * @param lengths the length in bytes of each field.
+     * @param recordLength the length of a record in bytes.
+     */
+    protected BookingRecord(int[] offsets, int[] lengths, int recordLength) {
+        super(offsets, lengths, recordLength);
+    }
+
+    /**
+     * Creates an empty view for records whose fields have the given lengths.
+     *
+     * @param lengths the length in bytes of each field.
+     */
+    protected BookingRecord(int[] lengths) {
+        super(lengths);
+    }
+
+    /**
+     * Returns the hotel name with surrounding whitespace removed.
+     *
+     * @return the hotel name.
+     */
+    public String name() {
+        return getField(BookingDB.NAME_FIELD).trim();
+    }
+
+    /**
+     * Returns the hotel location with surrounding whitespace removed.
+     *
+     * @return the hotel location.
+     */
+    public String location() {
+        return getField(BookingDB.LOCATION_FIELD).trim();
+    }
+
+    /**
+     * Returns the maximum number of people the room can sleep.
+     *
+     * @return the size of the room.
+     */
+    public int size() {
+        return (int) parseNumber(BookingDB.SIZE_FIELD, false);
+    }
+
+    /**
+     * Returns <code>true</code> if smoking is allowed in the room.
+     *
+     * @return <code>true</code> if the room is a smoking room.
+     */
+    public boolean smoking() {
+        int start = trimStart(BookingDB.SMOKING_FIELD);
+        return (start < trimEnd(BookingDB.SMOKING_FIELD))
+                && (charAt(BookingDB.SMOKING_FIELD, start) == 'Y');
+    }
+
+    /**
+     * Returns the price per night of the room in cents.
+     *
+     * @return the rate in cents.
+     */
+    public long rate() {
+        return parseNumber(BookingDB.RATE_FIELD, true);
+    }
+
+    /**
+     * Returns the date the room is available as the number of days since
+     * 1 January 1970. The field must be in the format
+     * <code>yyyy/MM/dd</code>.
+     *
+     * @return the epoch day the room is available.
+     */
+    public long date() {
+        int field = BookingDB.DATE_FIELD;
+        int start = trimStart(field);
+
+        if (((trimEnd(field) - start) != 10)
+                || (charAt(field, start + 4) != '/')
+                || (charAt(field, start + 7) != '/')) {
+            throw new NumberFormatException("Invalid date: "
+                    + getField(field));
+        }
+
+        int year = parseDigits(field, start, 4);
+        int month = parseDigits(field, start + 5, 2);
+        int day = parseDigits(field, start + 8, 2);
+        if ((month < 1) || (month > 12) || (day < 1) || (day > 31)) {
+            throw new NumberFormatException("Invalid date: "
+                    + getField(field));
+        }
+
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Returns the 8 digit customer ID of the customer the room is booked to.
+     *
+     * @return the customer ID, or {@link RecordView#NO_OWNER NO_OWNER} if the
+     *          room is not booked.
+     */
+    public long owner() {
+        int field = BookingDB.OWNER_FIELD;
+        if (trimStart(field) >= trimEnd(field)) {
+            return NO_OWNER;
+        }
+        return parseNumber(field, false);
+    }
+
+    /**
+     * Returns the number of days since 1 January 1970 of a date in the
+     * Gregorian calendar.
+     *
+     * @param year the year.
+     * @param month the month, from 1 to 12.
+     * @param day the day of the month.
+     *
+     * @return the epoch day.
+     */
+    public static long toEpochDay(int year, int month, int day) {
+
+        /* Count years from March so that the leap day is the last day */
+        long y = (month <= 2 ? year - 1 : year);
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5
+                + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Parses a whole number from a field, ignoring surrounding whitespace.
+     * For a money field a leading dollar sign is skipped and the result is in
+     * cents.
+     *
+     * @param field the field number.
+     * @param money <code>true</code> if the field is an amount of money.
+     *
+     * @return the value of the field.
+     */
+    protected long parseNumber(int field, boolean money) {
+        int i = trimStart(field);
+        int end = trimEnd(field);
+        long value = 0;
+        int decimals = -1;
+
+        if (money && (i < end) && (charAt(field, i) == '$')) {
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException("Invalid number: "
+                    + getField(field));
+        }
+
+        for (; i < end; i++) {
+            char c = charAt(field, i);
+            if (money && (c == '.') && (decimals < 0)) {
+                decimals = 0;
+            } else if ((c >= '0') && (c <= '9') && (decimals < 2)) {
+                value = value * 10 + (c - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                throw new NumberFormatException("Invalid number: "
+                        + getField(field));
+            }
+        }
+
+        if (money) {
+            for (int j = Math.max(decimals, 0); j < 2; j++) {
+                value *= 10; //Convert to cents
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Parses a fixed number of decimal digits from a field.
+     *
+     * @param field the field number.
+     * @param start the position of the first digit.
+     * @param count the number of digits.
+     *
+     * @return the value of the digits.
+     */
+    protected int parseDigits(int field, int start, int count) {
+        int value = 0;
+
+        for (int i = start; i < start + count; i++) {
+            char c = charAt(field, i);
+            if ((c < '0') || (c > '9')) {
+                throw new NumberFormatException("Invalid number: "
+                        + getField(field));
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+}
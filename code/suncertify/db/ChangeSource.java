@@ -0,0 +1,48 @@
+/*
+ * ChangeSource.java
+ *
+ * Created on 17 October 2026, 07:26
+ */
+
+package suncertify.db;
+
+import suncertify.server.ChangeSet;
+
+/**
+ * Interface for network data access objects that can report the changes
+ * made to the database by other clients, from the server's
+ * {@link suncertify.server.ChangeFeed ChangeFeed}.
+ * <p>
+ * The client first takes the current cursor with {@link #getChangeCursor
+ * getChangeCursor} and then repeatedly long-polls for the changes following
+ * it with {@link #getChanges getChanges}, as
+ * {@link suncertify.client.ChangePoller ChangePoller} does. Network errors
+ * are rethrown as a <code>RuntimeException</code>.
+ *
+ * @see BookingDataProxy
+ * @see SocketBookingDB
+ */
+public interface ChangeSource {
+
+    /**
+     * Returns the cursor following the most recent change to the database,
+     * from which to start asking for changes with {@link #getChanges
+     * getChanges}.
+     *
+     * @return the current change cursor.
+     */
+    public long getChangeCursor();
+
+    /**
+     * Returns the changes made to the database by any client since the given
+     * cursor, waiting up to the given time on the server for a change if
+     * there have been none.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public ChangeSet getChanges(long since, long timeout);
+}
@@ -0,0 +1,107 @@
+/*
+ * ColumnDictionary.java
+ *
+ * Created on 17 October 2026, 06:36
+ */
+
+package suncertify.db;
+
+import java.util.*;
+
+/**
+ * A dictionary that assigns an integer code to each distinct value of a
+ * field, so that a column of a {@link ColumnSnapshot ColumnSnapshot} can hold
+ * one <code>int</code> per record instead of the bytes of the value.
+ * <p>
+ * This suits fields such as the hotel name and location, which have few
+ * distinct values repeated across many records. A search criterion is
+ * compared once with each distinct value to find the matching codes, after
+ * which each record is tested by looking up its code. Codes are never
+ * reused, so the dictionary only grows; it is not thread-safe and is guarded
+ * by the snapshot that owns it.
+ */
+public class ColumnDictionary {
+
+    /**
+     * A map where the keys are the values and the values are their
+     * <code>Integer</code> codes.
+     */
+    protected final Map codes;
+
+    /**
+     * The values, where element n is the value with code n.
+     */
+    protected final List values;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public ColumnDictionary() {
+        codes = new HashMap();
+        values = new ArrayList();
+    }
+
+    /**
+     * Returns the code for a value, assigning a new code if the value has not
+     * been seen before.
+     *
+     * @param value the field value.
+     *
+     * @return the code for the value.
+     */
+    public int encode(String value) {
+        Integer code = (Integer) codes.get(value);
+
+        if (code == null) {
+            code = new Integer(values.size());
+            codes.put(value, code);
+            values.add(value);
+        }
+
+        return code.intValue();
+    }
+
+    /**
+     * Returns the value with the given code.
+     *
+     * @param code the code.
+     *
+     * @return the field value.
+     */
+    public String decode(int code) {
+        return (String) values.get(code);
+    }
+
+    /**
+     * Returns the number of distinct values in the dictionary.
+     *
+     * @return the number of values.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the codes of the values that match a search criterion.
+     *
+     * @param criterion the criterion to be matched.
+     * @param exact <code>true</code> to match values that equal the criterion
+     *          once trimmed, <code>false</code> to match values that start
+     *          with the criterion.
+     *
+     * @return a new set of the matching codes.
+     */
+    public BitSet match(String criterion, boolean exact) {
+        BitSet matches = new BitSet(values.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            String value = (String) values.get(i);
+            if (exact ? value.trim().equals(criterion)
+                    : value.startsWith(criterion)) {
+                matches.set(i);
+            }
+        }
+
+        return matches;
+    }
+}
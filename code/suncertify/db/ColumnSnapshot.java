@@ -0,0 +1,445 @@
+/*
+ * ColumnSnapshot.java
+ *
+ * Created on 17 October 2026, 06:35
+ */
+
+package suncertify.db;
+
+import java.io.UnsupportedEncodingException;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory copy of the records of a {@link Data Data} object stored by
+ * column rather than by record.
+ * <p>
+ * Each field is held in a single byte array containing the bytes of that
+ * field for every record, exactly as they are stored in the data file, and
+ * the records that are not deleted are held in a <code>BitSet</code>. A
+ * search tests one criterion at a time against one contiguous column,
+ * narrowing a set of candidate records, instead of reading each record in
+ * turn. The snapshot is kept up to date by registering it as a
+ * {@link RecordListener RecordListener} of the <code>Data</code> object.
+ * <p>
+ * Fields with few distinct values can instead be dictionary encoded: the
+ * column then holds an <code>int</code> code for each record, looked up in a
+ * {@link ColumnDictionary ColumnDictionary}, and a criterion is matched by
+ * finding the matching codes once and then comparing codes.
+ * <p>
+ * Values are compared with the same rules as {@link RecordBuffer
+ * RecordBuffer}: a value ends at the first null byte and bytes outside the
+ * US-ASCII range match only the Unicode replacement character.
+ */
+public class ColumnSnapshot implements RecordListener {
+
+    /**
+     * The pattern value for a character that never matches any byte.
+     */
+    protected static final int NO_MATCH = 256;
+
+    /**
+     * The pattern value for a character that matches any byte outside the
+     * US-ASCII range.
+     */
+    protected static final int NON_ASCII = -1;
+
+    /**
+     * The length in bytes of each field.
+     */
+    protected final int[] lengths;
+
+    /**
+     * The columns, where element n holds field n of every record, record
+     * number r starting at position (r - 1) * lengths[n], or
+     * <code>null</code> if field n is dictionary encoded.
+     */
+    protected final byte[][] columns;
+
+    /**
+     * The dictionary encoded columns, where element n holds the code of
+     * field n for every record, record number r at position r - 1, or
+     * <code>null</code> if field n is not dictionary encoded.
+     */
+    protected final int[][] codes;
+
+    /**
+     * The dictionaries, where element n is the dictionary for field n or
+     * <code>null</code> if field n is not dictionary encoded.
+     */
+    protected final ColumnDictionary[] dictionaries;
+
+    /**
+     * The records that are not deleted, where bit r - 1 is set for record
+     * number r.
+     */
+    protected final BitSet live;
+
+    /**
+     * The number of records the columns have room for.
+     */
+    protected int capacity;
+
+    /**
+     * Guards the columns: writes to the snapshot take the write lock and
+     * searches take the read lock.
+     */
+    protected final ReadWriteLock lock;
+
+    /**
+     * Creates an empty snapshot for records whose fields have the given
+     * lengths.
+     *
+     * @param lengths the length in bytes of each field.
+     */
+    public ColumnSnapshot(int[] lengths) {
+        this(lengths, new int[0]);
+    }
+
+    /**
+     * Creates an empty snapshot for records whose fields have the given
+     * lengths, dictionary encoding the specified fields.
+     *
+     * @param lengths the length in bytes of each field.
+     * @param encoded the numbers of the fields to be dictionary encoded.
+     */
+    public ColumnSnapshot(int[] lengths, int[] encoded) {
+        this.lengths = lengths.clone();
+        columns = new byte[lengths.length][];
+        codes = new int[lengths.length][];
+        dictionaries = new ColumnDictionary[lengths.length];
+        for (int i = 0; i < encoded.length; i++) {
+            codes[encoded[i]] = new int[0];
+            dictionaries[encoded[i]] = new ColumnDictionary();
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            if (codes[i] == null) {
+                columns[i] = new byte[0];
+            }
+        }
+        live = new BitSet();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Copies the values of a record that has been written into the columns.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields.
+     */
+    public void recordWritten(int recNo, String[] data) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(recNo);
+            for (int i = 0; i < columns.length; i++) {
+                if (codes[i] != null) {
+                    codes[i][recNo - 1] = dictionaries[i].encode(data[i]);
+                    continue;
+                }
+                byte[] value = encode(data[i]);
+                int offset = (recNo - 1) * lengths[i];
+                int length = Math.min(value.length, lengths[i]);
+                System.arraycopy(value, 0, columns[i], offset, length);
+                for (int j = length; j < lengths[i]; j++) {
+                    columns[i][offset + j] = 0;
+                }
+            }
+            live.set(recNo - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a record as deleted.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    public void recordDeleted(int recNo) {
+        lock.writeLock().lock();
+        try {
+            live.clear(recNo - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes room in the columns for the records appended in bulk at once and
+     * asks for each of them, to copy them into the columns.
+     *
+     * @param first the record number of the first record appended.
+     * @param last the record number of the last record appended.
+     *
+     * @return <code>true</code>.
+     */
+    public boolean recordsAppended(int first, int last) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(last);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the undeleted records where each field starts with the
+     * corresponding criterion, as described for {@link DB#find DB.find}.
+     *
+     * @param criteria the criteria to be matched, where <code>null</code>
+     *          matches any value.
+     *
+     * @return an array of the matching record numbers in ascending order.
+     */
+    public int[] find(String[] criteria) {
+        Lock read = lock.readLock();
+
+        read.lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            for (int i = 0; i < criteria.length; i++) {
+                if (criteria[i] != null) {
+                    retainMatches(matches, i, criteria[i], false);
+                }
+            }
+            return toRecNos(matches);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the undeleted records where the fields, with surrounding
+     * whitespace removed, exactly match the criteria, as described for
+     * {@link BookingDB#findExact BookingDB.findExact}.
+     *
+     * @param criteria the criteria to be matched, where <code>null</code>
+     *          matches any value.
+     * @param operator the type of match to be performed, either
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return an array of the matching record numbers in ascending order.
+     */
+    public int[] findExact(String[] criteria, int operator) {
+        Lock read = lock.readLock();
+
+        read.lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            if (operator == BookingDB.SEARCH_TYPE_OR) {
+                BitSet any = new BitSet();
+                for (int i = 0; i < criteria.length; i++) {
+                    if (criteria[i] != null) {
+                        BitSet field = (BitSet) matches.clone();
+                        retainMatches(field, i, criteria[i], true);
+                        any.or(field);
+                    }
+                }
+                matches = any;
+            } else {
+                for (int i = 0; i < criteria.length; i++) {
+                    if (criteria[i] != null) {
+                        retainMatches(matches, i, criteria[i], true);
+                    }
+                }
+            }
+            return toRecNos(matches);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Clears the bits of the records whose field does not match a criterion.
+     * The caller must hold the read lock.
+     *
+     * @param records the candidate records, updated in place.
+     * @param field the field number.
+     * @param criterion the criterion to match.
+     * @param exact <code>true</code> to match the whole trimmed value,
+     *          <code>false</code> to match a prefix of the untrimmed value.
+     */
+    protected void retainMatches(BitSet records, int field, String criterion,
+            boolean exact) {
+        if (codes[field] != null) {
+            retainCodes(records, codes[field],
+                    dictionaries[field].match(criterion, exact));
+        } else {
+            retainBytes(records, field, getPattern(criterion), exact);
+        }
+    }
+
+    /**
+     * Clears the bits of the records whose code is not one of the given
+     * codes. The caller must hold the read lock.
+     *
+     * @param records the candidate records, updated in place.
+     * @param column the dictionary encoded column.
+     * @param matches the codes to be retained.
+     */
+    protected void retainCodes(BitSet records, int[] column, BitSet matches) {
+        for (int r = records.nextSetBit(0); r >= 0;
+                r = records.nextSetBit(r + 1)) {
+            if (!matches.get(column[r])) {
+                records.clear(r);
+            }
+        }
+    }
+
+    /**
+     * Clears the bits of the records whose field does not match a pattern.
+     * The caller must hold the read lock.
+     *
+     * @param records the candidate records, updated in place.
+     * @param field the field number.
+     * @param pattern the pattern to match, from {@link #getPattern
+     *          getPattern}.
+     * @param exact <code>true</code> to match the whole trimmed value,
+     *          <code>false</code> to match a prefix of the untrimmed value.
+     */
+    protected void retainBytes(BitSet records, int field, int[] pattern,
+            boolean exact) {
+        byte[] column = columns[field];
+        int length = lengths[field];
+
+        for (int r = records.nextSetBit(0); r >= 0;
+                r = records.nextSetBit(r + 1)) {
+            int start = r * length;
+            int end = start + length;
+
+            if (exact) {
+                for (int i = start; i < end; i++) {
+                    if (column[i] == 0) {
+                        end = i; //Value ends at the first null byte
+                        break;
+                    }
+                }
+                while ((start < end) && isWhitespace(column[start])) {
+                    start++;
+                }
+                while ((start < end) && isWhitespace(column[end - 1])) {
+                    end--;
+                }
+                if ((end - start) != pattern.length) {
+                    records.clear(r);
+                    continue;
+                }
+            } else if (pattern.length > length) {
+                records.clear(r);
+                continue;
+            }
+
+            for (int i = 0; i < pattern.length; i++) {
+                int b = column[start + i];
+                if ((b != pattern[i]) && !((pattern[i] == NON_ASCII)
+                        && (b < 0))) {
+                    records.clear(r);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the values that each character of a criterion must match.
+     * A US-ASCII character must match the same byte, the replacement
+     * character matches any byte outside the US-ASCII range and any other
+     * character, or a null character, matches nothing.
+     *
+     * @param criterion the criterion.
+     *
+     * @return the pattern for the criterion.
+     */
+    protected static int[] getPattern(String criterion) {
+        int[] pattern = new int[criterion.length()];
+
+        for (int i = 0; i < pattern.length; i++) {
+            char c = criterion.charAt(i);
+            if (c == RecordBuffer.REPLACEMENT) {
+                pattern[i] = NON_ASCII;
+            } else if ((c == 0) || (c > 127)) {
+                pattern[i] = NO_MATCH;
+            } else {
+                pattern[i] = c;
+            }
+        }
+
+        return pattern;
+    }
+
+    /**
+     * Returns <code>true</code> if a byte is whitespace as defined by
+     * <code>String.trim</code>.
+     *
+     * @param b the byte.
+     *
+     * @return <code>true</code> if the byte is whitespace.
+     */
+    protected static boolean isWhitespace(byte b) {
+        return (b >= 0) && (b <= ' ');
+    }
+
+    /**
+     * Converts a set of record bits to an array of record numbers.
+     *
+     * @param records the record bits.
+     *
+     * @return the record numbers in ascending order.
+     */
+    protected static int[] toRecNos(BitSet records) {
+        int[] recNos = new int[records.cardinality()];
+        int i = 0;
+
+        for (int r = records.nextSetBit(0); r >= 0;
+                r = records.nextSetBit(r + 1)) {
+            recNos[i++] = r + 1;
+        }
+
+        return recNos;
+    }
+
+    /**
+     * Encodes a field value in the character set of the data file.
+     *
+     * @param value the field value.
+     *
+     * @return the bytes of the value.
+     */
+    protected static byte[] encode(String value) {
+        try {
+            return value.getBytes(Data.ENCODING);
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex); //US-ASCII is always supported
+        }
+    }
+
+    /**
+     * Grows the columns if necessary so that they have room for the
+     * specified record. The caller must hold the write lock.
+     *
+     * @param recNo the record number.
+     */
+    protected void ensureCapacity(int recNo) {
+        if (recNo <= capacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(recNo, capacity * 2);
+        for (int i = 0; i < columns.length; i++) {
+            if (codes[i] != null) {
+                int[] column = new int[newCapacity];
+                System.arraycopy(codes[i], 0, column, 0, codes[i].length);
+                codes[i] = column;
+            } else {
+                byte[] column = new byte[newCapacity * lengths[i]];
+                System.arraycopy(columns[i], 0, column, 0, columns[i].length);
+                columns[i] = column;
+            }
+        }
+        capacity = newCapacity;
+    }
+}
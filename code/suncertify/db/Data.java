@@ -8,6 +8,26 @@ package suncertify.db;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import suncertify.Utils;
 
 /**
@@ -21,12 +41,59 @@ import suncertify.Utils;
  * This class is threadsafe allowing concurrent access to the data file 
  * by multiple client threads using a single shared instance.
  * <p>
+ * Access to the records is guarded by a fixed number of read-write locks,
+ * each record being assigned to one of them by its record number. Any number
+ * of threads may read records at the same time, while a write excludes
+ * access only to the records sharing its lock. The file is accessed with
+ * positional I/O so no file pointer is shared between threads. The record
+ * locks that clients obtain with {@link #lock lock} are managed separately
+ * on this object's monitor.
+ * <p>
  * If a client tries to lock a record that is already locked by another object
  * the current thread will sleep until the client with the lock releases the
- * lock on the required record.
+ * lock on the required record. Alternatively {@link #lockAsync lockAsync}
+ * returns at once with a future that completes when the lock is granted, so
+ * that waiting for a lock does not need a thread. Clients waiting for the
+ * same record are queued and granted the lock in the order they asked for it,
+ * and an unlock wakes only the client at the head of the queue. The length of
+ * the queues is reported by {@link #getLockQueueLength getLockQueueLength},
+ * {@link #getWaitingLocks getWaitingLocks} and {@link #getMaxLockQueueLength
+ * getMaxLockQueueLength}.
+ * <p>
+ * A lock may be granted with a lease time, in which case it is released
+ * automatically by a background thread if the client neither unlocks the
+ * record nor {@link #renew renews} the lease within that time.
+ * <p>
+ * As an alternative to locking, a record can be read together with its
+ * version by {@link #readVersioned readVersioned} and later changed by
+ * {@link #updateIfVersion updateIfVersion}, which only succeeds if the record
+ * has not been written since and is not locked. Versions are kept in memory
+ * and start afresh, higher than any given out before, each time the file is
+ * opened.
  * <p>
  * Where methods take a record number as an argument, record numbers start at
  * 1 for the first record as opposed to 0.
+ * <p>
+ * Deleted records keep their space in the file until it is reused by
+ * {@link #create create} or reclaimed by {@link #compact compact}, which
+ * packs the live records together and shortens the file while the records
+ * remain available. A {@link RecordMap RecordMap} maps each record number to
+ * the slot in the file where the record is stored, so record numbers do not
+ * change when records are moved; scans of the file visit the slots, so their
+ * cost follows the number of live records rather than the number of record
+ * numbers ever given out, and sort what they find by record number. The map
+ * is only kept in memory, so the records are numbered in file order again
+ * the next time the file is opened. Compaction needs the write-ahead log,
+ * so that moving a record is a single atomic change to the file, and can be
+ * run in the background whenever enough deleted slots have built up.
+ * <p>
+ * The bytes of the data file are accessed through a {@link RecordStore
+ * RecordStore}, selected when the object is constructed. By default the file
+ * is accessed with positional reads and writes on its channel; alternatively
+ * the whole file can be memory-mapped. The file format is the same in either
+ * case. Either store can also log its writes to a {@link WriteAheadLog
+ * WriteAheadLog} kept beside the data file, so that a write is durable once
+ * it returns and a record cannot be left half written by a crash.
  *
  * @author Nick Shrine
  */
@@ -53,9 +120,61 @@ public class Data implements DB {
     public static final int MAGIC_COOKIE = 0x103;
 
     /**
-     * The database file.
+     * Storage type whereby the data file is accessed with positional reads
+     * and writes.
+     */
+    public static final int STORAGE_FILE = 0;
+
+    /**
+     * Storage type whereby the whole data file is memory-mapped.
+     */
+    public static final int STORAGE_MAPPED = 1;
+
+    /**
+     * Flag that may be added to either storage type so that writes are
+     * committed to a {@link WriteAheadLog WriteAheadLog} before they are made
+     * to the data file.
+     */
+    public static final int STORAGE_LOGGED = 2;
+
+    /**
+     * The suffix added to the name of the data file to give the name of its
+     * write-ahead log.
+     */
+    public static final String LOG_SUFFIX = ".log";
+
+    /**
+     * The number of read-write locks the records are divided between.
+     * Must be a power of 2.
+     */
+    protected static final int LOCK_STRIPES = 64;
+
+    /**
+     * The number of slots in the data file from which searches that read
+     * every record are divided between the processors.
+     */
+    public static final int PARALLEL_THRESHOLD = 16384;
+
+    /**
+     * The number of slots a parallel search reads in each task.
+     */
+    protected static final int PARALLEL_CHUNK = 4096;
+
+    /**
+     * The number of slots {@link #compact compact} processes before letting
+     * waiting scans and appends run.
+     */
+    protected static final int COMPACTION_BATCH = 256;
+
+    /**
+     * The lease time given for a lock that is held until it is unlocked.
+     */
+    public static final long NO_LEASE = 0;
+
+    /**
+     * The store used to access the bytes of the database file.
      */
-    protected final RandomAccessFile db;
+    protected final RecordStore store;
 
     /**
      * The number of fields per record in the database.
@@ -79,6 +198,23 @@ public class Data implements DB {
      */
     protected final int recordLength;
 
+    /**
+     * The offset of each field from the start of a record.
+     */
+    protected final int[] fieldOffsets;
+
+    /**
+     * The length in bytes of each field.
+     */
+    protected final int[] fieldLengths;
+
+    /**
+     * Holds a {@link RecordBuffer RecordBuffer} for each thread so that
+     * reading and searching records does not allocate a new buffer per
+     * record.
+     */
+    protected final ThreadLocal recordBuffers;
+
     /**
      * A map containing the list of currently locked records where the key
      * is the record number and the value is the cookie the record is
@@ -86,20 +222,157 @@ public class Data implements DB {
      */
     protected final Map lockedRecords;
 
+    /**
+     * A map containing the queues of lock requests waiting for locked
+     * records, where the key is the record number and the value is a
+     * <code>LinkedList</code> of the <code>CompletableFuture</code>s of the
+     * requests in the order they were made. Guarded by this object's monitor.
+     */
+    protected final Map lockQueues;
+
+    /**
+     * The number of lock requests in all the queues. Guarded by this object's
+     * monitor.
+     */
+    protected int waitingLocks;
+
+    /**
+     * The greatest number of lock requests that have been queued for one
+     * record at the same time. Guarded by this object's monitor.
+     */
+    protected int maxLockQueueLength;
+
+    /**
+     * A map containing the leases of records locked with a lease time, where
+     * the key is the record number and the value is the {@link LockLease
+     * LockLease}. Guarded by this object's monitor.
+     */
+    protected final Map leases;
+
+    /**
+     * The thread that releases the locks whose leases have expired, created
+     * when the first lease is granted. Guarded by this object's monitor.
+     */
+    protected ScheduledExecutorService leaseReaper;
+
     /**
      * Object that generates the lock cookies.
      */
     protected final Random cookieGenerator;
 
     /**
-     * The number of records in the database.
+     * The read-write locks guarding access to the records in the data file.
+     */
+    protected final ReadWriteLock[] stripes;
+
+    /**
+     * The lock held while appending a new record to the end of the data file
+     * and while changing the set of listeners or indexes.
+     */
+    protected final Object allocationLock;
+
+    /**
+     * The set of <code>Integer</code> numbers of deleted records whose space
+     * is available for reuse by {@link #create create}, in ascending order.
+     */
+    protected final NavigableSet freeRecords;
+
+    /**
+     * The objects to be notified when records are written or deleted.
+     */
+    protected volatile RecordListener[] listeners;
+
+    /**
+     * The record number of the first record appended by {@link
+     * #appendRecords appendRecords} that the listeners have not been told
+     * about, or 0 if there is none. Guarded by the allocation lock.
+     */
+    protected int appendedFrom;
+
+    /**
+     * The prefix indexes used by {@link #find find}, where element n is the
+     * index for field n or <code>null</code> if field n is not indexed.
+     */
+    protected volatile PrefixIndex[] prefixIndexes;
+
+    /**
+     * The column snapshot searched by {@link #find find} instead of reading
+     * the data file, or <code>null</code> if there is none.
+     */
+    protected volatile ColumnSnapshot snapshot;
+
+    /**
+     * The highest record number given to a record, including deleted
+     * records.
+     */
+    protected volatile int numRecords;
+
+    /**
+     * Flag to indicate that searches that read every record of a large data
+     * file are divided between the processors.
      */
-    protected int numRecords;
+    protected volatile boolean parallelSearch;
+
+    /**
+     * The slot in the data file where each record is stored.
+     */
+    protected final RecordMap recordMap;
+
+    /**
+     * The lock held for reading while the slots are scanned in order, and
+     * for writing while {@link #compact compact} moves records between
+     * slots, so that a scan sees each record exactly once. Acquired after
+     * the allocation lock and before the locks for the records.
+     */
+    protected final ReadWriteLock compactionLock;
 
     /**
      * The number of deleted records in the database.
      */
-    protected int deletedRecords;
+    protected final AtomicInteger deletedRecords;
+
+    /**
+     * The number of slots holding deleted records at which the data file is
+     * compacted in the background, or 0 if it is only compacted when
+     * {@link #compact compact} is called.
+     */
+    protected volatile int compactionThreshold;
+
+    /**
+     * The thread that compacts the data file in the background, created when
+     * a compaction threshold is first set. Guarded by this object's monitor.
+     */
+    protected ExecutorService compactor;
+
+    /**
+     * Flag to indicate that a background compaction has been scheduled and
+     * has not yet started.
+     */
+    protected final AtomicBoolean compactionPending;
+
+    /**
+     * Object held for the whole of a compaction, so that a compaction called
+     * directly never runs at the same time as one in the background.
+     */
+    protected final Object compactionRun;
+
+    /**
+     * A map containing the version of each record written since the file was
+     * opened, where the key is the record number and the value is the
+     * <code>Long</code> version. Changed only while holding the write lock
+     * for the record.
+     */
+    protected final Map versions;
+
+    /**
+     * The version given to records not written since the file was opened.
+     */
+    protected final long openVersion;
+
+    /**
+     * The source of new versions, holding the last version given out.
+     */
+    protected final AtomicLong versionClock;
 
     /**
      * Constructs a data object that controls access to the data file
@@ -114,22 +387,100 @@ public class Data implements DB {
      */    
     public Data(String filename) throws FileNotFoundException,
             InvalidDataFileException, IOException {
-        db = new RandomAccessFile(filename, "rw");
+        this(filename, STORAGE_FILE);
+    }
+
+    /**
+     * Constructs a data object that controls access to the data file
+     * specified by the filename parameter using the specified type of
+     * storage access.
+     *
+     * @param filename the binary file containing the data.
+     * @param storage the type of storage access, either
+     *          {@link #STORAGE_FILE STORAGE_FILE} or
+     *          {@link #STORAGE_MAPPED STORAGE_MAPPED}, with
+     *          {@link #STORAGE_LOGGED STORAGE_LOGGED} added to log writes.
+     *
+     * @throws FileNotFoundException if the data cannot be read.
+     * @throws InvalidDataFileException if the data file is not a valid 
+     *          URLyBird data file.
+     * @throws IOException if there is an IO error opening the data file.
+     * @throws IllegalArgumentException if the storage type is unknown.
+     */
+    public Data(String filename, int storage) throws FileNotFoundException,
+            InvalidDataFileException, IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
         
-        int cookieValue = db.readInt();
+        int cookieValue = file.readInt();
         if (cookieValue != MAGIC_COOKIE) {
+            file.close();
             throw new InvalidDataFileException(filename);
         }
         
-        fieldCount = db.readShort();
-        Map tmpSchema = loadSchema();
+        fieldCount = file.readShort();
+        Map tmpSchema = loadSchema(file);
         schema = Collections.unmodifiableMap(tmpSchema);
-        headerLength = (int) db.getFilePointer();
+        headerLength = (int) file.getFilePointer();
         recordLength = getRecordLength();
-        numRecords = ((int) db.length() - headerLength) / recordLength;
-        deletedRecords = countDeletedRecords();
+        fieldOffsets = new int[fieldCount];
+        fieldLengths = new int[fieldCount];
+        loadFieldLayout();
+        recordBuffers = new ThreadLocal() {
+            protected Object initialValue() {
+                return newRecordBuffer();
+            }
+        };
+        
+        RecordStore fileStore;
+        switch (storage & ~STORAGE_LOGGED) {
+        case STORAGE_FILE:
+            fileStore = new FileRecordStore(file);
+            break;
+        case STORAGE_MAPPED:
+            /* Padding left by a crash reads as deleted records */
+            fileStore = new MappedRecordStore(file, DELETED);
+            break;
+        default:
+            file.close();
+            throw new IllegalArgumentException("Unknown storage type "
+                    + storage);
+        }
+        
+        /* Replaying the log may append records, so do it before counting */
+        if ((storage & STORAGE_LOGGED) != 0) {
+            try {
+                fileStore = new LoggedRecordStore(fileStore, new WriteAheadLog(
+                        new File(filename + LOG_SUFFIX)));
+            } catch (IOException ex) {
+                fileStore.close();
+                throw ex;
+            }
+        }
+        store = fileStore;
+        
+        numRecords = (int) ((store.length() - headerLength) / recordLength);
+        recordMap = new RecordMap(numRecords);
+        compactionLock = new ReentrantReadWriteLock();
+        parallelSearch = true;
+        freeRecords = new ConcurrentSkipListSet();
+        loadFreeRecords();
+        deletedRecords = new AtomicInteger(freeRecords.size());
+        compactionPending = new AtomicBoolean();
+        compactionRun = new Object();
+        versions = new ConcurrentHashMap();
+        openVersion = System.currentTimeMillis() << 20;
+        versionClock = new AtomicLong(openVersion);
         cookieGenerator = new Random();
         lockedRecords = new HashMap();
+        lockQueues = new HashMap();
+        leases = new HashMap();
+        allocationLock = new Object();
+        listeners = new RecordListener[0];
+        prefixIndexes = new PrefixIndex[fieldCount];
+        stripes = new ReadWriteLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
     }
 
     /**
@@ -143,35 +494,135 @@ public class Data implements DB {
      *
      * @return an array where each element is a record value.
      */    
-    public synchronized String[] read(int recNo) throws
-            RecordNotFoundException {
-        String[] record = new String[fieldCount];
-        int i = 0;
+    public String[] read(int recNo) throws RecordNotFoundException {
+        Lock lock = getStripe(recNo).readLock();
 
+        lock.lock();
         try {
-            db.seek(findUndeletedRecord(recNo));
-            Iterator itr = schema.values().iterator();
-            while (itr.hasNext()) {
-                int fieldLength = ((Integer) itr.next()).intValue();
-                byte[] fieldBytes = new byte[fieldLength];
-                db.readFully(fieldBytes);
-                record[i] = new String(fieldBytes, ENCODING);
-                
-                /*
-                 * If the String is null terminated, truncate it to the 
-                 * position of the terminator.
-                 */
-                int indexOfTerminator = record[i].indexOf('\0');
-                if (indexOfTerminator > -1) {
-                    record[i] = record[i].substring(0, indexOfTerminator);
-                }
-                i++;
+            return readRecord(recNo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a record from the file together with its version, which can be
+     * given to {@link #updateIfVersion updateIfVersion} to change the record
+     * without locking it.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     *
+     * @return the record values and version.
+     */
+    public VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException {
+        Lock lock = getStripe(recNo).readLock();
+
+        lock.lock();
+        try {
+            return new VersionedRecord(readRecord(recNo), getVersion(recNo));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a record from the file without acquiring the lock for the record.
+     * The caller must hold either the read or write lock for the record.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or is
+     *          deleted.
+     *
+     * @return an array where each element is a record value.
+     */
+    protected String[] readRecord(int recNo) throws RecordNotFoundException {
+        RecordBuffer buffer = getRecordBuffer();
+
+        loadRecord(recNo, buffer);
+        if (buffer.isDeleted()) {
+            throw new RecordNotFoundException("Record " + recNo
+                    + " is deleted");
+        }
+
+        return buffer.getFields();
+    }
+
+    /**
+     * Reads the raw bytes of a record, including deleted records, into the
+     * given buffer. The buffer's fields can then be decoded or compared
+     * without building an array of <code>String</code>s.
+     *
+     * @param recNo the record number of the record to be read.
+     * @param buffer the buffer to read the record into, obtained from
+     *          {@link #newRecordBuffer newRecordBuffer}.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     *
+     * @return <code>false</code> if the record is deleted, otherwise
+     *          <code>true</code>.
+     */
+    public boolean load(int recNo, RecordBuffer buffer)
+            throws RecordNotFoundException {
+        Lock lock = getStripe(recNo).readLock();
+
+        lock.lock();
+        try {
+            loadRecord(recNo, buffer);
+        } finally {
+            lock.unlock();
+        }
+
+        return !buffer.isDeleted();
+    }
+
+    /**
+     * Returns a new empty buffer for records of this data file for use with
+     * {@link #load load}.
+     *
+     * @return a new record buffer.
+     */
+    public RecordBuffer newRecordBuffer() {
+        return new RecordBuffer(fieldOffsets, fieldLengths, recordLength);
+    }
+
+    /**
+     * Reads the raw bytes of a record into the given buffer without acquiring
+     * the lock for the record. The caller must hold either the read or write
+     * lock for the record.
+     *
+     * @param recNo the record number of the record to be read.
+     * @param buffer the buffer to read the record into.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     */
+    protected void loadRecord(int recNo, RecordBuffer buffer)
+            throws RecordNotFoundException {
+        int slot = findSlot(recNo);
+
+        if (slot == 0) {
+            buffer.bytes[0] = DELETED; //Space has been reclaimed
+        } else {
+            try {
+                store.read(slotPosition(slot), buffer.bytes);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
             }
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
         }
+        buffer.loaded(recNo);
+    }
 
-        return record;
+    /**
+     * Returns the record buffer belonging to the current thread.
+     *
+     * @return the current thread's record buffer.
+     */
+    protected final RecordBuffer getRecordBuffer() {
+        return (RecordBuffer) recordBuffers.get();
     }
 
     /**
@@ -188,14 +639,65 @@ public class Data implements DB {
      * @throws SecurityException if the record is locked with a cookie other
      *          than lockCookie.
      */
-    public synchronized void update(int recNo, String[] data, long lockCookie)
+    public void update(int recNo, String[] data, long lockCookie)
             throws RecordNotFoundException, SecurityException {
+        Lock lock = getStripe(recNo).writeLock();
+
+        lock.lock();
         try {
-            db.seek(findUndeletedRecord(recNo));
+            findUndeletedRecord(recNo); //check record exists first
             checkLock(recNo, lockCookie);
-            write(data);
+            fireRecordWritten(recNo, write(moveTo(recNo), data));
+            newVersion(recNo);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Modifies the fields of a record without locking it, provided that the
+     * record is still at the given version, as returned by
+     * {@link #readVersioned readVersioned}. The record is checked and written
+     * as a single operation, so of several clients updating the same version
+     * only one succeeds. The update also fails if the record is locked, as
+     * the client holding the lock may be about to change it.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     *
+     * @return the new version of the record.
+     */
+    public long updateIfVersion(int recNo, String[] data, long version)
+            throws RecordNotFoundException, VersionConflictException {
+        Lock lock = getStripe(recNo).writeLock();
+
+        lock.lock();
+        try {
+            findUndeletedRecord(recNo); //check record exists first
+            synchronized (this) {
+                if (lockedRecords.containsKey(new Integer(recNo))) {
+                    throw new VersionConflictException("Record " + recNo
+                            + " is locked by another client");
+                }
+            }
+            if (getVersion(recNo) != version) {
+                throw new VersionConflictException("Record " + recNo
+                        + " has been changed by another client");
+            }
+            fireRecordWritten(recNo, write(moveTo(recNo), data));
+            return newVersion(recNo);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -213,18 +715,43 @@ public class Data implements DB {
      * @throws SecurityException if the record is locked with a cookie
      *          other than lockCookie.
      */
-    public synchronized void delete(int recNo, long lockCookie) throws
+    public void delete(int recNo, long lockCookie) throws
             RecordNotFoundException, SecurityException {
-        checkLock(recNo, lockCookie);
+        Lock lock = getStripe(recNo).writeLock();
+        List waiting = null;
 
+        lock.lock();
         try {
-            db.seek(findRecord(recNo));
-            db.writeByte(DELETED);
-            deletedRecords++;
-            lockedRecords.remove(new Integer(recNo));
+            checkLock(recNo, lockCookie);
+            store.writeByte(findRecord(recNo), DELETED);
+            newVersion(recNo);
+            synchronized (this) {
+                lockedRecords.remove(new Integer(recNo));
+                leases.remove(new Integer(recNo));
+                waiting = (List) lockQueues.remove(new Integer(recNo));
+                if (waiting != null) {
+                    waitingLocks -= waiting.size();
+                }
+            }
+            fireRecordDeleted(recNo);
+            deletedRecords.incrementAndGet();
+            freeRecords.add(new Integer(recNo)); //Make space available
         } catch (IOException ex) {                        
             throw new RuntimeException(ex); 
+        } finally {
+            lock.unlock();
+        }
+
+        /* Clients waiting to lock the record can never have it now */
+        if (waiting != null) {
+            for (Iterator i = waiting.iterator(); i.hasNext(); ) {
+                ((CompletableFuture) i.next()).completeExceptionally(
+                        new RecordNotFoundException("Record " + recNo
+                        + " is deleted"));
+            }
         }
+
+        scheduleCompaction();
     }
 
     /**
@@ -234,97 +761,315 @@ public class Data implements DB {
      * value. A non-null  value in criteria[n] matches any field
      * value that begins with criteria[n]. (For example, "Fred"
      * matches "Fred" or "Freddy".)
+     * <p>
+     * If any of the non-null criteria are for fields that have a
+     * {@link PrefixIndex PrefixIndex} then only the records matching those
+     * criteria in the indexes are read to check the remaining criteria,
+     * otherwise every record in the data file is read.
      *
      * @param criteria the criteria to be matched.
      *
      * @return an array of record numbers that match the specified
      *          criteria.
      */
-    public synchronized int[] find(String[] criteria) {
+    public int[] find(String[] criteria) {
         ArrayList results = new ArrayList(); 
+        PrefixIndex[] indexes = prefixIndexes;
+        SortedSet candidates = null;
+        boolean unindexed = false;
+
+        /* Intersect the matches for each criterion that is indexed */
+        for (int i = 0; i < criteria.length; i++) {
+            if (criteria[i] == null) {
+                continue;
+            } else if (indexes[i] == null) {
+                unindexed = true;
+            } else if (candidates == null) {
+                candidates = indexes[i].getPrefix(criteria[i]);
+            } else {
+                candidates.retainAll(indexes[i].getPrefix(criteria[i]));
+            }
+        }
+
+        /* Criteria that are not indexed are matched against the columns */
+        ColumnSnapshot columns = snapshot;
+        if ((columns != null) && (unindexed || (candidates == null))) {
+            return columns.find(criteria);
+        }
+
+        RecordBuffer buffer = getRecordBuffer();
 
-        recordloop: // Loop over records in the data file
-            for (int recNo = 1; recNo <= numRecords; recNo++) {
-                String[] data = null;
-                
+        if (candidates != null) {
+            Iterator itr = candidates.iterator();
+            while (itr.hasNext()) {
+                Integer recNo = (Integer) itr.next();
                 try {
-                    data = read(recNo);
-                } catch (RecordNotFoundException ex) {
-                    
-                    /* Record is deleted so continue to the next one */
-                    continue recordloop;
-                }
-                
-                for (int i = 0; i < data.length; i++) {
-                    
-                    /* On first non-match proceed to next record */
-                    if ((criteria[i] != null)
-                            && !data[i].startsWith(criteria[i])) {
-                        continue recordloop;
+                    if (!unindexed || (load(recNo.intValue(), buffer)
+                            && matches(buffer, criteria))) {
+                        results.add(recNo);
                     }
+                } catch (RecordNotFoundException ex) {
+                    throw new RuntimeException(ex); //Shouldn't happen
                 }
-                
-                /* All criteria must have matched */
-                results.add(new Integer(recNo)); 
+            }
+            return Utils.toIntArray(results);
         }
-        
-        return Utils.toIntArray(results);
+
+        final String[] prefixes = criteria;
+        return scanAll(new RecordFilter() {
+            public boolean accept(RecordBuffer record) {
+                return matches(record, prefixes);
+            }
+        });
     }
 
     /**
-     * Creates a new record in the database (possibly reusing a
-     * deleted entry). Inserts the given data, and returns the record
-     * number of the new record.
-     *
-     * @param data the data for the new record.
+     * Returns the record numbers of the records that are not deleted and
+     * match the given filter by reading every slot of the data file, in
+     * order of record number, which after {@link #compact compact} is not
+     * necessarily the order the records are stored.
+     * <p>
+     * If the file has at least {@link #PARALLEL_THRESHOLD PARALLEL_THRESHOLD}
+     * slots and parallel searches are {@link #setParallelSearch enabled},
+     * the slots are divided into ranges that are searched at the same time by
+     * a {@link ScanTask ScanTask} on the common <code>ForkJoinPool</code>,
+     * which has a thread for each processor. The sorted results of the
+     * ranges are merged, so they are the same as those of a search by a
+     * single thread.
      *
-     * @throws DuplicateKeyException unimplemented.
+     * @param filter the condition the records must match.
      *
-     * @return the record number of the new record.
+     * @return an array of record numbers that match the filter.
      */
-    public synchronized int create(String[] data) throws
-            DuplicateKeyException {
-        int recNo = 1;
+    protected int[] scanAll(RecordFilter filter) {
+        Lock scan = compactionLock.readLock();
 
+        /* Compaction cannot move records while the slots are read */
+        scan.lock();
         try {
-            
-            /* Find the first deleted record */
-            while (recNo <= numRecords) {
-                db.seek(findRecord(recNo));
-                if (db.readByte() == DELETED) {
-                    break;
-                }
-                recNo++;
+            int end = recordMap.getSlotCount() + 1;
+            if (parallelSearch && (end > PARALLEL_THRESHOLD)) {
+                return (int[]) ForkJoinPool.commonPool().invoke(
+                        new ScanTask(filter, 1, end));
             }
-            
-            /* 
-             * If none deleted found, recNo will be numRecords + 1 and 
-             * therefore the new record will be appended after the last
-             * existing record.
-             */
-            
-            db.seek(moveTo(recNo));
-            db.writeByte(VALID); //Set the deleted flag to not deleted.
-            write(data);
-
-            if (recNo == numRecords) {
-                numRecords++; //We have just appended a record
-            }                   
-        } catch (RecordNotFoundException recNotFound) {
-            throw new RuntimeException(recNotFound); //Shouldn't happen
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+            return scanSlots(filter, 1, end);
+        } finally {
+            scan.unlock();
         }
-
-        return recNo;
     }
 
     /**
-     * Locks a record so that it can only be updated or deleted by this client.
-     * Returned value is a cookie that must be used when the record is unlocked,
-     * updated, or deleted. If the specified record is already locked by a 
-     * different client, the current thread gives up the CPU and consumes no 
-     * CPU cycles until the record is unlocked.
+     * Returns the record numbers of the records in a range of slots that are
+     * not deleted and match the given filter, in order of record number. The
+     * caller must hold the compaction lock for reading.
+     *
+     * @param filter the condition the records must match.
+     * @param from the first slot to be read.
+     * @param to the slot after the last slot to be read.
+     *
+     * @return an array of record numbers that match the filter.
+     */
+    protected int[] scanSlots(RecordFilter filter, int from, int to) {
+        RecordBuffer buffer = getRecordBuffer();
+        List results = new ArrayList();
+
+        for (int slot = from; slot < to; slot++) {
+            int recNo = recordMap.getRecord(slot);
+            try {
+                if ((recNo == 0) || !load(recNo, buffer)) {
+                    continue; //Record is deleted
+                }
+            } catch (RecordNotFoundException ex) {
+                throw new RuntimeException(ex); //Shouldn't happen
+            }
+
+            if (filter.accept(buffer)) {
+                results.add(new Integer(recNo));
+            }
+        }
+
+        int[] matches = Utils.toIntArray(results);
+        Arrays.sort(matches); //Compaction may have moved records
+        return matches;
+    }
+
+    /**
+     * Sets whether searches that read every record of a large data file are
+     * divided between the processors. Parallel searches are enabled by
+     * default.
+     *
+     * @param parallel <code>true</code> to search large files in parallel.
+     */
+    public void setParallelSearch(boolean parallel) {
+        parallelSearch = parallel;
+    }
+
+    /**
+     * Returns a cursor that steps through the records that are not deleted
+     * and match the given filter, one at a time in order of record number.
+     * Unlike {@link #find find}, no list of matching records is built: each
+     * record is read when the cursor is moved to it, into a single buffer
+     * that also gives the caller the record's values, so a report over the
+     * whole data file needs one pass and constant memory.
+     *
+     * @param filter the condition the records must match, or
+     *          <code>null</code> to return every record.
+     *
+     * @return a cursor positioned before the first record.
+     */
+    public RecordCursor scan(RecordFilter filter) {
+        return new RecordCursor(this, filter);
+    }
+
+    /**
+     * Creates a new record in the database (possibly reusing a
+     * deleted entry). Inserts the given data, and returns the record
+     * number of the new record.
+     * <p>
+     * The lowest numbered deleted record is taken from the set of free
+     * records without reading the data file or holding any lock other than
+     * the lock for the record being written. Only if there are no deleted
+     * records, or the space of the deleted record has been reclaimed by
+     * {@link #compact compact}, is the allocation lock held while the record
+     * is appended.
+     *
+     * @param data the data for the new record.
+     *
+     * @throws DuplicateKeyException unimplemented.
+     *
+     * @return the record number of the new record.
+     */
+    public int create(String[] data) throws DuplicateKeyException {
+        int recNo = 0;
+
+        try {
+            Integer free = (Integer) freeRecords.pollFirst();
+            if ((free != null) && (recordMap.getSlot(free.intValue()) != 0)) {
+                recNo = free.intValue();
+                writeRecord(recNo, data);
+                deletedRecords.decrementAndGet();
+            } else {
+                synchronized (allocationLock) {
+                    if (free != null) {
+                        recNo = free.intValue();
+                        writeRecord(recNo, data);
+                        deletedRecords.decrementAndGet();
+                    } else {
+                        recNo = ++numRecords; //Numbered before scans see it
+                        writeRecord(recNo, data);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        return recNo;
+    }
+
+    /**
+     * Appends a batch of new records to the end of the data file with a
+     * single write, without reusing the space of deleted records, and
+     * returns the record number of the first of them. The records are given
+     * consecutive record numbers.
+     * <p>
+     * The records only become visible once all of them have been written.
+     * The listeners are not told about them one by one: once every batch
+     * has been appended {@link #publishAppendedRecords
+     * publishAppendedRecords} must be called, which brings them up to date
+     * in a single pass. This is much faster than calling {@link #create
+     * create} for each record when loading a large number of records, as by
+     * {@link RecordImporter RecordImporter}.
+     *
+     * @param records the records to be appended, where records[n] holds the
+     *          data for record n of the batch.
+     * @param count the number of records of the array to append.
+     *
+     * @throws IOException if there is an error writing to the file.
+     *
+     * @return the record number of the first record appended.
+     */
+    public int appendRecords(String[][] records, int count)
+            throws IOException {
+        byte[] batch = new byte[count * recordLength];
+        String[][] written = new String[count][];
+
+        for (int i = 0; i < count; i++) {
+            written[i] = encode(records[i], batch, i * recordLength);
+        }
+
+        synchronized (allocationLock) {
+            int first = numRecords + 1;
+
+            /* The slots beyond the end of the map are not read by anyone */
+            store.write(slotPosition(recordMap.getSlotCount() + 1), batch);
+
+            for (int i = 0; i < count; i++) {
+                int recNo = first + i;
+                Lock lock = getStripe(recNo).writeLock();
+                lock.lock();
+                try {
+                    numRecords = recNo; //Numbered before scans see it
+                    recordMap.append(recNo);
+                    newVersion(recNo);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (appendedFrom == 0) {
+                appendedFrom = first;
+            }
+
+            return first;
+        }
+    }
+
+    /**
+     * Tells the listeners about the records appended by {@link
+     * #appendRecords appendRecords} since this method was last called, with
+     * a single call of {@link RecordListener#recordsAppended
+     * recordsAppended} each. A listener that asks for them is then passed
+     * each of the records through {@link RecordListener#recordWritten
+     * recordWritten}, as when it was registered.
+     */
+    public void publishAppendedRecords() {
+        int first;
+        int last;
+
+        synchronized (allocationLock) {
+            first = appendedFrom;
+            last = numRecords;
+            appendedFrom = 0;
+        }
+        if (first == 0) {
+            return;
+        }
+
+        RecordListener[] tmp = listeners;
+        for (int i = 0; i < tmp.length; i++) {
+            if (!tmp[i].recordsAppended(first, last)) {
+                continue;
+            }
+            for (int recNo = first; recNo <= last; recNo++) {
+                Lock lock = getStripe(recNo).readLock();
+                lock.lock();
+                try {
+                    tmp[i].recordWritten(recNo, readRecord(recNo));
+                } catch (RecordNotFoundException ex) {
+                    continue; //Record has been deleted since
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Locks a record so that it can only be updated or deleted by this client.
+     * Returned value is a cookie that must be used when the record is unlocked,
+     * updated, or deleted. If the specified record is already locked by a 
+     * different client, the current thread gives up the CPU and consumes no 
+     * CPU cycles until the record is unlocked.
      *
      * @param recNo the record number of the record to be locked.
      *
@@ -334,27 +1079,195 @@ public class Data implements DB {
      * @return a cookie that must be used when the record is unlocked,
      *          updated, or deleted.
      */
-    public synchronized long lock(int recNo) throws RecordNotFoundException {
-        
-        /* First check the record exists and is not deleted */
-        findUndeletedRecord(recNo);
+    public long lock(int recNo) throws RecordNotFoundException {
+        return lock(recNo, NO_LEASE);
+    }
 
-        /* 
-         * If record is already locked wait until we get notification of
-         * a lock being released and then check again.
-         */
-        while (lockedRecords.containsKey(new Integer(recNo))) {
-            try {
-                wait();                
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(ex); // Should never happen
+    /**
+     * Locks a record, waiting until it is available, with a lease that
+     * releases the lock automatically if it is neither unlocked nor
+     * {@link #renew renewed} within the lease time. Once the lease has
+     * expired the cookie is no longer valid and the record may be locked by
+     * another client.
+     *
+     * @param recNo the record number of the record to be locked.
+     * @param leaseTime the time in milliseconds the lock is held for after it
+     *          is granted or renewed, or {@link #NO_LEASE NO_LEASE} to hold
+     *          it until it is unlocked.
+     *
+     * @throws RecordNotFoundException if the record does not exists or there
+     *          is an error accessing the database.
+     *
+     * @return a cookie that must be used when the record is unlocked,
+     *          updated, deleted or renewed.
+     */
+    public long lock(int recNo, long leaseTime)
+            throws RecordNotFoundException {
+        CompletableFuture future = lockAsync(recNo, leaseTime);
+
+        try {
+            return ((Long) future.get()).longValue();
+        } catch (InterruptedException ex) {
+            abandonLock(recNo, future);
+            throw new RuntimeException(ex); // Should never happen
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RecordNotFoundException) {
+                throw (RecordNotFoundException) ex.getCause();
             }
+            throw new RuntimeException(ex.getCause());
         }
+    }
 
-        long cookie = cookieGenerator.nextLong();
-        lockedRecords.put(new Integer(recNo), new Long(cookie));
+    /**
+     * Locks a record, as for {@link #lock(int) lock}, but waits no longer
+     * than the given time for it to become available.
+     *
+     * @param recNo the record number of the record to be locked.
+     * @param timeout the maximum time in milliseconds to wait for the lock.
+     *
+     * @throws RecordNotFoundException if the record does not exists or there
+     *          is an error accessing the database.
+     * @throws LockTimeoutException if the lock was not granted in time, in
+     *          which case the request has been withdrawn.
+     *
+     * @return a cookie that must be used when the record is unlocked,
+     *          updated, or deleted.
+     */
+    public long tryLock(int recNo, long timeout)
+            throws RecordNotFoundException, LockTimeoutException {
+        return tryLock(recNo, timeout, NO_LEASE);
+    }
 
-        return cookie;
+    /**
+     * Locks a record with a lease, as for {@link #lock(int, long) lock}, but
+     * waits no longer than the given time for it to become available. The
+     * lease starts when the lock is granted.
+     *
+     * @param recNo the record number of the record to be locked.
+     * @param timeout the maximum time in milliseconds to wait for the lock.
+     * @param leaseTime the time in milliseconds the lock is held for after it
+     *          is granted or renewed, or {@link #NO_LEASE NO_LEASE} to hold
+     *          it until it is unlocked.
+     *
+     * @throws RecordNotFoundException if the record does not exists or there
+     *          is an error accessing the database.
+     * @throws LockTimeoutException if the lock was not granted in time, in
+     *          which case the request has been withdrawn.
+     *
+     * @return a cookie that must be used when the record is unlocked,
+     *          updated, deleted or renewed.
+     */
+    public long tryLock(int recNo, long timeout, long leaseTime)
+            throws RecordNotFoundException, LockTimeoutException {
+        CompletableFuture future = lockAsync(recNo, leaseTime);
+
+        try {
+            return ((Long) future.get(timeout, TimeUnit.MILLISECONDS))
+                    .longValue();
+        } catch (TimeoutException ex) {
+            abandonLock(recNo, future);
+            throw new LockTimeoutException("Record " + recNo
+                    + " was not locked within " + timeout + " ms");
+        } catch (InterruptedException ex) {
+            abandonLock(recNo, future);
+            throw new RuntimeException(ex); // Should never happen
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RecordNotFoundException) {
+                throw (RecordNotFoundException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Asks for a lock on a record without waiting for it. The returned
+     * future completes with the <code>Long</code> cookie that must be used
+     * when the record is unlocked, updated, or deleted, at once if the record
+     * is not locked, otherwise when every client that asked for the lock
+     * before has released it.
+     * <p>
+     * The future completes exceptionally with a
+     * <code>RecordNotFoundException</code> if the record does not exist or
+     * is deleted while waiting. A request that is no longer wanted should be
+     * cancelled, which removes it from the queue for the record; if the lock
+     * has already been granted it must be unlocked instead.
+     * <p>
+     * Requests for a record are granted strictly in the order they were made.
+     * The lock is passed directly from the client that unlocks the record to
+     * the next request in the queue, so a request made later can never take
+     * the lock first, even when it arrives as the record is being unlocked.
+     *
+     * @param recNo the record number of the record to be locked.
+     *
+     * @return a future that completes with the lock cookie.
+     */
+    public CompletableFuture lockAsync(int recNo) {
+        return lockAsync(recNo, NO_LEASE);
+    }
+
+    /**
+     * Asks for a lock on a record without waiting for it, as for
+     * {@link #lockAsync(int) lockAsync}, with a lease that starts when the
+     * lock is granted. The lock is released automatically if it is neither
+     * unlocked nor {@link #renew renewed} within the lease time.
+     *
+     * @param recNo the record number of the record to be locked.
+     * @param leaseTime the time in milliseconds the lock is held for after it
+     *          is granted or renewed, or {@link #NO_LEASE NO_LEASE} to hold
+     *          it until it is unlocked.
+     *
+     * @return a future that completes with the lock cookie.
+     */
+    public CompletableFuture lockAsync(final int recNo, long leaseTime) {
+        if (leaseTime < 0) {
+            throw new IllegalArgumentException("Lease time " + leaseTime
+                    + " is negative");
+        }
+
+        final CompletableFuture future = new LockRequest(leaseTime);
+        final Integer key = new Integer(recNo);
+
+        /* The record lock stops compaction moving it while it is checked */
+        Lock lock = getStripe(recNo).readLock();
+        lock.lock();
+        try {
+            synchronized (this) {
+                try {
+                    findUndeletedRecord(recNo);
+                } catch (RecordNotFoundException ex) {
+                    future.completeExceptionally(ex);
+                    return future;
+                }
+
+                if (!lockedRecords.containsKey(key)) {
+                    future.complete(grantLock(key, (LockRequest) future));
+                    return future;
+                }
+
+                LinkedList queue = (LinkedList) lockQueues.get(key);
+                if (queue == null) {
+                    queue = new LinkedList();
+                    lockQueues.put(key, queue);
+                }
+                queue.add(future);
+                waitingLocks++;
+                maxLockQueueLength = Math.max(maxLockQueueLength,
+                        queue.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        /* Forget the request if it is cancelled while waiting */
+        future.whenComplete(new BiConsumer() {
+            public void accept(Object cookie, Object ex) {
+                if (future.isCancelled()) {
+                    removeLockRequest(key, future);
+                }
+            }
+        });
+
+        return future;
     }
 
     /**
@@ -369,46 +1282,543 @@ public class Data implements DB {
      * @throws SecurityException if the record is locked with a cookie
      *          other than cookie.
      */
-    public synchronized void unlock(int recNo, long cookie) throws
+    public void unlock(int recNo, long cookie) throws
             RecordNotFoundException, SecurityException {
-        findUndeletedRecord(recNo); //check record exists first
-        checkLock(recNo, cookie); //check it's not locked by someone else
-        lockedRecords.remove(new Integer(recNo)); //remove the lock
-        notifyAll(); //notify other threads waiting to lock the record
+        CompletableFuture next;
+        Long nextCookie = null;
+        Lock lock = getStripe(recNo).readLock();
+
+        lock.lock();
+        try {
+            synchronized (this) {
+                findUndeletedRecord(recNo); //check record exists first
+                checkLock(recNo, cookie); //check it's not locked by another
+                next = handOffLock(new Integer(recNo));
+                if (next != null) {
+                    nextCookie = (Long) lockedRecords.get(new Integer(recNo));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        completeHandOff(recNo, next, nextCookie);
+    }
+
+    /**
+     * Releases the locks on several records at once, as when a client holding
+     * them has gone. Element n of cookies is the cookie that record
+     * recNos[n] was locked with. Records that are no longer locked with the
+     * given cookie, or have been deleted, are skipped rather than stopping
+     * the rest being unlocked.
+     *
+     * @param recNos the record numbers of the records to be unlocked.
+     * @param cookies the cookies that the records were locked with.
+     *
+     * @return the number of records unlocked.
+     */
+    public int unlockAll(int[] recNos, long[] cookies) {
+        CompletableFuture[] next = new CompletableFuture[recNos.length];
+        Long[] nextCookies = new Long[recNos.length];
+        int unlocked = 0;
+
+        for (int i = 0; i < recNos.length; i++) {
+            Lock lock = getStripe(recNos[i]).readLock();
+
+            lock.lock();
+            try {
+                synchronized (this) {
+                    findUndeletedRecord(recNos[i]);
+                    checkLock(recNos[i], cookies[i]);
+                    Integer key = new Integer(recNos[i]);
+                    next[i] = handOffLock(key);
+                    if (next[i] != null) {
+                        nextCookies[i] = (Long) lockedRecords.get(key);
+                    }
+                    unlocked++;
+                }
+            } catch (RecordNotFoundException ex) {
+                continue; //Deleted, which released the lock
+            } catch (SecurityException ex) {
+                continue; //Lock has already been released
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        for (int i = 0; i < recNos.length; i++) {
+            try {
+                completeHandOff(recNos[i], next[i], nextCookies[i]);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex); // Should never happen
+            }
+        }
+
+        return unlocked;
+    }
+
+    /**
+     * Renews the lease on a locked record so that it expires the lease time
+     * from now. A lock granted without a lease is unaffected.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws SecurityException if the record is locked with a cookie
+     *          other than cookie, or its lease has already expired.
+     */
+    public void renew(int recNo, long cookie) throws
+            RecordNotFoundException, SecurityException {
+        Lock lock = getStripe(recNo).readLock();
+
+        lock.lock();
+        try {
+            synchronized (this) {
+                findUndeletedRecord(recNo);
+                checkLock(recNo, cookie);
+
+                LockLease lease = (LockLease) leases.get(new Integer(recNo));
+                if (lease != null) {
+                    lease.renew();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the lease on a locked record.
+     *
+     * @param recNo the record number of the record.
+     *
+     * @return the lease, or <code>null</code> if the record is not locked or
+     *          was locked without a lease.
+     */
+    public synchronized LockLease getLease(int recNo) {
+        return (LockLease) leases.get(new Integer(recNo));
+    }
+
+    /**
+     * Returns the length in bytes of each field of a record as defined by the
+     * schema in the data file header.
+     *
+     * @return a new array where each element is the length of a field.
+     */
+    public int[] getFieldLengths() {
+        return fieldLengths.clone();
+    }
+
+    /**
+     * Returns the number of records in the data file,
+     * not including records marked as deleted.
+     *
+     * @return the number of records currently in the data file.
+     */    
+    public final int getNumRecords() {
+        return (numRecords - deletedRecords.get());
+    }
+
+    /**
+     * Creates a {@link PrefixIndex PrefixIndex} of the specified field so that
+     * {@link #find find} criteria for the field are answered from the index.
+     * Has no effect if the field is already indexed.
+     *
+     * @param field the number of the field to be indexed.
+     */
+    public void addPrefixIndex(int field) {
+        synchronized (allocationLock) {
+            if (prefixIndexes[field] == null) {
+                PrefixIndex index = new PrefixIndex(field);
+
+                /* Only make the index available to searches once built */
+                addRecordListener(index);
+                PrefixIndex[] tmp = prefixIndexes.clone();
+                tmp[field] = index;
+                prefixIndexes = tmp;
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link ColumnSnapshot ColumnSnapshot} of the records so that
+     * {@link #find find} criteria that are not answered by a prefix index are
+     * matched in memory instead of by reading the data file. Has no effect
+     * if there is already a snapshot.
+     */
+    public void addColumnSnapshot() {
+        synchronized (allocationLock) {
+            if (snapshot == null) {
+                ColumnSnapshot columns = newColumnSnapshot();
+
+                /* Only make the snapshot available to searches once built */
+                addRecordListener(columns);
+                snapshot = columns;
+            }
+        }
+    }
+
+    /**
+     * Returns a new empty column snapshot for records of this data file for
+     * use by {@link #addColumnSnapshot addColumnSnapshot}.
+     *
+     * @return a new column snapshot.
+     */
+    protected ColumnSnapshot newColumnSnapshot() {
+        return new ColumnSnapshot(fieldLengths);
+    }
+
+    /**
+     * Registers an object to be notified whenever a record is written or
+     * deleted.
+     * <p>
+     * Before this method returns the listener is told about every existing
+     * undeleted record through its {@link RecordListener#recordWritten
+     * recordWritten} method, so that it can build its initial state.
+     *
+     * @param listener the object to be notified.
+     */
+    public void addRecordListener(RecordListener listener) {
+        synchronized (allocationLock) {
+            RecordListener[] tmp = new RecordListener[listeners.length + 1];
+            System.arraycopy(listeners, 0, tmp, 0, listeners.length);
+            tmp[listeners.length] = listener;
+            listeners = tmp;
+        }
+
+        /*
+         * Each record is passed to the listener while holding its lock so that
+         * a concurrent write cannot be overtaken by the older value.
+         */
+        Lock scan = compactionLock.readLock();
+        scan.lock();
+        try {
+            for (int slot = 1; slot <= recordMap.getSlotCount(); slot++) {
+                int recNo = recordMap.getRecord(slot);
+                if (recNo == 0) {
+                    continue; //Slot has been emptied by compact
+                }
+                Lock lock = getStripe(recNo).readLock();
+                lock.lock();
+                try {
+                    listener.recordWritten(recNo, readRecord(recNo));
+                } catch (RecordNotFoundException ex) {
+                    continue; //Record is deleted
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            scan.unlock();
+        }
+    }
+
+    /**
+     * Reclaims the space of the deleted records by moving the live records
+     * down into the lowest slots of the data file and then shortening the
+     * file. Records keep their record numbers, so clients can go on using
+     * the numbers they already hold, and a deleted record's number is still
+     * reused by {@link #create create}, with its record appended to the
+     * file.
+     * <p>
+     * The records remain available while the file is compacted. Each record
+     * is moved while holding its write lock, and the slots are processed in
+     * batches of {@link #COMPACTION_BATCH COMPACTION_BATCH}, between which
+     * scans of the file and appends of new records may run. Each record is
+     * copied to its new slot before its old slot is marked as deleted, so
+     * the file never holds fewer copies of a record than it should, and the
+     * slots beyond the new end of the file only ever hold deleted records.
+     * Only one compaction runs at a time; a call made while another is
+     * running waits for it to finish.
+     * <p>
+     * The writes must be logged, because a record is moved by writing it to
+     * its new slot and marking its old slot as deleted. Those two writes are
+     * committed to the log as one group, so a crash can never leave the
+     * record in both slots, which would give it two record numbers when the
+     * file is next opened.
+     *
+     * @throws IOException if there is an error accessing the data file.
+     * @throws IllegalStateException if the writes to the data file are not
+     *          logged.
+     *
+     * @return the number of slots by which the data file has been shortened.
+     */
+    public int compact() throws IOException {
+        if (!(store instanceof LoggedRecordStore)) {
+            throw new IllegalStateException(
+                    "Compaction requires the write-ahead log");
+        }
+
+        byte[] recordBytes = new byte[recordLength];
+        Lock moves = compactionLock.writeLock();
+        int target = 0; //The last slot holding a record that has been kept
+        int slot = 1;
+
+        synchronized (compactionRun) {
+            while (true) {
+                synchronized (allocationLock) {
+                    moves.lock();
+                    try {
+                        int end = Math.min(slot + COMPACTION_BATCH,
+                                recordMap.getSlotCount() + 1);
+
+                        if (slot == end) { //Every slot has been processed
+                            int reclaimed = recordMap.getSlotCount() - target;
+                            if (reclaimed > 0) {
+                                recordMap.truncate(target);
+                                store.truncate(slotPosition(target + 1));
+                            }
+                            return reclaimed;
+                        }
+
+                        for (; slot < end; slot++) {
+                            if (compactSlot(slot, target + 1, recordBytes)) {
+                                target++;
+                            }
+                        }
+                    } finally {
+                        moves.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the record in a slot to a lower slot, or removes it from its
+     * slot if it is deleted and not being reused by {@link #create create}.
+     * A slot that no record is mapped to, which a compaction that failed part
+     * way through leaves behind, is already free. The caller must hold the
+     * allocation lock and the compaction lock for writing.
+     *
+     * @param slot the slot holding the record.
+     * @param target the slot the record is to be moved to, which is not
+     *          greater than <code>slot</code> and no longer holds a record.
+     * @param recordBytes a buffer large enough to hold a record.
+     *
+     * @throws IOException if there is an error accessing the data file.
+     *
+     * @return <code>true</code> if the record has been kept in the target
+     *          slot, or <code>false</code> if it has been removed.
+     */
+    protected boolean compactSlot(int slot, int target, byte[] recordBytes)
+            throws IOException {
+        int recNo = recordMap.getRecord(slot);
+        if (recNo == 0) {
+            return false;
+        }
+
+        Integer key = new Integer(recNo);
+        Lock lock = getStripe(recNo).writeLock();
+
+        lock.lock();
+        try {
+
+            /* Taking the record from the free set stops create reusing it */
+            if (freeRecords.remove(key)) {
+                recordMap.remove(recNo);
+                freeRecords.add(key); //Reused by appending from now on
+                return false;
+            }
+
+            if (target != slot) {
+                long[] positions = { slotPosition(target),
+                        slotPosition(slot) };
+                byte[][] writes = { recordBytes, { DELETED } };
+                store.read(positions[1], recordBytes);
+                ((LoggedRecordStore) store).writeGroup(positions, writes);
+                recordMap.move(recNo, target);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of slots in the data file, which is the number of
+     * records a scan of the file reads. This is the number of records plus
+     * the number of deleted records whose space has not been reclaimed by
+     * {@link #compact compact}.
+     *
+     * @return the number of slots in the data file.
+     */
+    public int getSlotCount() {
+        return recordMap.getSlotCount();
+    }
+
+    /**
+     * Returns the number of slots in the data file that hold deleted records,
+     * whose space {@link #compact compact} would reclaim.
+     *
+     * @return the number of deleted slots.
+     */
+    public int getDeletedSlotCount() {
+        return recordMap.getSlotCount() - getNumRecords();
+    }
+
+    /**
+     * Sets the number of deleted slots at which the data file is compacted
+     * in the background. Once a record is deleted and at least that many
+     * slots hold deleted records, {@link #compact compact} is run on a
+     * single daemon thread; further deletions while it is waiting to start
+     * do not schedule it again.
+     *
+     * @param threshold the number of deleted slots, or 0 to compact only when
+     *          <code>compact</code> is called.
+     *
+     * @throws IllegalArgumentException if the threshold is negative.
+     * @throws IllegalStateException if the threshold is not 0 and the writes
+     *          to the data file are not logged.
+     */
+    public void setCompactionThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compaction threshold "
+                    + threshold + " is negative");
+        }
+        if ((threshold > 0) && !(store instanceof LoggedRecordStore)) {
+            throw new IllegalStateException(
+                    "Compaction requires the write-ahead log");
+        }
+
+        synchronized (this) {
+            if ((threshold > 0) && (compactor == null)) {
+                compactor = Executors.newSingleThreadExecutor(
+                        new ThreadFactory() {
+                    public Thread newThread(Runnable task) {
+                        Thread thread = new Thread(task, "Compactor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+        compactionThreshold = threshold;
+        scheduleCompaction();
+    }
+
+    /**
+     * Schedules a background compaction if a compaction threshold is set,
+     * at least that many slots hold deleted records and a compaction is not
+     * already waiting to start.
+     */
+    protected void scheduleCompaction() {
+        int threshold = compactionThreshold;
+
+        if ((threshold == 0) || (getDeletedSlotCount() < threshold)
+                || !compactionPending.compareAndSet(false, true)) {
+            return;
+        }
+
+        ExecutorService executor;
+        synchronized (this) {
+            executor = compactor;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    compactionPending.set(false);
+                    try {
+                        compact();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            //The data object has been closed
+        }
     }
 
     /**
-     * Returns the number of records in the data file,
-     * not including records marked as deleted.
+     * Closes the data file once any compaction or scan in progress has
+     * finished. Every write made so far is forced to the storage device and,
+     * if writes are logged, the log is emptied by a checkpoint. The lease
+     * reaper thread is stopped, so locks that are still held keep their
+     * leases, and so is the background compaction thread, once a compaction
+     * it has started has finished. The data object cannot be used once it
+     * has been closed.
      *
-     * @return the number of records currently in the data file.
-     */    
-    public final int getNumRecords() {
-        return (numRecords - deletedRecords);
+     * @throws IOException if there is an error forcing or closing the data
+     *          file.
+     */
+    public void close() throws IOException {
+        Lock moves = compactionLock.writeLock();
+        ExecutorService executor;
+
+        synchronized (this) {
+            if (leaseReaper != null) {
+                leaseReaper.shutdownNow();
+            }
+            executor = compactor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt(); //Close it anyway
+            }
+        }
+
+        moves.lock();
+        try {
+            store.force();
+            store.close();
+        } finally {
+            moves.unlock();
+        }
     }
 
     /**
-     * Returns a file pointer to the start of the requested record within
-     * the data file, even if the record does not exist so that the file
-     * pointer can be positioned for writing new records.
+     * Returns a file pointer to the start of the slot where the requested
+     * record is stored within the data file. The record must have a slot,
+     * which may be one that has just been appended for writing a new record.
      *
      * @param recNo the record number of the record to be accessed.
      *          
      * @return the file pointer to the location of the start of the requested
      *          record within the data file.
      */        
-    protected final synchronized long moveTo(int recNo) {
-        long offset = headerLength + ((recNo - 1) * recordLength);
-        long fileptr = 0;
+    protected final long moveTo(int recNo) {
+        return slotPosition(recordMap.getSlot(recNo));
+    }
 
-        try {
-            db.seek(offset);
-            fileptr = db.getFilePointer();
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+    /**
+     * Returns a file pointer to the start of a slot within the data file.
+     *
+     * @param slot the slot, starting at 1 for the first slot.
+     *
+     * @return the file pointer to the location of the start of the slot.
+     */
+    protected final long slotPosition(int slot) {
+        return headerLength + ((long) (slot - 1) * recordLength);
+    }
+
+    /**
+     * Returns the slot where the requested record is stored within the data
+     * file if the record exists, otherwise a
+     * {@link RecordNotFoundException RecordNotFoundException} is thrown.
+     * <p>
+     * This method also finds deleted records.
+     *
+     * @param recNo the record number of the record to be found.
+     *
+     * @throws RecordNotFoundException if the record is not in the database.
+     *
+     * @return the slot, or 0 if the record is deleted and its space has been
+     *          reclaimed by {@link #compact compact}.
+     */
+    protected int findSlot(int recNo) throws RecordNotFoundException {
+        if ((recNo < 1) || (recNo > numRecords)) {
+            throw new RecordNotFoundException("Record " + recNo
+                    + " does not exist.");
         }
 
-        return fileptr;
+        return recordMap.getSlot(recNo);
     }
     
     /**
@@ -416,24 +1826,26 @@ public class Data implements DB {
      * the data file if the record exists, otherwise a
      * {@link RecordNotFoundException RecordNotFoundException} is thrown.
      * <p>
-     * This method also finds deleted records.
+     * This method also finds deleted records that still have a slot.
      *
      * @param recNo the record number of the record to be found.
      *
-     * @throws RecordNotFoundException if the record is not in the database.
+     * @throws RecordNotFoundException if the record is not in the database,
+     *          or is deleted and its space has been reclaimed.
      *
      * @return the file pointer to the location of the start of the requested
      *          record within the data file.
      */    
-    protected synchronized long findRecord(int recNo) throws
+    protected long findRecord(int recNo) throws
             RecordNotFoundException {
-        if (recNo > numRecords) {
+        int slot = findSlot(recNo);
+
+        if (slot == 0) {
             throw new RecordNotFoundException("Record " + recNo
-                    + " does not exist.");
+                    + " is deleted");
         }
         
-        long fileptr = moveTo(recNo);
-        return fileptr;
+        return slotPosition(slot);
     }
 
     /**
@@ -449,22 +1861,342 @@ public class Data implements DB {
      * @return the file pointer to the location of the start of the requested
      *          record within the data file.
      */    
-    protected synchronized long findUndeletedRecord(int recNo) throws
+    protected long findUndeletedRecord(int recNo) throws
             RecordNotFoundException {        
-        long fileptr = 0;
+        long fileptr = findRecord(recNo);
 
         try {
-            db.seek(findRecord(recNo));
-            if (db.readByte() == DELETED) {
+            if (store.readByte(fileptr) == DELETED) {
                 throw new RecordNotFoundException("Record " + recNo
                         + " is deleted");
             }
-            fileptr = db.getFilePointer();
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
 
-        return fileptr;
+        return fileptr + 1; //Skip the deleted flag
+    }
+
+    /**
+     * Removes the lock on a record and grants it to the first request in the
+     * queue for the record that has not been cancelled, if there is one,
+     * under a new cookie. The caller must hold this object's monitor and
+     * must complete the returned request with the cookie after releasing it.
+     *
+     * @param key the <code>Integer</code> record number.
+     *
+     * @return the request that has been granted the lock, or
+     *          <code>null</code> if the record is now unlocked.
+     */
+    protected CompletableFuture handOffLock(Integer key) {
+        LinkedList queue = (LinkedList) lockQueues.get(key);
+
+        lockedRecords.remove(key);
+        leases.remove(key);
+        while ((queue != null) && !queue.isEmpty()) {
+            LockRequest next = (LockRequest) queue.removeFirst();
+            waitingLocks--;
+            if (!next.isDone()) {
+                if (queue.isEmpty()) {
+                    lockQueues.remove(key);
+                }
+                grantLock(key, next);
+                return next;
+            }
+        }
+        lockQueues.remove(key);
+
+        return null;
+    }
+
+    /**
+     * Completes a lock request that has been granted the lock by
+     * {@link #handOffLock handOffLock}. This must be done after releasing
+     * this object's monitor as completing the request runs the actions that
+     * were waiting for the lock. If the request was cancelled in the meantime
+     * the lock is passed on again.
+     *
+     * @param recNo the record number of the record.
+     * @param next the request granted the lock, or <code>null</code>.
+     * @param cookie the cookie the request was granted the lock with.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     * @throws SecurityException if the lock has been passed on already.
+     */
+    protected void completeHandOff(int recNo, CompletableFuture next,
+            Long cookie) throws RecordNotFoundException, SecurityException {
+        if ((next != null) && !next.complete(cookie)) {
+            unlock(recNo, cookie.longValue());
+        }
+    }
+
+    /**
+     * Locks a record for a request, giving it a lease if the request has a
+     * lease time. The caller must hold this object's monitor and the record
+     * must not be locked.
+     *
+     * @param key the <code>Integer</code> record number.
+     * @param request the request being granted the lock.
+     *
+     * @return the <code>Long</code> cookie the record is locked with.
+     */
+    protected Long grantLock(Integer key, LockRequest request) {
+        Long cookie = new Long(cookieGenerator.nextLong());
+
+        lockedRecords.put(key, cookie);
+        if (request.leaseTime != NO_LEASE) {
+            LockLease lease = new LockLease(key.intValue(),
+                    cookie.longValue(), request.leaseTime);
+            leases.put(key, lease);
+            scheduleExpiry(lease, request.leaseTime);
+        }
+
+        return cookie;
+    }
+
+    /**
+     * Arranges for a lease to be checked by the lease reaper thread once the
+     * given time has passed. The caller must hold this object's monitor.
+     *
+     * @param lease the lease.
+     * @param delay the time in milliseconds until the lease is due to
+     *          expire.
+     */
+    protected void scheduleExpiry(final LockLease lease, long delay) {
+        if (leaseReaper == null) {
+            leaseReaper = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "LeaseReaper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        leaseReaper.schedule(new Runnable() {
+            public void run() {
+                expireLease(lease);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases the lock held under a lease if the lease has expired, passing
+     * it to the next request waiting for the record. If the lease has been
+     * renewed it is checked again when it is next due to expire, and if the
+     * record has been unlocked already nothing is done.
+     *
+     * @param lease the lease.
+     */
+    protected void expireLease(LockLease lease) {
+        int recNo = lease.getRecNo();
+        Integer key = new Integer(recNo);
+        CompletableFuture next;
+        Long nextCookie = null;
+
+        synchronized (this) {
+            if (leases.get(key) != lease) {
+                return; //Unlocked, or locked again under a new lease
+            }
+            long remaining = lease.getRemaining();
+            if (remaining > 0) {
+                scheduleExpiry(lease, remaining); //Renewed since scheduled
+                return;
+            }
+            next = handOffLock(key);
+            if (next != null) {
+                nextCookie = (Long) lockedRecords.get(key);
+            }
+        }
+
+        try {
+            completeHandOff(recNo, next, nextCookie);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex); // Should never happen
+        }
+    }
+
+    /**
+     * Removes a cancelled request from the queue of requests waiting to lock
+     * a record.
+     *
+     * @param key the <code>Integer</code> record number.
+     * @param request the cancelled request.
+     */
+    protected synchronized void removeLockRequest(Integer key,
+            CompletableFuture request) {
+        LinkedList queue = (LinkedList) lockQueues.get(key);
+
+        if ((queue != null) && queue.remove(request)) {
+            waitingLocks--;
+            if (queue.isEmpty()) {
+                lockQueues.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lock requests waiting for a record to be
+     * unlocked.
+     *
+     * @param recNo the record number of the record.
+     *
+     * @return the length of the queue for the record.
+     */
+    public synchronized int getLockQueueLength(int recNo) {
+        LinkedList queue = (LinkedList) lockQueues.get(new Integer(recNo));
+        return (queue == null ? 0 : queue.size());
+    }
+
+    /**
+     * Returns the number of lock requests waiting for any record to be
+     * unlocked.
+     *
+     * @return the total length of the lock queues.
+     */
+    public synchronized int getWaitingLocks() {
+        return waitingLocks;
+    }
+
+    /**
+     * Returns the greatest number of lock requests that have waited for the
+     * same record at the same time since the database was opened.
+     *
+     * @return the longest lock queue seen.
+     */
+    public synchronized int getMaxLockQueueLength() {
+        return maxLockQueueLength;
+    }
+
+    /**
+     * Gives up a lock request made by {@link #lockAsync lockAsync} that is no
+     * longer wanted, cancelling it if it is still waiting or unlocking the
+     * record if the lock has already been granted.
+     *
+     * @param recNo the record number of the record.
+     * @param request the lock request.
+     */
+    protected void abandonLock(int recNo, CompletableFuture request) {
+        if (request.cancel(false) || request.isCompletedExceptionally()) {
+            return;
+        }
+        try {
+            unlock(recNo, ((Long) request.join()).longValue());
+        } catch (RecordNotFoundException ex) {
+            //The record has been deleted so there is no lock to release
+        } catch (SecurityException ex) {
+            throw new RuntimeException(ex); // Should never happen
+        }
+    }
+
+    /**
+     * A task that searches a range of slots of the data file for
+     * {@link #scanAll scanAll}, dividing it into two tasks that run in
+     * parallel while it is longer than {@link #PARALLEL_CHUNK PARALLEL_CHUNK}
+     * slots. Its result is the <code>int[]</code> of matching record numbers
+     * in order of record number: each range of slots is sorted by
+     * {@link #scanSlots scanSlots}, and the results of the two halves of a
+     * task are merged, so the ranges are merged pairwise up the tree of
+     * tasks.
+     */
+    protected class ScanTask extends RecursiveTask {
+
+        /**
+         * The condition the records must match.
+         */
+        protected final RecordFilter filter;
+
+        /**
+         * The first slot to be read.
+         */
+        protected final int from;
+
+        /**
+         * The slot after the last slot to be read.
+         */
+        protected final int to;
+
+        /**
+         * Creates a task that searches a range of slots.
+         *
+         * @param filter the condition the records must match.
+         * @param from the first slot to be read.
+         * @param to the slot after the last slot to be read.
+         */
+        protected ScanTask(RecordFilter filter, int from, int to) {
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Searches the range of slots, or the two halves of it in parallel
+         * and merges their results.
+         *
+         * @return an array of record numbers that match the filter.
+         */
+        protected Object compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                return scanSlots(filter, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            ScanTask low = new ScanTask(filter, from, middle);
+            ScanTask high = new ScanTask(filter, middle, to);
+            low.fork();
+            int[] highResults = (int[]) high.compute();
+            int[] lowResults = (int[]) low.join();
+
+            return merge(lowResults, highResults);
+        }
+
+        /**
+         * Merges two arrays of record numbers that are each in ascending
+         * order. A record is only ever in one slot while the slots are
+         * scanned, so no number is in both.
+         *
+         * @param a the first array.
+         * @param b the second array.
+         *
+         * @return an array holding every number in either array, in
+         *          ascending order.
+         */
+        protected int[] merge(int[] a, int[] b) {
+            int[] results = new int[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+
+            while ((i < a.length) && (j < b.length)) {
+                results[k++] = (a[i] < b[j] ? a[i++] : b[j++]);
+            }
+            System.arraycopy(a, i, results, k, a.length - i);
+            System.arraycopy(b, j, results, k + a.length - i, b.length - j);
+            return results;
+        }
+    }
+
+    /**
+     * A request for the lock on a record, completed with the
+     * <code>Long</code> cookie when the lock is granted.
+     */
+    protected static class LockRequest extends CompletableFuture {
+
+        /**
+         * The lease time the lock is to be granted with, or
+         * {@link Data#NO_LEASE NO_LEASE}.
+         */
+        protected final long leaseTime;
+
+        /**
+         * Creates a request for a lock.
+         *
+         * @param leaseTime the lease time the lock is to be granted with.
+         */
+        protected LockRequest(long leaseTime) {
+            this.leaseTime = leaseTime;
+        }
     }
 
     /**
@@ -496,49 +2228,210 @@ public class Data implements DB {
     }
     
     /**
-     * Writes the data given as the argument to the current location in
-     * the data file.
-     * The file pointer must be positioned just after the deleted flag
-     * of the record in question.
+     * Writes a whole record, marking it as valid, and notifies the listeners.
+     * The lock for the record is acquired while it is written. If the record
+     * has no slot a slot is appended to the file for it, in which case the
+     * caller must hold the allocation lock.
+     *
+     * @param recNo the record number of the record to be written, which may
+     *          be one greater than the number of records to append a record.
+     * @param data the data to be written to the record.
+     *
+     * @throws IOException if there is an error writing to the file.
+     */
+    protected final void writeRecord(int recNo, String[] data)
+            throws IOException {
+        Lock lock = getStripe(recNo).writeLock();
+
+        lock.lock();
+        try {
+            if (recordMap.getSlot(recNo) == 0) {
+                recordMap.append(recNo);
+            }
+            long fileptr = moveTo(recNo);
+            fireRecordWritten(recNo, write(fileptr, data));
+            newVersion(recNo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current version of a record. The caller must hold either
+     * the read or write lock for the record.
      *
+     * @param recNo the record number of the record.
+     *
+     * @return the version of the record.
+     */
+    protected long getVersion(int recNo) {
+        Long version = (Long) versions.get(new Integer(recNo));
+
+        return (version == null ? openVersion : version.longValue());
+    }
+
+    /**
+     * Gives a record that has just been written or deleted a new version.
+     * The caller must hold the write lock for the record.
+     *
+     * @param recNo the record number of the record.
+     *
+     * @return the new version of the record.
+     */
+    protected long newVersion(int recNo) {
+        long version = versionClock.incrementAndGet();
+
+        versions.put(new Integer(recNo), new Long(version));
+        return version;
+    }
+
+    /**
+     * Writes the data given as the argument to the specified location in
+     * the data file, marking the record as valid. The whole record including
+     * its deleted flag is written with a single write to the store, so that
+     * a {@link LoggedRecordStore LoggedRecordStore} logs it as one change.
+     * The file pointer must point to the deleted flag of the record
+     * in question and the caller must hold the write lock for the record.
+     *
+     * @param fileptr the location in the data file of the record.
      * @param data the data to be written to the record.
      *
      * @throws IOException if there is an error writing to the file.
+     *
+     * @return the values as they will be read back from the record, which
+     *          differ from the data where a value is too long for its field
+     *          or cannot be encoded.
      */    
-    protected final synchronized void write(final String[] data) throws
-            IOException {
-        int i = 0;
-        Iterator itr = schema.values().iterator();
+    protected final String[] write(long fileptr, final String[] data)
+            throws IOException {
+        byte[] recordBytes = new byte[recordLength];
+        String[] written = encode(data, recordBytes, 0);
 
-        while (itr.hasNext()) {
-            Integer value = (Integer) itr.next();
-            int fieldLength = value.intValue();
-            byte[] fieldBytes = new byte[fieldLength];
-            byte[] dataBytes = data[i++].getBytes(ENCODING);
-            for (int j = 0; j < dataBytes.length; j++) {
-                fieldBytes[j] = dataBytes[j];
+        store.write(fileptr, recordBytes);
+        return written;
+    }
+
+    /**
+     * Encodes the data given as the argument into a record marked as valid
+     * at the specified offset of a byte array, in the format of the data
+     * file. The bytes of the record must be zero on entry.
+     *
+     * @param data the data to be encoded.
+     * @param bytes the array to encode the record into.
+     * @param offset the offset of the start of the record in the array.
+     *
+     * @throws UnsupportedEncodingException if the character encoding is not
+     *          supported.
+     *
+     * @return the values as they will be read back from the record, which
+     *          differ from the data where a value is too long for its field
+     *          or cannot be encoded.
+     */
+    protected final String[] encode(String[] data, byte[] bytes, int offset)
+            throws UnsupportedEncodingException {
+        String[] written = new String[fieldCount];
+
+        bytes[offset] = VALID;
+
+        for (int i = 0; i < fieldCount; i++) {
+            byte[] dataBytes = data[i].getBytes(ENCODING);
+            int length = Math.min(dataBytes.length, fieldLengths[i]);
+            for (int j = 0; j < length; j++) {
+                if (dataBytes[j] == 0) {
+                    length = j; //Value will be read back to the null byte
+                    break;
+                }
+            }
+            System.arraycopy(dataBytes, 0, bytes, offset + fieldOffsets[i],
+                    length);
+            written[i] = new String(dataBytes, 0, length, ENCODING);
+        }
+
+        return written;
+    }
+
+    /**
+     * Returns <code>true</code> if the record in the given buffer matches the
+     * specified {@link #find find} criteria.
+     *
+     * @param buffer the buffer holding the record.
+     * @param criteria the criteria to be matched.
+     *
+     * @return <code>true</code> if every non-null criterion is the start of
+     *          the corresponding field value.
+     */
+    protected boolean matches(RecordBuffer buffer, String[] criteria) {
+        for (int i = 0; i < fieldCount; i++) {
+            
+            /* On first non-match the record does not match */
+            if ((criteria[i] != null)
+                    && !buffer.fieldStartsWith(i, criteria[i])) {
+                return false;
             }
-            db.write(fieldBytes);
+        }
+
+        /* All criteria must have matched */
+        return true;
+    }
+
+    /**
+     * Notifies the registered listeners that a record has been written.
+     * The caller must hold the write lock for the record.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields.
+     */
+    protected void fireRecordWritten(int recNo, String[] data) {
+        RecordListener[] tmp = listeners;
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i].recordWritten(recNo, data);
+        }
+    }
+
+    /**
+     * Notifies the registered listeners that a record has been deleted.
+     * The caller must hold the write lock for the record.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    protected void fireRecordDeleted(int recNo) {
+        RecordListener[] tmp = listeners;
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i].recordDeleted(recNo);
         }
     }
 
+    /**
+     * Returns the read-write lock that guards access to the specified record.
+     *
+     * @param recNo the record number of the record to be accessed.
+     *
+     * @return the lock for the record.
+     */
+    protected final ReadWriteLock getStripe(int recNo) {
+        return stripes[recNo & (LOCK_STRIPES - 1)];
+    }
+
     /**
      * Reads the data schema from the file header.
+     * The file pointer must be positioned at the start of the schema.
+     *
+     * @param file the data file to read the schema from.
      *
      * @throws IOException if there is an error reading the file.
      *
      * @return a Map where the keys are the field names and the values are the
      *          field lengths in bytes.
      */    
-    private Map loadSchema() throws IOException {
+    private Map loadSchema(RandomAccessFile file) throws IOException {
         Map map = new LinkedHashMap();
 
         for (int i = 0; i < fieldCount; i++) {
-            int lengthOfFieldName = db.readByte();
+            int lengthOfFieldName = file.readByte();
             byte[] fieldNameBytes = new byte[lengthOfFieldName];
-            db.readFully(fieldNameBytes);
+            file.readFully(fieldNameBytes);
             String fieldName = new String(fieldNameBytes, ENCODING);
-            int fieldLength = db.readByte();
+            int fieldLength = file.readByte();
             map.put(fieldName, new Integer(fieldLength));
         }
 
@@ -563,26 +2456,34 @@ public class Data implements DB {
     }
 
     /**
-     * Returns the number of deleted records in the data file.
+     * Calculates the offset and length of each field within a record from
+     * the schema. The first field follows the 1 byte deleted flag.
+     */
+    private void loadFieldLayout() {
+        int offset = 1;
+        int i = 0;
+        Iterator itr = schema.values().iterator();
+
+        while (itr.hasNext()) {
+            Integer value = (Integer) itr.next();
+            fieldOffsets[i] = offset;
+            fieldLengths[i] = value.intValue();
+            offset += fieldLengths[i];
+            i++;
+        }
+    }
+
+    /**
+     * Adds the numbers of the deleted records in the data file to the set of
+     * free records. This is the only time the deleted flags are scanned.
      *
      * @throws IOException if there is an error reading the file.
-     *
-     * @return the number of deleted records in the data file.
      */    
-    private int countDeletedRecords() throws IOException {
-        int numDeleted = 0;
-
+    private void loadFreeRecords() throws IOException {
         for (int recNo = 1; recNo <= numRecords; recNo++) {
-            try {
-                db.seek(findRecord(recNo));
-                if (db.readByte() == DELETED) {
-                    numDeleted++;
-                }
-            } catch (RecordNotFoundException ex) {
-                break;
+            if (store.readByte(moveTo(recNo)) == DELETED) {
+                freeRecords.add(new Integer(recNo));
             }
         }
-
-        return numDeleted;
     }
 }
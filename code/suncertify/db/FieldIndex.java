@@ -0,0 +1,164 @@
+/*
+ * FieldIndex.java
+ *
+ * Created on 17 October 2026, 06:24
+ */
+
+package suncertify.db;
+
+import java.util.*;
+
+/**
+ * An in-memory index of the values of one field of the records in a
+ * {@link Data Data} object.
+ * <p>
+ * The index maps the trimmed value of the field to the set of numbers of the
+ * undeleted records that have that value, so records whose field exactly
+ * matches a value can be found without reading the data file. It is kept up
+ * to date by registering it as a {@link RecordListener RecordListener} of
+ * the <code>Data</code> object.
+ */
+public class FieldIndex implements RecordListener {
+
+    /**
+     * The number of the field that is indexed.
+     */
+    protected final int field;
+
+    /**
+     * A map where the keys are field values and the values are sorted sets of
+     * the record numbers having that value.
+     */
+    protected final Map index;
+
+    /**
+     * A map where the keys are record numbers and the values are the key
+     * under which the record is currently indexed.
+     */
+    protected final Map keys;
+
+    /**
+     * Creates an empty index of the specified field.
+     *
+     * @param field the number of the field to be indexed.
+     */
+    public FieldIndex(int field) {
+        this(field, new HashMap());
+    }
+
+    /**
+     * Creates an empty index of the specified field using the given map to
+     * hold the index.
+     *
+     * @param field the number of the field to be indexed.
+     * @param index an empty map to hold the index.
+     */
+    protected FieldIndex(int field, Map index) {
+        this.field = field;
+        this.index = index;
+        keys = new HashMap();
+    }
+
+    /**
+     * Returns the number of the field that is indexed.
+     *
+     * @return the field number.
+     */
+    public int getField() {
+        return field;
+    }
+
+    /**
+     * Adds a record to the index or moves it to the key for its new value.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields.
+     */
+    public synchronized void recordWritten(int recNo, String[] data) {
+        Integer record = new Integer(recNo);
+        remove(record);
+        String key = getKey(data[field]);
+        Set records = (Set) index.get(key);
+        if (records == null) {
+            records = new TreeSet();
+            index.put(key, records);
+        }
+        records.add(record);
+        keys.put(record, key);
+    }
+
+    /**
+     * Removes a record from the index.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    public synchronized void recordDeleted(int recNo) {
+        remove(new Integer(recNo));
+    }
+
+    /**
+     * Asks for each of the records appended in bulk, to add them to the
+     * index.
+     *
+     * @param first the record number of the first record appended.
+     * @param last the record number of the last record appended.
+     *
+     * @return <code>true</code>.
+     */
+    public boolean recordsAppended(int first, int last) {
+        return true;
+    }
+
+    /**
+     * Returns the numbers of the records whose field, once trimmed, exactly
+     * matches the given value. The value itself is not trimmed, so a value
+     * with surrounding whitespace matches no records.
+     *
+     * @param value the value to look up.
+     *
+     * @return a new sorted set of <code>Integer</code> record numbers which
+     *          the caller is free to modify.
+     */
+    public synchronized SortedSet get(String value) {
+        Set records = (Set) index.get(value);
+        return (records == null ? new TreeSet() : new TreeSet(records));
+    }
+
+    /**
+     * Returns the numbers of all the records in the index, i.e. every
+     * undeleted record.
+     *
+     * @return a new sorted set of <code>Integer</code> record numbers which
+     *          the caller is free to modify.
+     */
+    public synchronized SortedSet getAll() {
+        return new TreeSet(keys.keySet());
+    }
+
+    /**
+     * Returns the key under which a field value is indexed.
+     *
+     * @param value the field value.
+     *
+     * @return the index key for the value.
+     */
+    protected String getKey(String value) {
+        return value.trim();
+    }
+
+    /**
+     * Removes a record from the index if it is present.
+     *
+     * @param record the record number.
+     */
+    protected void remove(Integer record) {
+        Object key = keys.remove(record);
+        if (key != null) {
+            Set records = (Set) index.get(key);
+            records.remove(record);
+            if (records.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * FileRecordStore.java
+ *
+ * Created on 17 October 2026, 06:21
+ */
+
+package suncertify.db;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link RecordStore RecordStore} implementation that accesses the data file
+ * with positional reads and writes on its <code>FileChannel</code>.
+ * <p>
+ * Positional I/O does not use or change the channel's file pointer, so any
+ * number of threads can read and write different parts of the file at the
+ * same time without synchronizing on this object.
+ */
+public class FileRecordStore implements RecordStore {
+
+    /**
+     * The database file.
+     */
+    protected final RandomAccessFile file;
+
+    /**
+     * The channel used for positional access to the database file.
+     */
+    protected final FileChannel channel;
+
+    /**
+     * Creates a store that accesses the given file.
+     *
+     * @param file the open data file.
+     */
+    public FileRecordStore(RandomAccessFile file) {
+        this.file = file;
+        channel = file.getChannel();
+    }
+
+    /**
+     * Fills the given buffer with the bytes starting at the specified
+     * position in the file.
+     *
+     * @param position the offset in the file to read from.
+     * @param buffer the buffer to be filled.
+     *
+     * @throws IOException if there is an error reading the file or the end
+     *          of the file is reached before the buffer is filled.
+     */
+    public void read(long position, byte[] buffer) throws IOException {
+        ByteBuffer dst = ByteBuffer.wrap(buffer);
+
+        while (dst.hasRemaining()) {
+            int count = channel.read(dst, position + dst.position());
+            if (count < 0) {
+                throw new EOFException("Offset " + position
+                        + " is beyond the end of the file");
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of the given buffer to the file starting at the
+     * specified position, extending the file if necessary.
+     *
+     * @param position the offset in the file to write to.
+     * @param buffer the bytes to be written.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void write(long position, byte[] buffer) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(buffer);
+
+        while (src.hasRemaining()) {
+            channel.write(src, position + src.position());
+        }
+    }
+
+    /**
+     * Reads a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to read from.
+     *
+     * @throws IOException if there is an error reading the file.
+     *
+     * @return the byte at the specified position.
+     */
+    public byte readByte(long position) throws IOException {
+        byte[] buffer = new byte[1];
+        read(position, buffer);
+        return buffer[0];
+    }
+
+    /**
+     * Writes a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to write to.
+     * @param value the byte to be written.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void writeByte(long position, byte value) throws IOException {
+        write(position, new byte[] { value });
+    }
+
+    /**
+     * Returns the current length of the file in bytes.
+     *
+     * @throws IOException if there is an error accessing the file.
+     *
+     * @return the length of the file.
+     */
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Shortens the file to the given length, discarding the bytes beyond it.
+     *
+     * @param length the new length of the file.
+     *
+     * @throws IOException if there is an error truncating the file.
+     */
+    public void truncate(long length) throws IOException {
+        channel.truncate(length);
+    }
+
+    /**
+     * Forces every write made so far to the storage device.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException if there is an error closing the file.
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+}
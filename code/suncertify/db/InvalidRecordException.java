@@ -0,0 +1,34 @@
+/*
+ * InvalidRecordException.java
+ *
+ * Created on 17 October 2026, 07:10
+ */
+
+package suncertify.db;
+
+/**
+ * This exception is thrown by a {@link RecordImporter RecordImporter} if a
+ * record being imported does not fit the schema of the data file.
+ *
+ * @see RecordImporter
+ */
+public class InvalidRecordException extends Exception {
+    
+    /**
+     * Creates a new instance of <code>InvalidRecordException</code> without
+     * detail message.
+     */
+    public InvalidRecordException() {
+        super();
+    }
+        
+    /**
+     * Constructs an instance of <code>InvalidRecordException</code> with the
+     * specified detail message.
+     *
+     * @param msg the detail message.
+     */
+    public InvalidRecordException(String msg) {
+        super(msg);
+    }
+}
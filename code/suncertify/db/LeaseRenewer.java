@@ -0,0 +1,165 @@
+/*
+ * LeaseRenewer.java
+ *
+ * Created on 17 October 2026, 07:35
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renews the leases on the locks held by a network client, so that the
+ * server keeps them for as long as the client is alive and holds them.
+ * <p>
+ * The network data access objects {@link #start start} renewing a lock as
+ * soon as it is granted and {@link #stop stop} before it is unlocked or the
+ * record is deleted. Each lock is renewed with
+ * {@link BookingDB#renew renew} at a fixed interval on a single daemon
+ * thread, which is only started when the first lock is taken. Renewing
+ * stops by itself if the server refuses a renewal, because the lease has
+ * already expired or the record has gone, or cannot be reached.
+ */
+public class LeaseRenewer {
+
+    /**
+     * The data access object the leases are renewed through.
+     */
+    protected final BookingDB db;
+
+    /**
+     * The time in milliseconds between renewals of each lease.
+     */
+    protected final long interval;
+
+    /**
+     * The renewals being made, keyed by <code>Integer</code> record number.
+     */
+    protected final Map renewals;
+
+    /**
+     * The thread the renewals are made on, or <code>null</code> if no lock
+     * has been taken yet.
+     */
+    protected ScheduledExecutorService timer;
+
+    /**
+     * Creates a renewer that renews leases through the given data access
+     * object.
+     *
+     * @param db the data access object to renew the leases through.
+     * @param interval the time in milliseconds between renewals of each
+     *          lease.
+     */
+    public LeaseRenewer(BookingDB db, long interval) {
+        this.db = db;
+        this.interval = interval;
+        renewals = new HashMap();
+    }
+
+    /**
+     * Starts renewing the lease on a lock that has just been granted.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie the record was locked with.
+     */
+    public synchronized void start(int recNo, long cookie) {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "LeaseRenewer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        Renewal renewal = new Renewal(recNo, cookie);
+        Renewal previous = (Renewal) renewals.put(new Integer(recNo),
+                renewal);
+        if (previous != null) {
+            previous.future.cancel(false);
+        }
+        renewal.future = timer.scheduleWithFixedDelay(renewal, interval,
+                interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops renewing the lease on a lock, which is about to be released.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie the record was locked with.
+     */
+    public synchronized void stop(int recNo, long cookie) {
+        Integer key = new Integer(recNo);
+        Renewal renewal = (Renewal) renewals.get(key);
+
+        if ((renewal != null) && (renewal.cookie == cookie)) {
+            renewals.remove(key);
+            renewal.future.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the number of leases being renewed.
+     *
+     * @return the number of locks held.
+     */
+    public synchronized int getLeaseCount() {
+        return renewals.size();
+    }
+
+    /**
+     * The repeated renewal of the lease on one lock.
+     */
+    protected class Renewal implements Runnable {
+
+        /**
+         * The record number of the locked record.
+         */
+        protected final int recNo;
+
+        /**
+         * The cookie the record was locked with.
+         */
+        protected final long cookie;
+
+        /**
+         * The scheduled renewals, set as soon as they are scheduled.
+         */
+        protected ScheduledFuture future;
+
+        /**
+         * Creates the renewal of the lease on a lock.
+         *
+         * @param recNo the record number of the locked record.
+         * @param cookie the cookie the record was locked with.
+         */
+        protected Renewal(int recNo, long cookie) {
+            this.recNo = recNo;
+            this.cookie = cookie;
+        }
+
+        /**
+         * Renews the lease, stopping if the server refuses or cannot be
+         * reached.
+         */
+        public void run() {
+            try {
+                db.renew(recNo, cookie);
+            } catch (RecordNotFoundException ex) {
+                stop(recNo, cookie); //The record has been deleted
+            } catch (SecurityException ex) {
+                stop(recNo, cookie); //The lease has expired
+            } catch (RuntimeException ex) {
+                stop(recNo, cookie); //Lost connection to the server
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * LockLease.java
+ *
+ * Created on 17 October 2026, 06:55
+ */
+
+package suncertify.db;
+
+/**
+ * A lease on the lock of a record, granted by {@link Data#lock(int, long)
+ * Data.lock} when a lease time is given.
+ * <p>
+ * The lock is released automatically once the lease time has passed since
+ * the lock was granted or since the lease was last {@link Data#renew
+ * renewed}, so that a client that dies while holding the lock does not keep
+ * other clients waiting for ever. Renewing a lease only moves its expiry
+ * time; the {@link Data Data} object checks whether the lease has really
+ * expired when the time it was scheduled to expire comes round.
+ * <p>
+ * Leases are guarded by the monitor of the <code>Data</code> object that
+ * granted them.
+ */
+public class LockLease {
+
+    /**
+     * The record number of the locked record.
+     */
+    protected final int recNo;
+
+    /**
+     * The cookie the record is locked with.
+     */
+    protected final long cookie;
+
+    /**
+     * The time in milliseconds the lease lasts after it is granted or
+     * renewed.
+     */
+    protected final long leaseTime;
+
+    /**
+     * The time the lease expires, as returned by {@link #now now}.
+     */
+    protected long expires;
+
+    /**
+     * Creates a lease on a lock that has just been granted.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie the record is locked with.
+     * @param leaseTime the time in milliseconds the lease lasts.
+     */
+    protected LockLease(int recNo, long cookie, long leaseTime) {
+        this.recNo = recNo;
+        this.cookie = cookie;
+        this.leaseTime = leaseTime;
+        renew();
+    }
+
+    /**
+     * Returns the record number of the locked record.
+     *
+     * @return the record number.
+     */
+    public int getRecNo() {
+        return recNo;
+    }
+
+    /**
+     * Returns the cookie the record is locked with.
+     *
+     * @return the lock cookie.
+     */
+    public long getCookie() {
+        return cookie;
+    }
+
+    /**
+     * Returns the time the lease lasts after it is granted or renewed.
+     *
+     * @return the lease time in milliseconds.
+     */
+    public long getLeaseTime() {
+        return leaseTime;
+    }
+
+    /**
+     * Returns the number of milliseconds until the lease expires.
+     *
+     * @return the time remaining, which is not positive if the lease has
+     *          expired.
+     */
+    public long getRemaining() {
+        return expires - now();
+    }
+
+    /**
+     * Extends the lease so that it expires the lease time from now.
+     */
+    protected void renew() {
+        expires = now() + leaseTime;
+    }
+
+    /**
+     * Returns the current time in milliseconds from a clock that is not
+     * affected by changes to the system time.
+     *
+     * @return the current time.
+     */
+    protected static long now() {
+        return System.nanoTime() / 1000000;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * LockTimeoutException.java
+ *
+ * Created on 17 October 2026, 07:35
+ */
+
+package suncertify.db;
+
+/**
+ * LockTimeoutException is thrown if a record cannot be locked within the
+ * time the caller is prepared to wait.
+ *
+ * @see Data#tryLock(int, long, long)
+ */
+public class LockTimeoutException extends Exception {
+    
+    /**
+     * Creates a new instance of <code>LockTimeoutException</code> without
+     * detail message.
+     */
+    public LockTimeoutException() {
+        super();
+    }
+        
+    /**
+     * Constructs an instance of <code>LockTimeoutException</code> with the
+     * specified detail message.
+     *
+     * @param msg the detail message.
+     */
+    public LockTimeoutException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * LoggedRecordStore.java
+ *
+ * Created on 17 October 2026, 07:03
+ */
+
+package suncertify.db;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link RecordStore RecordStore} implementation that makes the writes to
+ * another store durable by first committing them to a
+ * {@link WriteAheadLog WriteAheadLog}.
+ * <p>
+ * A write is appended to the log and committed, which forces the log to the
+ * storage device together with any other writes committed at the same time,
+ * and only then made to the data file. The data file itself is not forced
+ * after each write; its changes reach the storage device in the background
+ * and are only forced at a checkpoint, once the log has grown to
+ * {@link #CHECKPOINT_SIZE CHECKPOINT_SIZE} bytes, after which the log is
+ * emptied. If the system fails before a checkpoint the writes in the log are
+ * applied to the data file again when it is next opened, repairing any
+ * record that was only partly written.
+ * <p>
+ * A write that fails once it has been committed is already in the log, so
+ * it will be made when the log is replayed whatever the caller is told. The
+ * store therefore marks the data file as behind the log and at once takes a
+ * checkpoint, which first replays the whole log into the data file. If that
+ * succeeds the write has been made after all; if not the error is thrown
+ * and the next checkpoint, or the next time the file is opened, tries
+ * again. A log that could not be written is likewise emptied by a
+ * checkpoint, which lets writes be committed to it again.
+ * <p>
+ * Reads go straight to the underlying store, as the data file is written as
+ * soon as a write has been committed.
+ */
+public class LoggedRecordStore implements RecordStore {
+
+    /**
+     * The length of the log at which the data file is forced and the log
+     * emptied.
+     */
+    public static final long CHECKPOINT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The store the writes are made to once they have been logged.
+     */
+    protected final RecordStore store;
+
+    /**
+     * The log the writes are committed to.
+     */
+    protected final WriteAheadLog log;
+
+    /**
+     * The lock held for reading while a write is logged and made, and for
+     * writing while a checkpoint empties the log.
+     */
+    protected final ReadWriteLock checkpointLock;
+
+    /**
+     * Flag to indicate that a write committed to the log could not be made
+     * to the data file, which must be brought up to date by replaying the
+     * log before the log is emptied.
+     */
+    protected volatile boolean behind;
+
+    /**
+     * Creates a store that logs the writes to another store. Any writes left
+     * in the log when the data file was last used are first applied to the
+     * store, which is then forced, and the log emptied.
+     *
+     * @param store the store to write to.
+     * @param log the log to commit writes to.
+     *
+     * @throws IOException if there is an error replaying the log.
+     */
+    public LoggedRecordStore(RecordStore store, WriteAheadLog log)
+            throws IOException {
+        this.store = store;
+        this.log = log;
+        checkpointLock = new ReentrantReadWriteLock();
+
+        if (log.replay(store) > 0) {
+            store.force();
+        }
+        log.reset();
+    }
+
+    /**
+     * Fills the given buffer with the bytes starting at the specified
+     * position in the file.
+     *
+     * @param position the offset in the file to read from.
+     * @param buffer the buffer to be filled.
+     *
+     * @throws IOException if there is an error reading the file or the end
+     *          of the file is reached before the buffer is filled.
+     */
+    public void read(long position, byte[] buffer) throws IOException {
+        store.read(position, buffer);
+    }
+
+    /**
+     * Commits a write to the log and then makes it to the file, extending the
+     * file if necessary.
+     *
+     * @param position the offset in the file to write to.
+     * @param buffer the bytes to be written.
+     *
+     * @throws IOException if there is an error writing the log or the file.
+     */
+    public void write(long position, byte[] buffer) throws IOException {
+        writeGroup(new long[] { position }, new byte[][] { buffer });
+    }
+
+    /**
+     * Commits several writes to the log as one group and then makes them to
+     * the file. If the system fails, either every write of the group is
+     * made when the log is replayed or none of them is.
+     *
+     * @param positions the offsets in the file to write to.
+     * @param buffers the bytes to be written at each offset.
+     *
+     * @throws IOException if there is an error writing the log or the file.
+     */
+    public void writeGroup(long[] positions, byte[][] buffers)
+            throws IOException {
+        Lock lock = checkpointLock.readLock();
+        IOException logError = null;
+
+        lock.lock();
+        try {
+            log.commit(log.appendGroup(positions, buffers));
+            try {
+                for (int i = 0; i < positions.length; i++) {
+                    store.write(positions[i], buffers[i]);
+                }
+            } catch (IOException ex) {
+                behind = true; //The write is in the log, so catch up below
+            }
+        } catch (IOException ex) {
+            logError = ex;
+        } finally {
+            lock.unlock();
+        }
+
+        if (logError != null) {
+            try {
+                checkpoint(); //Empty the log so that it can be used again
+            } catch (IOException ex) {
+                //The error writing the log is the one to report
+            }
+            throw logError;
+        }
+        if (behind || (log.size() >= CHECKPOINT_SIZE)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Reads a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to read from.
+     *
+     * @throws IOException if there is an error reading the file.
+     *
+     * @return the byte at the specified position.
+     */
+    public byte readByte(long position) throws IOException {
+        return store.readByte(position);
+    }
+
+    /**
+     * Commits a write of a single byte to the log and then makes it to the
+     * file.
+     *
+     * @param position the offset in the file to write to.
+     * @param value the byte to be written.
+     *
+     * @throws IOException if there is an error writing the log or the file.
+     */
+    public void writeByte(long position, byte value) throws IOException {
+        write(position, new byte[] { value });
+    }
+
+    /**
+     * Returns the current length of the file in bytes.
+     *
+     * @throws IOException if there is an error accessing the file.
+     *
+     * @return the length of the file.
+     */
+    public long length() throws IOException {
+        return store.length();
+    }
+
+    /**
+     * Takes a checkpoint and then shortens the file to the given length,
+     * discarding the bytes beyond it. The log is emptied first so that
+     * replaying it can never write beyond the new end of the file again.
+     * Nothing is truncated if the checkpoint fails.
+     *
+     * @param length the new length of the file.
+     *
+     * @throws IOException if there is an error forcing or truncating the
+     *          file or emptying the log.
+     */
+    public void truncate(long length) throws IOException {
+        Lock lock = checkpointLock.writeLock();
+
+        lock.lock();
+        try {
+            catchUp();
+            log.reset();
+            store.truncate(length);
+            store.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every write made so far to the storage device by taking a
+     * checkpoint.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void force() throws IOException {
+        checkpoint();
+    }
+
+    /**
+     * Takes a checkpoint and closes the log and the underlying file.
+     *
+     * @throws IOException if there is an error closing the file.
+     */
+    public void close() throws IOException {
+        checkpoint();
+        log.close();
+        store.close();
+    }
+
+    /**
+     * Forces the data file to the storage device and empties the log, waiting
+     * for any writes in progress to finish first. Once the data file has been
+     * forced the writes in the log are no longer needed. If a write could not
+     * be made to the data file the log is first replayed into it, and if
+     * that fails the log is kept.
+     *
+     * @throws IOException if there is an error replaying the log, forcing
+     *          the file or emptying the log.
+     */
+    public void checkpoint() throws IOException {
+        Lock lock = checkpointLock.writeLock();
+
+        lock.lock();
+        try {
+            if (log.size() > 0) { //Another thread may have just done it
+                catchUp();
+                log.reset();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Brings the data file up to date with the log if a write could not be
+     * made to it, and forces it to the storage device. The caller must hold
+     * the checkpoint lock for writing.
+     *
+     * @throws IOException if there is an error replaying the log or forcing
+     *          the file.
+     */
+    protected void catchUp() throws IOException {
+        if (behind) {
+            log.replay(store);
+            behind = false;
+        }
+        store.force();
+    }
+
+    /**
+     * Returns whether a write committed to the log has not yet been made to
+     * the data file, which happens only when writing the data file fails.
+     *
+     * @return <code>true</code> if the data file is behind the log.
+     */
+    public boolean isBehind() {
+        return behind;
+    }
+
+    /**
+     * Returns the log the writes are committed to, from which the number of
+     * commits and forces can be obtained.
+     *
+     * @return the write-ahead log.
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * MappedRecordStore.java
+ *
+ * Created on 17 October 2026, 06:21
+ */
+
+package suncertify.db;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link RecordStore RecordStore} implementation that maps the whole data
+ * file into memory with <code>FileChannel.map</code>.
+ * <p>
+ * Reads and writes are simple copies to and from the mapped buffer so no
+ * system call is made per field. When a write extends past the end of the
+ * mapping (i.e. a record is appended) the file is extended and mapped again
+ * with twice its capacity, so that appending records costs a new mapping
+ * only now and then. The store keeps the logical length of the file apart
+ * from the capacity of the mapping, and cuts the file back to its logical
+ * length when it is closed, so the file remains readable by other
+ * applications. The space beyond the logical length is filled with a given
+ * byte, so that a file left padded by a crash can be recognised when it is
+ * opened again.
+ * <p>
+ * Each access works on its own duplicate of the mapped buffer so threads do
+ * not share a buffer position.
+ */
+public class MappedRecordStore implements RecordStore {
+
+    /**
+     * The database file.
+     */
+    protected final RandomAccessFile file;
+
+    /**
+     * The channel used to map the database file.
+     */
+    protected final FileChannel channel;
+
+    /**
+     * The current mapping of the whole file, which may extend beyond its
+     * logical length.
+     */
+    protected volatile MappedByteBuffer buffer;
+
+    /**
+     * The logical length of the file, i.e. the offset just past the last
+     * byte written.
+     */
+    protected volatile long length;
+
+    /**
+     * The byte the file is padded with beyond its logical length.
+     */
+    protected final byte fill;
+
+    /**
+     * Creates a store that maps the given file.
+     *
+     * @param file the open data file.
+     * @param fill the byte the file is padded with beyond its logical length.
+     *
+     * @throws IOException if the file cannot be mapped.
+     */
+    public MappedRecordStore(RandomAccessFile file, byte fill)
+            throws IOException {
+        this.file = file;
+        this.fill = fill;
+        channel = file.getChannel();
+        length = channel.size();
+        buffer = map(length);
+    }
+
+    /**
+     * Fills the given buffer with the bytes starting at the specified
+     * position in the file.
+     *
+     * @param position the offset in the file to read from.
+     * @param buffer the buffer to be filled.
+     *
+     * @throws IOException if the end of the file is reached before the buffer
+     *          is filled.
+     */
+    public void read(long position, byte[] buffer) throws IOException {
+        view(position, buffer.length, false).get(buffer);
+    }
+
+    /**
+     * Writes the contents of the given buffer to the file starting at the
+     * specified position, extending the file and the mapping if necessary.
+     *
+     * @param position the offset in the file to write to.
+     * @param buffer the bytes to be written.
+     *
+     * @throws IOException if the file cannot be extended.
+     */
+    public void write(long position, byte[] buffer) throws IOException {
+        view(position, buffer.length, true).put(buffer);
+    }
+
+    /**
+     * Reads a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to read from.
+     *
+     * @throws IOException if the position is beyond the end of the file.
+     *
+     * @return the byte at the specified position.
+     */
+    public byte readByte(long position) throws IOException {
+        return view(position, 1, false).get();
+    }
+
+    /**
+     * Writes a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to write to.
+     * @param value the byte to be written.
+     *
+     * @throws IOException if the file cannot be extended.
+     */
+    public void writeByte(long position, byte value) throws IOException {
+        view(position, 1, true).put(value);
+    }
+
+    /**
+     * Returns the logical length of the file in bytes, which does not count
+     * the padding beyond the last byte written.
+     *
+     * @return the length of the file.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Shortens the file to the given length, discarding the bytes beyond it,
+     * and maps it again. The caller must make sure that nothing beyond the
+     * new length is accessed meanwhile.
+     *
+     * @param length the new length of the file.
+     *
+     * @throws IOException if there is an error truncating the file.
+     */
+    public synchronized void truncate(long length) throws IOException {
+        buffer.force();
+        channel.truncate(length);
+        buffer = map(length);
+        this.length = length;
+    }
+
+    /**
+     * Forces the mapped contents to the storage device.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void force() throws IOException {
+        buffer.force();
+    }
+
+    /**
+     * Forces the mapped contents to disk, cuts the file back to its logical
+     * length and closes the underlying file.
+     *
+     * @throws IOException if there is an error closing the file.
+     */
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.truncate(length);
+        file.close();
+    }
+
+    /**
+     * Returns a view of the mapping positioned at the given offset, growing
+     * the file first if the region lies beyond its logical length.
+     *
+     * @param position the offset in the file.
+     * @param length the number of bytes that will be accessed.
+     * @param grow <code>true</code> if the file may be extended to cover the
+     *          region.
+     *
+     * @throws IOException if the region lies beyond the end of the file and
+     *          <code>grow</code> is <code>false</code>, or if the file cannot
+     *          be mapped.
+     *
+     * @return a buffer positioned at the requested offset.
+     */
+    protected ByteBuffer view(long position, int length, boolean grow)
+            throws IOException {
+        MappedByteBuffer current = buffer;
+        long end = position + length;
+
+        if (end > this.length) {
+            if (!grow) {
+                throw new EOFException("Offset " + end
+                        + " is beyond the end of the file");
+            }
+            current = grow(end);
+        }
+
+        ByteBuffer view = current.duplicate();
+        view.position((int) position);
+        return view;
+    }
+
+    /**
+     * Extends the logical length of the file to the given offset, mapping
+     * the file again with twice its capacity if the offset lies beyond the
+     * current mapping.
+     *
+     * @param end the offset that must be covered by the file.
+     *
+     * @throws IOException if the file cannot be mapped.
+     *
+     * @return the mapping covering the offset.
+     */
+    protected synchronized MappedByteBuffer grow(long end)
+            throws IOException {
+        int capacity = buffer.capacity();
+
+        /* Another thread may already have grown the mapping */
+        if (end > capacity) {
+            long size = Math.max(end, Math.min(2L * capacity,
+                    Integer.MAX_VALUE));
+            MappedByteBuffer grown = map(size);
+            ByteBuffer padding = grown.duplicate();
+            padding.position(capacity);
+            while (padding.hasRemaining()) {
+                padding.put(fill);
+            }
+            buffer = grown;
+        }
+
+        if (end > length) {
+            length = end;
+        }
+        return buffer;
+    }
+
+    /**
+     * Maps the first <code>size</code> bytes of the file, extending the file
+     * with zero bytes if it is shorter.
+     *
+     * @param size the number of bytes to map.
+     *
+     * @throws IOException if the file cannot be mapped.
+     *
+     * @return the mapping.
+     */
+    private MappedByteBuffer map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Data file is too large to be mapped");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * PrefixIndex.java
+ *
+ * Created on 17 October 2026, 06:25
+ */
+
+package suncertify.db;
+
+import java.util.*;
+
+/**
+ * A {@link FieldIndex FieldIndex} that keeps the field values in sorted order
+ * so that the records whose field starts with a given prefix can be found.
+ * <p>
+ * Values are indexed exactly as they are stored, without trimming, to match
+ * the semantics of {@link DB#find DB.find}. All the values starting with a
+ * prefix lie in a contiguous range of the sorted map, so a lookup costs a
+ * binary search to the start of the range followed by time proportional to
+ * the number of matching records.
+ */
+public class PrefixIndex extends FieldIndex {
+
+    /**
+     * Creates an empty prefix index of the specified field.
+     *
+     * @param field the number of the field to be indexed.
+     */
+    public PrefixIndex(int field) {
+        super(field, new TreeMap());
+    }
+
+    /**
+     * Returns the numbers of the records whose field starts with the given
+     * prefix.
+     *
+     * @param prefix the prefix to look up.
+     *
+     * @return a new sorted set of <code>Integer</code> record numbers which
+     *          the caller is free to modify.
+     */
+    public synchronized SortedSet getPrefix(String prefix) {
+        SortedSet records = new TreeSet();
+        Iterator itr = ((SortedMap) index).tailMap(prefix).entrySet()
+                .iterator();
+
+        while (itr.hasNext()) {
+            Map.Entry entry = (Map.Entry) itr.next();
+            if (!((String) entry.getKey()).startsWith(prefix)) {
+                break; //Past the end of the range
+            }
+            records.addAll((Set) entry.getValue());
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns the key under which a field value is indexed, which is the
+     * value itself.
+     *
+     * @param value the field value.
+     *
+     * @return the index key for the value.
+     */
+    protected String getKey(String value) {
+        return value;
+    }
+}
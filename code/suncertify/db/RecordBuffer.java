@@ -0,0 +1,364 @@
+/*
+ * RecordBuffer.java
+ *
+ * Created on 17 October 2026, 06:27
+ */
+
+package suncertify.db;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A reusable buffer holding the raw bytes of one record of a {@link Data Data}
+ * object, including its deleted flag.
+ * <p>
+ * Fields are only decoded into <code>String</code>s when they are asked for,
+ * and the comparison methods work directly on the bytes, so a search can
+ * test every record in the data file against its criteria without
+ * allocating any objects. A buffer can be loaded with any number of records
+ * in turn using {@link Data#load Data.load} but must not be shared between
+ * threads.
+ * <p>
+ * Field values follow the same rules as {@link Data#read Data.read}: a value
+ * ends at the first null byte in the field, if any, and bytes outside the
+ * US-ASCII range decode to the Unicode replacement character.
+ */
+public class RecordBuffer {
+
+    /**
+     * The character that bytes outside the US-ASCII range decode to.
+     */
+    protected static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * The offset of each field from the start of the record.
+     */
+    protected final int[] offsets;
+
+    /**
+     * The length in bytes of each field.
+     */
+    protected final int[] lengths;
+
+    /**
+     * The raw bytes of the record.
+     */
+    protected final byte[] bytes;
+
+    /**
+     * The fields decoded since the record was loaded, or <code>null</code>
+     * for fields that have not been decoded.
+     */
+    protected final String[] fields;
+
+    /**
+     * The record number of the record currently held, or 0 if none.
+     */
+    protected int recNo;
+
+    /**
+     * Creates an empty buffer for records with the given layout.
+     *
+     * @param offsets the offset of each field from the start of the record.
+     * @param lengths the length in bytes of each field.
+     * @param recordLength the length of a record in bytes.
+     */
+    protected RecordBuffer(int[] offsets, int[] lengths, int recordLength) {
+        this.offsets = offsets;
+        this.lengths = lengths;
+        bytes = new byte[recordLength];
+        fields = new String[offsets.length];
+    }
+
+    /**
+     * Creates an empty buffer for records whose fields have the given
+     * lengths, laid out one after another following the deleted flag as in
+     * the data file.
+     *
+     * @param lengths the length in bytes of each field.
+     */
+    protected RecordBuffer(int[] lengths) {
+        this(getOffsets(lengths), lengths, getRecordLength(lengths));
+    }
+
+    /**
+     * Returns the record number of the record held in this buffer.
+     *
+     * @return the record number, or 0 if no record has been loaded.
+     */
+    public int getRecNo() {
+        return recNo;
+    }
+
+    /**
+     * Returns <code>true</code> if the record held in this buffer is marked
+     * as deleted.
+     *
+     * @return <code>true</code> if the record is deleted.
+     */
+    public boolean isDeleted() {
+        return bytes[0] == Data.DELETED;
+    }
+
+    /**
+     * Returns the number of fields in the record.
+     *
+     * @return the number of fields.
+     */
+    public int getFieldCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the number of characters in a field value, which is the
+     * position of the first null byte in the field or the length of the
+     * field if there is none.
+     *
+     * @param field the field number.
+     *
+     * @return the length of the field value.
+     */
+    public int getLength(int field) {
+        int offset = offsets[field];
+        int length = lengths[field];
+
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] == 0) {
+                return i;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Returns the character at the specified position in a field value.
+     *
+     * @param field the field number.
+     * @param index the position of the character within the field.
+     *
+     * @return the character at the position.
+     */
+    public char charAt(int field, int index) {
+        byte b = bytes[offsets[field] + index];
+        return (b < 0 ? REPLACEMENT : (char) b);
+    }
+
+    /**
+     * Returns the value of a field, decoding it the first time it is
+     * requested.
+     *
+     * @param field the field number.
+     *
+     * @return the field value.
+     */
+    public String getField(int field) {
+        if (fields[field] == null) {
+            try {
+                fields[field] = new String(bytes, offsets[field],
+                        getLength(field), Data.ENCODING);
+            } catch (UnsupportedEncodingException ex) {
+                throw new RuntimeException(ex); //US-ASCII is always supported
+            }
+        }
+
+        return fields[field];
+    }
+
+    /**
+     * Returns all the field values as a new array, in the same form as
+     * {@link Data#read Data.read}.
+     *
+     * @return an array where each element is a field value.
+     */
+    public String[] getFields() {
+        String[] record = new String[fields.length];
+
+        for (int i = 0; i < record.length; i++) {
+            record[i] = getField(i);
+        }
+
+        return record;
+    }
+
+    /**
+     * Returns <code>true</code> if a field value is equal to the given
+     * string.
+     *
+     * @param field the field number.
+     * @param value the string to compare with.
+     *
+     * @return <code>true</code> if the field value equals the string.
+     */
+    public boolean fieldEquals(int field, String value) {
+        return (getLength(field) == value.length())
+                && regionMatches(field, 0, value);
+    }
+
+    /**
+     * Returns <code>true</code> if a field value starts with the given
+     * string.
+     *
+     * @param field the field number.
+     * @param prefix the string to compare with.
+     *
+     * @return <code>true</code> if the field value starts with the string.
+     */
+    public boolean fieldStartsWith(int field, String prefix) {
+        return (getLength(field) >= prefix.length())
+                && regionMatches(field, 0, prefix);
+    }
+
+    /**
+     * Returns <code>true</code> if a field value, with leading and trailing
+     * whitespace removed as by <code>String.trim</code>, is equal to the
+     * given string.
+     *
+     * @param field the field number.
+     * @param value the string to compare with.
+     *
+     * @return <code>true</code> if the trimmed field value equals the string.
+     */
+    public boolean fieldEqualsTrimmed(int field, String value) {
+        int start = trimStart(field);
+        int end = trimEnd(field);
+
+        return ((end - start) == value.length())
+                && regionMatches(field, start, value);
+    }
+
+    /**
+     * Returns the position of the first character of a field value that is
+     * not whitespace.
+     *
+     * @param field the field number.
+     *
+     * @return the start of the trimmed value.
+     */
+    protected int trimStart(int field) {
+        int start = 0;
+        int end = getLength(field);
+
+        while ((start < end) && (charAt(field, start) <= ' ')) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Returns the position following the last character of a field value
+     * that is not whitespace, or {@link #trimStart trimStart} if the value is
+     * all whitespace.
+     *
+     * @param field the field number.
+     *
+     * @return the end of the trimmed value.
+     */
+    protected int trimEnd(int field) {
+        int start = trimStart(field);
+        int end = getLength(field);
+
+        while ((end > start) && (charAt(field, end - 1) <= ' ')) {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Compares the characters of a field starting at the given position with
+     * all the characters of a string. The field must be long enough.
+     *
+     * @param field the field number.
+     * @param start the position in the field to start comparing.
+     * @param value the string to compare with.
+     *
+     * @return <code>true</code> if the characters are equal.
+     */
+    protected boolean regionMatches(int field, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (charAt(field, start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Loads the buffer with the given field values, as if the record had been
+     * read from the data file. Values longer than their field are truncated.
+     *
+     * @param recNo the record number of the record.
+     * @param data the values of the record's fields.
+     */
+    protected void set(int recNo, String[] data) {
+        bytes[0] = Data.VALID;
+        for (int i = 0; i < offsets.length; i++) {
+            byte[] value;
+            try {
+                value = data[i].getBytes(Data.ENCODING);
+            } catch (UnsupportedEncodingException ex) {
+                throw new RuntimeException(ex); //US-ASCII is always supported
+            }
+            int length = Math.min(value.length, lengths[i]);
+            System.arraycopy(value, 0, bytes, offsets[i], length);
+            for (int j = length; j < lengths[i]; j++) {
+                bytes[offsets[i] + j] = 0;
+            }
+        }
+        loaded(recNo);
+    }
+
+    /**
+     * Prepares the buffer to hold a newly loaded record. Called by
+     * <code>Data</code> after the bytes have been read into the buffer.
+     *
+     * @param recNo the record number of the record loaded.
+     */
+    protected void loaded(int recNo) {
+        this.recNo = recNo;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = null;
+        }
+    }
+
+    /**
+     * Returns the offset of each field from the start of a record whose
+     * fields have the given lengths.
+     *
+     * @param lengths the length in bytes of each field.
+     *
+     * @return the offset of each field.
+     */
+    protected static int[] getOffsets(int[] lengths) {
+        int[] offsets = new int[lengths.length];
+        int offset = 1; //Skip the deleted flag
+
+        for (int i = 0; i < lengths.length; i++) {
+            offsets[i] = offset;
+            offset += lengths[i];
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Returns the length in bytes of a record, including its deleted flag,
+     * whose fields have the given lengths.
+     *
+     * @param lengths the length in bytes of each field.
+     *
+     * @return the record length.
+     */
+    protected static int getRecordLength(int[] lengths) {
+        int length = 1;
+
+        for (int i = 0; i < lengths.length; i++) {
+            length += lengths[i];
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * RecordCache.java
+ *
+ * Created on 17 October 2026, 06:33
+ */
+
+package suncertify.db;
+
+import java.util.*;
+
+/**
+ * An in-memory cache of the raw bytes of the records of a {@link Data Data}
+ * object, keyed by record number.
+ * <p>
+ * The cache holds at most a fixed number of records and when it is full the
+ * least recently used record is discarded. A cache created with a capacity
+ * of <code>Integer.MAX_VALUE</code> never discards records, so once every
+ * record has been read the data file is only accessed for writes. The
+ * number of lookups that found the record in the cache and the number that
+ * did not are counted.
+ * <p>
+ * The cache does not know when records change: the owner must
+ * {@link #remove remove} a record whenever it is written or deleted, while
+ * holding the write lock for the record.
+ */
+public class RecordCache {
+
+    /**
+     * The maximum number of records held.
+     */
+    protected final int capacity;
+
+    /**
+     * A map where the keys are <code>Integer</code> record numbers and the
+     * values are the bytes of the records, in order of last access.
+     */
+    protected final Map records;
+
+    /**
+     * The number of lookups that found the record in the cache.
+     */
+    protected long hits;
+
+    /**
+     * The number of lookups that did not find the record in the cache.
+     */
+    protected long misses;
+
+    /**
+     * Creates an empty cache holding at most the given number of records.
+     *
+     * @param capacity the maximum number of records to hold, or
+     *          <code>Integer.MAX_VALUE</code> to hold every record.
+     */
+    public RecordCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity " + capacity
+                    + " must be at least 1");
+        }
+        this.capacity = capacity;
+        records = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Copies the cached bytes of a record into the given array.
+     *
+     * @param recNo the record number of the record required.
+     * @param record the array to copy the record into.
+     *
+     * @return <code>true</code> if the record was in the cache, otherwise
+     *          <code>false</code> and the array is unchanged.
+     */
+    public synchronized boolean get(int recNo, byte[] record) {
+        byte[] cached = (byte[]) records.get(new Integer(recNo));
+
+        if (cached == null) {
+            misses++;
+            return false;
+        }
+
+        hits++;
+        System.arraycopy(cached, 0, record, 0, cached.length);
+        return true;
+    }
+
+    /**
+     * Adds a copy of the bytes of a record to the cache, discarding the least
+     * recently used record if the cache is full.
+     *
+     * @param recNo the record number of the record.
+     * @param record the bytes of the record.
+     */
+    public synchronized void put(int recNo, byte[] record) {
+        records.put(new Integer(recNo), record.clone());
+    }
+
+    /**
+     * Removes a record from the cache if it is present.
+     *
+     * @param recNo the record number of the record.
+     */
+    public synchronized void remove(int recNo) {
+        records.remove(new Integer(recNo));
+    }
+
+    /**
+     * Returns the maximum number of records the cache holds.
+     *
+     * @return the capacity of the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of records currently in the cache.
+     *
+     * @return the number of records cached.
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the record in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find the record in the
+     * cache and so had to read the data file.
+     *
+     * @return the number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
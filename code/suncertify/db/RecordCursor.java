@@ -0,0 +1,150 @@
+/*
+ * RecordCursor.java
+ *
+ * Created on 17 October 2026, 07:12
+ */
+
+package suncertify.db;
+
+/**
+ * Steps through the records of a {@link Data Data} object one at a time,
+ * returning those that match a {@link RecordFilter RecordFilter}.
+ * <p>
+ * A cursor is obtained from {@link Data#scan Data.scan}. Each call to
+ * {@link #next next} reads records until it finds one that is not deleted
+ * and matches the filter, and loads it into the cursor's single
+ * {@link RecordBuffer RecordBuffer}, whose fields are only decoded when they
+ * are asked for. Nothing is kept of the records already returned, so a
+ * scan of the whole data file uses the same small amount of memory whatever
+ * the size of the file, and the caller can start work on the first record
+ * at once rather than waiting for the whole file to be searched.
+ * <p>
+ * Records are visited in order of record number, which is the order they
+ * are stored in the file except for deleted record numbers reused by
+ * {@link Data#create create} after the file has been
+ * {@link Data#compact compacted}. Record numbers that have no space in the
+ * file are skipped without being read. Each record is read while holding its
+ * read lock, so it is never seen half written, but no lock is held between
+ * calls: records created while the cursor is open are returned if the
+ * cursor has not yet passed them, and a compaction of the file does not
+ * cause any record to be missed or returned twice. A cursor therefore needs
+ * no closing and may be abandoned at any time.
+ * <p>
+ * A cursor must not be shared between threads.
+ */
+public class RecordCursor {
+
+    /**
+     * The data object being scanned.
+     */
+    protected final Data db;
+
+    /**
+     * The condition the records must match, or <code>null</code> to return
+     * every record.
+     */
+    protected final RecordFilter filter;
+
+    /**
+     * The buffer the current record is loaded into.
+     */
+    protected final RecordBuffer record;
+
+    /**
+     * The record number of the last record read, or 0 before the first.
+     */
+    protected int recNo;
+
+    /**
+     * Flag to indicate that the buffer holds a record returned by
+     * {@link #next next}.
+     */
+    protected boolean current;
+
+    /**
+     * Creates a cursor positioned before the first record of a data object.
+     *
+     * @param db the data object to be scanned.
+     * @param filter the condition the records must match, or
+     *          <code>null</code> to return every record.
+     */
+    protected RecordCursor(Data db, RecordFilter filter) {
+        this.db = db;
+        this.filter = filter;
+        record = db.newRecordBuffer();
+    }
+
+    /**
+     * Moves the cursor to the next record that is not deleted and matches the
+     * filter.
+     *
+     * @return <code>true</code> if there is such a record, or
+     *          <code>false</code> if the end of the data file has been
+     *          reached.
+     */
+    public boolean next() {
+        current = false;
+
+        while (recNo < db.numRecords) {
+            recNo++;
+
+            /* Numbers whose space has been reclaimed need not be read */
+            if (db.recordMap.getSlot(recNo) == 0) {
+                continue;
+            }
+
+            try {
+                if (db.load(recNo, record)
+                        && ((filter == null) || filter.accept(record))) {
+                    current = true;
+                    return true;
+                }
+            } catch (RecordNotFoundException ex) {
+                //Reclaimed by a compaction since its slot was looked up
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the record number of the current record.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on a
+     *          record.
+     *
+     * @return the record number.
+     */
+    public int getRecNo() {
+        checkCurrent();
+        return recNo;
+    }
+
+    /**
+     * Returns the buffer holding the current record, which is loaded with the
+     * next record by the following call to {@link #next next}. When the data
+     * object is a {@link BookingData BookingData} the buffer is also a
+     * {@link RecordView RecordView}.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on a
+     *          record.
+     *
+     * @return the record buffer.
+     */
+    public RecordBuffer getRecord() {
+        checkCurrent();
+        return record;
+    }
+
+    /**
+     * Throws an exception unless the cursor is positioned on a record.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on a
+     *          record.
+     */
+    protected void checkCurrent() {
+        if (!current) {
+            throw new IllegalStateException("Cursor is not on a record");
+        }
+    }
+}
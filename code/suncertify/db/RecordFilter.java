@@ -0,0 +1,32 @@
+/*
+ * RecordFilter.java
+ *
+ * Created on 17 October 2026, 07:12
+ */
+
+package suncertify.db;
+
+/**
+ * Interface for the conditions a {@link RecordCursor RecordCursor} tests
+ * each record against.
+ * <p>
+ * The record is passed in the cursor's own buffer, so that the condition can
+ * look at just the fields it needs, using the comparison methods of
+ * {@link RecordBuffer RecordBuffer} or, when the records come from a
+ * {@link BookingData BookingData} object, the typed accessors of
+ * {@link RecordView RecordView}, without decoding the rest of the record.
+ *
+ * @see Data#scan
+ */
+public interface RecordFilter {
+
+    /**
+     * Returns <code>true</code> if the record should be returned by the
+     * cursor. The buffer must not be retained.
+     *
+     * @param record the buffer holding the record, which is not deleted.
+     *
+     * @return <code>true</code> if the record matches.
+     */
+    public boolean accept(RecordBuffer record);
+}
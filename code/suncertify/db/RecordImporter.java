@@ -0,0 +1,322 @@
+/*
+ * RecordImporter.java
+ *
+ * Created on 17 October 2026, 07:10
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Loads records from delimited text, such as a CSV file, into a data file.
+ * <p>
+ * Each line of the input holds one record, with its fields in the order of
+ * the schema in the data file header, separated by the delimiter. A field
+ * may be enclosed in double quotes, in which case it may contain the
+ * delimiter, and a double quote within it is written as two double quotes.
+ * A quoted field cannot contain a line break, as the input is read a line
+ * at a time. A header holding the field names of the schema is only
+ * recognised, and skipped, on the first line; empty lines are skipped
+ * wherever they are.
+ * <p>
+ * Every record is checked against the schema before it is written: it
+ * must have the same number of fields as the schema, each value must fit
+ * in its field and may contain only US-ASCII characters other than the null
+ * character. Values are not trimmed or truncated, so a record that does not
+ * fit is reported rather than changed.
+ * <p>
+ * The input is read as a stream and the records are appended to the end of
+ * the file in batches of about {@link #BATCH_SIZE BATCH_SIZE} bytes, each
+ * written with a single write by {@link Data#appendRecords appendRecords}.
+ * Only one batch is held in memory at a time, whatever the size of the
+ * input. The listeners of the data object, such as its indexes, are not
+ * told about each record as it is appended but brought up to date once at
+ * the end by {@link Data#publishAppendedRecords publishAppendedRecords}. If
+ * an invalid record is found the batches before it have already been
+ * imported.
+ * <p>
+ * The class can be run from the command line to import a file into a data
+ * file that is not in use:
+ * <pre>
+ * java suncertify.db.RecordImporter &lt;data file&gt; &lt;input file&gt;
+ *         [delimiter]
+ * </pre>
+ */
+public class RecordImporter {
+
+    /**
+     * The default field delimiter.
+     */
+    public static final char DEFAULT_DELIMITER = ',';
+
+    /**
+     * The approximate number of bytes of records appended with each write.
+     */
+    public static final int BATCH_SIZE = 1024 * 1024;
+
+    /**
+     * The size of the buffer the input is read through.
+     */
+    protected static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The character used to quote fields.
+     */
+    protected static final char QUOTE = '"';
+
+    /**
+     * The data object the records are appended to.
+     */
+    protected final Data db;
+
+    /**
+     * The field delimiter.
+     */
+    protected final char delimiter;
+
+    /**
+     * The field names of the schema, in order.
+     */
+    protected final String[] fieldNames;
+
+    /**
+     * The number of records that fit in a batch.
+     */
+    protected final int batchRecords;
+
+    /**
+     * Creates an importer that appends records to the given data object,
+     * with fields separated by the {@link #DEFAULT_DELIMITER default
+     * delimiter}.
+     *
+     * @param db the data object to import records into.
+     */
+    public RecordImporter(Data db) {
+        this(db, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates an importer that appends records to the given data object,
+     * with fields separated by the given delimiter.
+     *
+     * @param db the data object to import records into.
+     * @param delimiter the field delimiter.
+     *
+     * @throws IllegalArgumentException if the delimiter is a double quote or
+     *          a line terminator.
+     */
+    public RecordImporter(Data db, char delimiter) {
+        if ((delimiter == QUOTE) || (delimiter == '\n')
+                || (delimiter == '\r')) {
+            throw new IllegalArgumentException("Invalid delimiter "
+                    + delimiter);
+        }
+
+        this.db = db;
+        this.delimiter = delimiter;
+        fieldNames = (String[]) db.schema.keySet().toArray(new String[0]);
+        batchRecords = Math.max(1, BATCH_SIZE / db.recordLength);
+    }
+
+    /**
+     * Imports every record read from the given input, appending them to the
+     * data file in the order they are read.
+     *
+     * @param in the input to read the records from.
+     *
+     * @throws IOException if there is an error reading the input or writing
+     *          the data file.
+     * @throws InvalidRecordException if a record does not fit the schema.
+     *
+     * @return the number of records imported.
+     */
+    public int importRecords(Reader in) throws IOException,
+            InvalidRecordException {
+        BufferedReader reader = new BufferedReader(in, INPUT_BUFFER_SIZE);
+        String[][] batch = new String[batchRecords][];
+        int count = 0;
+        int imported = 0;
+        int lineNo = 0;
+        String line;
+
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.length() == 0) {
+                    continue;
+                }
+
+                String[] fields = parse(line, lineNo);
+                if ((lineNo == 1) && Arrays.equals(fields, fieldNames)) {
+                    continue; //Header line
+                }
+                validate(fields, lineNo);
+
+                batch[count++] = fields;
+                if (count == batchRecords) {
+                    db.appendRecords(batch, count);
+                    imported += count;
+                    count = 0;
+                }
+            }
+
+            if (count > 0) {
+                db.appendRecords(batch, count);
+                imported += count;
+            }
+        } finally {
+            db.publishAppendedRecords(); //Including batches before an error
+        }
+
+        return imported;
+    }
+
+    /**
+     * Splits a line of input into its fields.
+     *
+     * @param line the line to be split.
+     * @param lineNo the number of the line, for error messages.
+     *
+     * @throws InvalidRecordException if a quoted field is not closed.
+     *
+     * @return the values of the fields.
+     */
+    protected String[] parse(String line, int lineNo)
+            throws InvalidRecordException {
+        List fields = new ArrayList(fieldNames.length);
+        StringBuffer field = new StringBuffer();
+        boolean quoted = false;
+        int length = line.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != QUOTE) {
+                    field.append(c);
+                } else if ((i + 1 < length) && (line.charAt(i + 1) == QUOTE)) {
+                    field.append(QUOTE); //Escaped quote
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new InvalidRecordException("Line " + lineNo
+                    + ": unterminated quoted field");
+        }
+        fields.add(field.toString());
+
+        return (String[]) fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Checks that a record fits the schema of the data file.
+     *
+     * @param fields the values of the record's fields.
+     * @param lineNo the number of the line holding the record, for error
+     *          messages.
+     *
+     * @throws InvalidRecordException if the record has the wrong number of
+     *          fields, or a value is too long for its field or contains a
+     *          character that cannot be stored.
+     */
+    protected void validate(String[] fields, int lineNo)
+            throws InvalidRecordException {
+        if (fields.length != fieldNames.length) {
+            throw new InvalidRecordException("Line " + lineNo + ": "
+                    + fields.length + " fields found, "
+                    + fieldNames.length + " expected");
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            String value = fields[i];
+            if (value.length() > db.fieldLengths[i]) {
+                throw new InvalidRecordException("Line " + lineNo + ": "
+                        + fieldNames[i] + " is longer than "
+                        + db.fieldLengths[i] + " characters");
+            }
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if ((c == 0) || (c > 0x7F)) {
+                    throw new InvalidRecordException("Line " + lineNo + ": "
+                            + fieldNames[i] + " contains an invalid "
+                            + "character");
+                }
+            }
+        }
+    }
+
+    /**
+     * Imports the records in a delimited text file into a data file from the
+     * command line. The data file must not be in use by a server.
+     *
+     * @param args the name of the data file, the name of the input file and
+     *          optionally the field delimiter.
+     */
+    public static void main(String[] args) {
+        if ((args.length < 2) || (args.length > 3)
+                || ((args.length == 3) && (args[2].length() != 1))) {
+            System.err.println("Usage: java suncertify.db.RecordImporter "
+                    + "<data file> <input file> [delimiter]"
+                    + "\n One record per line, fields in schema order."
+                    + "\n A header of field names is only recognised on "
+                    + "line 1."
+                    + "\n Quoted fields may hold the delimiter but not a "
+                    + "line break.");
+            System.exit(1);
+        }
+
+        char delimiter = (args.length == 3 ? args[2].charAt(0)
+                : DEFAULT_DELIMITER);
+        Data db = null;
+        Reader in = null;
+        int status = 0;
+
+        try {
+            db = new Data(args[0]);
+            in = new InputStreamReader(new FileInputStream(args[1]),
+                    Data.ENCODING);
+            long start = System.currentTimeMillis();
+            int count = new RecordImporter(db, delimiter).importRecords(in);
+            long time = System.currentTimeMillis() - start;
+            System.out.println("Imported " + count + " records in " + time
+                    + " ms");
+        } catch (InvalidDataFileException ex) {
+            System.err.println("Invalid data file: " + ex.getMessage());
+            status = 1;
+        } catch (InvalidRecordException ex) {
+            System.err.println("Invalid record: " + ex.getMessage());
+            status = 1;
+        } catch (IOException ex) {
+            System.err.println("Unable to import records: "
+                    + ex.getMessage());
+            status = 1;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+                if (db != null) {
+                    db.close();
+                }
+            } catch (IOException ex) {
+                System.err.println("Unable to close file: "
+                        + ex.getMessage());
+                status = 1;
+            }
+        }
+
+        System.exit(status);
+    }
+}
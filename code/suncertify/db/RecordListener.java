@@ -0,0 +1,54 @@
+/*
+ * RecordListener.java
+ *
+ * Created on 17 October 2026, 06:24
+ */
+
+package suncertify.db;
+
+/**
+ * Interface for objects that need to be told when records in a
+ * {@link Data Data} object are written or deleted, for example to keep an
+ * index of the data up to date.
+ * <p>
+ * The methods are called by the thread performing the change while it holds
+ * the write lock for the record, so notifications for any one record arrive
+ * in the order the changes were made. Implementations must be threadsafe as
+ * changes to different records are notified concurrently, and must not call
+ * back into the <code>Data</code> object.
+ *
+ * @see Data#addRecordListener
+ */
+public interface RecordListener {
+
+    /**
+     * Called after a record has been created or updated.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields. The array must not
+     *          be modified or retained.
+     */
+    public void recordWritten(int recNo, String[] data);
+
+    /**
+     * Called after a record has been deleted.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    public void recordDeleted(int recNo);
+
+    /**
+     * Called after records have been appended in bulk by {@link
+     * Data#appendRecords appendRecords}, instead of calling {@link
+     * #recordWritten recordWritten} as each was appended. Unlike the other
+     * methods it is called without holding any record lock.
+     *
+     * @param first the record number of the first record appended.
+     * @param last the record number of the last record appended.
+     *
+     * @return <code>true</code> if the listener is to be passed each of the
+     *          records through <code>recordWritten</code>, or
+     *          <code>false</code> if it has no use for them one by one.
+     */
+    public boolean recordsAppended(int first, int last);
+}
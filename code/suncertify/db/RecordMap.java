@@ -0,0 +1,170 @@
+/*
+ * RecordMap.java
+ *
+ * Created on 17 October 2026, 07:08
+ */
+
+package suncertify.db;
+
+/**
+ * Maps the record numbers of a {@link Data Data} object to the slots in the
+ * data file where the records are stored, and each slot back to the record
+ * stored in it.
+ * <p>
+ * When the file is opened record n is stored in slot n. Once the file has
+ * been {@link Data#compact compacted} the live records are packed into the
+ * lowest slots while keeping their record numbers, and a deleted record may
+ * have no slot at all until its record number is reused. Slots, like record
+ * numbers, start at 1, and 0 stands for no record or no slot.
+ * <p>
+ * This class is not synchronized. <code>Data</code> changes a record's
+ * entries only while holding both its allocation lock and the write lock for
+ * the record, and reads them while holding either lock for the record. Slots
+ * are only emptied while scans of the slots are shut out by the compaction
+ * lock. The arrays are replaced rather than changed when they grow, so a
+ * reader always sees a complete array.
+ */
+public class RecordMap {
+
+    /**
+     * The slot of each record, indexed by record number, or 0 if the record
+     * has no slot.
+     */
+    protected volatile int[] slots;
+
+    /**
+     * The record stored in each slot, indexed by slot.
+     */
+    protected volatile int[] records;
+
+    /**
+     * The number of slots in the data file.
+     */
+    protected volatile int slotCount;
+
+    /**
+     * Creates a map for a data file that has not been compacted, in which
+     * each record is stored in the slot with the same number.
+     *
+     * @param count the number of records in the data file.
+     */
+    public RecordMap(int count) {
+        slots = new int[count + 1];
+        records = new int[count + 1];
+        for (int i = 1; i <= count; i++) {
+            slots[i] = i;
+            records[i] = i;
+        }
+        slotCount = count;
+    }
+
+    /**
+     * Returns the slot a record is stored in.
+     *
+     * @param recNo the record number of the record.
+     *
+     * @return the slot, or 0 if the record has no slot.
+     */
+    public int getSlot(int recNo) {
+        int[] tmp = slots;
+
+        return (recNo < tmp.length ? tmp[recNo] : 0);
+    }
+
+    /**
+     * Returns the record stored in a slot.
+     *
+     * @param slot the slot, between 1 and the {@link #getSlotCount number of
+     *          slots}.
+     *
+     * @return the record number of the record, or 0 if the slot has been
+     *          emptied by moving or removing its record.
+     */
+    public int getRecord(int slot) {
+        return records[slot];
+    }
+
+    /**
+     * Returns the number of slots in the data file, which is the number of
+     * records that a scan of the file must read.
+     *
+     * @return the number of slots.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Stores a record in a new slot at the end of the data file.
+     *
+     * @param recNo the record number of the record, which must not already
+     *          have a slot.
+     *
+     * @return the new slot.
+     */
+    public int append(int recNo) {
+        int slot = slotCount + 1;
+
+        if (slot >= records.length) {
+            records = grow(records, slot);
+        }
+        if (recNo >= slots.length) {
+            slots = grow(slots, recNo);
+        }
+        records[slot] = recNo;
+        slots[recNo] = slot;
+        slotCount = slot; //Publishes the new slot to scans
+
+        return slot;
+    }
+
+    /**
+     * Stores a record in a different slot. The slot it was in is emptied, to
+     * be reused or removed by {@link #truncate truncate}.
+     *
+     * @param recNo the record number of the record.
+     * @param slot the slot the record has been copied to.
+     */
+    public void move(int recNo, int slot) {
+        records[slots[recNo]] = 0;
+        records[slot] = recNo;
+        slots[recNo] = slot;
+    }
+
+    /**
+     * Removes a deleted record from its slot, which is emptied, to be reused
+     * or removed by {@link #truncate truncate}.
+     *
+     * @param recNo the record number of the record.
+     */
+    public void remove(int recNo) {
+        records[slots[recNo]] = 0;
+        slots[recNo] = 0;
+    }
+
+    /**
+     * Removes the slots at the end of the data file that no longer hold a
+     * record.
+     *
+     * @param count the number of slots left.
+     */
+    public void truncate(int count) {
+        slotCount = count;
+    }
+
+    /**
+     * Returns a copy of an array large enough to hold the given index,
+     * doubling its length so that repeated growth is cheap.
+     *
+     * @param array the array to be copied.
+     * @param index the index the copy must hold.
+     *
+     * @return the new array.
+     */
+    private static int[] grow(int[] array, int index) {
+        int[] tmp = new int[Math.max(array.length * 2, index + 1)];
+
+        System.arraycopy(array, 0, tmp, 0, array.length);
+        return tmp;
+    }
+}
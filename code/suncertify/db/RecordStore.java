@@ -0,0 +1,100 @@
+/*
+ * RecordStore.java
+ *
+ * Created on 17 October 2026, 06:21
+ */
+
+package suncertify.db;
+
+import java.io.IOException;
+
+/**
+ * Low-level byte access to a data file used by {@link Data Data}.
+ * <p>
+ * All access is positional: the caller supplies the absolute offset within
+ * the file for every read and write, so implementations do not need to
+ * maintain a shared file pointer. Interpretation of the bytes (header,
+ * deleted flags, field layout) is left entirely to <code>Data</code>, which
+ * means every implementation reads and writes exactly the same file format.
+ *
+ * @see Data
+ */
+public interface RecordStore {
+
+    /**
+     * Fills the given buffer with the bytes starting at the specified
+     * position in the file.
+     *
+     * @param position the offset in the file to read from.
+     * @param buffer the buffer to be filled.
+     *
+     * @throws IOException if there is an error reading the file or the end
+     *          of the file is reached before the buffer is filled.
+     */
+    public void read(long position, byte[] buffer) throws IOException;
+
+    /**
+     * Writes the contents of the given buffer to the file starting at the
+     * specified position, extending the file if necessary.
+     *
+     * @param position the offset in the file to write to.
+     * @param buffer the bytes to be written.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void write(long position, byte[] buffer) throws IOException;
+
+    /**
+     * Reads a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to read from.
+     *
+     * @throws IOException if there is an error reading the file.
+     *
+     * @return the byte at the specified position.
+     */
+    public byte readByte(long position) throws IOException;
+
+    /**
+     * Writes a single byte at the specified position in the file.
+     *
+     * @param position the offset in the file to write to.
+     * @param value the byte to be written.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void writeByte(long position, byte value) throws IOException;
+
+    /**
+     * Returns the current length of the file in bytes.
+     *
+     * @throws IOException if there is an error accessing the file.
+     *
+     * @return the length of the file.
+     */
+    public long length() throws IOException;
+
+    /**
+     * Shortens the file to the given length, discarding the bytes beyond it.
+     *
+     * @param length the new length of the file.
+     *
+     * @throws IOException if there is an error truncating the file.
+     */
+    public void truncate(long length) throws IOException;
+
+    /**
+     * Forces every write made so far to the storage device.
+     *
+     * @throws IOException if there is an error writing the file.
+     */
+    public void force() throws IOException;
+
+    /**
+     * Flushes any outstanding writes to the storage device and releases the
+     * underlying file.
+     *
+     * @throws IOException if there is an error closing the file.
+     */
+    public void close() throws IOException;
+}
@@ -0,0 +1,97 @@
+/*
+ * RecordView.java
+ *
+ * Created on 17 October 2026, 06:31
+ */
+
+package suncertify.db;
+
+/**
+ * A typed, read-only view of one URLyBird booking record.
+ * <p>
+ * Implementations are flyweights over the raw bytes of a record: a single
+ * view is loaded with each record in turn by
+ * {@link BookingDB#read(int, RecordView) BookingDB.read} and values are only
+ * decoded when an accessor is called, so code that looks at one or two
+ * fields of many records allocates nothing per record. Views must be
+ * obtained from {@link BookingDB#newRecordView BookingDB.newRecordView} and
+ * must not be shared between threads.
+ * <p>
+ * The numeric accessors throw a <code>NumberFormatException</code> if the
+ * field does not contain a valid value.
+ */
+public interface RecordView {
+
+    /**
+     * The value returned by {@link #owner owner} if the room is not booked.
+     */
+    public static final long NO_OWNER = -1;
+
+    /**
+     * Returns the record number of the record currently in the view.
+     *
+     * @return the record number.
+     */
+    public int getRecNo();
+
+    /**
+     * Returns the value of a field exactly as returned by
+     * {@link DB#read DB.read}.
+     *
+     * @param field the field number.
+     *
+     * @return the field value.
+     */
+    public String getField(int field);
+
+    /**
+     * Returns the hotel name with surrounding whitespace removed.
+     *
+     * @return the hotel name.
+     */
+    public String name();
+
+    /**
+     * Returns the hotel location with surrounding whitespace removed.
+     *
+     * @return the hotel location.
+     */
+    public String location();
+
+    /**
+     * Returns the maximum number of people the room can sleep.
+     *
+     * @return the size of the room.
+     */
+    public int size();
+
+    /**
+     * Returns <code>true</code> if smoking is allowed in the room.
+     *
+     * @return <code>true</code> if the room is a smoking room.
+     */
+    public boolean smoking();
+
+    /**
+     * Returns the price per night of the room in cents.
+     *
+     * @return the rate in cents.
+     */
+    public long rate();
+
+    /**
+     * Returns the date the room is available as the number of days since
+     * 1 January 1970.
+     *
+     * @return the epoch day the room is available.
+     */
+    public long date();
+
+    /**
+     * Returns the 8 digit customer ID of the customer the room is booked to.
+     *
+     * @return the customer ID, or {@link #NO_OWNER NO_OWNER} if the room is
+     *          not booked.
+     */
+    public long owner();
+}
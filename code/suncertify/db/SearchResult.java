@@ -0,0 +1,167 @@
+/*
+ * SearchResult.java
+ *
+ * Created on 17 October 2026, 06:38
+ */
+
+package suncertify.db;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The records found by a search, returned together with their record
+ * numbers so that a network client can display the results of a search
+ * with a single call to the server.
+ * <p>
+ * A result may hold one page of the matching records, in which case
+ * {@link #getTotal getTotal} gives the number of records that matched in
+ * all. When serialized each distinct field value is written only once and
+ * later occurrences refer back to it, as search results typically repeat
+ * the same few hotel names and locations.
+ */
+public class SearchResult implements Serializable {
+
+    /**
+     * The version of the serialized form of this class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The record numbers of the records in this result.
+     */
+    protected transient int[] recNos;
+
+    /**
+     * The records in this result, where element n holds the fields of record
+     * recNos[n].
+     */
+    protected transient String[][] records;
+
+    /**
+     * The number of records that matched the search, including any not in
+     * this page.
+     */
+    protected transient int total;
+
+    /**
+     * Creates a search result holding the given records.
+     *
+     * @param recNos the record numbers of the records.
+     * @param records the records, where element n holds the fields of record
+     *          recNos[n].
+     * @param total the number of records that matched the search, including
+     *          any not in this result.
+     */
+    public SearchResult(int[] recNos, String[][] records, int total) {
+        if (recNos.length != records.length) {
+            throw new IllegalArgumentException(
+                    "Record numbers and records differ in length");
+        }
+        this.recNos = recNos;
+        this.records = records;
+        this.total = total;
+    }
+
+    /**
+     * Returns the record numbers of the records in this result in ascending
+     * order.
+     *
+     * @return the record numbers.
+     */
+    public int[] getRecNos() {
+        return recNos;
+    }
+
+    /**
+     * Returns the records in this result, where element n holds the fields
+     * of the record with record number <code>getRecNos()[n]</code>.
+     *
+     * @return the records.
+     */
+    public String[][] getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the number of records in this result.
+     *
+     * @return the number of records.
+     */
+    public int size() {
+        return recNos.length;
+    }
+
+    /**
+     * Returns the number of records that matched the search, which is more
+     * than {@link #size size} if this result is one page of the matches.
+     *
+     * @return the total number of matches.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Writes the result, writing each distinct field value once.
+     *
+     * @param out the stream to write to.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Map written = new HashMap();
+
+        out.defaultWriteObject();
+        out.writeInt(total);
+        out.writeInt(recNos.length);
+        for (int i = 0; i < recNos.length; i++) {
+            out.writeInt(recNos[i]);
+            out.writeInt(records[i].length);
+            for (int j = 0; j < records[i].length; j++) {
+                Integer ref = (Integer) written.get(records[i][j]);
+                if (ref != null) {
+                    out.writeInt(ref.intValue());
+                } else {
+                    out.writeInt(-1); //New value follows
+                    out.writeUTF(records[i][j]);
+                    written.put(records[i][j], new Integer(written.size()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a result written by {@link #writeObject writeObject}.
+     *
+     * @param in the stream to read from.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     * @throws ClassNotFoundException if a class in the stream is not found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        List values = new ArrayList();
+
+        in.defaultReadObject();
+        total = in.readInt();
+        recNos = new int[in.readInt()];
+        records = new String[recNos.length][];
+        for (int i = 0; i < recNos.length; i++) {
+            recNos[i] = in.readInt();
+            records[i] = new String[in.readInt()];
+            for (int j = 0; j < records[i].length; j++) {
+                int ref = in.readInt();
+                if (ref < 0) {
+                    records[i][j] = in.readUTF();
+                    values.add(records[i][j]);
+                } else {
+                    records[i][j] = (String) values.get(ref);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,763 @@
+/*
+ * SocketBookingDB.java
+ *
+ * Created on 17 October 2026, 06:49
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import java.net.Socket;
+import suncertify.server.ChangeSet;
+import suncertify.server.LockSession;
+import suncertify.server.SocketProtocol;
+
+/**
+ * This class allows a network client to access the database through a
+ * {@link suncertify.server.SocketServer SocketServer} as if it were using a
+ * non-networked data access object that implements the
+ * {@link BookingDB BookingDB} interface.
+ * <p>
+ * Each method sends one request to the server over a single socket and
+ * waits for the response, using the binary protocol described in
+ * {@link suncertify.server.SocketProtocol SocketProtocol}. Requests from
+ * different threads are sent one at a time. As with {@link BookingDataProxy
+ * BookingDataProxy} any network error is rethrown as a
+ * <code>RuntimeException</code>.
+ * <p>
+ * The changes made by other clients are polled for over a second connection,
+ * opened the first time they are asked for, so that a long poll waiting on
+ * the server does not hold up the requests sent over the first. The server
+ * leases every lock, and the leases are renewed in the background over a
+ * third connection, so that a renewal is never held up by a
+ * <code>lock</code> waiting on the first.
+ * <p>
+ * Instances of this class should be obtained using {@link BookingDBFactory
+ * BookingDBFactory}.
+ */
+public class SocketBookingDB implements BookingDB, ChangeSource {
+
+    /**
+     * The name or address of the server host.
+     */
+    protected final String host;
+
+    /**
+     * The port the server is listening on.
+     */
+    protected final int port;
+
+    /**
+     * The socket connected to the server.
+     */
+    protected final Socket socket;
+
+    /**
+     * The stream responses are read from.
+     */
+    protected final DataInputStream in;
+
+    /**
+     * The stream requests are written to.
+     */
+    protected final DataOutputStream out;
+
+    /**
+     * The buffer the current request is built in, so that its length can be
+     * sent first.
+     */
+    protected final ByteArrayOutputStream requestBytes;
+
+    /**
+     * The stream writing to the request buffer.
+     */
+    protected final DataOutputStream request;
+
+    /**
+     * The length of each field, fetched from the server the first time it is
+     * needed.
+     */
+    protected int[] fieldLengths;
+
+    /**
+     * The status of the last response received.
+     */
+    protected byte status;
+
+    /**
+     * The second connection to the server, over which changes are polled
+     * for, or <code>null</code> if it has not yet been opened.
+     */
+    protected volatile SocketBookingDB feedConnection;
+
+    /**
+     * The third connection to the server, over which leases are renewed, or
+     * <code>null</code> if it has not yet been opened.
+     */
+    protected volatile SocketBookingDB renewConnection;
+
+    /**
+     * Renews the leases on the locks held by this client.
+     */
+    protected final LeaseRenewer renewer;
+
+    /**
+     * Creates a new instance of SocketBookingDB connected to the server on
+     * the given host and port.
+     *
+     * @param host the name or address of the server host.
+     * @param port the port the server is listening on.
+     *
+     * @throws IOException if the server cannot be connected to.
+     */
+    SocketBookingDB(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(
+                socket.getOutputStream()));
+        requestBytes = new ByteArrayOutputStream();
+        request = new DataOutputStream(requestBytes);
+        renewer = new LeaseRenewer(this, LockSession.RENEW_INTERVAL);
+    }
+
+    /**
+     * Reads a record from the file. Returns an array where each element is a
+     * record value.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     *
+     * @return an array where each element is a record value.
+     */
+    public synchronized String[] read(int recNo)
+            throws RecordNotFoundException {
+        try {
+            begin(SocketProtocol.READ);
+            request.writeInt(recNo);
+            DataInputStream response = call();
+            if (status == SocketProtocol.STATUS_RECORD_NOT_FOUND) {
+                throw new RecordNotFoundException(
+                        SocketProtocol.readString(response));
+            }
+            checkStatus(response);
+            return SocketProtocol.readStrings(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Modifies the fields of a record. The new value for field n
+     * appears in data[n]. Throws SecurityException
+     * if the record is locked with a cookie other than lockCookie.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param lockCookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than lockCookie.
+     */
+    public synchronized void update(int recNo, String[] data,
+            long lockCookie) throws RecordNotFoundException,
+            suncertify.db.SecurityException {
+        try {
+            begin(SocketProtocol.UPDATE);
+            request.writeInt(recNo);
+            SocketProtocol.writeStrings(request, data);
+            request.writeLong(lockCookie);
+            checkLockStatus(call());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads a record together with its version, so that it can later be
+     * changed with {@link #updateIfVersion updateIfVersion} without holding
+     * the lock on the record in the meantime.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     *
+     * @return the record values and version.
+     */
+    public synchronized VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException {
+        try {
+            begin(SocketProtocol.READ_VERSIONED);
+            request.writeInt(recNo);
+            DataInputStream response = call();
+            if (status == SocketProtocol.STATUS_RECORD_NOT_FOUND) {
+                throw new RecordNotFoundException(
+                        SocketProtocol.readString(response));
+            }
+            checkStatus(response);
+            String[] fields = SocketProtocol.readStrings(response);
+            return new VersionedRecord(fields, response.readLong());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Modifies the fields of a record without locking it, provided that it
+     * has not been written since it was read at the given version and is not
+     * locked.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     *
+     * @return the new version of the record.
+     */
+    public synchronized long updateIfVersion(int recNo, String[] data,
+            long version) throws RecordNotFoundException,
+            VersionConflictException {
+        try {
+            begin(SocketProtocol.UPDATE_IF_VERSION);
+            request.writeInt(recNo);
+            SocketProtocol.writeStrings(request, data);
+            request.writeLong(version);
+            DataInputStream response = call();
+            if (status == SocketProtocol.STATUS_RECORD_NOT_FOUND) {
+                throw new RecordNotFoundException(
+                        SocketProtocol.readString(response));
+            } else if (status == SocketProtocol.STATUS_CONFLICT) {
+                throw new VersionConflictException(
+                        SocketProtocol.readString(response));
+            }
+            checkStatus(response);
+            return response.readLong();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Deletes a record, making the record number and associated disk
+     * storage available for reuse.
+     * Throws SecurityException if the record is locked with a cookie
+     * other than lockCookie.
+     *
+     * @param recNo the record number of the record to be deleted.
+     * @param lockCookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error reading the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than lockCookie.
+     */
+    public synchronized void delete(int recNo, long lockCookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        renewer.stop(recNo, lockCookie);
+        try {
+            begin(SocketProtocol.DELETE);
+            request.writeInt(recNo);
+            request.writeLong(lockCookie);
+            checkLockStatus(call());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns an array of record numbers that match the specified
+     * criteria. Field n in the database file is described by
+     * criteria[n]. A null value in criteria[n] matches any field
+     * value. A non-null  value in criteria[n] matches any field
+     * value that begins with criteria[n]. (For example, "Fred"
+     * matches "Fred" or "Freddy".)
+     *
+     * @param criteria the criteria to be matched.
+     * @return an array of record numbers that match the specified
+     *          criteria.
+     */
+    public synchronized int[] find(String[] criteria) {
+        try {
+            begin(SocketProtocol.FIND);
+            SocketProtocol.writeStrings(request, criteria);
+            DataInputStream response = call();
+            checkStatus(response);
+            return SocketProtocol.readInts(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Creates a new record in the database (possibly reusing a
+     * deleted entry). Inserts the given data, and returns the record
+     * number of the new record.
+     *
+     * @param data the data for the new record.
+     *
+     * @throws DuplicateKeyException unimplemented.
+     *
+     * @return the record number of the new record.
+     */
+    public synchronized int create(String[] data)
+            throws DuplicateKeyException {
+        try {
+            begin(SocketProtocol.CREATE);
+            SocketProtocol.writeStrings(request, data);
+            DataInputStream response = call();
+            if (status == SocketProtocol.STATUS_DUPLICATE_KEY) {
+                throw new DuplicateKeyException(
+                        SocketProtocol.readString(response));
+            }
+            checkStatus(response);
+            return response.readInt();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Locks a record so that it can only be updated or deleted by this client.
+     * Returned value is a cookie that must be used when the record is
+     * unlocked, updated, or deleted. If the specified record is already locked
+     * by a different client, the current thread gives up the CPU and consumes
+     * no CPU cycles until the record is unlocked.
+     * <p>
+     * No other request can be sent by this client while it waits. The server
+     * leases the lock, and the lease is renewed in the background until the
+     * record is unlocked or deleted.
+     *
+     * @param recNo the record number of the record to be locked.
+     *
+     * @throws RecordNotFoundException if the record does not exists or there
+     *          is an error accessing the database.
+     *
+     * @return a cookie that must be used when the record is unlocked,
+     *          updated, or deleted.
+     */
+    public synchronized long lock(int recNo) throws RecordNotFoundException {
+        try {
+            begin(SocketProtocol.LOCK);
+            request.writeInt(recNo);
+            DataInputStream response = call();
+            if (status == SocketProtocol.STATUS_RECORD_NOT_FOUND) {
+                throw new RecordNotFoundException(
+                        SocketProtocol.readString(response));
+            }
+            checkStatus(response);
+            long cookie = response.readLong();
+            renewer.start(recNo, cookie);
+            return cookie;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Releases the lock on a record. Cookie must be the cookie
+     * returned when the record was locked; otherwise throws SecurityException.
+     *
+     * @param recNo the record number of the record to be unlocked.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie.
+     */
+    public synchronized void unlock(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        renewer.stop(recNo, cookie);
+        try {
+            begin(SocketProtocol.UNLOCK);
+            request.writeInt(recNo);
+            request.writeLong(cookie);
+            checkLockStatus(call());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Renews the lease on a locked record so that the lock is not released
+     * automatically for another lease time. This is done in the background
+     * for every lock taken with {@link #lock lock}. The request is sent over
+     * the third connection to the server.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie, or its lease has already expired.
+     */
+    public void renew(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        SocketBookingDB connection;
+
+        synchronized (renewer) {
+            if (renewConnection == null) {
+                try {
+                    renewConnection = new SocketBookingDB(host, port);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            connection = renewConnection;
+        }
+
+        connection.sendRenew(recNo, cookie);
+    }
+
+    /**
+     * Sends a request to renew a lease over this connection and waits for
+     * the response.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie, or its lease has already expired.
+     */
+    protected synchronized void sendRenew(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        try {
+            begin(SocketProtocol.RENEW);
+            request.writeInt(recNo);
+            request.writeLong(cookie);
+            checkLockStatus(call());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns records that exactly match the specified criteria.
+     * An operator type must be specified to determine the type of matching
+     * to be done.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return an array of record numbers that match the specified criteria.
+     */
+    public synchronized int[] findExact(String[] criteria, int operator) {
+        try {
+            begin(SocketProtocol.FIND_EXACT);
+            SocketProtocol.writeStrings(request, criteria);
+            request.writeInt(operator);
+            DataInputStream response = call();
+            checkStatus(response);
+            return SocketProtocol.readInts(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the records that exactly match the specified criteria together
+     * with their record numbers, as a single operation. The records matched
+     * are the same as for {@link #findExact findExact}.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     *
+     * @return the matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator) {
+        return findExactRecords(criteria, operator, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers with a single request to
+     * the server.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either
+     * {@link BookingDB#SEARCH_TYPE_AND AND} or
+     * {@link BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @return the page of matching records.
+     */
+    public synchronized SearchResult findExactRecords(String[] criteria,
+            int operator, int offset, int limit) {
+        try {
+            begin(SocketProtocol.FIND_EXACT_RECORDS);
+            SocketProtocol.writeStrings(request, criteria);
+            request.writeInt(operator);
+            request.writeInt(offset);
+            request.writeInt(limit);
+            DataInputStream response = call();
+            checkStatus(response);
+            return SocketProtocol.readSearchResult(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads several records with a single request to the server. Element n
+     * of the result holds the fields of record recNos[n], or
+     * <code>null</code> if that record does not exist or is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public synchronized String[][] readAll(int[] recNos) {
+        try {
+            begin(SocketProtocol.READ_ALL);
+            SocketProtocol.writeInts(request, recNos);
+            DataInputStream response = call();
+            checkStatus(response);
+            return SocketProtocol.readRecords(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns a new, empty {@link RecordView RecordView} that can be loaded
+     * with records by {@link #read(int, RecordView) read}. The view must
+     * not be shared between threads.
+     *
+     * @return a new record view.
+     */
+    public RecordView newRecordView() {
+        return new BookingRecord(getFieldLengths());
+    }
+
+    /**
+     * Loads the specified record into a view previously returned by
+     * {@link #newRecordView newRecordView}, replacing the record it held.
+     *
+     * @param recNo the record number of the record to load.
+     * @param view the view to load the record into.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     */
+    public void read(int recNo, RecordView view)
+            throws RecordNotFoundException {
+        ((RecordBuffer) view).set(recNo, read(recNo));
+    }
+
+    /**
+     * Returns the length in bytes of each field of a record as defined by
+     * the schema of the database.
+     *
+     * @return an array where each element is the length of a field.
+     */
+    public synchronized int[] getFieldLengths() {
+        if (fieldLengths == null) {
+            try {
+                begin(SocketProtocol.GET_FIELD_LENGTHS);
+                DataInputStream response = call();
+                checkStatus(response);
+                fieldLengths = SocketProtocol.readInts(response);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        return fieldLengths.clone();
+    }
+
+    /**
+     * Returns the cursor following the most recent change to the database,
+     * from which to start asking for changes with {@link #getChanges
+     * getChanges}.
+     *
+     * @return the current change cursor.
+     */
+    public synchronized long getChangeCursor() {
+        try {
+            begin(SocketProtocol.GET_CHANGE_CURSOR);
+            DataInputStream response = call();
+            checkStatus(response);
+            return response.readLong();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the changes made to the database by any client since the given
+     * cursor, waiting up to the given time on the server for a change if
+     * there have been none. The request is sent over the second connection
+     * to the server.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public ChangeSet getChanges(long since, long timeout) {
+        SocketBookingDB connection;
+
+        synchronized (this) {
+            if (feedConnection == null) {
+                try {
+                    feedConnection = new SocketBookingDB(host, port);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            connection = feedConnection;
+        }
+
+        return connection.pollChanges(since, timeout);
+    }
+
+    /**
+     * Sends a request for changes over this connection and waits for the
+     * response.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    protected synchronized ChangeSet pollChanges(long since, long timeout) {
+        try {
+            begin(SocketProtocol.GET_CHANGES);
+            request.writeLong(since);
+            request.writeLong(timeout);
+            DataInputStream response = call();
+            checkStatus(response);
+            return SocketProtocol.readChangeSet(response);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Closes the connections to the server, which unlocks any record this
+     * client has locked. A request waiting for its response, such as a
+     * <code>lock</code>, fails with a <code>RuntimeException</code>.
+     *
+     * @throws IOException if there is an error closing the sockets.
+     */
+    public void close() throws IOException {
+        SocketBookingDB connection = feedConnection;
+        SocketBookingDB renewals = renewConnection;
+
+        try {
+            socket.close();
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } finally {
+                if (renewals != null) {
+                    renewals.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts building a new request.
+     *
+     * @param operation the operation requested.
+     *
+     * @throws IOException if there is an error writing the request.
+     */
+    protected void begin(byte operation) throws IOException {
+        requestBytes.reset();
+        request.writeByte(operation);
+    }
+
+    /**
+     * Sends the request that has been built to the server and waits for the
+     * response, setting {@link #status status}.
+     *
+     * @return the rest of the response after the status.
+     *
+     * @throws IOException if there is an error communicating with the
+     *          server.
+     */
+    protected DataInputStream call() throws IOException {
+        out.writeInt(requestBytes.size());
+        requestBytes.writeTo(out);
+        out.flush();
+
+        int length = in.readInt();
+        if ((length < 1) || (length > SocketProtocol.MAX_MESSAGE)) {
+            throw new IOException("Invalid response length " + length);
+        }
+        byte[] response = new byte[length];
+        in.readFully(response);
+
+        DataInputStream result = new DataInputStream(
+                new ByteArrayInputStream(response));
+        status = result.readByte();
+        return result;
+    }
+
+    /**
+     * Throws a <code>RuntimeException</code> if the last response was not
+     * successful, for statuses that the operation cannot otherwise report.
+     *
+     * @param response the rest of the response after the status.
+     *
+     * @throws IOException if there is an error reading the response.
+     */
+    protected void checkStatus(DataInputStream response) throws IOException {
+        if (status != SocketProtocol.STATUS_OK) {
+            throw new RuntimeException("Server error "
+                    + status + ": " + SocketProtocol.readString(response));
+        }
+    }
+
+    /**
+     * Checks the response to an operation on a locked record, throwing the
+     * exception reported by the server if it was not successful.
+     *
+     * @param response the rest of the response after the status.
+     *
+     * @throws IOException if there is an error reading the response.
+     * @throws RecordNotFoundException if the record was not found.
+     * @throws suncertify.db.SecurityException if the record was locked with
+     *          a different cookie.
+     */
+    protected void checkLockStatus(DataInputStream response)
+            throws IOException, RecordNotFoundException,
+            suncertify.db.SecurityException {
+        if (status == SocketProtocol.STATUS_RECORD_NOT_FOUND) {
+            throw new RecordNotFoundException(
+                    SocketProtocol.readString(response));
+        } else if (status == SocketProtocol.STATUS_SECURITY) {
+            throw new suncertify.db.SecurityException(
+                    SocketProtocol.readString(response));
+        }
+        checkStatus(response);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * VersionConflictException.java
+ *
+ * Created on 17 October 2026, 06:59
+ */
+
+package suncertify.db;
+
+/**
+ * VersionConflictException is thrown by an optimistic update if the record
+ * has been changed since the version given was read, or is locked by
+ * another client.
+ *
+ * @see BookingDB#updateIfVersion
+ */
+public class VersionConflictException extends Exception {
+    
+    /**
+     * Creates a new instance of <code>VersionConflictException</code> without
+     * detail message.
+     */
+    public VersionConflictException() {
+        super();
+    }
+        
+    /**
+     * Constructs an instance of <code>VersionConflictException</code> with
+     * the specified detail message.
+     *
+     * @param msg the detail message.
+     */
+    public VersionConflictException(String msg) {
+        super(msg);
+    }
+}
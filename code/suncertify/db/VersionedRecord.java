@@ -0,0 +1,63 @@
+/*
+ * VersionedRecord.java
+ *
+ * Created on 17 October 2026, 06:59
+ */
+
+package suncertify.db;
+
+import java.io.Serializable;
+
+/**
+ * The fields of a record together with the version of the record they were
+ * read at, as returned by {@link BookingDB#readVersioned readVersioned}. The
+ * version is given back to {@link BookingDB#updateIfVersion updateIfVersion}
+ * so that the record is only changed if no one else has changed it since.
+ */
+public class VersionedRecord implements Serializable {
+
+    /**
+     * The version of the serialized form of this class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The fields of the record.
+     */
+    protected final String[] fields;
+
+    /**
+     * The version of the record the fields were read at.
+     */
+    protected final long version;
+
+    /**
+     * Creates a record read at the given version.
+     *
+     * @param fields the fields of the record.
+     * @param version the version of the record.
+     */
+    public VersionedRecord(String[] fields, long version) {
+        this.fields = fields;
+        this.version = version;
+    }
+
+    /**
+     * Returns the fields of the record, where each element is a record
+     * value.
+     *
+     * @return the fields of the record.
+     */
+    public String[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the version of the record the fields were read at.
+     *
+     * @return the version stamp.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * WriteAheadLog.java
+ *
+ * Created on 17 October 2026, 07:03
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A redo log of the writes made to a data file, used by
+ * {@link LoggedRecordStore LoggedRecordStore} so that a write is durable
+ * once it is in the log, before it reaches the data file itself.
+ * <p>
+ * Each entry records the offset in the data file and the bytes written
+ * there, followed by a CRC-32 checksum of both. An entry that was only
+ * partly written when the system failed fails its checksum, and it and
+ * anything after it are ignored when the log is {@link #replay replayed}.
+ * <p>
+ * Writes that must be made together are {@link #appendGroup appended} as a
+ * group. Every entry of a group but the last has the top bit of its offset
+ * set to show that more follow, and a group is only replayed once its last
+ * entry has been read, so a crash while a group is written leaves either
+ * all of its writes or none of them.
+ * <p>
+ * Writes are committed in groups. {@link #append append} only adds an entry
+ * to a buffer in memory. The first thread to {@link #commit commit} writes
+ * the buffer to the log file and forces it to the storage device. Threads
+ * that commit while that is in progress wait, and the next of them writes
+ * and forces every entry appended in the meantime in one go. Under load many
+ * writes therefore share each <code>force</code>, which is by far the most
+ * expensive part of a commit.
+ */
+public class WriteAheadLog {
+
+    /**
+     * The number of bytes in an entry besides the bytes written: the offset,
+     * the length and the checksum.
+     */
+    public static final int ENTRY_OVERHEAD = 16;
+
+    /**
+     * The bit set in the offset of an entry that is followed by another entry
+     * of the same group.
+     */
+    protected static final long CONTINUED = Long.MIN_VALUE;
+
+    /**
+     * The log file.
+     */
+    protected final RandomAccessFile file;
+
+    /**
+     * The channel used to write the log file.
+     */
+    protected final FileChannel channel;
+
+    /**
+     * The entries appended but not yet written to the log file.
+     */
+    protected ByteArrayOutputStream pending;
+
+    /**
+     * The stream used to write entries into the pending buffer.
+     */
+    protected DataOutputStream pendingOut;
+
+    /**
+     * The length of the log including the pending entries.
+     */
+    protected long appended;
+
+    /**
+     * The length of the log that has been forced to the storage device.
+     */
+    protected long forced;
+
+    /**
+     * Flag to indicate that a thread is writing and forcing a group of
+     * entries.
+     */
+    protected boolean forcing;
+
+    /**
+     * The error that stopped entries being written, after which nothing
+     * more can be committed until the log is {@link #reset reset}.
+     */
+    protected IOException failure;
+
+    /**
+     * The number of commits made.
+     */
+    protected long commits;
+
+    /**
+     * The number of times the log file has been forced.
+     */
+    protected long forces;
+
+    /**
+     * Opens a log, creating the file if it does not exist. Entries already in
+     * the file are kept until the log is {@link #reset reset}, so that they
+     * can be replayed.
+     *
+     * @param logFile the log file.
+     *
+     * @throws IOException if the file cannot be opened.
+     */
+    public WriteAheadLog(File logFile) throws IOException {
+        file = new RandomAccessFile(logFile, "rw");
+        channel = file.getChannel();
+        pending = new ByteArrayOutputStream();
+        pendingOut = new DataOutputStream(pending);
+        appended = channel.size();
+        forced = appended;
+    }
+
+    /**
+     * Applies every complete entry in the log file to a store, in the order
+     * they were written. Reading stops at the first entry that is incomplete
+     * or fails its checksum, and the entries read of a group that it ends
+     * are not applied. The store is not forced.
+     *
+     * @param store the store to apply the entries to.
+     *
+     * @throws IOException if there is an error reading the log or writing the
+     *          store.
+     *
+     * @return the number of entries applied.
+     */
+    public synchronized int replay(RecordStore store) throws IOException {
+        file.seek(0);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file.getFD())));
+        long remaining = channel.size();
+        List group = new ArrayList(); //Offsets and bytes of the group read
+        int count = 0;
+
+        while (remaining >= ENTRY_OVERHEAD) {
+            long position = in.readLong();
+            int length = in.readInt();
+            if ((length < 0) || (length > remaining - ENTRY_OVERHEAD)) {
+                break; //Length was not completely written
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            if (in.readInt() != checksum(position, bytes)) {
+                break; //Entry was not completely written
+            }
+            remaining -= ENTRY_OVERHEAD + length;
+            group.add(new Long(position & ~CONTINUED));
+            group.add(bytes);
+            if ((position & CONTINUED) != 0) {
+                continue; //The rest of the group follows
+            }
+
+            for (Iterator i = group.iterator(); i.hasNext(); ) {
+                store.write(((Long) i.next()).longValue(), (byte[]) i.next());
+                count++;
+            }
+            group.clear();
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds an entry for a write to the log. The entry is not durable until
+     * it has been {@link #commit committed}.
+     *
+     * @param position the offset in the data file written to.
+     * @param bytes the bytes written.
+     *
+     * @return the length of the log including the entry, to be passed to
+     *          <code>commit</code>.
+     */
+    public synchronized long append(long position, byte[] bytes) {
+        appendEntry(position, bytes);
+
+        return appended;
+    }
+
+    /**
+     * Adds a group of entries for writes that must be made together to the
+     * log. When the log is replayed either every write of the group is made
+     * or none of them is. The entries are not durable until they have been
+     * {@link #commit committed}.
+     *
+     * @param positions the offsets in the data file written to.
+     * @param bytes the bytes written at each offset.
+     *
+     * @return the length of the log including the entries, to be passed to
+     *          <code>commit</code>.
+     */
+    public synchronized long appendGroup(long[] positions, byte[][] bytes) {
+        int last = positions.length - 1;
+
+        for (int i = 0; i < last; i++) {
+            appendEntry(positions[i] | CONTINUED, bytes[i]);
+        }
+        appendEntry(positions[last], bytes[last]);
+
+        return appended;
+    }
+
+    /**
+     * Adds an entry to the pending buffer. The caller must hold this
+     * object's monitor.
+     *
+     * @param position the offset in the data file written to, with the
+     *          {@link #CONTINUED CONTINUED} bit set if the entry is followed
+     *          by another of the same group.
+     * @param bytes the bytes written.
+     */
+    protected void appendEntry(long position, byte[] bytes) {
+        try {
+            pendingOut.writeLong(position);
+            pendingOut.writeInt(bytes.length);
+            pendingOut.write(bytes);
+            pendingOut.writeInt(checksum(position, bytes));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); //Should never happen in memory
+        }
+        appended += ENTRY_OVERHEAD + bytes.length;
+    }
+
+    /**
+     * Waits until the log has been forced to the storage device up to the
+     * given length, writing and forcing the pending entries itself if no
+     * other thread is doing so.
+     *
+     * @param length the length of the log returned by {@link #append append}.
+     *
+     * @throws IOException if there is an error writing the log, now or in an
+     *          earlier commit.
+     */
+    public void commit(long length) throws IOException {
+        byte[] group;
+        long start;
+        boolean interrupted = false;
+
+        synchronized (this) {
+            while ((forced < length) && forcing && (failure == null)) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true; //The write must still be committed
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            commits++;
+            if (forced >= length) {
+                return; //Forced by another thread
+            }
+
+            forcing = true;
+            group = pending.toByteArray();
+            pending.reset();
+            start = forced;
+        }
+
+        IOException error = null;
+        try {
+            ByteBuffer src = ByteBuffer.wrap(group);
+            while (src.hasRemaining()) {
+                channel.write(src, start + src.position());
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            error = ex;
+        }
+
+        synchronized (this) {
+            forcing = false;
+            if (error == null) {
+                forced = start + group.length;
+                forces++;
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Empties the log once every entry has been applied to the data file and
+     * the data file forced. The caller must make sure that no entries are
+     * appended or committed meanwhile. An error that stopped entries being
+     * written is cleared, as the entries it affected have been discarded.
+     *
+     * @throws IOException if there is an error truncating the file.
+     */
+    public synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        pending.reset();
+        appended = 0;
+        forced = 0;
+        failure = null;
+    }
+
+    /**
+     * Returns the length of the log, including entries not yet committed.
+     *
+     * @return the length in bytes.
+     */
+    public synchronized long size() {
+        return appended;
+    }
+
+    /**
+     * Returns the number of commits made since the log was opened.
+     *
+     * @return the number of commits.
+     */
+    public synchronized long getCommitCount() {
+        return commits;
+    }
+
+    /**
+     * Returns the number of times the log file has been forced since it was
+     * opened. This is lower than the number of commits when commits have
+     * been grouped.
+     *
+     * @return the number of forces.
+     */
+    public synchronized long getForceCount() {
+        return forces;
+    }
+
+    /**
+     * Closes the log file.
+     *
+     * @throws IOException if there is an error closing the file.
+     */
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Returns the checksum of an entry.
+     *
+     * @param position the offset in the data file written to, including the
+     *          {@link #CONTINUED CONTINUED} bit.
+     * @param bytes the bytes written.
+     *
+     * @return the CRC-32 of the offset and bytes.
+     */
+    protected static int checksum(long position, byte[] bytes) {
+        CRC32 crc = new CRC32();
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (position >>> shift));
+        }
+        crc.update(bytes);
+
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * ChangeEvent.java
+ *
+ * Created on 17 October 2026, 06:41
+ */
+
+package suncertify.server;
+
+import java.io.Serializable;
+import suncertify.db.BookingDB;
+
+/**
+ * A change to one record of the database, reported to network clients by a
+ * {@link ChangeFeed ChangeFeed}.
+ */
+public class ChangeEvent implements Serializable {
+
+    /**
+     * The version of the serialized form of this class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The record number of the record that changed.
+     */
+    protected final int recNo;
+
+    /**
+     * The new values of the record's fields, or <code>null</code> if the
+     * record was deleted.
+     */
+    protected final String[] data;
+
+    /**
+     * Creates an event for a record that was created, updated or deleted.
+     *
+     * @param recNo the record number of the record that changed.
+     * @param data the new values of the record's fields, or
+     *          <code>null</code> if the record was deleted.
+     */
+    public ChangeEvent(int recNo, String[] data) {
+        this.recNo = recNo;
+        this.data = data;
+    }
+
+    /**
+     * Returns the record number of the record that changed.
+     *
+     * @return the record number.
+     */
+    public int getRecNo() {
+        return recNo;
+    }
+
+    /**
+     * Returns <code>true</code> if the record was deleted.
+     *
+     * @return <code>true</code> if the record was deleted.
+     */
+    public boolean isDeleted() {
+        return data == null;
+    }
+
+    /**
+     * Returns the new values of the record's fields.
+     *
+     * @return an array where each element is a field value, or
+     *          <code>null</code> if the record was deleted.
+     */
+    public String[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the customer ID the record is now booked to.
+     *
+     * @return the owner field of the record, or <code>null</code> if the
+     *          record was deleted.
+     */
+    public String getOwner() {
+        return (data == null ? null : data[BookingDB.OWNER_FIELD]);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * ChangeFeed.java
+ *
+ * Created on 17 October 2026, 06:41
+ */
+
+package suncertify.server;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import suncertify.db.RecordListener;
+
+/**
+ * A feed of the changes made to the records of the database, from which
+ * network clients learn of bookings made by other clients without searching
+ * again.
+ * <p>
+ * The feed is registered as a {@link RecordListener RecordListener} of the
+ * server's data object and keeps the most recent changes in a fixed size
+ * ring. Each change is numbered; a client holds a cursor, the number of the
+ * next change it has not seen, and long-polls for the changes following it
+ * with {@link #getChanges getChanges}, which waits until there is a change
+ * or the timeout expires. A client that falls so far behind that its changes
+ * have been overwritten is told that its change set is incomplete, as is a
+ * client whose changes include records appended in bulk, which are marked by
+ * a single entry in the ring.
+ * <p>
+ * {@link #getChangesAsync getChangesAsync} long-polls without holding the
+ * calling thread, for the socket server, returning a future that is
+ * completed by the next change or when the timeout expires.
+ */
+public class ChangeFeed implements RecordListener {
+
+    /**
+     * The default number of changes kept.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The most recent changes, change n being held at position
+     * n % log.length.
+     */
+    protected final ChangeEvent[] log;
+
+    /**
+     * The number of the next change to be made, which is also the number of
+     * changes made so far.
+     */
+    protected long cursor;
+
+    /**
+     * The futures of the long polls waiting for the next change, all of
+     * which asked for the changes since the current cursor.
+     */
+    protected final List waiting;
+
+    /**
+     * The thread that times out the polls of {@link #getChangesAsync
+     * getChangesAsync}, or <code>null</code> if there has been none yet.
+     */
+    protected ScheduledExecutorService timer;
+
+    /**
+     * Creates a feed keeping the default number of changes.
+     */
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a feed keeping the specified number of changes.
+     *
+     * @param capacity the number of changes kept.
+     */
+    public ChangeFeed(int capacity) {
+        log = new ChangeEvent[capacity];
+        waiting = new ArrayList();
+    }
+
+    /**
+     * Adds an update or creation of a record to the feed.
+     *
+     * @param recNo the record number of the record that was written.
+     * @param data the new values of the record's fields.
+     */
+    public void recordWritten(int recNo, String[] data) {
+        publish(new ChangeEvent(recNo, data.clone()));
+    }
+
+    /**
+     * Adds a deletion of a record to the feed.
+     *
+     * @param recNo the record number of the record that was deleted.
+     */
+    public void recordDeleted(int recNo) {
+        publish(new ChangeEvent(recNo, null));
+    }
+
+    /**
+     * Adds a marker for records appended in bulk to the feed, rather than a
+     * change for each of them. A client asking for the changes since before
+     * the marker is told that its change set is incomplete, as if it had
+     * fallen behind, so that it searches again.
+     *
+     * @param first the record number of the first record appended.
+     * @param last the record number of the last record appended.
+     *
+     * @return <code>false</code>, as the records are not needed one by one.
+     */
+    public boolean recordsAppended(int first, int last) {
+        publish(null);
+        return false;
+    }
+
+    /**
+     * Adds a change to the feed and wakes any clients waiting for changes.
+     *
+     * @param event the change, or <code>null</code> for a marker of records
+     *          appended in bulk.
+     */
+    protected void publish(ChangeEvent event) {
+        List polls = null;
+        ChangeSet changes = null;
+
+        synchronized (this) {
+            if (!waiting.isEmpty()) {
+                polls = new ArrayList(waiting);
+                waiting.clear();
+            }
+            log[(int) (cursor % log.length)] = event;
+            cursor++;
+            notifyAll();
+            if (polls != null) {
+                changes = changesSince(cursor - 1);
+            }
+        }
+
+        /* Completing a poll sends its response, so do it outside the lock */
+        if (polls != null) {
+            for (Iterator i = polls.iterator(); i.hasNext(); ) {
+                ((CompletableFuture) i.next()).complete(changes);
+            }
+        }
+    }
+
+    /**
+     * Returns the cursor following the most recent change, from which a new
+     * client should start asking for changes.
+     *
+     * @return the current cursor.
+     */
+    public synchronized long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Returns the changes made since the given cursor, waiting up to the
+     * given time for a change if there have been none.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public synchronized ChangeSet getChanges(long since, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        try {
+            while (since == cursor) {
+                long delay = deadline - System.currentTimeMillis();
+                if (delay <= 0) {
+                    break;
+                }
+                wait(delay);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); //Return what there is
+        }
+
+        return changesSince(since);
+    }
+
+    /**
+     * Returns a future that completes with the changes made since the given
+     * cursor. If there have been none the future completes when the next
+     * change is made, or with no changes once the given time has passed,
+     * without holding the calling thread in the meantime.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @return a future that completes with the changes since the cursor,
+     *          which may be none.
+     */
+    public synchronized CompletableFuture getChangesAsync(long since,
+            long timeout) {
+        if ((since != cursor) || (timeout <= 0)) {
+            return CompletableFuture.completedFuture(changesSince(since));
+        }
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "ChangeFeed");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        final CompletableFuture poll = new CompletableFuture();
+        final ChangeSet none = new ChangeSet(new ChangeEvent[0], since, true);
+        waiting.add(poll);
+        final ScheduledFuture expiry = timer.schedule(new Runnable() {
+            public void run() {
+                poll.complete(none);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        poll.whenComplete(new BiConsumer() {
+            public void accept(Object changes, Object ex) {
+                expiry.cancel(false);
+                synchronized (ChangeFeed.this) {
+                    waiting.remove(poll); //Timed out before a change
+                }
+            }
+        });
+
+        return poll;
+    }
+
+    /**
+     * Returns the changes made since the given cursor without waiting.
+     * Must be called while holding this object's monitor.
+     *
+     * @param since the cursor returned with the last changes seen.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    protected ChangeSet changesSince(long since) {
+
+        /* Changes have been overwritten or the cursor is not from this feed */
+        if ((since < cursor - log.length) || (since > cursor)) {
+            return new ChangeSet(new ChangeEvent[0], cursor, false);
+        }
+
+        ChangeEvent[] events = new ChangeEvent[(int) (cursor - since)];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = log[(int) ((since + i) % log.length)];
+            if (events[i] == null) { //Records have been appended in bulk
+                return new ChangeSet(new ChangeEvent[0], cursor, false);
+            }
+        }
+
+        return new ChangeSet(events, cursor, true);
+    }
+}
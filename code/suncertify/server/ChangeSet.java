@@ -0,0 +1,85 @@
+/*
+ * ChangeSet.java
+ *
+ * Created on 17 October 2026, 06:41
+ */
+
+package suncertify.server;
+
+import java.io.Serializable;
+
+/**
+ * The changes returned by a {@link ChangeFeed ChangeFeed} since a given
+ * cursor, in the order they were made, together with the cursor from which
+ * to ask for the next changes.
+ * <p>
+ * If the changes asked for are no longer held by the feed the set is marked
+ * as incomplete and the client should read all the records it is interested
+ * in again.
+ */
+public class ChangeSet implements Serializable {
+
+    /**
+     * The version of the serialized form of this class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The changes in the order they were made.
+     */
+    protected final ChangeEvent[] events;
+
+    /**
+     * The cursor following the last change in this set.
+     */
+    protected final long cursor;
+
+    /**
+     * <code>false</code> if some changes since the cursor asked for were
+     * lost.
+     */
+    protected final boolean complete;
+
+    /**
+     * Creates a set of changes.
+     *
+     * @param events the changes in the order they were made.
+     * @param cursor the cursor following the last change.
+     * @param complete <code>false</code> if some changes were lost.
+     */
+    public ChangeSet(ChangeEvent[] events, long cursor, boolean complete) {
+        this.events = events;
+        this.cursor = cursor;
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the changes in the order they were made.
+     *
+     * @return the changes.
+     */
+    public ChangeEvent[] getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the cursor to use when asking for the changes following this
+     * set.
+     *
+     * @return the next cursor.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Returns <code>false</code> if some changes since the cursor asked for
+     * were lost, in which case the client should read all the records it is
+     * interested in again.
+     *
+     * @return <code>true</code> if the set holds every change.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * LockSession.java
+ *
+ * Created on 17 October 2026, 06:57
+ */
+
+package suncertify.server;
+
+import suncertify.db.*;
+
+/**
+ * Keeps a note of every record locked by one network client, together with
+ * the cookie it was locked with, so that all of them can be unlocked when the
+ * client dies or the connection to it is lost.
+ * <p>
+ * Clients normally hold only one or two locks at a time, so the record
+ * numbers and cookies are kept in a small open addressing hash table of
+ * primitive <code>int</code> and <code>long</code> arrays rather than a
+ * <code>Map</code> of <code>Integer</code> and <code>Long</code> objects.
+ * Record numbers start at 1, so a record number of 0 marks an empty slot.
+ * <p>
+ * Once the session is {@link #close closed} any lock that is noted is
+ * released at once, as it may have been granted to a thread that was waiting
+ * for it when the client died.
+ * <p>
+ * Closing the session relies on the server noticing that the client has
+ * gone, which over RMI can take many minutes, so the locks of network
+ * clients are also taken with a lease of {@link #LEASE_TIME LEASE_TIME} that
+ * the client renews every {@link #RENEW_INTERVAL RENEW_INTERVAL} while it
+ * holds the lock.
+ */
+public class LockSession {
+
+    /**
+     * The lease time in milliseconds of the locks taken for network
+     * clients.
+     */
+    public static final long LEASE_TIME = 60000;
+
+    /**
+     * The time in milliseconds between a network client's renewals of the
+     * lease on each lock it holds, a third of the lease time so that a
+     * renewal can be late or lost without the lease expiring.
+     */
+    public static final long RENEW_INTERVAL = LEASE_TIME / 3;
+
+    /**
+     * The initial number of slots in the table, which must be a power of 2.
+     */
+    protected static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Server-side data access object.
+     */
+    protected final BookingDB db;
+
+    /**
+     * The record numbers of the locked records, or 0 for an empty slot.
+     */
+    protected int[] records;
+
+    /**
+     * The cookies the records were locked with, in the same slots as their
+     * record numbers.
+     */
+    protected long[] cookies;
+
+    /**
+     * The number of records locked.
+     */
+    protected int size;
+
+    /**
+     * Flag to indicate that the client has gone.
+     */
+    protected boolean closed;
+
+    /**
+     * Creates a session for a newly connected client using the provided
+     * BookingDB object for data access.
+     *
+     * @param db the server-side data access object to be used.
+     */
+    public LockSession(BookingDB db) {
+        this.db = db;
+        records = new int[INITIAL_CAPACITY];
+        cookies = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Notes a lock that has been granted to the client. If the session has
+     * already been closed the record is unlocked again at once.
+     *
+     * @param recNo the record number of the record locked.
+     * @param cookie the cookie the record was locked with.
+     */
+    public synchronized void locked(int recNo, long cookie) {
+        if (closed) {
+            try {
+                db.unlock(recNo, cookie);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex); // Should never happen.
+            }
+            return;
+        }
+
+        if ((size + 1) * 2 > records.length) {
+            resize(records.length * 2);
+        }
+
+        int slot = find(recNo);
+        if (records[slot] == 0) {
+            records[slot] = recNo;
+            size++;
+        }
+        cookies[slot] = cookie;
+    }
+
+    /**
+     * Forgets the lock on a record that the client has unlocked or deleted.
+     *
+     * @param recNo the record number of the record.
+     */
+    public synchronized void unlocked(int recNo) {
+        int slot = find(recNo);
+
+        if (records[slot] == 0) {
+            return;
+        }
+
+        /*
+         * Move back any following entries that belong before the empty slot,
+         * so that every entry can still be found by probing from its hash.
+         */
+        int mask = records.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (records[next] == 0) {
+                break;
+            }
+            int home = hash(records[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                records[slot] = records[next];
+                cookies[slot] = cookies[next];
+                slot = next;
+            }
+        }
+        records[slot] = 0;
+        cookies[slot] = 0;
+        size--;
+    }
+
+    /**
+     * Returns the cookie a record was locked with by the client.
+     *
+     * @param recNo the record number of the record.
+     *
+     * @return the cookie, or 0 if the client has not locked the record.
+     */
+    public synchronized long getCookie(int recNo) {
+        return cookies[find(recNo)];
+    }
+
+    /**
+     * Returns the number of records currently locked by the client.
+     *
+     * @return the number of locks held.
+     */
+    public synchronized int getLockCount() {
+        return size;
+    }
+
+    /**
+     * Returns the record numbers of the records currently locked by the
+     * client, in no particular order.
+     *
+     * @return an array of record numbers.
+     */
+    public synchronized int[] getLockedRecords() {
+        int[] locked = new int[size];
+        int n = 0;
+
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] != 0) {
+                locked[n++] = records[i];
+            }
+        }
+
+        return locked;
+    }
+
+    /**
+     * Returns whether the session has been closed.
+     *
+     * @return <code>true</code> if the client has gone.
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Called when the client has gone. Every record locked by the client is
+     * unlocked, in a single call when the database is a
+     * {@link suncertify.db.Data Data} object. A record whose lock has
+     * already been released, for instance because the record was deleted, is
+     * skipped.
+     *
+     * @return the number of records unlocked.
+     */
+    public synchronized int close() {
+        int[] locked = new int[size];
+        long[] lockCookies = new long[size];
+        int n = 0;
+        int unlocked = 0;
+
+        closed = true;
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] != 0) {
+                locked[n] = records[i];
+                lockCookies[n++] = cookies[i];
+            }
+        }
+        records = new int[INITIAL_CAPACITY];
+        cookies = new long[INITIAL_CAPACITY];
+        size = 0;
+
+        if (db instanceof Data) {
+            return ((Data) db).unlockAll(locked, lockCookies);
+        }
+
+        for (int i = 0; i < locked.length; i++) {
+            try {
+                db.unlock(locked[i], lockCookies[i]);
+                unlocked++;
+            } catch (RecordNotFoundException ex) {
+                //Deleted, which released the lock
+            } catch (suncertify.db.SecurityException ex) {
+                //Lock has already been released
+            }
+        }
+
+        return unlocked;
+    }
+
+    /**
+     * Returns the slot holding a record number, or the empty slot where it
+     * would be added.
+     *
+     * @param recNo the record number.
+     *
+     * @return the slot index.
+     */
+    protected int find(int recNo) {
+        int mask = records.length - 1;
+        int slot = hash(recNo);
+
+        while ((records[slot] != 0) && (records[slot] != recNo)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Returns the slot a record number is first looked for in.
+     *
+     * @param recNo the record number.
+     *
+     * @return the slot index.
+     */
+    protected int hash(int recNo) {
+        int h = recNo * 0x9E3779B9;
+
+        return (h ^ (h >>> 16)) & (records.length - 1);
+    }
+
+    /**
+     * Moves the entries into a table with the given number of slots.
+     *
+     * @param capacity the new number of slots, which must be a power of 2.
+     */
+    protected void resize(int capacity) {
+        int[] oldRecords = records;
+        long[] oldCookies = cookies;
+
+        records = new int[capacity];
+        cookies = new long[capacity];
+        for (int i = 0; i < oldRecords.length; i++) {
+            if (oldRecords[i] != 0) {
+                int slot = find(oldRecords[i]);
+                records[slot] = oldRecords[i];
+                cookies[slot] = oldCookies[i];
+            }
+        }
+    }
+}
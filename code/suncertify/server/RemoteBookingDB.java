@@ -10,6 +10,9 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.DuplicateKeyException;
+import suncertify.db.SearchResult;
+import suncertify.db.VersionConflictException;
+import suncertify.db.VersionedRecord;
 
 /**
  * An RMI version of the {@link suncertify.db.BookingDB BookingDB} interface.
@@ -150,6 +153,24 @@ public interface RemoteBookingDB extends Remote {
             throws RecordNotFoundException, suncertify.db.SecurityException,
             RemoteException;
     
+    /**
+     * Renews the lease on a locked record so that the lock is not released
+     * automatically for another lease time.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is 
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie, or its lease has already expired.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     */
+    public void renew(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException,
+            RemoteException;
+    
     /**
      * Returns records that exactly match the specified criteria.
      * An operator type must be specified to determine the type of matching
@@ -167,4 +188,118 @@ public interface RemoteBookingDB extends Remote {
      */ 
     public int[] findExact(String[] criteria, int operator)
             throws RemoteException;        
+    
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers, as a single operation.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link suncertify.db.BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link suncertify.db.BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the page of matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator,
+            int offset, int limit) throws RemoteException;
+    
+    /**
+     * Reads several records in a single call. Element n of the result holds
+     * the fields of record recNos[n], or <code>null</code> if that record
+     * does not exist or is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public String[][] readAll(int[] recNos) throws RemoteException;
+    
+    /**
+     * Reads a record together with its version, so that it can later be
+     * changed with {@link #updateIfVersion updateIfVersion} without holding
+     * the lock on the record in the meantime.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the record values and version.
+     */
+    public VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException, RemoteException;
+    
+    /**
+     * Modifies the fields of a record without locking it, provided that it
+     * has not been written since it was read at the given version and is not
+     * locked.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the new version of the record.
+     */
+    public long updateIfVersion(int recNo, String[] data, long version)
+            throws RecordNotFoundException, VersionConflictException,
+            RemoteException;
+    
+    /**
+     * Returns the cursor following the most recent change to the database,
+     * from which to start asking for changes with {@link #getChanges
+     * getChanges}.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the current change cursor.
+     */
+    public long getChangeCursor() throws RemoteException;
+    
+    /**
+     * Returns the changes made to the database since the given cursor,
+     * waiting up to the given time for a change if there have been none.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public ChangeSet getChanges(long since, long timeout)
+            throws RemoteException;
+    
+    /**
+     * Returns the length in bytes of each field of a record as defined by
+     * the schema of the database.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return an array where each element is the length of a field.
+     */
+    public int[] getFieldLengths() throws RemoteException;
 }
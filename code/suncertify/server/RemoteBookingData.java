@@ -16,9 +16,9 @@ import suncertify.db.*;
  * allows remote clients to access the database. One instanace per client is
  * created on the server.
  * <p>
- * A note of the record currently locked by the remote client is kept so that
- * if the client dies or the network connection is lost the record can be
- * unlocked on the server.
+ * A note of every record locked by the remote client is kept in a
+ * {@link LockSession LockSession} so that if the client dies or the network
+ * connection is lost the records can be unlocked on the server.
  *
  * @author Nick Shrine
  */
@@ -31,32 +31,46 @@ public class RemoteBookingData extends UnicastRemoteObject implements
     protected final BookingDB db;
     
     /**
-     * The record locked by the currently connected client.
+     * The feed of changes to the database shared by all clients.
      */
-    protected int lockedRecord;
+    protected final ChangeFeed feed;
     
     /**
-     * The cookie with which the currently locked record was locked.
+     * The records locked by the currently connected client.
      */
-    protected long savedCookie;
+    protected final LockSession session;
     
-    /**
-     * Flag to indicate that the connection to the client has been lost.
+    /**     
+     * Creates a RemoteBookingData object using the provided BookingDB object
+     * for data access on the server side, with a change feed of its own that
+     * reports no changes.
+     *
+     * @param db the server-side data access object to be used.
+     *
+     * @throws RemoteException if there is a communication problem with the
+     *          client.
      */
-    protected boolean unreferenced;
+    public RemoteBookingData(BookingDB db) throws RemoteException {         
+        this(db, new ChangeFeed());
+    }
     
     /**     
      * Creates a RemoteBookingData object using the provided BookingDB object
-     * for data access on the server side.
+     * for data access on the server side and reporting the changes in the
+     * provided feed.
      *
      * @param db the server-side data access object to be used.
+     * @param feed the feed of changes to the database.
      *
      * @throws RemoteException if there is a communication problem with the
      *          client.
      */
-    public RemoteBookingData(BookingDB db) throws RemoteException {         
+    public RemoteBookingData(BookingDB db, ChangeFeed feed)
+            throws RemoteException {         
         super();                
         this.db = db;              
+        this.feed = feed;
+        session = new LockSession(db);
     }
     
     /**
@@ -119,6 +133,7 @@ public class RemoteBookingData extends UnicastRemoteObject implements
             RecordNotFoundException, suncertify.db.SecurityException,
             RemoteException {        
         db.delete(recNo, lockCookie);
+        session.unlocked(recNo); // Deleting the record released the lock
     }
     
     /**
@@ -165,6 +180,10 @@ public class RemoteBookingData extends UnicastRemoteObject implements
      * updated, or deleted. If the specified record is already locked by a 
      * different client, the current thread gives up the CPU and consumes no 
      * CPU cycles until the record is unlocked.
+     * <p>
+     * The lock is taken with a lease of {@link LockSession#LEASE_TIME
+     * LEASE_TIME}, so the client must {@link #renew renew} it while it holds
+     * the lock.
      *
      * @param recNo the record number of the record to be locked.
      *
@@ -178,23 +197,21 @@ public class RemoteBookingData extends UnicastRemoteObject implements
      */
     public long lock(int recNo) throws RecordNotFoundException,
             RemoteException {    
-        long cookie = db.lock(recNo); // Thread may sleep here
+        long cookie;
+        
+        /* Lease the lock so that it is released if the client dies */
+        if (db instanceof Data) {
+            cookie = ((Data) db).lock(recNo, LockSession.LEASE_TIME);
+        } else {
+            cookie = db.lock(recNo); // Thread may sleep here
+        }
         
         /*
          * If the client died while the current thread was sleeping waiting
-         * to obtain a lock in the db.lock() call above then we need to unlock
-         * the record we just obtained the lock on.
+         * to obtain a lock in the db.lock() call above then the session
+         * unlocks the record we just obtained the lock on.
          */
-        if (unreferenced) {
-            try {
-                db.unlock(recNo, cookie);
-            } catch (suncertify.db.SecurityException ex) {
-                throw new RuntimeException(ex); // Should never happen.
-            }
-        } else {
-            savedCookie = cookie;
-            lockedRecord = recNo;
-        }
+        session.locked(recNo, cookie);
         
         return cookie;
     }       
@@ -216,8 +233,26 @@ public class RemoteBookingData extends UnicastRemoteObject implements
     public void unlock(int recNo, long cookie) throws RecordNotFoundException,
             suncertify.db.SecurityException, RemoteException {
         db.unlock(recNo, cookie);        
-        savedCookie = 0;
-        lockedRecord = 0;
+        session.unlocked(recNo);
+    }
+    
+    /**
+     * Renews the lease on a locked record so that the lock is not released
+     * automatically for another lease time.
+     *
+     * @param recNo the record number of the locked record.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is 
+     *          an error accessing the database.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie, or its lease has already expired.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     */
+    public void renew(int recNo, long cookie) throws RecordNotFoundException,
+            suncertify.db.SecurityException, RemoteException {
+        db.renew(recNo, cookie);
     }
     
     /**
@@ -239,27 +274,157 @@ public class RemoteBookingData extends UnicastRemoteObject implements
             RemoteException {        
         return (db.findExact(criteria, operator));        
     }               
+    
+    /**
+     * Returns one page of the records that exactly match the specified
+     * criteria together with their record numbers, as a single operation.
+     * The matches are numbered from 0 in ascending order of record number
+     * and the page holds up to limit of them starting at offset. Records
+     * deleted after matching are left out of the page.
+     *
+     * @param criteria the criteria to be matched.
+     * @param operator the type of match to be performed, either 
+     * {@link suncertify.db.BookingDB#SEARCH_TYPE_AND AND} or 
+     * {@link suncertify.db.BookingDB#SEARCH_TYPE_OR OR}.
+     * @param offset the number of matches to skip.
+     * @param limit the maximum number of records to return.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the page of matching records.
+     */
+    public SearchResult findExactRecords(String[] criteria, int operator,
+            int offset, int limit) throws RemoteException {
+        return (db.findExactRecords(criteria, operator, offset, limit));
+    }
+    
+    /**
+     * Reads several records in a single call, making one pass over the
+     * records on the server. Element n of the result holds the fields of
+     * record recNos[n], or <code>null</code> if that record does not exist or
+     * is deleted.
+     *
+     * @param recNos the record numbers of the records to be read.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return an array where each element is a record, or <code>null</code>.
+     */
+    public String[][] readAll(int[] recNos) throws RemoteException {
+        return (db.readAll(recNos));
+    }
+    
+    /**
+     * Reads a record together with its version, so that it can later be
+     * changed with {@link #updateIfVersion updateIfVersion} without holding
+     * the lock on the record in the meantime.
+     *
+     * @param recNo the record number of the record to be read.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the record values and version.
+     */
+    public VersionedRecord readVersioned(int recNo)
+            throws RecordNotFoundException, RemoteException {
+        return (db.readVersioned(recNo));
+    }
+    
+    /**
+     * Modifies the fields of a record without locking it, provided that it
+     * has not been written since it was read at the given version and is not
+     * locked.
+     *
+     * @param recNo the record number of the record to be modified.
+     * @param data the modified data.
+     * @param version the version of the record the change was based on.
+     *
+     * @throws RecordNotFoundException if the record does not exist or there is
+     *          an error accessing the database.
+     * @throws VersionConflictException if the record has been written since
+     *          the given version or is locked.
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the new version of the record.
+     */
+    public long updateIfVersion(int recNo, String[] data, long version)
+            throws RecordNotFoundException, VersionConflictException,
+            RemoteException {
+        return (db.updateIfVersion(recNo, data, version));
+    }
+    
+    /**
+     * Returns the cursor following the most recent change to the database,
+     * from which to start asking for changes with {@link #getChanges
+     * getChanges}.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the current change cursor.
+     */
+    public long getChangeCursor() throws RemoteException {
+        return (feed.getCursor());
+    }
+    
+    /**
+     * Returns the changes made to the database since the given cursor,
+     * waiting up to the given time for a change if there have been none.
+     *
+     * @param since the cursor returned with the last changes seen.
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to
+     *          wait.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return the changes since the cursor, which may be none.
+     */
+    public ChangeSet getChanges(long since, long timeout)
+            throws RemoteException {
+        return (feed.getChanges(since, timeout));
+    }
+    
+    /**
+     * Returns the length in bytes of each field of a record as defined by
+     * the schema of the database.
+     *
+     * @throws RemoteException if there is a communication problem between the
+     *          server and client.
+     *
+     * @return an array where each element is the length of a field.
+     */
+    public int[] getFieldLengths() throws RemoteException {
+        return (db.getFieldLengths());
+    }
+    
+    /**
+     * Returns the number of records currently locked by the client, for
+     * monitoring the server.
+     *
+     * @return the number of locks held by the client.
+     */
+    public int getLockCount() {
+        return session.getLockCount();
+    }
          
     /**
      * Called by the RMI runtime sometime after the runtime determines that the
      * connection to the client has been lost.
-     * If the client had locked a record in the database when the connection 
-     * was lost then it is unlocked.
+     * Every record the client had locked in the database when the connection 
+     * was lost is unlocked.
      * <p>
-     * The {@link RemoteBookingData#unreferenced unreferenced} flag is also set
-     * so that if a thread on the server side is waiting to obtain a lock on a
-     * record when the client dies it will immediately release the lock once it
-     * has obtained it.
+     * The session is also closed so that if a thread on the server side is
+     * waiting to obtain a lock on a record when the client dies it will
+     * immediately release the lock once it has obtained it.
      */
     public void unreferenced() {         
-        unreferenced = true; // Set flag to indicate the client has died
-        
-        if (lockedRecord > 0) {
-            try {                
-                unlock(lockedRecord, savedCookie);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex); // Should never happen
-            }
-        }
+        session.close();
     }    
 }
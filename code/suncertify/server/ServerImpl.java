@@ -9,6 +9,7 @@ package suncertify.server;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import suncertify.db.BookingDB;
+import suncertify.db.Data;
 
 /**
  * Implementation of the {@link Server Server} interface.
@@ -22,6 +23,11 @@ public class ServerImpl extends UnicastRemoteObject implements Server {
      */
     protected final BookingDB db;
     
+    /**
+     * The feed of changes to the database shared by all clients.
+     */
+    protected final ChangeFeed feed;
+    
     /**     
      * Creates a Server object using the provided BookingDB object
      * for data access on the server side.
@@ -34,6 +40,12 @@ public class ServerImpl extends UnicastRemoteObject implements Server {
     public ServerImpl(BookingDB db) throws RemoteException {
         super();
         this.db = db;
+        feed = new ChangeFeed();
+        
+        /* Only a local data object can report its changes */
+        if (db instanceof Data) {
+            ((Data) db).addRecordListener(feed);
+        }
     }
     
     /**
@@ -47,6 +59,6 @@ public class ServerImpl extends UnicastRemoteObject implements Server {
      *          access.
      */    
     public RemoteBookingDB getBookingDB() throws RemoteException {        
-        return new RemoteBookingData(db);
+        return new RemoteBookingData(db, feed);
     }    
 }
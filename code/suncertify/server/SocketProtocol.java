@@ -0,0 +1,469 @@
+/*
+ * SocketProtocol.java
+ *
+ * Created on 17 October 2026, 06:49
+ */
+
+package suncertify.server;
+
+import java.io.*;
+import java.util.*;
+import suncertify.db.SearchResult;
+
+/**
+ * The constants and encoding methods of the binary protocol used between
+ * {@link SocketServer SocketServer} and
+ * {@link suncertify.db.SocketBookingDB SocketBookingDB}.
+ * <p>
+ * Every request and response is sent as a frame: the length of the message
+ * as an <code>int</code> followed by the message itself. A request starts
+ * with a byte giving the operation, followed by its arguments, and a
+ * response starts with a status byte, followed by the result if the status
+ * is {@link #STATUS_OK STATUS_OK} or by the exception message otherwise.
+ * Strings are written with <code>writeUTF</code> and records share repeated
+ * field values in the same way as a serialized
+ * {@link suncertify.db.SearchResult SearchResult}.
+ * <p>
+ * A {@link #GET_CHANGES GET_CHANGES} request is a long poll that may not be
+ * answered for some time, and the server answers each connection's requests
+ * in order, so a client sends it over a second connection of its own.
+ */
+public final class SocketProtocol {
+
+    /**
+     * The operation {@link suncertify.db.DB#read read}.
+     */
+    public static final byte READ = 1;
+
+    /**
+     * The operation {@link suncertify.db.DB#update update}.
+     */
+    public static final byte UPDATE = 2;
+
+    /**
+     * The operation {@link suncertify.db.DB#delete delete}.
+     */
+    public static final byte DELETE = 3;
+
+    /**
+     * The operation {@link suncertify.db.DB#find find}.
+     */
+    public static final byte FIND = 4;
+
+    /**
+     * The operation {@link suncertify.db.DB#create create}.
+     */
+    public static final byte CREATE = 5;
+
+    /**
+     * The operation {@link suncertify.db.DB#lock lock}.
+     */
+    public static final byte LOCK = 6;
+
+    /**
+     * The operation {@link suncertify.db.DB#unlock unlock}.
+     */
+    public static final byte UNLOCK = 7;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#findExact findExact}.
+     */
+    public static final byte FIND_EXACT = 8;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#findExactRecords
+     * findExactRecords}.
+     */
+    public static final byte FIND_EXACT_RECORDS = 9;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#readAll readAll}.
+     */
+    public static final byte READ_ALL = 10;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#getFieldLengths
+     * getFieldLengths}.
+     */
+    public static final byte GET_FIELD_LENGTHS = 11;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#readVersioned
+     * readVersioned}.
+     */
+    public static final byte READ_VERSIONED = 12;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#updateIfVersion
+     * updateIfVersion}.
+     */
+    public static final byte UPDATE_IF_VERSION = 13;
+
+    /**
+     * The operation {@link ChangeFeed#getCursor getCursor} on the server's
+     * change feed.
+     */
+    public static final byte GET_CHANGE_CURSOR = 14;
+
+    /**
+     * The operation {@link ChangeFeed#getChanges getChanges} on the server's
+     * change feed.
+     */
+    public static final byte GET_CHANGES = 15;
+
+    /**
+     * The operation {@link suncertify.db.BookingDB#renew renew}.
+     */
+    public static final byte RENEW = 16;
+
+    /**
+     * The status of a request that completed normally.
+     */
+    public static final byte STATUS_OK = 0;
+
+    /**
+     * The status of a request that threw a
+     * <code>RecordNotFoundException</code>.
+     */
+    public static final byte STATUS_RECORD_NOT_FOUND = 1;
+
+    /**
+     * The status of a request that threw a <code>SecurityException</code>.
+     */
+    public static final byte STATUS_SECURITY = 2;
+
+    /**
+     * The status of a request that threw a
+     * <code>DuplicateKeyException</code>.
+     */
+    public static final byte STATUS_DUPLICATE_KEY = 3;
+
+    /**
+     * The status of a request that failed on the server for any other
+     * reason.
+     */
+    public static final byte STATUS_ERROR = 4;
+
+    /**
+     * The status of a request that threw a
+     * <code>VersionConflictException</code>.
+     */
+    public static final byte STATUS_CONFLICT = 5;
+
+    /**
+     * The largest message accepted, so that a corrupt length cannot make the
+     * receiver allocate an enormous buffer.
+     */
+    public static final int MAX_MESSAGE = 16 * 1024 * 1024;
+
+    /**
+     * Prevents instances being created.
+     */
+    private SocketProtocol() {
+    }
+
+    /**
+     * Writes a string that may be <code>null</code>.
+     *
+     * @param out the stream to write to.
+     * @param value the string, or <code>null</code>.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeString(DataOutput out, String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString writeString}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the string, or <code>null</code>.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes an array of strings, any of which may be <code>null</code>.
+     *
+     * @param out the stream to write to.
+     * @param values the strings.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeStrings(DataOutput out, String[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeString(out, values[i]);
+        }
+    }
+
+    /**
+     * Reads an array of strings written by {@link #writeStrings
+     * writeStrings}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the strings.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static String[] readStrings(DataInput in) throws IOException {
+        String[] values = new String[readLength(in, 1)];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes an array of <code>int</code>s.
+     *
+     * @param out the stream to write to.
+     * @param values the values.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeInts(DataOutput out, int[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Reads an array of <code>int</code>s written by {@link #writeInts
+     * writeInts}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the values.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[readLength(in, 4)];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes an array of records, any of which may be <code>null</code>,
+     * writing each distinct field value once.
+     *
+     * @param out the stream to write to.
+     * @param records the records.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeRecords(DataOutput out, String[][] records)
+            throws IOException {
+        Map written = new HashMap();
+
+        out.writeInt(records.length);
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(records[i].length);
+            for (int j = 0; j < records[i].length; j++) {
+                Integer ref = (Integer) written.get(records[i][j]);
+                if (ref != null) {
+                    out.writeInt(ref.intValue());
+                } else {
+                    out.writeInt(-1); //New value follows
+                    out.writeUTF(records[i][j]);
+                    written.put(records[i][j], new Integer(written.size()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an array of records written by {@link #writeRecords
+     * writeRecords}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the records.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static String[][] readRecords(DataInput in) throws IOException {
+        List values = new ArrayList();
+        String[][] records = new String[readLength(in, 4)][];
+
+        for (int i = 0; i < records.length; i++) {
+            int length = in.readInt();
+            if (length == -1) {
+                continue;
+            }
+            records[i] = new String[checkLength(in, length, 4)];
+            for (int j = 0; j < length; j++) {
+                int ref = in.readInt();
+                if (ref < 0) {
+                    records[i][j] = in.readUTF();
+                    values.add(records[i][j]);
+                } else if (ref < values.size()) {
+                    records[i][j] = (String) values.get(ref);
+                } else {
+                    throw new IOException("Invalid value reference " + ref);
+                }
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Writes a search result.
+     *
+     * @param out the stream to write to.
+     * @param result the search result.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeSearchResult(DataOutput out, SearchResult result)
+            throws IOException {
+        out.writeInt(result.getTotal());
+        writeInts(out, result.getRecNos());
+        writeRecords(out, result.getRecords());
+    }
+
+    /**
+     * Reads a search result written by {@link #writeSearchResult
+     * writeSearchResult}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the search result.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static SearchResult readSearchResult(DataInput in)
+            throws IOException {
+        int total = in.readInt();
+        int[] recNos = readInts(in);
+        String[][] records = readRecords(in);
+
+        if (recNos.length != records.length) {
+            throw new IOException("Invalid search result");
+        }
+
+        return new SearchResult(recNos, records, total);
+    }
+
+    /**
+     * Writes a set of changes from the change feed.
+     *
+     * @param out the stream to write to.
+     * @param changes the changes.
+     *
+     * @throws IOException if there is an error writing to the stream.
+     */
+    public static void writeChangeSet(DataOutput out, ChangeSet changes)
+            throws IOException {
+        ChangeEvent[] events = changes.getEvents();
+        int[] recNos = new int[events.length];
+        String[][] records = new String[events.length][];
+
+        for (int i = 0; i < events.length; i++) {
+            recNos[i] = events[i].getRecNo();
+            records[i] = events[i].getData();
+        }
+
+        out.writeLong(changes.getCursor());
+        out.writeBoolean(changes.isComplete());
+        writeInts(out, recNos);
+        writeRecords(out, records);
+    }
+
+    /**
+     * Reads a set of changes written by {@link #writeChangeSet
+     * writeChangeSet}.
+     *
+     * @param in the stream to read from.
+     *
+     * @return the changes.
+     *
+     * @throws IOException if there is an error reading from the stream.
+     */
+    public static ChangeSet readChangeSet(DataInput in) throws IOException {
+        long cursor = in.readLong();
+        boolean complete = in.readBoolean();
+        int[] recNos = readInts(in);
+        String[][] records = readRecords(in);
+
+        if (recNos.length != records.length) {
+            throw new IOException("Invalid change set");
+        }
+
+        ChangeEvent[] events = new ChangeEvent[recNos.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new ChangeEvent(recNos[i], records[i]);
+        }
+
+        return new ChangeSet(events, cursor, complete);
+    }
+
+    /**
+     * Reads the length of an array and {@link #checkLength checks} it.
+     *
+     * @param in the stream to read from.
+     * @param size the smallest number of bytes each element is written in.
+     *
+     * @return the length.
+     *
+     * @throws IOException if there is an error reading from the stream or
+     *          the length is invalid.
+     */
+    private static int readLength(DataInput in, int size) throws IOException {
+        return checkLength(in, in.readInt(), size);
+    }
+
+    /**
+     * Checks that the length of an array is not negative and that the rest
+     * of the message is long enough to hold that many elements, so that a
+     * corrupt length cannot make the receiver allocate an array far larger
+     * than the message. A stream that is not a message held in memory is
+     * only checked against the largest message.
+     *
+     * @param in the stream the elements are to be read from.
+     * @param length the length read.
+     * @param size the smallest number of bytes each element is written in.
+     *
+     * @return the length.
+     *
+     * @throws IOException if the length is invalid.
+     */
+    private static int checkLength(DataInput in, int length, int size)
+            throws IOException {
+        long limit = MAX_MESSAGE;
+
+        if (in instanceof InputStream) {
+            limit = ((InputStream) in).available();
+        }
+        if ((length < 0) || ((long) length * size > limit)) {
+            throw new IOException("Invalid length " + length);
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * SocketServer.java
+ *
+ * Created on 17 October 2026, 06:49
+ */
+
+package suncertify.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import suncertify.db.BookingDB;
+import suncertify.db.Data;
+
+/**
+ * A network server that gives clients access to a
+ * {@link suncertify.db.BookingDB BookingDB} over plain sockets using the
+ * binary protocol of {@link SocketProtocol SocketProtocol}, as an
+ * alternative to RMI.
+ * <p>
+ * A single thread accepts connections and reads and writes every socket in
+ * non-blocking mode using a <code>Selector</code>, so an idle client costs no
+ * thread. When a whole request has been read it is handed to a pool of
+ * worker threads. A <code>lock</code> request on a {@link suncertify.db.Data
+ * Data} object waits for the lock without holding a worker thread, and its
+ * response is sent when the lock is granted. The response is written by the
+ * selector thread before the next request from that client is started, so
+ * each client's requests are carried out in order. The socket is still read
+ * while a request is being carried out so that a client that disconnects is
+ * noticed at once.
+ * <p>
+ * Each connection has its own {@link SocketSession SocketSession}, which
+ * unlocks any record the client has locked when the connection is closed.
+ * The sessions share a {@link ChangeFeed ChangeFeed} of the changes to the
+ * database, as the sessions of the RMI server do.
+ */
+public class SocketServer implements Runnable {
+
+    /**
+     * The initial size of the buffer each connection reads requests into.
+     */
+    public static final int BUFFER_SIZE = 1024;
+
+    /**
+     * Server-side data access object.
+     */
+    protected final BookingDB db;
+
+    /**
+     * The feed of changes to the database shared by all clients.
+     */
+    protected final ChangeFeed feed;
+
+    /**
+     * The channel on which connections are accepted.
+     */
+    protected final ServerSocketChannel serverChannel;
+
+    /**
+     * The selector used to wait for connections and socket input and output.
+     */
+    protected final Selector selector;
+
+    /**
+     * The threads on which requests are carried out.
+     */
+    protected final ExecutorService workers;
+
+    /**
+     * The connections whose responses are ready to be written, waiting for
+     * the selector thread to start writing them.
+     */
+    protected final List ready;
+
+    /**
+     * Flag to indicate that the server should stop.
+     */
+    protected volatile boolean closed;
+
+    /**
+     * Creates a server listening on the given port using the provided
+     * BookingDB object for data access. The server does not accept
+     * connections until it is {@link #run run}.
+     *
+     * @param db the server-side data access object to be used.
+     * @param port the port to listen on, or 0 for any free port.
+     *
+     * @throws IOException if the port cannot be listened on.
+     */
+    public SocketServer(BookingDB db, int port) throws IOException {
+        this.db = db;
+        feed = new ChangeFeed();
+
+        /* Only a local data object can report its changes */
+        if (db instanceof Data) {
+            ((Data) db).addRecordListener(feed);
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.socket().bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException ex) {
+            serverChannel.close();
+            selector.close();
+            throw ex;
+        }
+        workers = Executors.newCachedThreadPool();
+        ready = new ArrayList();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the port number.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections and services requests until the server is
+     * {@link #close closed}.
+     */
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                startWriting();
+
+                Iterator keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = (SelectionKey) keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException ex) {
+                        connection.close(); //Client has gone
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops the server. Connections are closed, unlocking any records their
+     * clients have locked.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts a pending connection and starts reading requests from it.
+     *
+     * @throws IOException if there is an error accepting the connection.
+     */
+    protected void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector,
+                    SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    /**
+     * Starts writing the responses that worker threads have made ready.
+     * Called on the selector thread.
+     */
+    protected void startWriting() {
+        synchronized (ready) {
+            for (Iterator i = ready.iterator(); i.hasNext(); ) {
+                Connection connection = (Connection) i.next();
+                if (connection.key.isValid()) {
+                    connection.key.interestOps(SelectionKey.OP_READ
+                            | SelectionKey.OP_WRITE);
+                }
+            }
+            ready.clear();
+        }
+    }
+
+    /**
+     * Closes every connection, the worker threads and the listening socket.
+     */
+    protected void shutdown() {
+        Iterator keys = selector.keys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = (SelectionKey) keys.next();
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        workers.shutdown();
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * The state of one client connection: the buffers it is read into and
+     * written from and the session carrying out its requests.
+     */
+    protected class Connection implements Runnable {
+
+        /**
+         * The socket connected to the client.
+         */
+        protected final SocketChannel channel;
+
+        /**
+         * The registration of the socket with the selector.
+         */
+        protected final SelectionKey key;
+
+        /**
+         * The session carrying out the client's requests.
+         */
+        protected final SocketSession session;
+
+        /**
+         * The bytes read from the client and not yet processed, ready to be
+         * read into.
+         */
+        protected ByteBuffer input;
+
+        /**
+         * The response being written to the client, or <code>null</code>.
+         */
+        protected ByteBuffer output;
+
+        /**
+         * The request being carried out by a worker thread.
+         */
+        protected byte[] request;
+
+        /**
+         * Flag to indicate that a request has been started and its response
+         * not yet written. Only used on the selector thread.
+         */
+        protected boolean busy;
+
+        /**
+         * Creates the state of a newly accepted connection.
+         *
+         * @param channel the socket connected to the client.
+         * @param key the registration of the socket with the selector.
+         */
+        protected Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            session = new SocketSession(db, feed);
+            input = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Reads what is available from the client and hands the request to
+         * a worker thread once it has all been read.
+         *
+         * @throws IOException if there is an error reading or the client has
+         *          closed the connection.
+         */
+        protected void read() throws IOException {
+            if (channel.read(input) < 0) {
+                throw new IOException("Connection closed by client");
+            }
+            if (!busy) {
+                nextRequest();
+            } else if (!input.hasRemaining()) {
+                key.interestOps(0); //Read no more until the response is sent
+            }
+        }
+
+        /**
+         * Takes the next whole request from the input buffer, if there is
+         * one, and hands it to a worker thread.
+         *
+         * @throws IOException if the request is too large.
+         */
+        protected void nextRequest() throws IOException {
+            input.flip();
+            try {
+                if (input.remaining() < 4) {
+                    return;
+                }
+                int length = input.getInt(input.position());
+                if ((length < 0) || (length > SocketProtocol.MAX_MESSAGE)) {
+                    throw new IOException("Invalid message length " + length);
+                }
+                if (input.remaining() < 4 + length) {
+
+                    /*
+                     * Grow the buffer only as the request arrives, so that
+                     * a length alone cannot make the server allocate it
+                     */
+                    if (input.limit() == input.capacity()) {
+                        ByteBuffer larger = ByteBuffer.allocate(Math.min(
+                                4 + length, 2 * input.capacity()));
+                        larger.put(input);
+                        larger.flip();
+                        input = larger;
+                    }
+                    return;
+                }
+                input.getInt();
+                request = new byte[length];
+                input.get(request);
+                busy = true;
+                workers.execute(this);
+            } finally {
+                input.compact();
+            }
+        }
+
+        /**
+         * Starts the current request on a worker thread, arranging for the
+         * response to be written when it is ready. A request that fails
+         * unexpectedly is answered with an error so that the client is not
+         * left waiting.
+         */
+        public void run() {
+            CompletableFuture response;
+
+            try {
+                response = session.process(request);
+            } catch (Throwable ex) {
+                response = new CompletableFuture();
+                response.completeExceptionally(ex);
+            }
+            request = null;
+            response.whenComplete(new BiConsumer() {
+                public void accept(Object message, Object failure) {
+                    if (failure != null) {
+                        respond(session.errorResponse((Throwable) failure));
+                    } else {
+                        respond((byte[]) message);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Passes a response to the selector thread to be written.
+         *
+         * @param response the response message.
+         */
+        protected void respond(byte[] response) {
+            output = ByteBuffer.allocate(4 + response.length);
+            output.putInt(response.length);
+            output.put(response);
+            output.flip();
+            synchronized (ready) {
+                ready.add(this);
+            }
+            selector.wakeup();
+        }
+
+        /**
+         * Writes as much of the response as the socket will accept, going
+         * on to the next request once it has all been written.
+         *
+         * @throws IOException if there is an error writing.
+         */
+        protected void write() throws IOException {
+            channel.write(output);
+            if (!output.hasRemaining()) {
+                output = null;
+                busy = false;
+                key.interestOps(SelectionKey.OP_READ);
+                nextRequest(); //The client may already have sent another
+            }
+        }
+
+        /**
+         * Closes the connection, unlocking any record locked by the client.
+         */
+        protected void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                //Nothing more can be done with the connection
+            }
+            session.close();
+        }
+    }
+}
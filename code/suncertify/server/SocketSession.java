@@ -0,0 +1,490 @@
+/*
+ * SocketSession.java
+ *
+ * Created on 17 October 2026, 06:49
+ */
+
+package suncertify.server;
+
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import suncertify.db.*;
+
+/**
+ * Carries out the requests of one client connected to a
+ * {@link SocketServer SocketServer}, decoding each request, calling the
+ * server's {@link suncertify.db.BookingDB BookingDB} and encoding the
+ * response as described in {@link SocketProtocol SocketProtocol}.
+ * <p>
+ * As with {@link RemoteBookingData RemoteBookingData} a note is kept of
+ * every record locked by the client in a {@link LockSession LockSession} so
+ * that they can be unlocked when the connection is closed, including a lock
+ * that is only obtained after the connection has been closed.
+ * <p>
+ * When the database is a {@link suncertify.db.Data Data} object a lock
+ * request waits for the lock with {@link suncertify.db.Data#lockAsync
+ * lockAsync}, so clients waiting for locked records do not each hold a
+ * server thread. The lock is leased for {@link LockSession#LEASE_TIME
+ * LEASE_TIME}, so the client must renew it while it holds it. In the same
+ * way a long poll of the server's {@link ChangeFeed ChangeFeed} waits with
+ * {@link ChangeFeed#getChangesAsync getChangesAsync}.
+ */
+public class SocketSession {
+
+    /**
+     * Server-side data access object.
+     */
+    protected final BookingDB db;
+
+    /**
+     * The feed of changes to the database shared by all clients.
+     */
+    protected final ChangeFeed feed;
+
+    /**
+     * The records locked by the connected client.
+     */
+    protected final LockSession locks;
+
+    /**
+     * The lock request of the client waiting to be granted, or
+     * <code>null</code> if there is none.
+     */
+    protected CompletableFuture pendingLock;
+
+    /**
+     * Creates a session for a newly connected client using the provided
+     * BookingDB object for data access, with a change feed of its own that
+     * is not told of any changes.
+     *
+     * @param db the server-side data access object to be used.
+     */
+    public SocketSession(BookingDB db) {
+        this(db, new ChangeFeed());
+    }
+
+    /**
+     * Creates a session for a newly connected client using the provided
+     * BookingDB object for data access and reporting changes from the
+     * provided feed.
+     *
+     * @param db the server-side data access object to be used.
+     * @param feed the feed of changes to the database.
+     */
+    public SocketSession(BookingDB db, ChangeFeed feed) {
+        this.db = db;
+        this.feed = feed;
+        locks = new LockSession(db);
+    }
+
+    /**
+     * Carries out a request, returning a future that completes with the
+     * response. A lock request on a <code>Data</code> object completes when
+     * the lock is granted, and a request for changes when there is a change
+     * or the poll times out, without holding the calling thread; every other
+     * request is carried out at once by the calling thread.
+     *
+     * @param request the request message.
+     *
+     * @return a future that completes with the <code>byte[]</code> response
+     *          message.
+     */
+    public CompletableFuture process(byte[] request) {
+        if ((db instanceof Data) && (request.length > 0)
+                && (request[0] == SocketProtocol.LOCK)) {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(request));
+            try {
+                in.readByte();
+                return lockAsync(in.readInt());
+            } catch (IOException ex) {
+                //Invalid request, which respond() will report
+            }
+        }
+        if ((request.length > 0)
+                && (request[0] == SocketProtocol.GET_CHANGES)) {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(request));
+            try {
+                in.readByte();
+                long since = in.readLong();
+                return feed.getChangesAsync(since, in.readLong()).thenApply(
+                        new Function() {
+                    public Object apply(Object changes) {
+                        return changesResponse((ChangeSet) changes);
+                    }
+                });
+            } catch (IOException ex) {
+                //Invalid request, which respond() will report
+            }
+        }
+
+        return CompletableFuture.completedFuture(respond(request));
+    }
+
+    /**
+     * Carries out a request and returns the response. Exceptions thrown by
+     * the database are returned to the client as a status rather than being
+     * thrown.
+     *
+     * @param request the request message.
+     *
+     * @return the response message.
+     */
+    protected byte[] respond(byte[] request) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            try {
+                out.writeByte(SocketProtocol.STATUS_OK);
+                execute(new DataInputStream(new ByteArrayInputStream(
+                        request)), out);
+            } catch (RecordNotFoundException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_RECORD_NOT_FOUND);
+                SocketProtocol.writeString(out, ex.getMessage());
+            } catch (suncertify.db.SecurityException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_SECURITY);
+                SocketProtocol.writeString(out, ex.getMessage());
+            } catch (DuplicateKeyException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_DUPLICATE_KEY);
+                SocketProtocol.writeString(out, ex.getMessage());
+            } catch (VersionConflictException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_CONFLICT);
+                SocketProtocol.writeString(out, ex.getMessage());
+            } catch (IOException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_ERROR);
+                SocketProtocol.writeString(out, "Invalid request: "
+                        + ex.getMessage());
+            } catch (RuntimeException ex) {
+                bytes.reset();
+                out.writeByte(SocketProtocol.STATUS_ERROR);
+                SocketProtocol.writeString(out, ex.toString());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); //Should never happen in memory
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a request, calls the database and writes the result.
+     *
+     * @param in the request, positioned at the operation.
+     * @param out the stream to write the result to.
+     *
+     * @throws IOException if the request is invalid.
+     * @throws RecordNotFoundException if the database throws it.
+     * @throws suncertify.db.SecurityException if the database throws it.
+     * @throws DuplicateKeyException if the database throws it.
+     * @throws VersionConflictException if the database throws it.
+     */
+    protected void execute(DataInputStream in, DataOutputStream out)
+            throws IOException, RecordNotFoundException,
+            suncertify.db.SecurityException, DuplicateKeyException,
+            VersionConflictException {
+        byte operation = in.readByte();
+
+        switch (operation) {
+            case SocketProtocol.READ:
+                SocketProtocol.writeStrings(out, db.read(in.readInt()));
+                break;
+            case SocketProtocol.UPDATE: {
+                int recNo = in.readInt();
+                String[] data = SocketProtocol.readStrings(in);
+                db.update(recNo, data, in.readLong());
+                break;
+            }
+            case SocketProtocol.DELETE: {
+                int recNo = in.readInt();
+                delete(recNo, in.readLong());
+                break;
+            }
+            case SocketProtocol.FIND:
+                SocketProtocol.writeInts(out,
+                        db.find(SocketProtocol.readStrings(in)));
+                break;
+            case SocketProtocol.CREATE:
+                out.writeInt(db.create(SocketProtocol.readStrings(in)));
+                break;
+            case SocketProtocol.LOCK:
+                out.writeLong(lock(in.readInt()));
+                break;
+            case SocketProtocol.UNLOCK: {
+                int recNo = in.readInt();
+                unlock(recNo, in.readLong());
+                break;
+            }
+            case SocketProtocol.RENEW: {
+                int recNo = in.readInt();
+                db.renew(recNo, in.readLong());
+                break;
+            }
+            case SocketProtocol.FIND_EXACT: {
+                String[] criteria = SocketProtocol.readStrings(in);
+                SocketProtocol.writeInts(out,
+                        db.findExact(criteria, in.readInt()));
+                break;
+            }
+            case SocketProtocol.FIND_EXACT_RECORDS: {
+                String[] criteria = SocketProtocol.readStrings(in);
+                int operator = in.readInt();
+                int offset = in.readInt();
+                int limit = in.readInt();
+                SocketProtocol.writeSearchResult(out, db.findExactRecords(
+                        criteria, operator, offset, limit));
+                break;
+            }
+            case SocketProtocol.READ_ALL:
+                SocketProtocol.writeRecords(out,
+                        db.readAll(SocketProtocol.readInts(in)));
+                break;
+            case SocketProtocol.GET_FIELD_LENGTHS:
+                SocketProtocol.writeInts(out, db.getFieldLengths());
+                break;
+            case SocketProtocol.READ_VERSIONED: {
+                VersionedRecord record = db.readVersioned(in.readInt());
+                SocketProtocol.writeStrings(out, record.getFields());
+                out.writeLong(record.getVersion());
+                break;
+            }
+            case SocketProtocol.UPDATE_IF_VERSION: {
+                int recNo = in.readInt();
+                String[] data = SocketProtocol.readStrings(in);
+                out.writeLong(db.updateIfVersion(recNo, data, in.readLong()));
+                break;
+            }
+            case SocketProtocol.GET_CHANGE_CURSOR:
+                out.writeLong(feed.getCursor());
+                break;
+            case SocketProtocol.GET_CHANGES: {
+                long since = in.readLong();
+                SocketProtocol.writeChangeSet(out,
+                        feed.getChanges(since, in.readLong()));
+                break;
+            }
+            default:
+                throw new IOException("Unknown operation " + operation);
+        }
+    }
+
+    /**
+     * Locks a record for the client, noting the record and cookie so that
+     * the record can be unlocked if the connection is closed. If the
+     * connection was closed while waiting for the lock the record is
+     * unlocked again at once.
+     *
+     * @param recNo the record number of the record to be locked.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     *
+     * @return the cookie the record was locked with.
+     */
+    protected long lock(int recNo) throws RecordNotFoundException {
+        long cookie;
+
+        if (db instanceof Data) {
+            cookie = ((Data) db).lock(recNo, LockSession.LEASE_TIME);
+        } else {
+            cookie = db.lock(recNo); // Thread may sleep here
+        }
+
+        granted(recNo, cookie);
+        return cookie;
+    }
+
+    /**
+     * Asks for a lock on a record for the client without waiting for it.
+     * When the lock is granted the record and cookie are noted as for
+     * {@link #lock lock}. If the connection is closed while waiting the
+     * request is cancelled.
+     *
+     * @param recNo the record number of the record to be locked.
+     *
+     * @return a future that completes with the <code>byte[]</code> response
+     *          message.
+     */
+    protected CompletableFuture lockAsync(final int recNo) {
+        CompletableFuture request = ((Data) db).lockAsync(recNo,
+                LockSession.LEASE_TIME);
+
+        synchronized (this) {
+            pendingLock = request;
+            if (locks.isClosed()) {
+                request.cancel(false);
+            }
+        }
+
+        return request.handle(new BiFunction() {
+            public Object apply(Object cookie, Object ex) {
+                return lockResponse(recNo, (Long) cookie, (Throwable) ex);
+            }
+        });
+    }
+
+    /**
+     * Returns the response to a lock request made by {@link #lockAsync
+     * lockAsync} once it has completed, noting the lock if it was granted.
+     *
+     * @param recNo the record number of the record.
+     * @param cookie the cookie the record was locked with, or
+     *          <code>null</code> if the request failed.
+     * @param failure the reason the request failed, or <code>null</code>.
+     *
+     * @return the response message.
+     */
+    protected byte[] lockResponse(int recNo, Long cookie, Throwable failure) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            if (cookie != null) {
+                granted(recNo, cookie.longValue());
+                out.writeByte(SocketProtocol.STATUS_OK);
+                out.writeLong(cookie.longValue());
+            } else {
+                synchronized (this) {
+                    pendingLock = null;
+                }
+                if (failure instanceof RecordNotFoundException) {
+                    out.writeByte(SocketProtocol.STATUS_RECORD_NOT_FOUND);
+                    SocketProtocol.writeString(out, failure.getMessage());
+                } else {
+                    out.writeByte(SocketProtocol.STATUS_ERROR);
+                    SocketProtocol.writeString(out, failure.toString());
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); //Should never happen in memory
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the response to a request whose future from {@link #process
+     * process} completed exceptionally, reporting the failure as an error.
+     *
+     * @param failure the reason the request failed.
+     *
+     * @return the response message.
+     */
+    protected byte[] errorResponse(Throwable failure) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        if ((failure instanceof CompletionException)
+                && (failure.getCause() != null)) {
+            failure = failure.getCause();
+        }
+        try {
+            out.writeByte(SocketProtocol.STATUS_ERROR);
+            SocketProtocol.writeString(out, failure.toString());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); //Should never happen in memory
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the response to a request for changes made by {@link #process
+     * process} once the changes are known.
+     *
+     * @param changes the changes since the cursor asked for.
+     *
+     * @return the response message.
+     */
+    protected byte[] changesResponse(ChangeSet changes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeByte(SocketProtocol.STATUS_OK);
+            SocketProtocol.writeChangeSet(out, changes);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); //Should never happen in memory
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Notes a lock that has been granted to the client so that it can be
+     * unlocked when the connection is closed. If the connection has already
+     * been closed the record is unlocked again at once.
+     *
+     * @param recNo the record number of the record locked.
+     * @param cookie the cookie the record was locked with.
+     */
+    protected synchronized void granted(int recNo, long cookie) {
+        pendingLock = null;
+        locks.locked(recNo, cookie);
+    }
+
+    /**
+     * Releases the lock on a record for the client.
+     *
+     * @param recNo the record number of the record to be unlocked.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie.
+     */
+    protected synchronized void unlock(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        db.unlock(recNo, cookie);
+        locks.unlocked(recNo);
+    }
+
+    /**
+     * Deletes a record for the client. Deleting a record releases its lock,
+     * so if it was locked by the client there is no longer any need to
+     * unlock it when the connection is closed.
+     *
+     * @param recNo the record number of the record to be deleted.
+     * @param cookie the cookie that the record was locked with.
+     *
+     * @throws RecordNotFoundException if the record does not exist.
+     * @throws suncertify.db.SecurityException if the record is locked with a
+     *          cookie other than cookie.
+     */
+    protected synchronized void delete(int recNo, long cookie)
+            throws RecordNotFoundException, suncertify.db.SecurityException {
+        db.delete(recNo, cookie);
+        locks.unlocked(recNo);
+    }
+
+    /**
+     * Returns the number of records currently locked by the client, for
+     * monitoring the server.
+     *
+     * @return the number of locks held by the client.
+     */
+    public int getLockCount() {
+        return locks.getLockCount();
+    }
+
+    /**
+     * Called when the connection to the client has been closed. Every
+     * record the client had locked is unlocked, and if it was waiting for a
+     * lock the request is cancelled.
+     */
+    public synchronized void close() {
+        if (pendingLock != null) {
+            pendingLock.cancel(false);
+        }
+
+        locks.close();
+    }
+}
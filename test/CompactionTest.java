@@ -0,0 +1,393 @@
+/*
+ * CompactionTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:41
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+
+/**
+ * Tests the compaction of a copy of a data file: deletions past the
+ * threshold compact the file in the background while other threads search
+ * and update it, searches always return every live record once and in order
+ * of record number, a reused record number is appended and the records are
+ * numbered in file order when the file is reopened, compaction is refused
+ * without the write-ahead log, a group of logged writes torn by a crash is
+ * not replayed at all, compactions called at the same time run one after
+ * the other, and a compaction that failed part way through is finished by
+ * the next.
+ */
+public class CompactionTest extends DataTestCase {
+
+    /**
+     * The number of records added to the copy of the data file.
+     */
+    protected static final int ADDED = 3000;
+
+    protected File copy;
+
+    public CompactionTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(CompactionTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        copy = copyDataFile();
+    }
+
+    public void testBackgroundCompaction() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copy.getPath());
+        alone.set("alone.log", Configuration.LOG_ON);
+        alone.set("alone.compaction", "100");
+        final BookingData db = (BookingData) new BookingDBFactory(alone)
+                .getBookingDB();
+        alone.set("alone.log", Configuration.LOG_OFF);
+        alone.set("alone.compaction", "0");
+
+        /* Add records and pick every third to keep */
+        String[] base = db.read(1);
+        addRecords(db, base);
+        int[] all = db.find(new String[7]);
+        final List kept = new ArrayList();
+        List deleted = new ArrayList();
+        final Map names = new ConcurrentHashMap();
+        for (int i = 0; i < all.length; i++) {
+            Integer recNo = new Integer(all[i]);
+            if (all[i] % 3 == 0) {
+                kept.add(recNo);
+                names.put(recNo, db.read(all[i])[BookingDB.NAME_FIELD]);
+            } else {
+                deleted.add(recNo);
+            }
+        }
+
+        /* Search and update while the deletions compact the file */
+        final boolean[] stop = new boolean[1];
+        final Map owners = new ConcurrentHashMap();
+        final List errors = Collections.synchronizedList(new ArrayList());
+        final Thread[] workers = new Thread[4];
+        for (int i = 0; i < workers.length; i++) {
+            final int id = i;
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    Random random = new Random(id);
+                    int count = 0;
+                    try {
+                        while (!stop[0]) {
+                            checkFind(db.find(new String[7]), kept, errors);
+                            int recNo = ((Integer) kept.get(random.nextInt(
+                                    kept.size()))).intValue();
+                            if (recNo % workers.length != id) {
+                                continue; //Another worker updates it
+                            }
+                            String[] record = db.read(recNo);
+                            String owner = Integer.toString(10000000
+                                    + id * 1000000 + count++);
+                            record[BookingDB.OWNER_FIELD] = owner;
+                            long cookie = db.lock(recNo);
+                            db.update(recNo, record, cookie);
+                            db.unlock(recNo, cookie);
+                            owners.put(new Integer(recNo), owner);
+                        }
+                    } catch (Exception ex) {
+                        errors.add(ex.toString());
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        deleteRecords(db, deleted);
+        long start = System.currentTimeMillis();
+        while ((db.getDeletedSlotCount() >= 100)
+                && (System.currentTimeMillis() - start < 10000)) {
+            Thread.sleep(10);
+        }
+        stop[0] = true;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+        assertTrue("errors during compaction " + errors, errors.isEmpty());
+        assertTrue("compacted in the background",
+                db.getDeletedSlotCount() < 100);
+
+        /* Every kept record is intact and numbered as before */
+        db.compact();
+        assertEquals("deleted slots reclaimed", 0, db.getDeletedSlotCount());
+        assertEquals("slots", kept.size(), db.getSlotCount());
+        for (Iterator i = kept.iterator(); i.hasNext(); ) {
+            Integer recNo = (Integer) i.next();
+            String[] record = db.read(recNo.intValue());
+            assertEquals("name of " + recNo, names.get(recNo),
+                    record[BookingDB.NAME_FIELD]);
+            if (owners.containsKey(recNo)) {
+                assertEquals("owner of " + recNo, owners.get(recNo),
+                        record[BookingDB.OWNER_FIELD]);
+            }
+        }
+
+        /* A reused number is appended but still found in number order */
+        String[] record = (String[]) base.clone();
+        record[BookingDB.NAME_FIELD] = "Reused";
+        int reused = db.create(record);
+        assertEquals("lowest number reused", 1, reused);
+        List expected = new ArrayList(kept);
+        expected.add(0, new Integer(reused));
+        assertEquals("find after reuse", expected,
+                toList(db.find(new String[7])));
+        String[] exact = new String[7];
+        exact[BookingDB.LOCATION_FIELD] = base[BookingDB.LOCATION_FIELD]
+                .trim();
+        assertEquals("findExact after reuse", new Integer(reused),
+                toList(db.findExact(exact, BookingDB.SEARCH_TYPE_AND))
+                .get(0));
+
+        /* The records are numbered in file order when it is reopened */
+        db.close();
+        Data reopened = new Data(copy.getPath());
+        assertEquals("reopened count", kept.size() + 1,
+                reopened.getNumRecords());
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals("renumbered " + (i + 1), names.get(kept.get(i)),
+                    reopened.read(i + 1)[BookingDB.NAME_FIELD]);
+        }
+        assertEquals("reused record last", "Reused", reopened.read(
+                kept.size() + 1)[BookingDB.NAME_FIELD].trim());
+        reopened.close();
+    }
+
+    public void testCompactionNeedsLog() throws Exception {
+        Data data = new Data(copy.getPath());
+        try {
+            data.compact();
+            fail("compaction without the log");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+        try {
+            data.setCompactionThreshold(10);
+            fail("compaction threshold without the log");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+        data.close();
+    }
+
+    public void testTornGroupNotReplayed() throws Exception {
+        File logFile = File.createTempFile("compactiontest", ".log");
+        logFile.deleteOnExit();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        byte[] bytes = new byte[8];
+        log.commit(log.appendGroup(new long[] { 100, 200 },
+                new byte[][] { bytes, { 1 } }));
+        long complete = log.size();
+        log.commit(log.appendGroup(new long[] { 300, 400 },
+                new byte[][] { bytes, { 1 } }));
+        log.close();
+        RandomAccessFile torn = new RandomAccessFile(logFile, "rw");
+        torn.setLength(log.size() - 2);
+        torn.close();
+        RecordingStore writes = new RecordingStore();
+        assertEquals("replayed writes", 2,
+                new WriteAheadLog(logFile).replay(writes));
+        assertEquals("replayed offsets", Arrays.asList(new Long[] {
+                new Long(100), new Long(200) }), writes.positions);
+        torn = new RandomAccessFile(logFile, "rw");
+        torn.setLength(complete + WriteAheadLog.ENTRY_OVERHEAD
+                + bytes.length);
+        torn.close();
+        writes = new RecordingStore();
+        assertEquals("group torn after its first entry", 2,
+                new WriteAheadLog(logFile).replay(writes));
+    }
+
+    public void testConcurrentCompactions() throws Exception {
+        final Data data = new Data(copy.getPath(),
+                Data.STORAGE_FILE | Data.STORAGE_LOGGED);
+        List names = keepEveryThird(data);
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] compactors = new Thread[4];
+        for (int i = 0; i < compactors.length; i++) {
+            compactors[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        data.compact();
+                    } catch (Exception ex) {
+                        errors.add(ex.toString());
+                    }
+                }
+            });
+            compactors[i].start();
+        }
+        for (int i = 0; i < compactors.length; i++) {
+            compactors[i].join();
+        }
+        assertTrue("errors during compaction " + errors, errors.isEmpty());
+        checkCompacted(data, names);
+        data.close();
+    }
+
+    public void testFailedCompactionResumed() throws Exception {
+        FailingData data = new FailingData(copy.getPath());
+        List names = keepEveryThird(data);
+        data.moves = ADDED / 2;
+        try {
+            data.compact();
+            fail("failing compaction reported success");
+        } catch (IOException ex) {
+            //Expected
+        }
+        data.moves = Integer.MAX_VALUE;
+        data.compact();
+        checkCompacted(data, names);
+        data.close();
+    }
+
+    /**
+     * Adds {@link #ADDED ADDED} records to a data object, each a copy of
+     * the given record with a name of its own.
+     */
+    protected static void addRecords(DB db, String[] base) throws Exception {
+        for (int i = 0; i < ADDED; i++) {
+            String[] record = (String[]) base.clone();
+            record[BookingDB.NAME_FIELD] = "Hotel " + i;
+            db.create(record);
+        }
+    }
+
+    /**
+     * Locks and deletes the given records.
+     */
+    protected static void deleteRecords(DB db, List recNos)
+            throws Exception {
+        for (Iterator i = recNos.iterator(); i.hasNext(); ) {
+            int recNo = ((Integer) i.next()).intValue();
+            long cookie = db.lock(recNo);
+            db.delete(recNo, cookie);
+        }
+    }
+
+    /**
+     * Adds records to a data object and deletes all but every third record,
+     * returning the names of the records kept in order of record number.
+     */
+    protected static List keepEveryThird(Data data) throws Exception {
+        addRecords(data, data.read(1));
+        int[] all = data.find(new String[7]);
+        List names = new ArrayList();
+        List deleted = new ArrayList();
+        for (int i = 0; i < all.length; i++) {
+            if (i % 3 == 0) {
+                names.add(data.read(all[i])[BookingDB.NAME_FIELD]);
+            } else {
+                deleted.add(new Integer(all[i]));
+            }
+        }
+        deleteRecords(data, deleted);
+        return names;
+    }
+
+    /**
+     * Checks that a data object has been compacted and still holds records
+     * with the given names in order of record number.
+     */
+    protected static void checkCompacted(Data data, List names)
+            throws Exception {
+        assertEquals("deleted slots", 0, data.getDeletedSlotCount());
+        assertEquals("slots", names.size(), data.getSlotCount());
+        int[] found = data.find(new String[7]);
+        assertEquals("records", names.size(), found.length);
+        for (int i = 0; i < found.length; i++) {
+            assertEquals("record " + found[i], names.get(i),
+                    data.read(found[i])[BookingDB.NAME_FIELD]);
+        }
+    }
+
+    /**
+     * Checks that a search of every record is in ascending order of record
+     * number and holds every record that is never deleted.
+     */
+    protected static void checkFind(int[] found, List kept, List errors) {
+        for (int i = 1; i < found.length; i++) {
+            if (found[i] <= found[i - 1]) {
+                errors.add("find out of order at " + i);
+                return;
+            }
+        }
+        for (Iterator i = kept.iterator(); i.hasNext(); ) {
+            int recNo = ((Integer) i.next()).intValue();
+            if (Arrays.binarySearch(found, recNo) < 0) {
+                errors.add("find missed record " + recNo);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A logged data object whose compaction fails after moving a given
+     * number of slots.
+     */
+    protected static class FailingData extends Data {
+
+        protected int moves = Integer.MAX_VALUE;
+
+        protected FailingData(String filename) throws IOException,
+                InvalidDataFileException {
+            super(filename, STORAGE_FILE | STORAGE_LOGGED);
+        }
+
+        protected boolean compactSlot(int slot, int target,
+                byte[] recordBytes) throws IOException {
+            if (moves-- <= 0) {
+                throw new IOException("Simulated compaction failure");
+            }
+            return super.compactSlot(slot, target, recordBytes);
+        }
+    }
+
+    /**
+     * A store that records the offsets written to.
+     */
+    protected static class RecordingStore implements RecordStore {
+
+        protected final List positions = new ArrayList();
+
+        public void read(long position, byte[] buffer) {
+        }
+
+        public void write(long position, byte[] buffer) {
+            positions.add(new Long(position));
+        }
+
+        public byte readByte(long position) {
+            return 0;
+        }
+
+        public void writeByte(long position, byte value) {
+            positions.add(new Long(position));
+        }
+
+        public long length() {
+            return 0;
+        }
+
+        public void truncate(long length) {
+        }
+
+        public void force() {
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * ImportTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:42
+ */
+
+import java.io.*;
+import java.util.*;
+import junit.framework.*;
+import suncertify.db.*;
+
+/**
+ * Tests the import of generated rows into a copy of a data file with a
+ * {@link RecordImporter RecordImporter}: every row is appended and can be
+ * read back, the listeners of the data object are told about the import
+ * once rather than once for each row, and a prefix index finds the rows
+ * imported. The time taken by the import is printed, with the rows written
+ * to a temporary CSV file first so that only the import itself is timed,
+ * and the data object closed inside the timing so that the time includes
+ * forcing the file.
+ */
+public class ImportTest extends DataTestCase {
+
+    /**
+     * The number of rows imported.
+     */
+    protected static final int ROWS = 100000;
+
+    protected File copy;
+    protected File csv;
+
+    public ImportTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(ImportTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        copy = copyDataFile();
+        csv = File.createTempFile("importtest", ".csv");
+        csv.deleteOnExit();
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(csv), Data.ENCODING));
+        out.write("name,location,size,smoking,rate,date,owner\n");
+        for (int i = 0; i < ROWS; i++) {
+            out.write("\"Hotel " + i + ", Annexe\",Smallville," + (1 + i % 6)
+                    + "," + (i % 2 == 0 ? "Y" : "N") + ",$" + (100 + i % 200)
+                    + ".00,2026/10/" + (10 + i % 20) + ",\n");
+        }
+        out.close();
+    }
+
+    public void testImport() throws Exception {
+        Data db = new Data(copy.getPath());
+        int before = db.getNumRecords();
+        Reader in = new InputStreamReader(new FileInputStream(csv),
+                Data.ENCODING);
+        long start = System.currentTimeMillis();
+        int count = new RecordImporter(db).importRecords(in);
+        db.close();
+        long time = System.currentTimeMillis() - start;
+        in.close();
+        System.out.println("Imported " + count + " rows ("
+                + (csv.length() / 1024) + " KB) in " + time + " ms, "
+                + (time == 0 ? count : count * 1000L / time) + " rows/s");
+
+        db = new Data(copy.getPath());
+        assertEquals("rows imported", ROWS, count);
+        assertEquals("records in file", before + ROWS, db.getNumRecords());
+        assertEquals("last row", "Hotel " + (ROWS - 1) + ", Annexe",
+                db.read(before + ROWS)[BookingDB.NAME_FIELD].trim());
+        db.close();
+    }
+
+    public void testListenersNotifiedOnce() throws Exception {
+        Data db = new Data(copy.getPath());
+        int before = db.getNumRecords();
+        db.addPrefixIndex(BookingDB.NAME_FIELD);
+        final List appended = new ArrayList();
+        final int[] written = new int[1];
+        db.addRecordListener(new RecordListener() {
+            public void recordWritten(int recNo, String[] data) {
+                written[0]++;
+            }
+
+            public void recordDeleted(int recNo) {
+            }
+
+            public boolean recordsAppended(int first, int last) {
+                appended.add(new Integer(first));
+                appended.add(new Integer(last));
+                return false;
+            }
+        });
+        written[0] = 0; //Not counting the records already in the file
+
+        Reader in = new InputStreamReader(new FileInputStream(csv),
+                Data.ENCODING);
+        new RecordImporter(db).importRecords(in);
+        in.close();
+        assertEquals("records written one by one", 0, written[0]);
+        assertEquals("appended range", Arrays.asList(new Integer[] {
+                new Integer(before + 1), new Integer(before + ROWS) }),
+                appended);
+
+        String[] criteria = new String[7];
+        criteria[BookingDB.NAME_FIELD] = "Hotel " + (ROWS - 1) + ",";
+        assertEquals("indexed find", Collections.singletonList(
+                new Integer(before + ROWS)), toList(db.find(criteria)));
+        db.close();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * LeaseTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:35
+ */
+
+import java.util.concurrent.*;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+import suncertify.server.LockSession;
+import suncertify.server.SocketServer;
+
+/**
+ * Tests the leased locks of a data object on a copy of a data file: an
+ * expired lease hands the lock to the next waiter and its cookie is then
+ * refused, a renewal extends a lease, a renewer keeps a lease alive until it
+ * is stopped, a bounded lock request times out and withdraws itself, and a
+ * socket client's locks are leased and renewed on the server.
+ */
+public class LeaseTest extends DataTestCase {
+
+    protected BookingData data;
+
+    public LeaseTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(LeaseTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        data = (BookingData) new BookingDBFactory(alone).getBookingDB();
+    }
+
+    protected void tearDown() throws Exception {
+        data.close();
+    }
+
+    public void testExpiredLeaseHandsOn() throws Exception {
+        long cookie = data.lock(1, 300);
+        CompletableFuture waiter = data.lockAsync(1);
+        assertFalse("waiter queued", waiter.isDone());
+        long next = ((Long) waiter.get(5, TimeUnit.SECONDS)).longValue();
+        try {
+            data.unlock(1, cookie);
+            fail("unlock with expired lease");
+        } catch (suncertify.db.SecurityException ex) {
+            //Expected
+        }
+        try {
+            data.renew(1, cookie);
+            fail("renew of expired lease");
+        } catch (suncertify.db.SecurityException ex) {
+            //Expected
+        }
+        data.unlock(1, next);
+    }
+
+    public void testRenewalExtendsLease() throws Exception {
+        long cookie = data.lock(2, 400);
+        Thread.sleep(250);
+        data.renew(2, cookie);
+        Thread.sleep(250);
+        assertNotNull("renewed lease held", data.getLease(2));
+        data.unlock(2, cookie);
+        assertNull("lease removed on unlock", data.getLease(2));
+    }
+
+    public void testTryLock() throws Exception {
+        long cookie = data.lock(3);
+        long start = System.currentTimeMillis();
+        try {
+            data.tryLock(3, 200);
+            fail("tryLock of locked record granted");
+        } catch (LockTimeoutException ex) {
+            assertTrue("tryLock waited",
+                    System.currentTimeMillis() - start >= 150);
+        }
+        assertEquals("timed out request withdrawn", 0,
+                data.getLockQueueLength(3));
+        data.unlock(3, cookie);
+        cookie = data.tryLock(3, 200, 1000);
+        assertEquals("tryLock of free record leased", 1000,
+                data.getLease(3).getLeaseTime());
+        data.unlock(3, cookie);
+    }
+
+    public void testRenewer() throws Exception {
+        LeaseRenewer renewer = new LeaseRenewer(data, 100);
+        long cookie = data.lock(4, 300);
+        renewer.start(4, cookie);
+        Thread.sleep(900);
+        assertNotNull("renewer keeps lease", data.getLease(4));
+        renewer.stop(4, cookie);
+        assertEquals("renewer stopped", 0, renewer.getLeaseCount());
+        Thread.sleep(600);
+        assertNull("stopped lease expires", data.getLease(4));
+    }
+
+    public void testSocketLease() throws Exception {
+        SocketServer server = new SocketServer(data, 0);
+        Thread serverThread = new Thread(server, "SocketServer");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            Configuration config = Configuration.CLIENT;
+            config.set("client.host", "localhost");
+            config.set("client.port", Integer.toString(server.getPort()));
+            config.set("client.transport", Configuration.TRANSPORT_SOCKET);
+            BookingDB db = new BookingDBFactory(config).getBookingDB();
+
+            long cookie = db.lock(5);
+            LockLease lease = data.getLease(5);
+            assertNotNull("socket lock leased", lease);
+            assertEquals("socket lease time", LockSession.LEASE_TIME,
+                    lease.getLeaseTime());
+            db.renew(5, cookie);
+            try {
+                db.renew(5, cookie + 1);
+                fail("renew with wrong cookie");
+            } catch (suncertify.db.SecurityException ex) {
+                //Expected
+            }
+            try {
+                db.renew(9999, cookie);
+                fail("renew of missing record");
+            } catch (RecordNotFoundException ex) {
+                //Expected
+            }
+            db.unlock(5, cookie);
+            assertNull("socket unlock", data.getLease(5));
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * LockAsyncTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:34
+ */
+
+import java.util.concurrent.*;
+import junit.framework.*;
+import suncertify.db.*;
+
+/**
+ * Tests the asynchronous lock requests of a data object on a copy of a data
+ * file: a request for a free record is granted at once, a request for a
+ * locked record waits without a thread and is granted on unlock, a
+ * cancelled request is skipped, and deleting a record fails the requests
+ * waiting for it.
+ */
+public class LockAsyncTest extends DataTestCase {
+
+    protected Data db;
+
+    public LockAsyncTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(LockAsyncTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testFreeRecordGranted() throws Exception {
+        CompletableFuture first = db.lockAsync(1);
+        assertTrue("free record granted", first.isDone());
+        db.unlock(1, ((Long) first.get()).longValue());
+    }
+
+    public void testQueuedAndCancelled() throws Exception {
+        long cookie = ((Long) db.lockAsync(1).get()).longValue();
+
+        /* A locked record waits until it is unlocked */
+        CompletableFuture second = db.lockAsync(1);
+        CompletableFuture third = db.lockAsync(1);
+        assertFalse("locked record waits", second.isDone());
+        assertEquals("queue length", 2, db.getLockQueueLength(1));
+
+        /* A cancelled request leaves the queue and is never granted */
+        second.cancel(false);
+        assertEquals("cancelled request removed", 1,
+                db.getLockQueueLength(1));
+        db.unlock(1, cookie);
+        assertTrue("next request granted", third.isDone());
+        assertTrue("cancelled request", second.isCancelled());
+        cookie = ((Long) third.get()).longValue();
+        assertEquals("queue empty", 0, db.getLockQueueLength(1));
+        try {
+            db.unlock(1, cookie + 1);
+            fail("unlock with wrong cookie");
+        } catch (suncertify.db.SecurityException ex) {
+            //Expected
+        }
+        db.unlock(1, cookie);
+    }
+
+    public void testBlockingLockWokenByUnlock() throws Exception {
+        final long held = db.lock(1);
+        Thread unlocker = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                    db.unlock(1, held);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        unlocker.start();
+        long start = System.currentTimeMillis();
+        long cookie = db.lock(1);
+        assertTrue("blocking lock waited",
+                System.currentTimeMillis() - start >= 250);
+        unlocker.join();
+        db.unlock(1, cookie);
+    }
+
+    public void testDeleteFailsWaiters() throws Exception {
+        long cookie = db.lock(1);
+        CompletableFuture waiting = db.lockAsync(1);
+        db.delete(1, cookie);
+        try {
+            waiting.get();
+            fail("request for deleted record granted");
+        } catch (ExecutionException ex) {
+            assertTrue("deleted record fails waiter",
+                    ex.getCause() instanceof RecordNotFoundException);
+        }
+        try {
+            db.lockAsync(1).get();
+            fail("lock of deleted record granted");
+        } catch (ExecutionException ex) {
+            assertTrue("deleted record refused",
+                    ex.getCause() instanceof RecordNotFoundException);
+        }
+        assertEquals("no waiting requests", 0, db.getWaitingLocks());
+    }
+}
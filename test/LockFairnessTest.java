@@ -0,0 +1,88 @@
+/*
+ * LockFairnessTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:37
+ */
+
+import java.util.*;
+import junit.framework.*;
+import suncertify.db.*;
+
+/**
+ * Tests that the clients waiting to lock a record on a copy of a data file
+ * are granted the lock strictly in the order they asked for it, one at a
+ * time, and that the lock queue metrics follow the queue.
+ */
+public class LockFairnessTest extends DataTestCase {
+
+    /**
+     * The number of threads queued for the lock.
+     */
+    protected static final int THREADS = 20;
+
+    protected Data db;
+
+    public LockFairnessTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(LockFairnessTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testFirstComeFirstServed() throws Exception {
+        final List granted = Collections.synchronizedList(new ArrayList());
+
+        /* Queue the threads one at a time behind a lock held here */
+        long cookie = db.lock(1);
+        Thread[] waiters = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final Integer id = new Integer(i);
+            waiters[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        long cookie = db.lock(1);
+                        granted.add(id);
+                        Thread.sleep(5); //Let later requests pile up
+                        db.unlock(1, cookie);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+            waiters[i].start();
+            while (db.getLockQueueLength(1) < i + 1) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals("queue length", THREADS, db.getLockQueueLength(1));
+        assertEquals("waiting locks", THREADS, db.getWaitingLocks());
+
+        /* Requests for another record are queued separately */
+        long other = db.lock(2);
+        assertEquals("other record queue", 0, db.getLockQueueLength(2));
+        db.unlock(2, other);
+
+        db.unlock(1, cookie);
+        for (int i = 0; i < THREADS; i++) {
+            waiters[i].join();
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals("grant " + i, new Integer(i), granted.get(i));
+        }
+        assertEquals("queue emptied", 0, db.getLockQueueLength(1));
+        assertEquals("no waiting locks", 0, db.getWaitingLocks());
+        assertEquals("longest queue", THREADS, db.getMaxLockQueueLength());
+    }
+}
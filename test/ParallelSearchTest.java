@@ -0,0 +1,124 @@
+/*
+ * ParallelSearchTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:44
+ */
+
+import java.util.*;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+
+/**
+ * Tests that searches of a large copy of a data file return exactly the
+ * same record numbers, in ascending order, whether they are divided between
+ * the processors or run on a single thread. The file is compacted and
+ * record numbers reused first, so that the order the records are stored in
+ * is not the order of their numbers.
+ */
+public class ParallelSearchTest extends DataTestCase {
+
+    /**
+     * The number of records added to the copy of the data file.
+     */
+    protected static final int ADDED = 40000;
+
+    protected static final String[] LOCATIONS = { "Smallville", "Whoville",
+            "Lendmarch", "Pleasantville", "Bigtown" };
+
+    protected BookingData db;
+
+    public ParallelSearchTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(ParallelSearchTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        alone.set("alone.log", Configuration.LOG_ON);
+        alone.set("alone.parallel", Configuration.PARALLEL_ON);
+        db = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        alone.set("alone.log", Configuration.LOG_OFF);
+        alone.set("alone.parallel", Configuration.DEFAULT_PARALLEL);
+
+        /* Fill the file, then delete, compact and reuse numbers */
+        String[] base = db.read(1);
+        String[][] records = new String[ADDED][];
+        for (int i = 0; i < ADDED; i++) {
+            String[] record = (String[]) base.clone();
+            record[BookingDB.NAME_FIELD] = "Hotel " + (i % 97) + " " + i;
+            record[BookingDB.LOCATION_FIELD] = LOCATIONS[i % 5];
+            record[BookingDB.SIZE_FIELD] = Integer.toString(1 + i % 6);
+            records[i] = record;
+        }
+        db.appendRecords(records, ADDED);
+        for (int recNo = 1; recNo <= ADDED; recNo += 7) {
+            long cookie = db.lock(recNo);
+            db.delete(recNo, cookie);
+        }
+        db.compact();
+        for (int i = 0; i < ADDED / 70; i++) {
+            db.create(records[(i * 13) % ADDED]); //Appended out of order
+        }
+        assertTrue("large enough to search in parallel",
+                db.getSlotCount() > Data.PARALLEL_THRESHOLD);
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testFind() throws Exception {
+        List searches = new ArrayList();
+        searches.add(new String[7]);
+        for (int i = 0; i < 97; i += 24) {
+            String[] criteria = new String[7];
+            criteria[BookingDB.NAME_FIELD] = "Hotel " + i + " ";
+            searches.add(criteria);
+        }
+        String[] criteria = new String[7];
+        criteria[BookingDB.SIZE_FIELD] = "3";
+        searches.add(criteria);
+        for (int i = 0; i < searches.size(); i++) {
+            String[] search = (String[]) searches.get(i);
+            db.setParallelSearch(false);
+            int[] serial = db.find(search);
+            db.setParallelSearch(true);
+            int[] parallel = db.find(search);
+            checkSearch("find " + Arrays.asList(search), parallel, serial);
+        }
+    }
+
+    public void testFindExact() throws Exception {
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            String[] exact = new String[7];
+            exact[BookingDB.LOCATION_FIELD] = LOCATIONS[i];
+            exact[BookingDB.SIZE_FIELD] = Integer.toString(1 + i);
+            int[][] results = new int[2][];
+            for (int j = 0; j < 2; j++) {
+                db.setParallelSearch(j == 1);
+                results[j] = db.findExact(exact, (i % 2 == 0
+                        ? BookingDB.SEARCH_TYPE_AND
+                        : BookingDB.SEARCH_TYPE_OR));
+            }
+            checkSearch("findExact " + Arrays.asList(exact), results[1],
+                    results[0]);
+        }
+    }
+
+    protected static void checkSearch(String what, int[] parallel,
+            int[] serial) {
+        assertTrue(what + " matches", parallel.length > 0);
+        assertEquals(what, toList(serial), toList(parallel));
+        for (int i = 1; i < parallel.length; i++) {
+            assertTrue(what + " out of order at " + i,
+                    parallel[i] > parallel[i - 1]);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * SocketTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:28
+ */
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.Arrays;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+import suncertify.server.ChangeSet;
+import suncertify.server.SocketProtocol;
+import suncertify.server.SocketServer;
+
+/**
+ * Runs every operation of the socket protocol against a server on a copy of
+ * a data file and checks that each result matches the same operation made
+ * directly on the data object, including the exceptions reported and the
+ * change feed. Also checks that a request that fails unexpectedly on the
+ * server is still answered, and that a message cannot give an array length
+ * larger than the message itself.
+ */
+public class SocketTest extends DataTestCase {
+
+    protected BookingData data;
+    protected SocketServer server;
+    protected BookingDB db;
+    protected BookingDB other;
+
+    public SocketTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(SocketTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        data = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        server = start(data);
+        db = connect(server);
+        other = connect(server);
+    }
+
+    protected void tearDown() throws Exception {
+        server.close();
+        data.close();
+    }
+
+    public void testReadsAndSearches() throws Exception {
+        assertEquals("field lengths", toList(data.getFieldLengths()),
+                toList(db.getFieldLengths()));
+        assertEquals("read", Arrays.asList(data.read(1)),
+                Arrays.asList(db.read(1)));
+        String[] all = new String[7];
+        assertEquals("find all", toList(data.find(all)),
+                toList(db.find(all)));
+        String[] prefix = new String[7];
+        prefix[BookingDB.NAME_FIELD] = data.read(2)[BookingDB.NAME_FIELD]
+                .substring(0, 3);
+        assertEquals("find prefix", toList(data.find(prefix)),
+                toList(db.find(prefix)));
+        String[] exact = new String[7];
+        exact[BookingDB.LOCATION_FIELD] = data.read(3)[
+                BookingDB.LOCATION_FIELD];
+        assertEquals("findExact", toList(data.findExact(exact,
+                BookingDB.SEARCH_TYPE_AND)), toList(db.findExact(exact,
+                BookingDB.SEARCH_TYPE_AND)));
+        SearchResult page = db.findExactRecords(exact,
+                BookingDB.SEARCH_TYPE_AND, 1, 2);
+        SearchResult expected = data.findExactRecords(exact,
+                BookingDB.SEARCH_TYPE_AND, 1, 2);
+        assertEquals("findExactRecords total", expected.getTotal(),
+                page.getTotal());
+        assertEquals("findExactRecords numbers",
+                toList(expected.getRecNos()), toList(page.getRecNos()));
+        assertTrue("findExactRecords records", Arrays.deepEquals(
+                expected.getRecords(), page.getRecords()));
+        int[] recNos = { 3, 1, 9999, 2 };
+        assertTrue("readAll", Arrays.deepEquals(data.readAll(recNos),
+                db.readAll(recNos)));
+    }
+
+    public void testLockedChanges() throws Exception {
+        String[] record = db.read(4);
+        record[BookingDB.OWNER_FIELD] = "12345678";
+        long cookie = db.lock(4);
+        try {
+            db.update(4, record, cookie + 1);
+            fail("update with wrong cookie");
+        } catch (suncertify.db.SecurityException ex) {
+            //Expected
+        }
+        db.update(4, record, cookie);
+        db.unlock(4, cookie);
+        assertEquals("update", Arrays.asList(record),
+                Arrays.asList(data.read(4)));
+        try {
+            db.lock(9999);
+            fail("lock of missing record");
+        } catch (RecordNotFoundException ex) {
+            //Expected
+        }
+    }
+
+    public void testOptimisticUpdates() throws Exception {
+        VersionedRecord versioned = db.readVersioned(5);
+        assertEquals("readVersioned", Arrays.asList(data.read(5)),
+                Arrays.asList(versioned.getFields()));
+        String[] record = versioned.getFields();
+        record[BookingDB.OWNER_FIELD] = "87654321";
+        db.updateIfVersion(5, record, versioned.getVersion());
+        try {
+            db.updateIfVersion(5, record, versioned.getVersion());
+            fail("update of stale version");
+        } catch (VersionConflictException ex) {
+            //Expected
+        }
+    }
+
+    public void testCreateAndDelete() throws Exception {
+        int recNo = db.create(data.read(6));
+        assertEquals("create", Arrays.asList(data.read(6)),
+                Arrays.asList(db.read(recNo)));
+        long cookie = db.lock(recNo);
+        db.delete(recNo, cookie);
+        try {
+            db.read(recNo);
+            fail("read of deleted record");
+        } catch (RecordNotFoundException ex) {
+            //Expected
+        }
+    }
+
+    public void testChangeFeed() throws Exception {
+        ChangeSource feed = (ChangeSource) db;
+        long cursor = feed.getChangeCursor();
+
+        /* The change feed sees the changes made, in order */
+        long cookie = db.lock(4);
+        db.update(4, db.read(4), cookie);
+        db.unlock(4, cookie);
+        int recNo = db.create(data.read(6));
+        cookie = db.lock(recNo);
+        db.delete(recNo, cookie);
+        ChangeSet changes = feed.getChanges(cursor, 0);
+        assertEquals("change count", 3, changes.getEvents().length);
+        assertEquals("change 1", 4, changes.getEvents()[0].getRecNo());
+        assertEquals("change 2", recNo, changes.getEvents()[1].getRecNo());
+        assertTrue("change 3 deleted", changes.getEvents()[2].isDeleted());
+
+        /* A long poll is answered by a change made by another client */
+        final long since = changes.getCursor();
+        Thread change = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(500);
+                    long cookie = other.lock(7);
+                    other.update(7, other.read(7), cookie);
+                    other.unlock(7, cookie);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        change.start();
+        long start = System.currentTimeMillis();
+        changes = feed.getChanges(since, 10000);
+        assertEquals("long poll change", 1, changes.getEvents().length);
+        assertTrue("long poll waited",
+                System.currentTimeMillis() - start < 5000);
+        change.join();
+
+        /* Other requests are answered while a long poll waits */
+        final ChangeSource poller = feed;
+        Thread poll = new Thread(new Runnable() {
+            public void run() {
+                poller.getChanges(since + 1, 2000);
+            }
+        });
+        poll.start();
+        Thread.sleep(200);
+        start = System.currentTimeMillis();
+        assertEquals("read during poll", Arrays.asList(data.read(1)),
+                Arrays.asList(db.read(1)));
+        assertTrue("read during poll waited",
+                System.currentTimeMillis() - start < 1000);
+        poll.join();
+
+        /* An idle long poll times out with no changes */
+        start = System.currentTimeMillis();
+        changes = feed.getChanges(since + 1, 1000);
+        assertEquals("timed out poll", 0, changes.getEvents().length);
+        assertEquals("timed out poll cursor", since + 1, changes.getCursor());
+        assertTrue("timed out poll waited",
+                System.currentTimeMillis() - start >= 900);
+    }
+
+    public void testFailedRequestAnswered() throws Exception {
+        InvocationHandler failing = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                if (method.getName().equals("read")) {
+                    throw new AssertionError("Simulated failure");
+                }
+                try {
+                    return method.invoke(data, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        };
+        BookingDB broken = (BookingDB) Proxy.newProxyInstance(
+                BookingDB.class.getClassLoader(),
+                new Class[] { BookingDB.class }, failing);
+        SocketServer brokenServer = start(broken);
+        try {
+            BookingDB client = connect(brokenServer);
+            try {
+                client.read(1);
+                fail("failed request reported success");
+            } catch (RuntimeException ex) {
+                assertTrue("failure reported",
+                        ex.getMessage().indexOf("Simulated failure") >= 0);
+            }
+            assertEquals("next request answered", toList(data.find(
+                    new String[7])), toList(client.find(new String[7])));
+        } finally {
+            brokenServer.close();
+        }
+    }
+
+    public void testLengthsBoundedByMessage() throws Exception {
+        String[][] records = { data.read(1), null, data.read(1) };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SocketProtocol.writeRecords(new DataOutputStream(bytes), records);
+        assertTrue("records read back", Arrays.deepEquals(records,
+                SocketProtocol.readRecords(message(bytes.toByteArray()))));
+
+        /* An array longer than the rest of the message */
+        bytes.reset();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(3);
+        out.writeInt(1);
+        out.writeInt(2);
+        try {
+            SocketProtocol.readInts(message(bytes.toByteArray()));
+            fail("int array longer than the message");
+        } catch (IOException ex) {
+            //Expected
+        }
+
+        /* A record with more fields than the rest of the message */
+        bytes.reset();
+        out.writeInt(1);
+        out.writeInt(1000000);
+        out.writeInt(-1);
+        out.writeUTF("Value");
+        try {
+            SocketProtocol.readRecords(message(bytes.toByteArray()));
+            fail("record longer than the message");
+        } catch (IOException ex) {
+            //Expected
+        }
+        bytes.reset();
+        out.writeInt(1);
+        out.writeInt(-2);
+        try {
+            SocketProtocol.readRecords(message(bytes.toByteArray()));
+            fail("negative record length");
+        } catch (IOException ex) {
+            //Expected
+        }
+    }
+
+    protected static DataInputStream message(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    protected static SocketServer start(BookingDB db) throws IOException {
+        SocketServer server = new SocketServer(db, 0);
+        Thread serverThread = new Thread(server, "SocketServer");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        return server;
+    }
+
+    protected static BookingDB connect(SocketServer server)
+            throws Exception {
+        Configuration config = Configuration.CLIENT;
+        config.set("client.host", "localhost");
+        config.set("client.port", Integer.toString(server.getPort()));
+        config.set("client.transport", Configuration.TRANSPORT_SOCKET);
+        return new BookingDBFactory(config).getBookingDB();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * BookingTableModelTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:42
+ */
+
+package suncertify.client;
+
+import java.lang.reflect.*;
+import java.util.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+import suncertify.server.ChangeEvent;
+import suncertify.server.ChangeSet;
+
+/**
+ * Tests the row cache of the table model on a copy of a data file: the rows
+ * are fetched with the search that fills the table and displayed without
+ * reading any record again, a refresh reads only the records displayed,
+ * and a set of changes updates and removes rows without reading the
+ * records unless it is incomplete.
+ */
+public class BookingTableModelTest extends DataTestCase {
+
+    protected BookingData data;
+    protected List calls;
+    protected BookingTableModel model;
+    protected List events;
+
+    public BookingTableModelTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(BookingTableModelTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        data = (BookingData) new BookingDBFactory(alone).getBookingDB();
+
+        /* Record the calls the model makes that read records */
+        calls = new ArrayList();
+        InvocationHandler counting = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                if (method.getName().startsWith("read")) {
+                    calls.add(method.getName() + (method.getName().equals(
+                            "readAll") ? toList((int[]) args[0]) : ""));
+                }
+                try {
+                    return method.invoke(data, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        };
+        BookingDB db = (BookingDB) Proxy.newProxyInstance(
+                BookingDB.class.getClassLoader(),
+                new Class[] { BookingDB.class }, counting);
+        model = new BookingTableModel(db);
+        events = new ArrayList();
+        model.addTableModelListener(new TableModelListener() {
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+    }
+
+    protected void tearDown() throws Exception {
+        data.close();
+    }
+
+    public void testRowsCached() throws Exception {
+        assertEquals("rows", data.getNumRecords(), model.getRowCount());
+        for (int row = 0; row < model.getRowCount(); row++) {
+            String[] record = data.read(model.getRecNo(row));
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                assertEquals("row " + row, record[column].trim(),
+                        model.getValueAt(row, column));
+            }
+        }
+        assertEquals("no reads", Collections.EMPTY_LIST, calls);
+    }
+
+    public void testRefreshDisplayed() throws Exception {
+        update(1, "12345678");
+        model.setRecords(new int[] { 1, 2 });
+        calls.clear();
+        update(2, "87654321");
+        model.refreshRecords(new int[] { 2, 3, 9999 });
+        assertEquals("only displayed read", Collections.singletonList(
+                "readAll[2]"), calls);
+        assertEquals("refreshed", "87654321",
+                model.getValueAt(1, BookingDB.OWNER_FIELD));
+        assertEquals("row updated", 1, ((TableModelEvent) events.get(
+                events.size() - 1)).getFirstRow());
+    }
+
+    public void testApplyChanges() throws Exception {
+        model.setRecords(new int[] { 1, 2, 3 });
+        calls.clear();
+        String[] record = data.read(2);
+        record[BookingDB.OWNER_FIELD] = "12345678";
+        ChangeEvent[] changes = { new ChangeEvent(2, record),
+                new ChangeEvent(3, null), new ChangeEvent(4, record) };
+        model.applyChanges(new ChangeSet(changes, 3, true));
+        assertEquals("no reads", Collections.EMPTY_LIST, calls);
+        assertEquals("deleted row removed", 2, model.getRowCount());
+        assertEquals("changed row", "12345678",
+                model.getValueAt(1, BookingDB.OWNER_FIELD));
+        assertFalse("undisplayed record not cached",
+                model.rows.containsKey(new Integer(4)));
+
+        /* Changes that were missed refresh every row */
+        update(1, "11111111");
+        model.applyChanges(new ChangeSet(new ChangeEvent[0], 4, false));
+        assertEquals("refresh", Collections.singletonList("readAll[1, 2]"),
+                calls);
+        assertEquals("refreshed", "11111111",
+                model.getValueAt(0, BookingDB.OWNER_FIELD));
+    }
+
+    protected void update(int recNo, String owner) throws Exception {
+        String[] record = data.read(recNo);
+        record[BookingDB.OWNER_FIELD] = owner;
+        long cookie = data.lock(recNo);
+        data.update(recNo, record, cookie);
+        data.unlock(recNo, cookie);
+    }
+}
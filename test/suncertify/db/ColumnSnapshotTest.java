@@ -0,0 +1,201 @@
+/*
+ * ColumnSnapshotTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:21
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import junit.framework.*;
+import suncertify.Configuration;
+
+/**
+ * Tests the column snapshot of a copy of a data file: the byte columns
+ * match values with the same rules as the records read, the snapshot
+ * follows the records written, deleted and appended, the hotel name and
+ * location columns are held as dictionary codes, one code for each
+ * distinct value, and searches of the snapshot, including those that
+ * compare the codes, return the same records as searches that read the
+ * data file.
+ */
+public class ColumnSnapshotTest extends DataTestCase {
+
+    protected BookingData scanned;
+    protected BookingData snapshot;
+
+    public ColumnSnapshotTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(ColumnSnapshotTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        scanned = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        alone.set("alone.file", copyDataFile().getPath());
+        alone.set("alone.snapshot", Configuration.SNAPSHOT_ON);
+        snapshot = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        alone.set("alone.snapshot", Configuration.DEFAULT_SNAPSHOT);
+    }
+
+    protected void tearDown() throws Exception {
+        scanned.close();
+        snapshot.close();
+    }
+
+    public void testByteColumns() {
+        ColumnSnapshot columns = new ColumnSnapshot(new int[] { 8, 4 });
+        columns.recordWritten(1, new String[] { "Palace", " Y " });
+        columns.recordWritten(2, new String[] { "Pal", "N" });
+        columns.recordWritten(4, new String[] { "Grand Hotel", "Y" });
+        assertEquals("prefix", toList(new int[] { 1, 2 }), toList(
+                columns.find(new String[] { "Pal", null })));
+        assertEquals("prefix untrimmed", toList(new int[] { 1 }), toList(
+                columns.find(new String[] { null, " Y" })));
+        assertEquals("exact trimmed", toList(new int[] { 1, 4 }), toList(
+                columns.findExact(new String[] { null, "Y" },
+                BookingDB.SEARCH_TYPE_AND)));
+        assertEquals("exact not prefix", toList(new int[] { 2 }), toList(
+                columns.findExact(new String[] { "Pal", null },
+                BookingDB.SEARCH_TYPE_AND)));
+        assertEquals("truncated", toList(new int[] { 4 }), toList(
+                columns.findExact(new String[] { "Grand Ho", null },
+                BookingDB.SEARCH_TYPE_AND)));
+        assertEquals("or", toList(new int[] { 1, 2, 4 }), toList(
+                columns.findExact(new String[] { "Pal", "Y" },
+                BookingDB.SEARCH_TYPE_OR)));
+        assertEquals("all", toList(new int[] { 1, 2, 4 }), toList(
+                columns.find(new String[2])));
+
+        /* Deleted and rewritten records */
+        columns.recordDeleted(1);
+        columns.recordWritten(2, new String[] { "Castle", "N" });
+        assertEquals("after changes", toList(new int[] { 4 }), toList(
+                columns.find(new String[] { "", "Y" })));
+        assertEquals("rewritten", toList(new int[] { 2 }), toList(
+                columns.find(new String[] { "Cas", null })));
+
+        /* Appended records are asked for and then written */
+        assertTrue("asks for appended", columns.recordsAppended(5, 100));
+        assertTrue("room made", columns.capacity >= 100);
+        columns.recordWritten(100, new String[] { "Palace", "Y" });
+        assertEquals("appended", toList(new int[] { 100 }), toList(
+                columns.find(new String[] { "Pala", null })));
+    }
+
+    public void testPlainSnapshotMatchesScan() throws Exception {
+        Data db = new Data(copyDataFile().getPath());
+        try {
+            String[] record = db.read(1);
+            String[][] searches = { new String[7],
+                    { record[0].substring(0, 2), null, null, null, null,
+                            null, null },
+                    { null, null, "4", "N", null, null, null },
+                    { null, null, null, null, "$1", null, null } };
+            int[][] scans = new int[searches.length][];
+            for (int i = 0; i < searches.length; i++) {
+                scans[i] = db.find(searches[i]);
+            }
+            db.addColumnSnapshot();
+            assertNull("no codes", db.snapshot.codes[BookingDB.NAME_FIELD]);
+            for (int i = 0; i < searches.length; i++) {
+                assertEquals(Arrays.asList(searches[i]).toString(),
+                        toList(scans[i]), toList(db.find(searches[i])));
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    public void testNameAndLocationEncoded() throws Exception {
+        ColumnSnapshot columns = snapshot.snapshot;
+        assertNotNull("snapshot built", columns);
+        int[] fields = { BookingDB.NAME_FIELD, BookingDB.LOCATION_FIELD };
+        for (int i = 0; i < fields.length; i++) {
+            int field = fields[i];
+            assertNull("no byte column " + field, columns.columns[field]);
+            Set distinct = new HashSet();
+            int[] recNos = scanned.find(new String[7]);
+            for (int j = 0; j < recNos.length; j++) {
+                String value = scanned.read(recNos[j])[field];
+                distinct.add(value);
+                assertEquals("decoded " + recNos[j], value,
+                        columns.dictionaries[field].decode(
+                        columns.codes[field][recNos[j] - 1]));
+            }
+            assertEquals("one code per value " + field, distinct.size(),
+                    columns.dictionaries[field].size());
+        }
+        assertNotNull("size not encoded",
+                columns.columns[BookingDB.SIZE_FIELD]);
+    }
+
+    public void testEncodedSearches() throws Exception {
+        String[] record = scanned.read(1);
+        String name = record[BookingDB.NAME_FIELD].trim();
+        String location = record[BookingDB.LOCATION_FIELD].trim();
+        String size = record[BookingDB.SIZE_FIELD].trim();
+
+        /* Criteria with an unindexed field are matched by the snapshot */
+        List searches = new ArrayList();
+        searches.add(new String[] { name, null, size, null, null, null,
+                null });
+        searches.add(new String[] { null, location, null, "N", null, null,
+                null });
+        searches.add(new String[] { name, location, size, null, null, null,
+                null });
+        searches.add(new String[] { "No such hotel", null, size, null, null,
+                null, null });
+        for (int i = 0; i < searches.size(); i++) {
+            String[] criteria = (String[]) searches.get(i);
+            for (int operator = BookingDB.SEARCH_TYPE_AND;
+                    operator <= BookingDB.SEARCH_TYPE_OR; operator++) {
+                String what = Arrays.asList(criteria) + " " + operator;
+                assertEquals("findExact " + what, toList(scanned.findExact(
+                        criteria, operator)), toList(snapshot.findExact(
+                        criteria, operator)));
+                assertEquals("snapshot " + what, toList(scanned.findExact(
+                        criteria, operator)), toList(snapshot.snapshot
+                        .findExact(criteria, operator)));
+            }
+        }
+        assertTrue("matches found", snapshot.findExact((String[])
+                searches.get(0), BookingDB.SEARCH_TYPE_AND).length > 0);
+
+        /* Prefixes are matched against the dictionary values */
+        String[] prefix = new String[7];
+        prefix[BookingDB.LOCATION_FIELD] = location.substring(0, 2);
+        assertEquals("find prefix", toList(scanned.find(prefix)),
+                toList(snapshot.find(prefix)));
+    }
+
+    public void testCodesFollowWrites() throws Exception {
+        String[] record = snapshot.read(2);
+        ColumnDictionary names = snapshot.snapshot.dictionaries[
+                BookingDB.NAME_FIELD];
+        int size = names.size();
+        record[BookingDB.NAME_FIELD] = "Renamed Hotel";
+        long cookie = snapshot.lock(2);
+        snapshot.update(2, record, cookie);
+        snapshot.unlock(2, cookie);
+        assertEquals("new value coded", size + 1, names.size());
+
+        String[] criteria = new String[7];
+        criteria[BookingDB.NAME_FIELD] = "Renamed Hotel";
+        criteria[BookingDB.SIZE_FIELD] = record[BookingDB.SIZE_FIELD].trim();
+        assertEquals("updated record found", Collections.singletonList(
+                new Integer(2)), toList(snapshot.findExact(criteria,
+                BookingDB.SEARCH_TYPE_AND)));
+
+        cookie = snapshot.lock(2);
+        snapshot.delete(2, cookie);
+        assertEquals("deleted record not found", 0, snapshot.findExact(
+                criteria, BookingDB.SEARCH_TYPE_AND).length);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * DataTestCase.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:00
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * Base class for tests that work on a copy of a data file, so that the
+ * data file given to the tests is never changed.
+ * <p>
+ * The data file is named by the system property {@link #DATA_FILE_PROPERTY
+ * DATA_FILE_PROPERTY}, which the <code>test</code> target of the build
+ * sets, and is <code>db-1x3.db</code> in the current directory otherwise.
+ */
+public abstract class DataTestCase extends TestCase {
+
+    /**
+     * The system property naming the data file the tests copy.
+     */
+    public static final String DATA_FILE_PROPERTY = "test.data.file";
+
+    /**
+     * The data file copied when the system property is not set.
+     */
+    public static final String DEFAULT_DATA_FILE = "db-1x3.db";
+
+    public DataTestCase(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Returns a new copy of the data file, which is deleted, together with
+     * its write-ahead log, when the virtual machine exits.
+     *
+     * @return the copy.
+     *
+     * @throws IOException if the data file cannot be copied.
+     */
+    protected File copyDataFile() throws IOException {
+        File copy = File.createTempFile(getClass().getName(), ".db");
+        copy.deleteOnExit();
+        new File(copy.getPath() + Data.LOG_SUFFIX).deleteOnExit();
+        copyFile(new File(System.getProperty(DATA_FILE_PROPERTY,
+                DEFAULT_DATA_FILE)), copy);
+        return copy;
+    }
+
+    /**
+     * Copies a file.
+     *
+     * @param from the file to be copied.
+     * @param to the file to copy it to.
+     *
+     * @throws IOException if there is an error reading or writing.
+     */
+    public static void copyFile(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        OutputStream out = new FileOutputStream(to);
+        byte[] buffer = new byte[8192];
+        int n;
+        try {
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Returns a list of record numbers, for comparing search results.
+     *
+     * @param values the record numbers.
+     *
+     * @return a list of <code>Integer</code>s.
+     */
+    protected static List toList(int[] values) {
+        List list = new ArrayList();
+        for (int i = 0; i < values.length; i++) {
+            list.add(new Integer(values[i]));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * FieldIndexTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:27
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import junit.framework.*;
+import suncertify.Configuration;
+
+/**
+ * Tests the hash indexes of the hotel name and location: an index follows
+ * the records written and deleted, keys values without their surrounding
+ * whitespace and hands out copies of its sets, and searches of a copy of a
+ * data file answered from the indexes return the same records as searches
+ * that read every record.
+ */
+public class FieldIndexTest extends DataTestCase {
+
+    public FieldIndexTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(FieldIndexTest.class);
+        return suite;
+    }
+
+    public void testWrittenAndDeleted() {
+        FieldIndex index = new FieldIndex(0);
+        index.recordWritten(1, new String[] { "Palace  " });
+        index.recordWritten(2, new String[] { "Palace" });
+        index.recordWritten(3, new String[] { "Castle" });
+        assertEquals("trimmed key", set(new int[] { 1, 2 }),
+                index.get("Palace"));
+        assertEquals("all", set(new int[] { 1, 2, 3 }), index.getAll());
+
+        /* A rewritten record moves to its new value */
+        index.recordWritten(2, new String[] { "Castle" });
+        assertEquals("old value", set(new int[] { 1 }), index.get("Palace"));
+        assertEquals("new value", set(new int[] { 2, 3 }),
+                index.get("Castle"));
+
+        index.recordDeleted(1);
+        assertTrue("deleted", index.get("Palace").isEmpty());
+        assertTrue("empty key removed", !index.index.containsKey("Palace"));
+        assertEquals("all after delete", set(new int[] { 2, 3 }),
+                index.getAll());
+
+        /* The sets returned are copies */
+        index.get("Castle").clear();
+        assertEquals("copy", set(new int[] { 2, 3 }), index.get("Castle"));
+    }
+
+    public void testFindExactMatchesScan() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        BookingData db = (BookingData) new BookingDBFactory(alone)
+                .getBookingDB();
+        try {
+            String[] record = db.read(1);
+            String[] other = db.read(db.getNumRecords());
+            String[][] searches = {
+                    { record[BookingDB.NAME_FIELD].trim(), null, null, null,
+                            null, null, null },
+                    { null, record[BookingDB.LOCATION_FIELD].trim(), null,
+                            null, null, null, null },
+                    { record[BookingDB.NAME_FIELD].trim(),
+                            other[BookingDB.LOCATION_FIELD].trim(), null,
+                            null, null, null, null },
+                    { "No such hotel", null, null, null, null, null, null },
+                    new String[7] };
+            for (int i = 0; i < searches.length; i++) {
+                for (int operator = BookingDB.SEARCH_TYPE_AND;
+                        operator <= BookingDB.SEARCH_TYPE_OR; operator++) {
+                    String what = Arrays.asList(searches[i]) + " " + operator;
+                    assertEquals(what, toList(db.scanExact(searches[i],
+                            operator)), toList(db.findExact(searches[i],
+                            operator)));
+                }
+            }
+
+            /* The indexes follow a change of name */
+            record[BookingDB.NAME_FIELD] = "Renamed Hotel";
+            long cookie = db.lock(1);
+            db.update(1, record, cookie);
+            db.unlock(1, cookie);
+            String[] renamed = new String[7];
+            renamed[BookingDB.NAME_FIELD] = "Renamed Hotel";
+            assertEquals("renamed", Collections.singletonList(new Integer(1)),
+                    toList(db.findExact(renamed, BookingDB.SEARCH_TYPE_AND)));
+        } finally {
+            db.close();
+        }
+    }
+
+    protected static SortedSet set(int[] recNos) {
+        return new TreeSet(toList(recNos));
+    }
+}
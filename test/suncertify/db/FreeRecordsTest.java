@@ -0,0 +1,116 @@
+/*
+ * FreeRecordsTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:31
+ */
+
+package suncertify.db;
+
+import java.io.File;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * Tests the free record tracking of a copy of a data file: a new record
+ * takes the lowest numbered deleted record, the deleted records are found
+ * again when the file is reopened, and records created at the same time by
+ * several threads are each given a different number, reusing every deleted
+ * record before appending.
+ */
+public class FreeRecordsTest extends DataTestCase {
+
+    /**
+     * The number of threads creating records at the same time.
+     */
+    protected static final int CREATORS = 8;
+
+    protected File copy;
+    protected Data db;
+
+    public FreeRecordsTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(FreeRecordsTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        copy = copyDataFile();
+        db = new Data(copy.getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testLowestReused() throws Exception {
+        int count = db.getNumRecords();
+        String[] record = db.read(1);
+        delete(5);
+        delete(3);
+        assertEquals("count after delete", count - 2, db.getNumRecords());
+        assertEquals("lowest reused", 3, db.create(record));
+        assertEquals("next reused", 5, db.create(record));
+        assertEquals("appended", count + 1, db.create(record));
+        assertEquals("count after create", count + 1, db.getNumRecords());
+    }
+
+    public void testFoundOnOpen() throws Exception {
+        String[] record = db.read(1);
+        delete(4);
+        db.close();
+        db = new Data(copy.getPath());
+        assertEquals("deleted record reused", 4, db.create(record));
+    }
+
+    public void testConcurrentCreates() throws Exception {
+        final String[] record = db.read(1);
+        int count = db.getNumRecords();
+        Set expected = new TreeSet();
+        for (int recNo = 2; recNo <= 20; recNo += 2) {
+            delete(recNo);
+            expected.add(new Integer(recNo));
+        }
+        final int each = 5;
+        int appended = CREATORS * each - expected.size();
+        for (int i = 0; i < appended; i++) {
+            expected.add(new Integer(count + 1 + i));
+        }
+
+        final Set created = Collections.synchronizedSet(new TreeSet());
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] creators = new Thread[CREATORS];
+        for (int i = 0; i < CREATORS; i++) {
+            creators[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int n = 0; n < each; n++) {
+                            if (!created.add(new Integer(db.create(record)))) {
+                                errors.add("number given twice");
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.add(ex.toString());
+                    }
+                }
+            });
+            creators[i].start();
+        }
+        for (int i = 0; i < CREATORS; i++) {
+            creators[i].join();
+        }
+        assertTrue("errors " + errors, errors.isEmpty());
+        assertEquals("numbers given", expected, created);
+        assertEquals("count", count - 10 + CREATORS * each,
+                db.getNumRecords());
+        assertTrue("no free records", db.freeRecords.isEmpty());
+    }
+
+    protected void delete(int recNo) throws Exception {
+        long cookie = db.lock(recNo);
+        db.delete(recNo, cookie);
+    }
+}
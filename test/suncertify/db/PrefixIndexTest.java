@@ -0,0 +1,104 @@
+/*
+ * PrefixIndexTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:29
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * Tests the prefix indexes: values are indexed as they are stored, a prefix
+ * finds exactly the values starting with it and no others, and searches of a
+ * copy of a data file answered from prefix indexes return the same records
+ * as searches that read every record, including after records are written
+ * and deleted.
+ */
+public class PrefixIndexTest extends DataTestCase {
+
+    public PrefixIndexTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(PrefixIndexTest.class);
+        return suite;
+    }
+
+    public void testGetPrefix() {
+        PrefixIndex index = new PrefixIndex(0);
+        String[] values = { "Bar", "Bark", "Barn  ", "Bas", "Ba", "A" };
+        for (int i = 0; i < values.length; i++) {
+            index.recordWritten(i + 1, new String[] { values[i] });
+        }
+        assertEquals("prefix", set(new int[] { 1, 2, 3 }),
+                index.getPrefix("Bar"));
+        assertEquals("shorter prefix", set(new int[] { 1, 2, 3, 4, 5 }),
+                index.getPrefix("Ba"));
+        assertEquals("untrimmed", set(new int[] { 3 }),
+                index.getPrefix("Barn "));
+        assertTrue("no match", index.getPrefix("C").isEmpty());
+        assertEquals("empty prefix", set(new int[] { 1, 2, 3, 4, 5, 6 }),
+                index.getPrefix(""));
+
+        index.recordDeleted(2);
+        index.recordWritten(6, new String[] { "Barge" });
+        assertEquals("after changes", set(new int[] { 1, 3, 6 }),
+                index.getPrefix("Bar"));
+    }
+
+    public void testFindMatchesScan() throws Exception {
+        Data indexed = new Data(copyDataFile().getPath());
+        Data scanned = new Data(copyDataFile().getPath());
+        try {
+            indexed.addPrefixIndex(BookingDB.NAME_FIELD);
+            indexed.addPrefixIndex(BookingDB.LOCATION_FIELD);
+            String[] record = indexed.read(1);
+
+            /* Change the indexed copy and the other the same way */
+            String[] renamed = (String[]) record.clone();
+            renamed[BookingDB.NAME_FIELD] = "Prefix Palace";
+            Data[] both = { indexed, scanned };
+            for (int i = 0; i < both.length; i++) {
+                long cookie = both[i].lock(2);
+                both[i].update(2, renamed, cookie);
+                both[i].unlock(2, cookie);
+                cookie = both[i].lock(3);
+                both[i].delete(3, cookie);
+                both[i].create(renamed);
+            }
+
+            String name = record[BookingDB.NAME_FIELD];
+            String location = record[BookingDB.LOCATION_FIELD];
+            String[][] searches = {
+                    { name.substring(0, 1), null, null, null, null, null,
+                            null },
+                    { "Prefix", null, null, null, null, null, null },
+                    { null, location.substring(0, 2), null, null, null, null,
+                            null },
+                    { name.substring(0, 2), location.substring(0, 1), null,
+                            null, null, null, null },
+                    { name.substring(0, 2), null, "4", null, null, null,
+                            null },
+                    { "No such hotel", null, null, null, null, null, null },
+                    { name, null, null, null, null, null, null } };
+            for (int i = 0; i < searches.length; i++) {
+                assertEquals(Arrays.asList(searches[i]).toString(),
+                        toList(scanned.find(searches[i])),
+                        toList(indexed.find(searches[i])));
+            }
+            assertEquals("renamed records", 2, indexed.find(searches[1])
+                    .length);
+        } finally {
+            indexed.close();
+            scanned.close();
+        }
+    }
+
+    protected static SortedSet set(int[] recNos) {
+        return new TreeSet(toList(recNos));
+    }
+}
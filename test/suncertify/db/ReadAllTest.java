@@ -0,0 +1,79 @@
+/*
+ * ReadAllTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:38
+ */
+
+package suncertify.db;
+
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.server.RemoteBookingDB;
+import suncertify.server.RemoteBookingData;
+
+/**
+ * Tests the batch reads of a copy of a data file: each record is read as
+ * by a single read, in the order asked for and as often as asked for,
+ * records that do not exist or are deleted are returned as
+ * <code>null</code> without failing the rest, and the same batch read
+ * through RMI gives the same records.
+ */
+public class ReadAllTest extends DataTestCase {
+
+    protected BookingData db;
+
+    public ReadAllTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(ReadAllTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        db = (BookingData) new BookingDBFactory(alone).getBookingDB();
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testReadAll() throws Exception {
+        long cookie = db.lock(4);
+        db.delete(4, cookie);
+        int[] recNos = { 3, 1, 9999, 3, 4, 0, 2 };
+        String[][] records = db.readAll(recNos);
+        assertEquals("length", recNos.length, records.length);
+        for (int i = 0; i < recNos.length; i++) {
+            if ((recNos[i] == 9999) || (recNos[i] == 4) || (recNos[i] == 0)) {
+                assertNull("missing " + recNos[i], records[i]);
+            } else {
+                assertEquals("record " + recNos[i],
+                        Arrays.asList(db.read(recNos[i])),
+                        Arrays.asList(records[i]));
+            }
+        }
+        assertNotSame("separate arrays", records[0], records[3]);
+        assertEquals("empty", 0, db.readAll(new int[0]).length);
+    }
+
+    public void testReadAllRemote() throws Exception {
+        RemoteBookingData remote = new RemoteBookingData(db);
+        try {
+            BookingDB proxy = new BookingDataProxy((RemoteBookingDB)
+                    RemoteObject.toStub(remote));
+            int[] recNos = { 2, 9999, 1 };
+            assertTrue("remote readAll", Arrays.deepEquals(
+                    db.readAll(recNos), proxy.readAll(recNos)));
+        } finally {
+            UnicastRemoteObject.unexportObject(remote, true);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * RecordBufferTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:31
+ */
+
+package suncertify.db;
+
+import java.util.Arrays;
+import junit.framework.*;
+
+/**
+ * Tests the reusable record buffers: a buffer loaded with each record of a
+ * copy of a data file in turn decodes the same values as reading the
+ * records, a deleted record is loaded and reported as deleted, and the
+ * comparisons made on the bytes follow the same rules as the decoded
+ * values for null padding, surrounding whitespace and bytes outside the
+ * US-ASCII range.
+ */
+public class RecordBufferTest extends DataTestCase {
+
+    protected Data db;
+
+    public RecordBufferTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(RecordBufferTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testLoadMatchesRead() throws Exception {
+        RecordBuffer buffer = db.newRecordBuffer();
+        int[] recNos = db.find(new String[7]);
+        for (int i = 0; i < recNos.length; i++) {
+            assertTrue("loaded " + recNos[i], db.load(recNos[i], buffer));
+            assertEquals("record number", recNos[i], buffer.getRecNo());
+            assertEquals("fields of " + recNos[i],
+                    Arrays.asList(db.read(recNos[i])),
+                    Arrays.asList(buffer.getFields()));
+        }
+    }
+
+    public void testDeletedLoaded() throws Exception {
+        RecordBuffer buffer = db.newRecordBuffer();
+        long cookie = db.lock(2);
+        db.delete(2, cookie);
+        assertFalse("deleted record", db.load(2, buffer));
+        assertTrue("flagged deleted", buffer.isDeleted());
+        try {
+            db.load(db.getSlotCount() + 1, buffer);
+            fail("load of missing record");
+        } catch (RecordNotFoundException ex) {
+            //Expected
+        }
+    }
+
+    public void testComparisons() {
+        RecordBuffer buffer = new RecordBuffer(new int[] { 8, 6 });
+        buffer.set(7, new String[] { " Palace ", "Inn" });
+        assertEquals("record number", 7, buffer.getRecNo());
+        assertEquals("null padding ends value", 3, buffer.getLength(1));
+        assertEquals("value", "Inn", buffer.getField(1));
+        assertTrue("equals", buffer.fieldEquals(0, " Palace "));
+        assertFalse("equals untrimmed", buffer.fieldEquals(0, "Palace"));
+        assertTrue("equals trimmed", buffer.fieldEqualsTrimmed(0, "Palace"));
+        assertTrue("starts with", buffer.fieldStartsWith(0, " Pal"));
+        assertFalse("longer prefix", buffer.fieldStartsWith(1, "Inns"));
+
+        /* A byte outside US-ASCII matches only the replacement character */
+        buffer.bytes[buffer.offsets[1] + 1] = (byte) 0xE9;
+        buffer.loaded(7);
+        assertEquals("decoded", "I" + RecordBuffer.REPLACEMENT + "n",
+                buffer.getField(1));
+        assertTrue("replacement matched", buffer.fieldEquals(1,
+                "I" + RecordBuffer.REPLACEMENT + "n"));
+        assertFalse("byte not matched", buffer.fieldEquals(1, "I\u00e9n"));
+
+        /* Values longer than the field are truncated */
+        buffer.set(8, new String[] { "Grand Hotel", "" });
+        assertEquals("truncated", "Grand Ho", buffer.getField(0));
+        assertEquals("empty", "", buffer.getField(1));
+        assertTrue("empty trimmed", buffer.fieldEqualsTrimmed(1, ""));
+    }
+}
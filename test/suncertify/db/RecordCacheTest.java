@@ -0,0 +1,101 @@
+/*
+ * RecordCacheTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:35
+ */
+
+package suncertify.db;
+
+import java.util.Arrays;
+import junit.framework.*;
+
+/**
+ * Tests the cache of records read: the least recently used record is
+ * evicted when the cache is full, the cache holds copies of the records
+ * given to it, and a booking data object on a copy of a data file answers
+ * repeated reads from the cache but never returns a record that has been
+ * updated, deleted or reused since it was cached.
+ */
+public class RecordCacheTest extends DataTestCase {
+
+    public RecordCacheTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(RecordCacheTest.class);
+        return suite;
+    }
+
+    public void testLeastRecentlyUsedEvicted() {
+        RecordCache cache = new RecordCache(2);
+        byte[] record = { 1, 2, 3 };
+        cache.put(1, record);
+        record[0] = 9;
+        cache.put(2, record);
+        byte[] read = new byte[3];
+        assertTrue("cached", cache.get(1, read));
+        assertEquals("copy cached", 1, read[0]);
+        cache.put(3, record); //Evicts record 2, used least recently
+        assertEquals("size", 2, cache.size());
+        assertFalse("evicted", cache.get(2, read));
+        assertTrue("kept", cache.get(1, read));
+        assertTrue("added", cache.get(3, read));
+        assertEquals("hits", 3, cache.getHits());
+        assertEquals("misses", 1, cache.getMisses());
+        try {
+            new RecordCache(0);
+            fail("empty cache");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+    }
+
+    public void testInvalidatedByWrites() throws Exception {
+        BookingData db = new BookingData(copyDataFile().getPath(),
+                Data.STORAGE_FILE, 10);
+        try {
+            RecordCache cache = db.getCache();
+            String[] record = db.read(1);
+            long hits = cache.getHits();
+            assertEquals("repeated read", Arrays.asList(record),
+                    Arrays.asList(db.read(1)));
+            assertEquals("read from cache", hits + 1, cache.getHits());
+
+            /* An update replaces the cached record */
+            record[BookingDB.OWNER_FIELD] = "12345678";
+            long cookie = db.lock(1);
+            db.update(1, record, cookie);
+            db.unlock(1, cookie);
+            assertEquals("after update", Arrays.asList(record),
+                    Arrays.asList(db.read(1)));
+
+            /* So does an optimistic update */
+            VersionedRecord versioned = db.readVersioned(1);
+            String[] changed = versioned.getFields();
+            changed[BookingDB.OWNER_FIELD] = "87654321";
+            db.updateIfVersion(1, changed, versioned.getVersion());
+            assertEquals("after optimistic update", Arrays.asList(changed),
+                    Arrays.asList(db.read(1)));
+
+            /* A deleted record is not read, nor is it once reused */
+            String[] other = db.read(2);
+            cookie = db.lock(2);
+            db.delete(2, cookie);
+            try {
+                db.read(2);
+                fail("read of deleted record");
+            } catch (RecordNotFoundException ex) {
+                //Expected
+            }
+            assertEquals("reused", 2, db.create(changed));
+            assertEquals("after reuse", Arrays.asList(changed),
+                    Arrays.asList(db.read(2)));
+            assertFalse("reused record changed", Arrays.asList(other)
+                    .equals(Arrays.asList(db.read(2))));
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * RecordCursorTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:40
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * Tests the cursors over a copy of a data file: a cursor returns the same
+ * records as a search, in order of record number, skips deleted records
+ * and record numbers whose space has been reclaimed by compaction, returns
+ * a reused record number in its place in the order, and neither misses nor
+ * repeats a record while the file is compacted under it.
+ */
+public class RecordCursorTest extends DataTestCase {
+
+    /**
+     * The number of records added to the copy of the data file.
+     */
+    protected static final int ADDED = 2000;
+
+    protected Data db;
+
+    public RecordCursorTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(RecordCursorTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath(),
+                Data.STORAGE_FILE | Data.STORAGE_LOGGED);
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testMatchesFind() throws Exception {
+        final String[] criteria = new String[7];
+        criteria[BookingDB.SMOKING_FIELD] = "N";
+        RecordCursor cursor = db.scan(new RecordFilter() {
+            public boolean accept(RecordBuffer record) {
+                return record.fieldStartsWith(BookingDB.SMOKING_FIELD, "N");
+            }
+        });
+        try {
+            cursor.getRecNo();
+            fail("cursor before the first record");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+        assertEquals("filtered", toList(db.find(criteria)), scan(cursor));
+        assertFalse("stays at the end", cursor.next());
+        assertEquals("all", toList(db.find(new String[7])),
+                scan(db.scan(null)));
+    }
+
+    public void testSkipsReclaimed() throws Exception {
+        String[] record = db.read(1);
+        for (int recNo = 2; recNo <= 10; recNo += 2) {
+            long cookie = db.lock(recNo);
+            db.delete(recNo, cookie);
+        }
+        List live = toList(db.find(new String[7]));
+        assertEquals("deleted skipped", live, scan(db.scan(null)));
+
+        db.compact();
+        assertEquals("reclaimed skipped", live, scan(db.scan(null)));
+        assertEquals("reused", 2, db.create(record)); //Appended to the file
+        live.add(1, new Integer(2));
+        assertEquals("reused in number order", live, scan(db.scan(null)));
+    }
+
+    public void testCompactedUnderCursor() throws Exception {
+        String[] base = db.read(1);
+        for (int i = 0; i < ADDED; i++) {
+            db.create(base);
+        }
+        int[] all = db.find(new String[7]);
+        final List kept = new ArrayList();
+        final List deleted = new ArrayList();
+        for (int i = 0; i < all.length; i++) {
+            (all[i] % 2 == 0 ? deleted : kept).add(new Integer(all[i]));
+        }
+
+        /* Delete and compact while scanning over and over */
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread compactor = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (Iterator i = deleted.iterator(); i.hasNext(); ) {
+                        int recNo = ((Integer) i.next()).intValue();
+                        long cookie = db.lock(recNo);
+                        db.delete(recNo, cookie);
+                        if (recNo % 100 == 0) {
+                            db.compact();
+                        }
+                    }
+                    db.compact();
+                } catch (Exception ex) {
+                    errors.add(ex.toString());
+                }
+            }
+        });
+        compactor.start();
+        while (compactor.isAlive()) {
+            List found = scan(db.scan(null));
+            for (int i = 1; i < found.size(); i++) {
+                if (((Integer) found.get(i)).intValue()
+                        <= ((Integer) found.get(i - 1)).intValue()) {
+                    errors.add("out of order or repeated at " + i);
+                    break;
+                }
+            }
+            if (!found.containsAll(kept)) {
+                errors.add("kept record missed");
+            }
+        }
+        compactor.join();
+        assertTrue("errors " + errors, errors.isEmpty());
+        assertEquals("after compaction", kept, scan(db.scan(null)));
+    }
+
+    /**
+     * Returns the record numbers a cursor steps through.
+     */
+    protected static List scan(RecordCursor cursor) {
+        List recNos = new ArrayList();
+        while (cursor.next()) {
+            recNos.add(new Integer(cursor.getRecNo()));
+        }
+        return recNos;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * RecordViewTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:33
+ */
+
+package suncertify.db;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import junit.framework.*;
+import suncertify.Configuration;
+
+/**
+ * Tests the record views of a copy of a data file: a view loaded with each
+ * record in turn gives the same typed values as parsing the fields read as
+ * strings, the owner follows a booking, a deleted record cannot be loaded,
+ * and a field that does not hold a valid value is reported rather than
+ * misread.
+ */
+public class RecordViewTest extends DataTestCase {
+
+    protected BookingData db;
+
+    public RecordViewTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(RecordViewTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        db = (BookingData) new BookingDBFactory(alone).getBookingDB();
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testViewMatchesRead() throws Exception {
+        RecordView view = db.newRecordView();
+        int[] recNos = db.find(new String[7]);
+        for (int i = 0; i < recNos.length; i++) {
+            String[] record = db.read(recNos[i]);
+            db.read(recNos[i], view);
+            String what = "record " + recNos[i];
+            assertEquals(what, recNos[i], view.getRecNo());
+            assertEquals(what, record[BookingDB.NAME_FIELD].trim(),
+                    view.name());
+            assertEquals(what, record[BookingDB.LOCATION_FIELD].trim(),
+                    view.location());
+            assertEquals(what, Integer.parseInt(
+                    record[BookingDB.SIZE_FIELD].trim()), view.size());
+            assertEquals(what, record[BookingDB.SMOKING_FIELD].trim()
+                    .equals("Y"), view.smoking());
+            assertEquals(what, new BigDecimal(record[BookingDB.RATE_FIELD]
+                    .trim().substring(1)).movePointRight(2).longValue(),
+                    view.rate());
+            String date = record[BookingDB.DATE_FIELD].trim();
+            assertEquals(what, LocalDate.of(
+                    Integer.parseInt(date.substring(0, 4)),
+                    Integer.parseInt(date.substring(5, 7)),
+                    Integer.parseInt(date.substring(8, 10))).toEpochDay(),
+                    view.date());
+            assertEquals(what, RecordView.NO_OWNER, view.owner());
+        }
+    }
+
+    public void testOwnerAndDeleted() throws Exception {
+        RecordView view = db.newRecordView();
+        String[] record = db.read(1);
+        record[BookingDB.OWNER_FIELD] = "00012345";
+        long cookie = db.lock(1);
+        db.update(1, record, cookie);
+        db.unlock(1, cookie);
+        db.read(1, view);
+        assertEquals("owner", 12345, view.owner());
+
+        cookie = db.lock(2);
+        db.delete(2, cookie);
+        try {
+            db.read(2, view);
+            fail("view of deleted record");
+        } catch (RecordNotFoundException ex) {
+            //Expected
+        }
+    }
+
+    public void testInvalidValues() throws Exception {
+        RecordView view = db.newRecordView();
+        String[] record = db.read(1);
+        record[BookingDB.RATE_FIELD] = "$1x.00";
+        record[BookingDB.DATE_FIELD] = "2026/13/01";
+        long cookie = db.lock(1);
+        db.update(1, record, cookie);
+        db.unlock(1, cookie);
+        db.read(1, view);
+        try {
+            view.rate();
+            fail("invalid rate");
+        } catch (NumberFormatException ex) {
+            //Expected
+        }
+        try {
+            view.date();
+            fail("invalid date");
+        } catch (NumberFormatException ex) {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * SearchResultTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:39
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.server.RemoteBookingDB;
+import suncertify.server.RemoteBookingData;
+
+/**
+ * Tests the combined search and fetch of a copy of a data file: a page of
+ * the matches holds the records read for those matches together with the
+ * total number matched, records deleted after matching are left out, a
+ * search result is serialized with each repeated field value written once
+ * and read back unchanged, and the same search through RMI gives the same
+ * result.
+ */
+public class SearchResultTest extends DataTestCase {
+
+    protected BookingData db;
+    protected String[] criteria;
+
+    public SearchResultTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(SearchResultTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        db = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        String[] record = db.read(1);
+        for (int i = 0; i < 4; i++) {
+            db.create(record); //More matches than a page
+        }
+        criteria = new String[7];
+        criteria[BookingDB.LOCATION_FIELD] = record[
+                BookingDB.LOCATION_FIELD].trim();
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testPages() throws Exception {
+        int[] matches = db.findExact(criteria, BookingDB.SEARCH_TYPE_AND);
+        assertTrue("enough matches", matches.length > 3);
+        SearchResult all = db.findExactRecords(criteria,
+                BookingDB.SEARCH_TYPE_AND);
+        assertEquals("all numbers", toList(matches),
+                toList(all.getRecNos()));
+        assertTrue("all records", Arrays.deepEquals(db.readAll(matches),
+                all.getRecords()));
+
+        SearchResult page = db.findExactRecords(criteria,
+                BookingDB.SEARCH_TYPE_AND, 1, 2);
+        assertEquals("total", matches.length, page.getTotal());
+        assertEquals("page", toList(new int[] { matches[1], matches[2] }),
+                toList(page.getRecNos()));
+        assertEquals("past the end", 0, db.findExactRecords(criteria,
+                BookingDB.SEARCH_TYPE_AND, matches.length, 5).size());
+        try {
+            db.findExactRecords(criteria, BookingDB.SEARCH_TYPE_AND, -1, 1);
+            fail("negative offset");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+    }
+
+    public void testDeletedLeftOut() throws Exception {
+        final int[][] matches = new int[1][];
+        BookingData deleting = new BookingData(copyDataFile().getPath(),
+                Data.STORAGE_FILE, BookingData.CACHE_NONE) {
+            public int[] findExact(String[] criteria, int operator) {
+                matches[0] = super.findExact(criteria, operator);
+                try {
+                    long cookie = lock(matches[0][0]); //Deleted after match
+                    delete(matches[0][0], cookie);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+                return matches[0];
+            }
+        };
+        try {
+            SearchResult result = deleting.findExactRecords(criteria,
+                    BookingDB.SEARCH_TYPE_AND);
+            assertEquals("total", matches[0].length, result.getTotal());
+            assertEquals("deleted left out", matches[0].length - 1,
+                    result.size());
+            assertEquals("first kept", matches[0][1], result.getRecNos()[0]);
+        } finally {
+            deleting.close();
+        }
+    }
+
+    public void testSerialized() throws Exception {
+        SearchResult result = db.findExactRecords(criteria,
+                BookingDB.SEARCH_TYPE_AND);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(result);
+        out.close();
+        SearchResult copy = (SearchResult) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals("total", result.getTotal(), copy.getTotal());
+        assertEquals("numbers", toList(result.getRecNos()),
+                toList(copy.getRecNos()));
+        assertTrue("records", Arrays.deepEquals(result.getRecords(),
+                copy.getRecords()));
+
+        /* The location shared by every record is written only once */
+        String location = result.getRecords()[0][BookingDB.LOCATION_FIELD];
+        assertEquals("location written once", 1, count(bytes.toByteArray(),
+                location.getBytes("UTF-8")));
+        assertSame("location shared", copy.getRecords()[0][
+                BookingDB.LOCATION_FIELD], copy.getRecords()[1][
+                BookingDB.LOCATION_FIELD]);
+    }
+
+    public void testRemote() throws Exception {
+        RemoteBookingData remote = new RemoteBookingData(db);
+        try {
+            BookingDB proxy = new BookingDataProxy((RemoteBookingDB)
+                    RemoteObject.toStub(remote));
+            SearchResult expected = db.findExactRecords(criteria,
+                    BookingDB.SEARCH_TYPE_AND, 1, 3);
+            SearchResult result = proxy.findExactRecords(criteria,
+                    BookingDB.SEARCH_TYPE_AND, 1, 3);
+            assertEquals("total", expected.getTotal(), result.getTotal());
+            assertEquals("numbers", toList(expected.getRecNos()),
+                    toList(result.getRecNos()));
+            assertTrue("records", Arrays.deepEquals(expected.getRecords(),
+                    result.getRecords()));
+        } finally {
+            UnicastRemoteObject.unexportObject(remote, true);
+        }
+    }
+
+    /**
+     * Returns the number of times a sequence of bytes occurs in an array.
+     */
+    protected static int count(byte[] bytes, byte[] sequence) {
+        int count = 0;
+        for (int i = 0; i + sequence.length <= bytes.length; i++) {
+            int j = 0;
+            while ((j < sequence.length) && (bytes[i + j] == sequence[j])) {
+                j++;
+            }
+            if (j == sequence.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * StripedLockTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:23
+ */
+
+package suncertify.db;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import junit.framework.*;
+
+/**
+ * Tests the read-write locks the records of a copy of a data file are
+ * divided between: record numbers that differ by the number of stripes
+ * share a lock, a record being written does not hold up reads of a record
+ * guarded by another stripe, reads of the same record wait for the write,
+ * and threads updating different records all see their own changes.
+ */
+public class StripedLockTest extends DataTestCase {
+
+    /**
+     * The number of threads updating records at the same time.
+     */
+    protected static final int WRITERS = 4;
+
+    protected Data db;
+
+    public StripedLockTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(StripedLockTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testStripeOfRecord() {
+        assertSame("same stripe", db.getStripe(1),
+                db.getStripe(1 + Data.LOCK_STRIPES));
+        assertNotSame("next stripe", db.getStripe(1), db.getStripe(2));
+    }
+
+    public void testWriteBlocksOnlyItsStripe() throws Exception {
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                Lock lock = db.getStripe(1).writeLock();
+                lock.lock();
+                try {
+                    held.countDown();
+                    release.await();
+                } catch (InterruptedException ex) {
+                    //Release the lock
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        writer.start();
+        held.await();
+        try {
+            assertNotNull("other stripe read", db.read(2));
+
+            /* A read of the same record waits for the write lock */
+            FutureTask reader = new FutureTask(new Callable() {
+                public Object call() throws Exception {
+                    return db.read(1);
+                }
+            });
+            new Thread(reader).start();
+            try {
+                reader.get(300, TimeUnit.MILLISECONDS);
+                fail("read of a record being written");
+            } catch (TimeoutException ex) {
+                //Expected
+            }
+            release.countDown();
+            assertNotNull("read after write", reader.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+    }
+
+    public void testConcurrentUpdates() throws Exception {
+        final int[] recNos = db.find(new String[7]);
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] writers = new Thread[WRITERS];
+        for (int i = 0; i < WRITERS; i++) {
+            final int id = i;
+            writers[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int n = 0; n < 50; n++) {
+                            for (int r = id; r < recNos.length;
+                                    r += WRITERS) {
+                                update(recNos[r], 10000000 + n, errors);
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.add(ex.toString());
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        for (int i = 0; i < WRITERS; i++) {
+            writers[i].join();
+        }
+        assertTrue("errors " + errors, errors.isEmpty());
+    }
+
+    protected void update(int recNo, int owner, List errors)
+            throws Exception {
+        String[] record = db.read(recNo);
+        record[BookingDB.OWNER_FIELD] = Integer.toString(owner);
+        long cookie = db.lock(recNo);
+        db.update(recNo, record, cookie);
+        db.unlock(recNo, cookie);
+        if (!db.read(recNo)[BookingDB.OWNER_FIELD].trim().equals(
+                record[BookingDB.OWNER_FIELD])) {
+            errors.add("lost update of " + recNo);
+        }
+    }
+}
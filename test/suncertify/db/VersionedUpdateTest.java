@@ -0,0 +1,156 @@
+/*
+ * VersionedUpdateTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:50
+ */
+
+package suncertify.db;
+
+import java.io.File;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * Tests the optimistic updates of a copy of a data file: an update of the
+ * version read succeeds and gives a new version, an update of a version
+ * that has since been written, of a locked record or of a record whose
+ * number has been reused conflicts, versions do not carry over when the
+ * file is reopened, and of several threads updating the same version only
+ * one succeeds, so that retrying on conflict loses no update.
+ */
+public class VersionedUpdateTest extends DataTestCase {
+
+    /**
+     * The number of threads updating the same record.
+     */
+    protected static final int THREADS = 4;
+
+    protected Data db;
+
+    public VersionedUpdateTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(VersionedUpdateTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        db = new Data(copyDataFile().getPath());
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testConflicts() throws Exception {
+        VersionedRecord versioned = db.readVersioned(1);
+        String[] record = versioned.getFields();
+        record[BookingDB.OWNER_FIELD] = "12345678";
+        long version = db.updateIfVersion(1, record, versioned.getVersion());
+        assertTrue("new version", version != versioned.getVersion());
+        assertEquals("version read", version,
+                db.readVersioned(1).getVersion());
+        assertEquals("written", "12345678",
+                db.read(1)[BookingDB.OWNER_FIELD].trim());
+        assertConflict("stale version", 1, record, versioned.getVersion());
+
+        /* A locked record cannot be changed, even at its current version */
+        long cookie = db.lock(1);
+        assertConflict("locked", 1, record, version);
+        db.unlock(1, cookie);
+        version = db.updateIfVersion(1, record, version);
+
+        /* Nor can a record whose number has been reused */
+        cookie = db.lock(1);
+        db.delete(1, cookie);
+        assertEquals("reused", 1, db.create(record));
+        assertConflict("reused", 1, record, version);
+        try {
+            db.updateIfVersion(9999, record, version);
+            fail("update of missing record");
+        } catch (RecordNotFoundException ex) {
+            //Expected
+        }
+    }
+
+    public void testNotCarriedOver() throws Exception {
+        File copy = copyDataFile();
+        Data first = new Data(copy.getPath());
+        VersionedRecord versioned = first.readVersioned(2);
+        first.close();
+        Thread.sleep(5);
+        Data second = new Data(copy.getPath());
+        try {
+            String[] record = versioned.getFields();
+            try {
+                second.updateIfVersion(2, record, versioned.getVersion());
+                fail("version from another opening");
+            } catch (VersionConflictException ex) {
+                //Expected
+            }
+        } finally {
+            second.close();
+        }
+    }
+
+    public void testConcurrentUpdates() throws Exception {
+        final int rounds = 100;
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int n = 0; n < rounds; n++) {
+                            while (!increment()) {
+                                //Changed by another thread, so try again
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.add(ex.toString());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < THREADS; i++) {
+            threads[i].join();
+        }
+        assertTrue("errors " + errors, errors.isEmpty());
+        assertEquals("no update lost", THREADS * rounds, Integer.parseInt(
+                db.read(3)[BookingDB.OWNER_FIELD].trim()));
+    }
+
+    /**
+     * Adds one to the owner of record 3 if it has not been changed since it
+     * was read.
+     *
+     * @return <code>false</code> if the record had been changed.
+     */
+    protected boolean increment() throws Exception {
+        VersionedRecord versioned = db.readVersioned(3);
+        String[] record = versioned.getFields();
+        String owner = record[BookingDB.OWNER_FIELD].trim();
+        record[BookingDB.OWNER_FIELD] = Integer.toString(
+                (owner.length() == 0 ? 0 : Integer.parseInt(owner)) + 1);
+        try {
+            db.updateIfVersion(3, record, versioned.getVersion());
+            return true;
+        } catch (VersionConflictException ex) {
+            return false;
+        }
+    }
+
+    protected void assertConflict(String message, int recNo, String[] record,
+            long version) throws Exception {
+        try {
+            db.updateIfVersion(recNo, record, version);
+            fail(message);
+        } catch (VersionConflictException ex) {
+            //Expected
+        }
+    }
+}
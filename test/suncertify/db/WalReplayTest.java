@@ -0,0 +1,179 @@
+/*
+ * WalReplayTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 07:37
+ */
+
+package suncertify.db;
+
+import java.io.*;
+import junit.framework.*;
+
+/**
+ * Tests the recovery of logged writes on a copy of a data file: the
+ * complete entries left in a write-ahead log are replayed when the file is
+ * opened while an entry torn by a crash is ignored, a write that fails after
+ * it has been committed is made by replaying the log, and closing the data
+ * object empties the log.
+ */
+public class WalReplayTest extends DataTestCase {
+
+    protected File copy;
+    protected File logFile;
+
+    public WalReplayTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(WalReplayTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        copy = copyDataFile();
+        logFile = new File(copy.getPath() + Data.LOG_SUFFIX);
+    }
+
+    public void testReplayOnOpen() throws Exception {
+        int logged = Data.STORAGE_FILE | Data.STORAGE_LOGGED;
+
+        /* Leave three entries in the log, the last of them torn */
+        Data data = new Data(copy.getPath());
+        long[] positions = new long[3];
+        for (int i = 0; i < 3; i++) {
+            positions[i] = data.moveTo(i + 1)
+                    + data.fieldOffsets[BookingDB.OWNER_FIELD];
+        }
+        data.close();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        log.commit(log.append(positions[0], owner(11111111)));
+        log.commit(log.append(positions[1], owner(22222222)));
+        long complete = log.size();
+        log.commit(log.append(positions[2], owner(33333333)));
+        log.close();
+        RandomAccessFile torn = new RandomAccessFile(logFile, "rw");
+        torn.setLength(complete + WriteAheadLog.ENTRY_OVERHEAD / 2 + 3);
+        torn.close();
+
+        /* Opening the file replays the complete entries and empties the log */
+        data = new Data(copy.getPath(), logged);
+        assertEquals("first entry replayed", "11111111",
+                data.read(1)[BookingDB.OWNER_FIELD]);
+        assertEquals("second entry replayed", "22222222",
+                data.read(2)[BookingDB.OWNER_FIELD]);
+        assertFalse("torn entry ignored",
+                data.read(3)[BookingDB.OWNER_FIELD].equals("33333333"));
+        assertEquals("log emptied on open", 0, logFile.length());
+
+        /* Closing forces the data file and empties the log */
+        String[] record = data.read(4);
+        record[BookingDB.OWNER_FIELD] = "44444444";
+        long cookie = data.lock(4);
+        data.update(4, record, cookie);
+        data.unlock(4, cookie);
+        assertTrue("update logged", logFile.length() > 0);
+        data.close();
+        assertEquals("log emptied on close", 0, logFile.length());
+        data = new Data(copy.getPath());
+        assertEquals("update kept", "44444444",
+                data.read(4)[BookingDB.OWNER_FIELD]);
+        data.close();
+    }
+
+    public void testFailedWriteRecovered() throws Exception {
+        Data data = new Data(copy.getPath());
+        long position = data.moveTo(5) + data.fieldOffsets[
+                BookingDB.OWNER_FIELD];
+        data.close();
+
+        /* A write that fails once is made by replaying the log at once */
+        RandomAccessFile file = new RandomAccessFile(copy, "rw");
+        FailingStore failing = new FailingStore(new FileRecordStore(file));
+        LoggedRecordStore store = new LoggedRecordStore(failing,
+                new WriteAheadLog(logFile));
+        failing.failures = 1;
+        store.write(position, owner(55555555));
+        assertEquals("failed write made", "55555555", read(store, position));
+        assertFalse("caught up", store.isBehind());
+        assertEquals("log emptied after catching up", 0, logFile.length());
+
+        /* A write that keeps failing is kept in the log until it is made */
+        failing.failures = 2;
+        try {
+            store.write(position, owner(66666666));
+            fail("failing write reported success");
+        } catch (IOException ex) {
+            //Expected
+        }
+        assertTrue("behind the log", store.isBehind());
+        assertTrue("log kept while behind", logFile.length() > 0);
+        store.checkpoint();
+        assertEquals("write made at checkpoint", "66666666",
+                read(store, position));
+        assertFalse("caught up at checkpoint", store.isBehind());
+        assertEquals("log emptied at checkpoint", 0, logFile.length());
+        store.close();
+    }
+
+    /**
+     * A store whose writes fail a given number of times.
+     */
+    protected static class FailingStore implements RecordStore {
+
+        protected final RecordStore store;
+        protected int failures;
+
+        protected FailingStore(RecordStore store) {
+            this.store = store;
+        }
+
+        public void read(long position, byte[] buffer) throws IOException {
+            store.read(position, buffer);
+        }
+
+        public void write(long position, byte[] buffer) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Simulated write failure");
+            }
+            store.write(position, buffer);
+        }
+
+        public byte readByte(long position) throws IOException {
+            return store.readByte(position);
+        }
+
+        public void writeByte(long position, byte value) throws IOException {
+            write(position, new byte[] { value });
+        }
+
+        public long length() throws IOException {
+            return store.length();
+        }
+
+        public void truncate(long length) throws IOException {
+            store.truncate(length);
+        }
+
+        public void force() throws IOException {
+            store.force();
+        }
+
+        public void close() throws IOException {
+            store.close();
+        }
+    }
+
+    protected static byte[] owner(int value) throws IOException {
+        return Integer.toString(value).getBytes(Data.ENCODING);
+    }
+
+    protected static String read(RecordStore store, long position)
+            throws IOException {
+        byte[] bytes = new byte[8];
+        store.read(position, bytes);
+        return new String(bytes, Data.ENCODING);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * ChangeFeedTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:45
+ */
+
+package suncertify.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import junit.framework.*;
+
+/**
+ * Tests the change feed: changes are returned in order from a cursor, a
+ * cursor whose changes have been overwritten in the ring, or that did not
+ * come from the feed, gets an incomplete change set, as does one from
+ * before records were appended in bulk, and an asynchronous poll is
+ * completed by the next change or by its timeout.
+ */
+public class ChangeFeedTest extends TestCase {
+
+    protected ChangeFeed feed;
+
+    public ChangeFeedTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(ChangeFeedTest.class);
+        return suite;
+    }
+
+    protected void setUp() {
+        feed = new ChangeFeed(4);
+    }
+
+    public void testChangesInOrder() {
+        String[] data = { "Palace", "Smallville" };
+        feed.recordWritten(1, data);
+        data[0] = "Changed"; //The feed keeps its own copy
+        feed.recordDeleted(2);
+        feed.recordWritten(3, data);
+        ChangeSet changes = feed.getChanges(0, 0);
+        assertTrue("complete", changes.isComplete());
+        assertEquals("cursor", 3, changes.getCursor());
+        ChangeEvent[] events = changes.getEvents();
+        assertEquals("count", 3, events.length);
+        assertEquals("first", 1, events[0].getRecNo());
+        assertEquals("copied", "Palace", events[0].getData()[0]);
+        assertTrue("deleted", events[1].isDeleted());
+        assertEquals("last", 3, events[2].getRecNo());
+        assertEquals("from cursor", 1, feed.getChanges(2, 0).getEvents()
+                .length);
+        assertEquals("up to date", 0, feed.getChanges(3, 0).getEvents()
+                .length);
+    }
+
+    public void testRingOverflow() {
+        for (int recNo = 1; recNo <= 6; recNo++) {
+            feed.recordWritten(recNo, new String[] { "Hotel " + recNo });
+        }
+        ChangeSet overwritten = feed.getChanges(1, 0);
+        assertFalse("overwritten incomplete", overwritten.isComplete());
+        assertEquals("overwritten events", 0,
+                overwritten.getEvents().length);
+        assertEquals("current cursor", 6, overwritten.getCursor());
+
+        ChangeSet oldest = feed.getChanges(2, 0);
+        assertTrue("oldest kept complete", oldest.isComplete());
+        assertEquals("oldest kept", 3, oldest.getEvents()[0].getRecNo());
+        assertEquals("all kept", 4, oldest.getEvents().length);
+
+        assertFalse("future cursor", feed.getChanges(7, 0).isComplete());
+    }
+
+    public void testBulkAppendMarker() {
+        feed.recordWritten(1, new String[] { "Palace" });
+        assertFalse("not asked for each record",
+                feed.recordsAppended(2, 5000));
+        feed.recordWritten(1, new String[] { "Castle" });
+        assertFalse("across the import", feed.getChanges(0, 0).isComplete());
+        ChangeSet after = feed.getChanges(2, 0);
+        assertTrue("after the import", after.isComplete());
+        assertEquals("change after", "Castle",
+                after.getEvents()[0].getData()[0]);
+    }
+
+    public void testAsyncPoll() throws Exception {
+        long cursor = feed.getCursor();
+        CompletableFuture poll = feed.getChangesAsync(cursor, 10000);
+        assertFalse("waits for a change", poll.isDone());
+        feed.recordWritten(7, new String[] { "Palace" });
+        ChangeSet changes = (ChangeSet) poll.get(1, TimeUnit.SECONDS);
+        assertEquals("change", 7, changes.getEvents()[0].getRecNo());
+        assertTrue("poll forgotten", feed.waiting.isEmpty());
+
+        /* A poll with no change completes with no events at its timeout */
+        long start = System.currentTimeMillis();
+        poll = feed.getChangesAsync(cursor + 1, 200);
+        changes = (ChangeSet) poll.get(5, TimeUnit.SECONDS);
+        assertTrue("waited", System.currentTimeMillis() - start >= 150);
+        assertEquals("no events", 0, changes.getEvents().length);
+        assertTrue("timed out complete", changes.isComplete());
+        assertEquals("same cursor", cursor + 1, changes.getCursor());
+        Thread.sleep(50);
+        assertTrue("timed out poll forgotten", feed.waiting.isEmpty());
+
+        /* A poll behind the cursor is answered at once */
+        assertTrue("behind", feed.getChangesAsync(cursor, 10000).isDone());
+    }
+}
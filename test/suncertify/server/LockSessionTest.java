@@ -0,0 +1,95 @@
+/*
+ * LockSessionTest.java
+ * JUnit based test
+ *
+ * Created on 17 October 2026, 08:47
+ */
+
+package suncertify.server;
+
+import java.util.*;
+import junit.framework.*;
+import suncertify.Configuration;
+import suncertify.db.*;
+
+/**
+ * Tests the locks a session tracks for a remote client: the session holds
+ * the cookie of every record locked and forgets records unlocked through
+ * any number of growths and removals, closing the session releases every
+ * lock it still holds except those already released, and a lock granted
+ * after the session is closed is released at once.
+ */
+public class LockSessionTest extends DataTestCase {
+
+    protected BookingData db;
+    protected LockSession session;
+
+    public LockSessionTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(LockSessionTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws Exception {
+        Configuration alone = Configuration.ALONE;
+        alone.set("alone.file", copyDataFile().getPath());
+        db = (BookingData) new BookingDBFactory(alone).getBookingDB();
+        session = new LockSession(db);
+    }
+
+    protected void tearDown() throws Exception {
+        db.close();
+    }
+
+    public void testTracking() {
+        Map expected = new TreeMap();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            int recNo = 1 + random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                session.unlocked(recNo);
+                expected.remove(new Integer(recNo));
+            } else {
+                long cookie = random.nextLong();
+                session.locked(recNo, cookie);
+                expected.put(new Integer(recNo), new Long(cookie));
+            }
+        }
+        assertEquals("count", expected.size(), session.getLockCount());
+        int[] locked = session.getLockedRecords();
+        Arrays.sort(locked);
+        assertEquals("records", new ArrayList(expected.keySet()),
+                toList(locked));
+        for (Iterator i = expected.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            assertEquals("cookie of " + entry.getKey(), ((Long)
+                    entry.getValue()).longValue(), session.getCookie(
+                    ((Integer) entry.getKey()).intValue()));
+        }
+        session.unlocked(9999); //Never locked
+        assertEquals("unknown record", expected.size(),
+                session.getLockCount());
+    }
+
+    public void testCloseReleasesLocks() throws Exception {
+        for (int recNo = 1; recNo <= 3; recNo++) {
+            session.locked(recNo, db.lock(recNo));
+        }
+        long cookie = session.getCookie(2);
+        db.delete(2, cookie); //Releases its lock
+        assertEquals("released", 2, session.close());
+        assertTrue("closed", session.isClosed());
+        assertEquals("forgotten", 0, session.getLockCount());
+        for (int recNo = 1; recNo <= 3; recNo += 2) {
+            db.unlock(recNo, db.tryLock(recNo, 1000)); //Free again
+        }
+
+        /* A lock granted once the client has gone is released */
+        session.locked(4, db.lock(4));
+        assertEquals("not tracked", 0, session.getLockCount());
+        db.unlock(4, db.tryLock(4, 1000));
+    }
+}